@@ -0,0 +1,85 @@
+package banque;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dépôt et retrait sur un compte seul : un compte par thread, ou un compte partagé par 4 threads
+ * (suffixe Partage) pour mesurer le coût du moniteur du compte sous contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BenchCompte {
+
+    private static final int THREADS = 4;
+
+    /**
+     * Compte avec un historique de longueur donnée, ramené à cette longueur après chaque itération.
+     */
+    public abstract static class Compte {
+        @Param({"1", "100"})
+        int longueurHistorique;
+
+        CompteBancaire compte;
+
+        @Setup(Level.Trial)
+        public void creer() {
+            compte = new CompteBancaire(1, "Titulaire", FabriqueBanque.SOLDE_INITIAL);
+            for (int i = 1; i < longueurHistorique; i++) {
+                compte.deposer(1);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void raccourcir() {
+            FabriqueBanque.raccourcir(compte, longueurHistorique);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ComptePrive extends Compte {
+    }
+
+    @State(Scope.Benchmark)
+    public static class ComptePartage extends Compte {
+    }
+
+    @Benchmark
+    public void deposer(ComptePrive etat) {
+        etat.compte.deposer(1);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public void deposerPartage(ComptePartage etat) {
+        etat.compte.deposer(1);
+    }
+
+    @Benchmark
+    public boolean retirer(ComptePrive etat) {
+        return etat.compte.retirer(1, "RETRAIT");
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public boolean retirerPartage(ComptePartage etat) {
+        return etat.compte.retirer(1, "RETRAIT");
+    }
+}
@@ -0,0 +1,203 @@
+package banque;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Opérations du gestionnaire sur une banque de N comptes : recherche, transfert, création et suppression.
+ * Chaque opération existe en version mono-thread et en version à 4 threads (suffixe Concurrent)
+ * pour mesurer la contention sur les verrous du gestionnaire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class BenchGestionnaire {
+
+    static final int LOT = 100;
+    private static final int THREADS = 4;
+
+    @Param({"1000", "100000"})
+    int nombreComptes;
+
+    @Param({"1", "100"})
+    int longueurHistorique;
+
+    GestionnaireBanque gestionnaire;
+    private Path repertoire;
+
+    @Setup(Level.Trial)
+    public void creerBanque() throws IOException {
+        repertoire = Files.createTempDirectory("bench-banque");
+        gestionnaire = FabriqueBanque.creer(repertoire, nombreComptes, longueurHistorique);
+    }
+
+    @TearDown(Level.Iteration)
+    public void raccourcirHistoriques() {
+        FabriqueBanque.raccourcirHistoriques(gestionnaire, longueurHistorique);
+    }
+
+    @TearDown(Level.Trial)
+    public void supprimerBanque() throws IOException {
+        FabriqueBanque.supprimerRepertoire(repertoire);
+    }
+
+    /**
+     * Numéros de comptes tirés à l'avance, avec une graine fixe par thread (mesures reproductibles).
+     * Chaque numéro a une cible distincte pour les transferts.
+     */
+    @State(Scope.Thread)
+    public static class Tirage {
+        private int[] numeros;
+        private int[] cibles;
+        private int suivant;
+
+        @Setup(Level.Trial)
+        public void tirer(BenchGestionnaire banc, ThreadParams thread) {
+            SplittableRandom aleatoire = new SplittableRandom(42 + thread.getThreadIndex());
+            numeros = new int[4096];
+            cibles = new int[numeros.length];
+            for (int i = 0; i < numeros.length; i++) {
+                numeros[i] = 1 + aleatoire.nextInt(banc.nombreComptes);
+                cibles[i] = 1 + (numeros[i] + aleatoire.nextInt(banc.nombreComptes - 1)) % banc.nombreComptes;
+            }
+        }
+
+        int suivant() {
+            suivant = (suivant + 1) & (numeros.length - 1);
+            return numeros[suivant];
+        }
+
+        /**
+         * Cible du transfert depuis le dernier numéro tiré.
+         */
+        int cible() {
+            return cibles[suivant];
+        }
+    }
+
+    /**
+     * Lot de numéros propres au thread, hors de la banque ; les comptes créés sont supprimés après chaque appel.
+     */
+    @State(Scope.Thread)
+    public static class LotAbsent {
+        int premier;
+        private GestionnaireBanque gestionnaire;
+
+        @Setup(Level.Trial)
+        public void choisir(BenchGestionnaire banc, ThreadParams thread) {
+            premier = banc.nombreComptes + 1 + (thread.getThreadIndex() + 1) * 1_000_000;
+            gestionnaire = banc.gestionnaire;
+        }
+
+        @TearDown(Level.Invocation)
+        public void nettoyer() {
+            for (int i = 0; i < LOT; i++) {
+                gestionnaire.supprimerCompte(premier + i);
+            }
+        }
+    }
+
+    /**
+     * Lot de comptes propres au thread, créés avant chaque appel pour être supprimés.
+     */
+    @State(Scope.Thread)
+    public static class LotPresent {
+        int premier;
+        private GestionnaireBanque gestionnaire;
+
+        @Setup(Level.Trial)
+        public void choisir(BenchGestionnaire banc, ThreadParams thread) {
+            premier = banc.nombreComptes + 1 + (thread.getThreadIndex() + 1) * 1_000_000;
+            gestionnaire = banc.gestionnaire;
+        }
+
+        @Setup(Level.Invocation)
+        public void creer() {
+            for (int i = 0; i < LOT; i++) {
+                gestionnaire.creerCompte(premier + i, "Lot " + i, FabriqueBanque.SOLDE_INITIAL);
+            }
+        }
+    }
+
+    // --- Recherche ---
+
+    @Benchmark
+    public CompteBancaire trouverCompte(Tirage tirage) {
+        return gestionnaire.trouverCompte(tirage.suivant());
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public CompteBancaire trouverCompteConcurrent(Tirage tirage) {
+        return gestionnaire.trouverCompte(tirage.suivant());
+    }
+
+    // --- Transfert ---
+
+    @Benchmark
+    public boolean transfererFonds(Tirage tirage) {
+        return gestionnaire.transfererFonds(tirage.suivant(), tirage.cible(), 1);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public boolean transfererFondsConcurrent(Tirage tirage) {
+        return gestionnaire.transfererFonds(tirage.suivant(), tirage.cible(), 1);
+    }
+
+    // --- Création et suppression (par lots de LOT comptes) ---
+
+    @Benchmark
+    @OperationsPerInvocation(LOT)
+    public void ajouterCompte(LotAbsent lot, Blackhole trou) {
+        for (int i = 0; i < LOT; i++) {
+            trou.consume(gestionnaire.ajouterCompte(lot.premier + i, "Lot " + i, FabriqueBanque.SOLDE_INITIAL));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOT)
+    @Threads(THREADS)
+    public void ajouterCompteConcurrent(LotAbsent lot, Blackhole trou) {
+        ajouterCompte(lot, trou);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOT)
+    public void supprimerCompte(LotPresent lot, Blackhole trou) {
+        for (int i = 0; i < LOT; i++) {
+            trou.consume(gestionnaire.supprimerCompte(lot.premier + i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOT)
+    @Threads(THREADS)
+    public void supprimerCompteConcurrent(LotPresent lot, Blackhole trou) {
+        supprimerCompte(lot, trou);
+    }
+}
@@ -0,0 +1,96 @@
+package banque;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sauvegarde et chargement d'une banque de N comptes. Ces opérations prennent le verrou exclusif
+ * du gestionnaire : elles ne sont mesurées qu'en mono-thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class BenchSauvegarde {
+
+    @Param({"1000", "100000"})
+    int nombreComptes;
+
+    @Param({"1", "100"})
+    int longueurHistorique;
+
+    private GestionnaireBanque gestionnaire;
+    private Path repertoire;
+    private final SplittableRandom aleatoire = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void creerBanque() throws IOException {
+        repertoire = Files.createTempDirectory("bench-sauvegarde");
+        gestionnaire = FabriqueBanque.creer(repertoire, nombreComptes, longueurHistorique);
+        gestionnaire.sauvegarderDonnees();
+    }
+
+    @TearDown(Level.Trial)
+    public void supprimerBanque() throws IOException {
+        FabriqueBanque.supprimerRepertoire(repertoire);
+    }
+
+    /**
+     * Sans fichier de pages, la sauvegarde suivante réécrit toute la banque.
+     */
+    @State(Scope.Benchmark)
+    public static class SansFichierPages {
+        @Setup(Level.Invocation)
+        public void effacer(BenchSauvegarde banc) throws IOException {
+            Files.deleteIfExists(banc.repertoire.resolve("banque.ser.pages"));
+        }
+    }
+
+    /**
+     * Un dépôt sur 1 % des comptes avant chaque sauvegarde incrémentale.
+     */
+    @State(Scope.Benchmark)
+    public static class Depots {
+        @Setup(Level.Invocation)
+        public void deposer(BenchSauvegarde banc) {
+            for (int i = 0; i < Math.max(1, banc.nombreComptes / 100); i++) {
+                banc.gestionnaire.effectuerDepot(1 + banc.aleatoire.nextInt(banc.nombreComptes), 1);
+            }
+        }
+    }
+
+    @Benchmark
+    public void sauvegardeComplete(SansFichierPages etat) {
+        gestionnaire.sauvegarderDonnees();
+    }
+
+    @Benchmark
+    public void sauvegardeIncrementale(Depots etat) {
+        gestionnaire.sauvegarderDonnees();
+    }
+
+    @Benchmark
+    public int chargerDonnees() {
+        gestionnaire.chargerDonnees();
+        return gestionnaire.getComptes().size();
+    }
+}
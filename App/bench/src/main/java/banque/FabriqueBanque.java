@@ -0,0 +1,60 @@
+package banque;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Construction des banques utilisées par les benchmarks : comptes numérotés de 1 à N,
+ * chacun avec un historique de la longueur demandée et un solde assez grand pour
+ * qu'aucun retrait ni transfert n'échoue.
+ */
+final class FabriqueBanque {
+
+    static final double SOLDE_INITIAL = 1e9;
+
+    private FabriqueBanque() {
+    }
+
+    static GestionnaireBanque creer(Path repertoire, int nombreComptes, int longueurHistorique) {
+        GestionnaireBanque gestionnaire = new GestionnaireBanque(repertoire.resolve("banque.ser").toString());
+        gestionnaire.setSauvegardeAutomatique(false);
+        for (int numero = 1; numero <= nombreComptes; numero++) {
+            gestionnaire.creerCompte(numero, "Titulaire " + numero, SOLDE_INITIAL);
+            for (int i = 1; i < longueurHistorique; i++) { // Le dépôt initial compte pour une transaction
+                gestionnaire.effectuerDepot(numero, 1);
+            }
+        }
+        return gestionnaire;
+    }
+
+    /**
+     * Ramène les historiques à leur longueur initiale entre deux itérations, pour que les mesures
+     * ne dérivent pas avec la croissance de l'historique (ni la mémoire occupée).
+     */
+    static void raccourcirHistoriques(GestionnaireBanque gestionnaire, int longueur) {
+        for (CompteBancaire compte : gestionnaire.getComptes()) {
+            raccourcir(compte, longueur);
+        }
+    }
+
+    static void raccourcir(CompteBancaire compte, int longueur) {
+        synchronized (compte) {
+            List<Transaction> historique = compte.getHistoriqueTransactions();
+            if (historique.size() > longueur) {
+                historique.subList(longueur, historique.size()).clear();
+            }
+        }
+    }
+
+    static void supprimerRepertoire(Path repertoire) throws IOException {
+        try (Stream<Path> fichiers = Files.walk(repertoire)) {
+            for (Path fichier : (Iterable<Path>) fichiers.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(fichier);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package banque;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.ProfilerConfig;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Point d'entrée de benchmarks.jar : les options JMH de la ligne de commande, plus le profileur
+ * d'allocations (gc.alloc.rate.norm : octets alloués par opération), activé par défaut ; il se coupe
+ * avec -Dbanque.profileurGc=false (mesures de latence sans le coût de ses relevés) et n'est pas
+ * ajouté une seconde fois si la ligne de commande le demande déjà (-prof gc).
+ * Les résultats sont aussi écrits dans resultats-jmh.json, sauf si -rf/-rff sont précisés.
+ */
+public class LancerBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions ligne = new CommandLineOptions(args);
+        if (ligne.shouldHelp()) {
+            ligne.showHelp();
+            return;
+        }
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(ligne);
+        if (Boolean.parseBoolean(System.getProperty("banque.profileurGc", "true")) && !profileurGcDemande(ligne)) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!ligne.getResult().hasValue() && !ligne.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON).result("resultats-jmh.json");
+        }
+        new Runner(options.build()).run();
+    }
+
+    private static boolean profileurGcDemande(CommandLineOptions ligne) {
+        for (ProfilerConfig profileur : ligne.getProfilers()) {
+            if (profileur.getKlass().equals("gc") || profileur.getKlass().equals(GCProfiler.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package banque;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * En régime établi, un dépôt, un retrait et un transfert n'allouent rien, d'après le compteur
+ * d'allocations du thread (ThreadMXBean.getCurrentThreadAllocatedBytes). La place des historiques est
+ * réservée d'avance (reserverHistorique) : la croissance de leurs tableaux, seule allocation légitime,
+ * est donc exclue de la mesure. Échoue si la mesure dépasse quelques centaines d'octets au total :
+ * une seule allocation par opération en coûterait des millions.
+ */
+class AllocationsTest {
+
+    private static final int NOMBRE_COMPTES = 1000;
+    private static final int ECHAUFFEMENT = 200_000; // Opérations de chaque type avant la mesure (compilation C2)
+    private static final int MESURES = 200_000;
+    private static final long TOLERANCE_OCTETS = 1024; // Allocations ponctuelles (classe chargée, désoptimisation)
+
+    private interface Operation {
+        void executer(GestionnaireBanque gestionnaire, int numero, int cible);
+    }
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void operationsSansAllocation() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported(), "compteur d'allocations du thread indisponible");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        GestionnaireBanque gestionnaire = FabriqueBanque.creer(dossier, NOMBRE_COMPTES, 1);
+        // Contrôle de vélocité actif (plafonds jamais atteints) : il fait partie du chemin mesuré
+        gestionnaire.setControleVelocite(new ControleVelocite(Duration.ofMinutes(1), 10)
+                .regle(Duration.ofMinutes(10), Double.POSITIVE_INFINITY, Integer.MAX_VALUE));
+        verifier(threads, gestionnaire, "depot", (g, numero, cible) -> g.effectuerDepot(numero, 1));
+        verifier(threads, gestionnaire, "retrait", (g, numero, cible) -> g.effectuerRetrait(numero, 1));
+        verifier(threads, gestionnaire, "transfert", (g, numero, cible) -> g.effectuerTransfert(numero, cible, 1));
+    }
+
+    private static void verifier(ThreadMXBean threads, GestionnaireBanque gestionnaire, String nom, Operation operation) {
+        // Historiques ramenés au dépôt initial, avec la place de toutes les opérations à venir
+        FabriqueBanque.raccourcirHistoriques(gestionnaire, 1);
+        int parCompte = 2 * (ECHAUFFEMENT + MESURES) / NOMBRE_COMPTES + 1; // Un transfert écrit dans deux comptes
+        for (CompteBancaire compte : gestionnaire.getComptes()) {
+            compte.reserverHistorique(parCompte + 1);
+        }
+        executer(gestionnaire, operation, ECHAUFFEMENT);
+
+        long reference = threads.getCurrentThreadAllocatedBytes();
+        long surcout = threads.getCurrentThreadAllocatedBytes() - reference; // Ce que l'appel lui-même alloue
+        long debut = threads.getCurrentThreadAllocatedBytes();
+        executer(gestionnaire, operation, MESURES);
+        long octets = threads.getCurrentThreadAllocatedBytes() - debut - surcout;
+
+        System.out.printf("%-10s %10d opérations  %12d octets  %8.3f octets/opération%n", nom, MESURES, octets,
+                (double) octets / MESURES);
+        assertTrue(octets <= TOLERANCE_OCTETS, nom + " : " + octets + " octets alloués pour " + MESURES + " opérations");
+    }
+
+    private static void executer(GestionnaireBanque gestionnaire, Operation operation, int nombre) {
+        for (int i = 0; i < nombre; i++) {
+            int numero = 1 + i % NOMBRE_COMPTES;
+            operation.executer(gestionnaire, numero, numero % NOMBRE_COMPTES + 1);
+        }
+    }
+}
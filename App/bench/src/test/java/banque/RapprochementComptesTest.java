@@ -0,0 +1,50 @@
+package banque;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Jambes de transfert appariées par compte d'en face : la suppression d'un compte qui a reçu puis
+ * réémis le même montant laisse deux jambes orphelines, que l'appariement par montant et date masquait.
+ */
+class RapprochementComptesTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void compteSupprimeSignale() throws Exception {
+        String fichier = dossier.resolve("banque.ser").toString();
+        GestionnaireBanque gestionnaire = new GestionnaireBanque(fichier);
+        gestionnaire.ajouterCompte(1, "Émetteur", 1000);
+        gestionnaire.ajouterCompte(2, "Intermédiaire", 0);
+        gestionnaire.ajouterCompte(4, "Destinataire", 0);
+        assertTrue(gestionnaire.effectuerTransfert(1, 2, 100).estSucces());
+        assertTrue(gestionnaire.effectuerTransfert(2, 4, 100).estSucces());
+
+        RapprochementComptes.Rapport rapport = gestionnaire.rapprocher();
+        assertTrue(rapport.estCoherent(), rapport.toString());
+        assertEquals(2, rapport.getTransferts(), "transferts appariés");
+
+        // Les comptes d'en face sont sauvegardés avec l'historique
+        gestionnaire.sauvegarderDonnees();
+        GestionnaireBanque recharge = new GestionnaireBanque(fichier);
+        rapport = recharge.rapprocher();
+        assertTrue(rapport.estCoherent(), rapport.toString());
+        assertEquals(2, rapport.getTransferts(), "transferts appariés après rechargement");
+
+        assertTrue(recharge.supprimerCompte(2).estSucces());
+        rapport = recharge.rapprocher();
+        assertFalse(rapport.estCoherent(), rapport.toString());
+        assertEquals(0, rapport.getTransferts(), "transferts appariés sans le compte 2");
+        assertEquals(2, rapport.getJambesSansContrepartie(), "jambes sans contrepartie");
+        assertEquals(1, rapport.getAnomalies().get(0).getNumeroCompte(), "débit orphelin");
+        assertEquals(4, rapport.getAnomalies().get(1).getNumeroCompte(), "crédit orphelin");
+    }
+}
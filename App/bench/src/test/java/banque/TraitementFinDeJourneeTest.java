@@ -0,0 +1,71 @@
+package banque;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Traitement de fin de journée pendant que des dépôts, chacun suivi d'une sauvegarde, continuent :
+ * après rechargement, chaque compte a reçu ses intérêts une fois et une seule.
+ */
+class TraitementFinDeJourneeTest {
+
+    private static final int COMPTES = 50_000;
+    private static final LocalDate JOUR = LocalDate.of(2026, 10, 18);
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void sauvegardesPendantLeTraitement() throws Exception {
+        String fichier = dossier.resolve("banque.ser").toString();
+        GestionnaireBanque gestionnaire = new GestionnaireBanque(fichier);
+        gestionnaire.setSauvegardeAutomatique(false);
+        for (int numero = 1; numero <= COMPTES; numero++) {
+            gestionnaire.ajouterCompte(numero, "Titulaire " + numero, 1000);
+        }
+        gestionnaire.sauvegarderDonnees();
+        gestionnaire.setSauvegardeAutomatique(true);
+
+        // Intérêts de 1 € par jour sur un solde de 1000 €
+        TraitementFinDeJournee.Bareme bareme = new TraitementFinDeJournee.Bareme().palier(0, 0.365);
+        AtomicBoolean fin = new AtomicBoolean();
+        AtomicLong deposes = new AtomicLong();
+        Thread depots = new Thread(() -> {
+            Random aleatoire = new Random(1);
+            while (!fin.get()) {
+                if (gestionnaire.effectuerDepot(1 + aleatoire.nextInt(COMPTES), 1).estSucces()) {
+                    deposes.incrementAndGet();
+                }
+            }
+        });
+        depots.start();
+        TraitementFinDeJournee.Rapport rapport;
+        try {
+            rapport = new TraitementFinDeJournee(gestionnaire, bareme).executer(JOUR);
+        } finally {
+            fin.set(true);
+            depots.join();
+        }
+        assertEquals(COMPTES, rapport.getComptes(), "comptes traités");
+        gestionnaire.sauvegarderDonnees();
+
+        GestionnaireBanque recharge = new GestionnaireBanque(fichier);
+        double total = 0;
+        for (CompteBancaire compte : recharge.getComptes()) {
+            long interets = compte.getHistoriqueTransactions().stream().filter(t -> t.getType().equals("INTERETS")).count();
+            assertEquals(1, interets, "intérêts du compte " + compte.getNumeroCompte());
+            assertEquals(JOUR.toEpochDay(), compte.getJourFinDeJournee(), "jour du compte " + compte.getNumeroCompte());
+            total += compte.getSolde();
+        }
+        assertEquals(COMPTES * 1001.0 + deposes.get(), total, 0.001, "total des soldes");
+        assertEquals(0, new TraitementFinDeJournee(recharge, bareme).executer(JOUR).getComptes(), "comptes traités à nouveau");
+    }
+}
@@ -0,0 +1,409 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stockage froid de l'historique : les transactions anciennes quittent le tas et la sauvegarde
+ * principale pour être ajoutées dans des segments compressés, un par mois (AAAA-MM.seg).
+ *
+ * Chaque archivage ajoute, pour chaque compte concerné, un bloc compressé en fin de segment ;
+ * l'index du segment (AAAA-MM.idx) associe à chaque numéro de compte la position de ses blocs.
+ * Les segments ne sont jamais réécrits. Les index ne sont lus qu'à la première consultation
+ * d'un mois, puis gardés dans un cache LRU.
+ *
+ * Un fichier d'état (archive.etat), remplacé par renommage atomique à la fin de chaque archivage,
+ * valide la longueur de chaque segment et de son index, et donne pour chaque compte le nombre de ses
+ * transactions déjà archivées. À l'ouverture (ou après un archivage en échec), ce qui dépasse les
+ * longueurs validées est tronqué ; un archivage relancé après un arrêt survenu avant la sauvegarde
+ * principale n'ajoute que les transactions au-delà de ce nombre, sans doublon.
+ */
+public class ArchiveHistorique {
+
+    private static final String EXTENSION_SEGMENT = ".seg";
+    private static final String EXTENSION_INDEX = ".idx";
+    private static final int TAILLE_ENTREE_INDEX = 16; // numéro (int), position (long), longueur (int)
+    private static final ZoneId FUSEAU = ZoneId.systemDefault();
+    private static final String FICHIER_ETAT = "archive.etat";
+    private static final int MAGIC_ETAT = 0x42414531; // "BAE1"
+
+    private final Path repertoire;
+    private final TreeSet<YearMonth> periodes = new TreeSet<>();
+
+    // État validé : longueurs [segment, index] de chaque mois, et par compte [date de sa première
+    // transaction archivée (ms), nombre de transactions archivées] ; un numéro réutilisé a une autre date
+    private final Map<YearMonth, long[]> longueursValidees = new HashMap<>();
+    private final Map<Integer, long[]> niveaux = new HashMap<>();
+
+    // Index des segments récemment consultés : numéro de compte → [position, longueur, position, longueur...]
+    private final LinkedHashMap<YearMonth, Map<Integer, long[]>> cacheIndex;
+    private long chargementsIndex;
+
+    // Fichiers (segment, index) ouverts pendant un archivage, jusqu'à forcer()
+    private final Map<YearMonth, FileChannel[]> canauxEcriture = new HashMap<>();
+
+    /**
+     * @param repertoire Répertoire des segments (créé si besoin).
+     * @param tailleCache Nombre d'index de segments gardés en mémoire.
+     */
+    public ArchiveHistorique(Path repertoire, int tailleCache) throws IOException {
+        this.repertoire = repertoire;
+        this.cacheIndex = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<YearMonth, Map<Integer, long[]>> plusAncien) {
+                return size() > tailleCache;
+            }
+        };
+        Files.createDirectories(repertoire);
+        restaurerEtatValide();
+    }
+
+    /**
+     * Relit l'état validé et tronque (ou supprime) les segments et index écrits au-delà. Sans fichier
+     * d'état (archive antérieure), les fichiers présents sont validés tels quels.
+     */
+    private void restaurerEtatValide() throws IOException {
+        periodes.clear();
+        cacheIndex.clear();
+        longueursValidees.clear();
+        niveaux.clear();
+        try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(repertoire, "*" + EXTENSION_SEGMENT)) {
+            for (Path fichier : fichiers) {
+                String nom = fichier.getFileName().toString();
+                periodes.add(YearMonth.parse(nom.substring(0, nom.length() - EXTENSION_SEGMENT.length())));
+            }
+        }
+        Path etat = repertoire.resolve(FICHIER_ETAT);
+        if (!Files.exists(etat)) {
+            for (YearMonth periode : periodes) {
+                longueursValidees.put(periode, longueurs(periode));
+            }
+            return;
+        }
+        try (DataInputStream entree = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(etat)))) {
+            if (entree.readInt() != MAGIC_ETAT) {
+                throw new IOException("État d'archive invalide : " + etat);
+            }
+            for (int i = entree.readInt(); i > 0; i--) {
+                longueursValidees.put(YearMonth.parse(entree.readUTF()), new long[] {entree.readLong(), entree.readLong()});
+            }
+            for (int i = entree.readInt(); i > 0; i--) {
+                niveaux.put(entree.readInt(), new long[] {entree.readLong(), entree.readLong()});
+            }
+        }
+        for (YearMonth periode : new ArrayList<>(periodes)) {
+            long[] validees = longueursValidees.get(periode);
+            if (validees == null) {
+                // Mois commencé par un archivage jamais validé
+                Files.deleteIfExists(fichier(periode, EXTENSION_SEGMENT));
+                Files.deleteIfExists(fichier(periode, EXTENSION_INDEX));
+                periodes.remove(periode);
+                continue;
+            }
+            tronquer(fichier(periode, EXTENSION_SEGMENT), validees[0]);
+            tronquer(fichier(periode, EXTENSION_INDEX), validees[1]);
+        }
+    }
+
+    private long[] longueurs(YearMonth periode) throws IOException {
+        Path index = fichier(periode, EXTENSION_INDEX);
+        return new long[] {Files.size(fichier(periode, EXTENSION_SEGMENT)), Files.exists(index) ? Files.size(index) : 0};
+    }
+
+    private static void tronquer(Path fichier, long longueur) throws IOException {
+        if (Files.exists(fichier) && Files.size(fichier) > longueur) {
+            try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.WRITE)) {
+                canal.truncate(longueur);
+                canal.force(true);
+            }
+        }
+    }
+
+    /**
+     * Nombre de transactions du compte déjà archivées (validées), ou 0 si l'archive ne connaît pas ce
+     * compte : numéro jamais archivé, ou porté par un compte supprimé depuis (autre date de début).
+     * @param debutMillis Date de la première transaction archivée (ou à archiver) du compte.
+     */
+    public synchronized long getNombreArchivees(int numero, long debutMillis) {
+        long[] niveau = niveaux.get(numero);
+        return niveau != null && niveau[0] == debutMillis ? niveau[1] : 0;
+    }
+
+    /**
+     * Ajoute des transactions (chronologiques) d'un compte à l'archive, dans le segment de leur mois,
+     * sans tenir son nombre de transactions archivées (mode tas borné).
+     */
+    public synchronized void archiver(int numero, List<Transaction> transactions) throws IOException {
+        ajouter(numero, transactions);
+    }
+
+    /**
+     * Ajoute des transactions (chronologiques) d'un compte à l'archive, dans le segment de leur mois.
+     * @param debutMillis Date de la première transaction archivée du compte (la sienne, ou celle de la première ici).
+     * @param rang Nombre de transactions du compte archivées avant celles-ci.
+     */
+    public synchronized void archiver(int numero, long debutMillis, long rang, List<Transaction> transactions) throws IOException {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        niveaux.put(numero, new long[] {debutMillis, rang + transactions.size()});
+        ajouter(numero, transactions);
+    }
+
+    private void ajouter(int numero, List<Transaction> transactions) throws IOException {
+        int debut = 0;
+        while (debut < transactions.size()) {
+            YearMonth periode = YearMonth.from(transactions.get(debut).getDateHeure());
+            int fin = debut + 1;
+            while (fin < transactions.size() && YearMonth.from(transactions.get(fin).getDateHeure()).equals(periode)) {
+                fin++;
+            }
+            ajouterBloc(periode, numero, transactions.subList(debut, fin));
+            debut = fin;
+        }
+    }
+
+    /**
+     * Historique archivé complet d'un compte, dans l'ordre chronologique.
+     */
+    public List<Transaction> lire(int numero) throws IOException {
+        return lire(numero, null);
+    }
+
+    /**
+     * Historique archivé d'un compte depuis une date ; les mois antérieurs ne sont pas ouverts.
+     * @param depuis Date de début, ou null pour tout l'historique.
+     */
+    public synchronized List<Transaction> lire(int numero, LocalDateTime depuis) throws IOException {
+        List<Transaction> resultat = new ArrayList<>();
+        Iterable<YearMonth> aLire = depuis == null ? periodes : periodes.tailSet(YearMonth.from(depuis), true);
+        for (YearMonth periode : aLire) {
+            long[] blocs = index(periode).get(numero);
+            if (blocs == null) {
+                continue;
+            }
+            try (FileChannel segment = FileChannel.open(fichier(periode, EXTENSION_SEGMENT), StandardOpenOption.READ)) {
+                for (int i = 0; i < blocs.length; i += 2) {
+                    lireBloc(segment, blocs[i], (int) blocs[i + 1], depuis, resultat);
+                }
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Mois présents dans l'archive.
+     */
+    public synchronized List<YearMonth> getPeriodes() {
+        return new ArrayList<>(periodes);
+    }
+
+    /**
+     * Nombre d'index de segments lus sur disque (défauts du cache LRU).
+     */
+    public synchronized long getChargementsIndex() {
+        return chargementsIndex;
+    }
+
+    /**
+     * Écrit sur disque les segments modifiés, ferme leurs fichiers et valide l'archivage (fichier d'état).
+     * À appeler à la fin d'un archivage, avant de retirer les transactions de la sauvegarde principale.
+     */
+    public synchronized void forcer() throws IOException {
+        if (canauxEcriture.isEmpty()) {
+            return;
+        }
+        IOException erreur = null;
+        for (FileChannel[] canaux : canauxEcriture.values()) {
+            for (FileChannel canal : canaux) {
+                try {
+                    canal.force(true);
+                    canal.close();
+                } catch (IOException e) {
+                    erreur = e;
+                }
+            }
+        }
+        Map<YearMonth, long[]> ecrits = new HashMap<>();
+        for (YearMonth periode : canauxEcriture.keySet()) {
+            ecrits.put(periode, longueurs(periode));
+        }
+        canauxEcriture.clear();
+        if (erreur != null) {
+            throw erreur;
+        }
+        longueursValidees.putAll(ecrits);
+        ecrireEtat();
+    }
+
+    /**
+     * Abandonne l'archivage en cours : les blocs ajoutés depuis le dernier état validé sont retirés.
+     */
+    public synchronized void annuler() throws IOException {
+        for (FileChannel[] canaux : canauxEcriture.values()) {
+            for (FileChannel canal : canaux) {
+                canal.close();
+            }
+        }
+        canauxEcriture.clear();
+        restaurerEtatValide();
+    }
+
+    /**
+     * État : longueurs validées de chaque mois, puis (numéro, date de début, nombre archivé) de chaque compte.
+     */
+    private void ecrireEtat() throws IOException {
+        ByteArrayOutputStream octets = new ByteArrayOutputStream(64 + longueursValidees.size() * 32 + niveaux.size() * 20);
+        try (DataOutputStream sortie = new DataOutputStream(octets)) {
+            sortie.writeInt(MAGIC_ETAT);
+            sortie.writeInt(longueursValidees.size());
+            for (Map.Entry<YearMonth, long[]> e : longueursValidees.entrySet()) {
+                sortie.writeUTF(e.getKey().toString());
+                sortie.writeLong(e.getValue()[0]);
+                sortie.writeLong(e.getValue()[1]);
+            }
+            sortie.writeInt(niveaux.size());
+            for (Map.Entry<Integer, long[]> e : niveaux.entrySet()) {
+                sortie.writeInt(e.getKey());
+                sortie.writeLong(e.getValue()[0]);
+                sortie.writeLong(e.getValue()[1]);
+            }
+        }
+        Path temporaire = repertoire.resolve(FICHIER_ETAT + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ecrireTout(canal, ByteBuffer.wrap(octets.toByteArray()), 0);
+            canal.force(true);
+        }
+        Files.move(temporaire, repertoire.resolve(FICHIER_ETAT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- Écriture ---
+
+    private void ajouterBloc(YearMonth periode, int numero, List<Transaction> transactions) throws IOException {
+        byte[] bloc = compresser(transactions);
+        FileChannel[] canaux = canauxEcriture.get(periode);
+        if (canaux == null) {
+            canaux = new FileChannel[] {
+                    FileChannel.open(fichier(periode, EXTENSION_SEGMENT), StandardOpenOption.CREATE, StandardOpenOption.WRITE),
+                    FileChannel.open(fichier(periode, EXTENSION_INDEX), StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+            };
+            canauxEcriture.put(periode, canaux);
+        }
+        // Les index sont toujours écrits après leur bloc : une entrée d'index désigne un bloc complet
+        long position = canaux[0].size();
+        ecrireTout(canaux[0], ByteBuffer.wrap(bloc), position);
+        ByteBuffer entree = ByteBuffer.allocate(TAILLE_ENTREE_INDEX);
+        entree.putInt(numero).putLong(position).putInt(bloc.length).flip();
+        long finIndex = canaux[1].size() / TAILLE_ENTREE_INDEX * TAILLE_ENTREE_INDEX; // Ignore une entrée tronquée
+        ecrireTout(canaux[1], entree, finIndex);
+        periodes.add(periode);
+        Map<Integer, long[]> enCache = cacheIndex.get(periode);
+        if (enCache != null) {
+            ajouterPosition(enCache, numero, position, bloc.length);
+        }
+    }
+
+    /**
+     * Bloc : nombre de transactions puis (date en ms, montant, type) pour chacune, compressé par Deflate.
+     */
+    private static byte[] compresser(List<Transaction> transactions) throws IOException {
+        ByteArrayOutputStream octets = new ByteArrayOutputStream(64 + transactions.size() * 16);
+        Deflater compresseur = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream sortie = new DataOutputStream(new DeflaterOutputStream(octets, compresseur))) {
+            sortie.writeInt(transactions.size());
+            for (Transaction transaction : transactions) {
+                sortie.writeLong(transaction.getDateHeure().atZone(FUSEAU).toInstant().toEpochMilli());
+                sortie.writeDouble(transaction.getMontant());
+                sortie.writeUTF(transaction.getType());
+            }
+        } finally {
+            compresseur.end();
+        }
+        return octets.toByteArray();
+    }
+
+    // --- Lecture ---
+
+    private Map<Integer, long[]> index(YearMonth periode) throws IOException {
+        Map<Integer, long[]> index = cacheIndex.get(periode);
+        if (index != null) {
+            return index;
+        }
+        index = new HashMap<>();
+        Path fichier = fichier(periode, EXTENSION_INDEX);
+        if (Files.exists(fichier)) {
+            ByteBuffer contenu = ByteBuffer.wrap(Files.readAllBytes(fichier));
+            while (contenu.remaining() >= TAILLE_ENTREE_INDEX) {
+                ajouterPosition(index, contenu.getInt(), contenu.getLong(), contenu.getInt());
+            }
+        }
+        chargementsIndex++;
+        cacheIndex.put(periode, index);
+        return index;
+    }
+
+    private static void ajouterPosition(Map<Integer, long[]> index, int numero, long position, int longueur) {
+        long[] blocs = index.get(numero);
+        long[] nouveaux = blocs == null ? new long[2] : Arrays.copyOf(blocs, blocs.length + 2);
+        nouveaux[nouveaux.length - 2] = position;
+        nouveaux[nouveaux.length - 1] = longueur;
+        index.put(numero, nouveaux);
+    }
+
+    private static void lireBloc(FileChannel segment, long position, int longueur, LocalDateTime depuis,
+                                 List<Transaction> resultat) throws IOException {
+        ByteBuffer bloc = ByteBuffer.allocate(longueur);
+        while (bloc.hasRemaining()) {
+            if (segment.read(bloc, position + bloc.position()) < 0) {
+                throw new IOException("Segment d'archive tronqué");
+            }
+        }
+        try (DataInputStream entree = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(bloc.array())))) {
+            int nombre = entree.readInt();
+            for (int i = 0; i < nombre; i++) {
+                LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(entree.readLong()), FUSEAU);
+                double montant = entree.readDouble();
+                String type = entree.readUTF();
+                if (depuis == null || !date.isBefore(depuis)) {
+                    resultat.add(new Transaction(montant, type, date));
+                }
+            }
+        }
+    }
+
+    private Path fichier(YearMonth periode, String extension) {
+        return repertoire.resolve(periode + extension);
+    }
+
+    private static void ecrireTout(FileChannel canal, ByteBuffer tampon, long position) throws IOException {
+        while (tampon.hasRemaining()) {
+            canal.write(tampon, position + tampon.position());
+        }
+    }
+}
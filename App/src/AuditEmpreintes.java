@@ -0,0 +1,459 @@
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Piste d'audit : chaque compte tient une chaîne d'empreintes SHA-256 de son historique.
+ * L'empreinte d'une transaction couvre celle de la précédente (et le numéro du compte, la date,
+ * le montant et le type) : modifier, insérer ou retirer une transaction passée change toutes les
+ * empreintes suivantes. La tête de chaîne est prolongée à chaque ajout, sans allocation.
+ *
+ * Au niveau de la banque, une racine de Merkle résume les têtes de tous les comptes (triés par numéro) :
+ * toute modification d'un historique, l'ajout ou le retrait d'un compte changent la racine. Chaque
+ * sauvegarde l'enregistre (SauvegardePaginee, .racines) pour qu'elle puisse être ancrée hors de la banque.
+ *
+ * La vérification d'un compte repart du dernier point vérifié : après de nouvelles opérations,
+ * seules les nouvelles transactions sont hachées. Toute la banque se vérifie en parallèle (fork-join).
+ */
+public class AuditEmpreintes {
+
+    static final int TAILLE = 32; // SHA-256
+    private static final int COMPTES_PAR_TACHE = 1024;
+    private static final int ALTERES_DETAILLES = 1000;
+
+    private static final ThreadLocal<Hacheur> HACHEURS = ThreadLocal.withInitial(Hacheur::new);
+
+    /**
+     * Condenseur et tampons d'un thread, réutilisés d'un hachage à l'autre.
+     */
+    private static final class Hacheur {
+        final MessageDigest sha;
+        final ByteBuffer champs = ByteBuffer.allocate(21); // Numéro, date, montant, longueur du type
+        final byte[] calcul = new byte[TAILLE];
+
+        Hacheur() {
+            try {
+                sha = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 indisponible", e); // Fourni par toute JVM
+            }
+        }
+
+        /**
+         * Remplace empreinte[position, position + 32) par l'empreinte de la transaction i qui la prolonge.
+         */
+        void chainer(byte[] empreinte, int position, int numeroCompte, JournalTransactions journal, int i) {
+            byte[] type = journal.getTypeOctets(i);
+            champs.putInt(0, numeroCompte).putLong(4, journal.getDate(i))
+                    .putLong(12, Double.doubleToLongBits(journal.getMontant(i))).put(20, (byte) type.length);
+            sha.update(empreinte, position, TAILLE);
+            sha.update(champs.array(), 0, 21);
+            sha.update(type, 0, type.length);
+            terminer(empreinte, position);
+        }
+
+        void terminer(byte[] destination, int position) {
+            try {
+                sha.digest(destination, position, TAILLE);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e); // Destination toujours assez grande
+            }
+        }
+    }
+
+    private AuditEmpreintes() {
+    }
+
+    /**
+     * Prolonge la chaîne stockée dans empreinte[position, position + 32) des transactions [debut, fin) du journal.
+     */
+    static void chainer(byte[] empreinte, int position, int numeroCompte, JournalTransactions journal, int debut, int fin) {
+        Hacheur hacheur = HACHEURS.get();
+        for (int i = debut; i < fin; i++) {
+            hacheur.chainer(empreinte, position, numeroCompte, journal, i);
+        }
+    }
+
+    /**
+     * Recalcule la chaîne de [debut, fin) à partir de depart[position...] sans le modifier, et la compare à attendue[positionAttendue...].
+     */
+    static boolean verifier(byte[] depart, int position, int numeroCompte, JournalTransactions journal, int debut, int fin,
+                            byte[] attendue, int positionAttendue) {
+        Hacheur hacheur = HACHEURS.get();
+        byte[] calcul = hacheur.calcul;
+        System.arraycopy(depart, position, calcul, 0, TAILLE);
+        for (int i = debut; i < fin; i++) {
+            hacheur.chainer(calcul, 0, numeroCompte, journal, i);
+        }
+        return Arrays.equals(calcul, 0, TAILLE, attendue, positionAttendue, positionAttendue + TAILLE);
+    }
+
+    /**
+     * Résultat d'une vérification de la banque.
+     */
+    public static final class Rapport {
+        private final long comptes;
+        private final long transactionsHachees;
+        private final long nombreAlteres;
+        private final List<Integer> alteres;
+        private final List<String> anomalies;
+        private final byte[] racine;
+        private final long dureeMs;
+
+        private Rapport(long comptes, long transactionsHachees, long nombreAlteres, List<Integer> alteres,
+                        List<String> anomalies, byte[] racine, long dureeMs) {
+            this.comptes = comptes;
+            this.transactionsHachees = transactionsHachees;
+            this.nombreAlteres = nombreAlteres;
+            this.alteres = alteres;
+            this.anomalies = anomalies;
+            this.racine = racine;
+            this.dureeMs = dureeMs;
+        }
+
+        public boolean estIntegre() {
+            return nombreAlteres == 0 && anomalies.isEmpty();
+        }
+
+        public long getComptes() {
+            return comptes;
+        }
+
+        /**
+         * Transactions hachées par cette vérification (celles ajoutées depuis la précédente, pour un compte déjà vérifié).
+         */
+        public long getTransactionsHachees() {
+            return transactionsHachees;
+        }
+
+        public long getNombreAlteres() {
+            return nombreAlteres;
+        }
+
+        /**
+         * Numéros des comptes dont l'historique ne correspond plus à la chaîne (au plus 1000, triés).
+         */
+        public List<Integer> getAlteres() {
+            return alteres;
+        }
+
+        /**
+         * Anomalies constatées au chargement : chaînes rouvertes faute d'empreintes sauvegardées,
+         * racine différente de celle enregistrée par la sauvegarde (voir SauvegardePaginee).
+         */
+        public List<String> getAnomalies() {
+            return anomalies;
+        }
+
+        /**
+         * Racine de Merkle des têtes de chaîne de tous les comptes, en hexadécimal.
+         */
+        public String getRacine() {
+            return hexadecimal(racine);
+        }
+
+        public long getDureeMs() {
+            return dureeMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Empreintes : " + comptes + " comptes, " + transactionsHachees + " transactions hachées en " + dureeMs + " ms, "
+                    + (nombreAlteres == 0 ? "intègres" : nombreAlteres + " comptes altérés " + alteres)
+                    + (anomalies.isEmpty() ? "" : ", anomalies " + anomalies) + ", racine " + getRacine();
+        }
+    }
+
+    /**
+     * Vérifie la chaîne de chaque compte (depuis son dernier point vérifié) et calcule la racine de Merkle,
+     * en parallèle. Les comptes ne doivent pas changer pendant le calcul de la racine (voir
+     * GestionnaireBanque.verifierEmpreintes()).
+     */
+    public static Rapport verifier(List<CompteBancaire> comptes) {
+        return verifier(comptes, Collections.emptyList());
+    }
+
+    /**
+     * Comme verifier(comptes), le rapport reprenant les anomalies constatées au chargement.
+     */
+    static Rapport verifier(List<CompteBancaire> comptes, List<String> anomalies) {
+        long debut = System.nanoTime();
+        CompteBancaire[] tries = comptes.toArray(new CompteBancaire[0]);
+        Arrays.sort(tries, (a, b) -> Integer.compare(a.getNumeroCompte(), b.getNumeroCompte()));
+        Constats constats = new Constats();
+        byte[] racine = tries.length == 0 ? feuilleVide() : ForkJoinPool.commonPool().invoke(new Arbre(tries, 0, tries.length, constats));
+        List<Integer> alteres = new ArrayList<>(constats.alteres);
+        Collections.sort(alteres);
+        return new Rapport(tries.length, constats.hachees.sum(), constats.nombreAlteres.get(),
+                Collections.unmodifiableList(alteres), anomalies, racine, (System.nanoTime() - debut) / 1_000_000);
+    }
+
+    private static final class Constats {
+        final LongAdder hachees = new LongAdder();
+        final AtomicLong nombreAlteres = new AtomicLong();
+        final List<Integer> alteres = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    static String hexadecimal(byte[] empreinte) {
+        StringBuilder sb = new StringBuilder(2 * empreinte.length);
+        for (byte b : empreinte) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] feuilleVide() {
+        byte[] racine = new byte[TAILLE];
+        Hacheur hacheur = HACHEURS.get();
+        hacheur.terminer(racine, 0); // SHA-256 de rien
+        return racine;
+    }
+
+    /**
+     * Feuille d'un compte : H(0 | numéro | nombre de transactions | tête de chaîne).
+     */
+    private static byte[] feuille(CompteBancaire compte) {
+        byte[] feuille = new byte[TAILLE];
+        long transactions;
+        synchronized (compte) {
+            transactions = compte.getNombreArchivees() + (long) compte.getJournal().taille();
+            compte.copierEmpreinte(feuille, 0);
+        }
+        return hacherFeuille(feuille, compte.getNumeroCompte(), transactions);
+    }
+
+    /**
+     * Remplace la tête de chaîne contenue dans feuille par la feuille du compte.
+     */
+    private static byte[] hacherFeuille(byte[] feuille, int numero, long transactions) {
+        Hacheur hacheur = HACHEURS.get();
+        hacheur.champs.put(0, (byte) 0).putInt(1, numero).putLong(5, transactions);
+        hacheur.sha.update(hacheur.champs.array(), 0, 13);
+        hacheur.sha.update(feuille, 0, TAILLE);
+        hacheur.terminer(feuille, 0);
+        return feuille;
+    }
+
+    /**
+     * H(1 | gauche | droite), écrit dans destination (qui peut être gauche ou droite).
+     */
+    private static byte[] noeud(byte[] gauche, byte[] droite, byte[] destination) {
+        Hacheur hacheur = HACHEURS.get();
+        hacheur.sha.update((byte) 1);
+        hacheur.sha.update(gauche, 0, TAILLE);
+        hacheur.sha.update(droite, 0, TAILLE);
+        hacheur.terminer(destination, 0);
+        return destination;
+    }
+
+    /**
+     * Sous-arbre de Merkle des comptes [debut, fin) : une feuille par compte ; l'intervalle de n comptes
+     * est coupé après la plus grande puissance de deux inférieure à n (forme de la RFC 6962, que
+     * ArbreIncremental construit par niveaux). Les feuilles d'une même tâche vérifient leur compte au passage.
+     */
+    private static final class Arbre extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient CompteBancaire[] comptes;
+        private final int debut;
+        private final int fin;
+        private final transient Constats constats;
+
+        Arbre(CompteBancaire[] comptes, int debut, int fin, Constats constats) {
+            this.comptes = comptes;
+            this.debut = debut;
+            this.fin = fin;
+            this.constats = constats;
+        }
+
+        @Override
+        protected byte[] compute() {
+            if (fin - debut > COMPTES_PAR_TACHE) {
+                int milieu = debut + Integer.highestOneBit(fin - debut - 1);
+                Arbre droite = new Arbre(comptes, milieu, fin, constats);
+                droite.fork();
+                byte[] gauche = new Arbre(comptes, debut, milieu, constats).compute();
+                return noeud(gauche, droite.join());
+            }
+            return sousArbre(debut, fin);
+        }
+
+        private byte[] sousArbre(int premier, int dernier) {
+            if (dernier - premier == 1) {
+                return feuille(comptes[premier]);
+            }
+            int milieu = premier + Integer.highestOneBit(dernier - premier - 1);
+            return noeud(sousArbre(premier, milieu), sousArbre(milieu, dernier));
+        }
+
+        private byte[] feuille(CompteBancaire compte) {
+            byte[] feuille = new byte[TAILLE];
+            long transactions;
+            synchronized (compte) {
+                long hachees = compte.verifierEmpreinte();
+                if (hachees < 0) {
+                    if (constats.nombreAlteres.incrementAndGet() <= ALTERES_DETAILLES) {
+                        constats.alteres.add(compte.getNumeroCompte());
+                    }
+                } else {
+                    constats.hachees.add(hachees);
+                }
+                transactions = compte.getNombreArchivees() + (long) compte.getJournal().taille();
+                compte.copierEmpreinte(feuille, 0);
+            }
+            return hacherFeuille(feuille, compte.getNumeroCompte(), transactions);
+        }
+
+        private static byte[] noeud(byte[] gauche, byte[] droite) {
+            return AuditEmpreintes.noeud(gauche, droite, gauche); // Le sous-arbre gauche n'est plus utile : son tableau reçoit le nœud
+        }
+    }
+
+    /**
+     * Racine de Merkle tenue à jour d'une sauvegarde à l'autre : les nœuds des blocs alignés de 64 comptes
+     * et ceux au-dessus sont conservés, un compte modifié ne fait recalculer que son bloc et le chemin
+     * jusqu'à la racine. L'arbre est construit par niveaux, un nœud sans voisin remontant tel quel : la
+     * racine est celle de verifier(). L'ajout ou le retrait d'un compte décale les feuilles : tout est recalculé.
+     * Les comptes ne doivent pas changer pendant le calcul (verrou exclusif du gestionnaire).
+     */
+    static final class ArbreIncremental {
+        private static final int NIVEAU_BLOC = 6;
+        private static final int TAILLE_BLOC = 1 << NIVEAU_BLOC;
+        private static final int BLOCS_PAR_TACHE = COMPTES_PAR_TACHE / TAILLE_BLOC;
+
+        private CompteBancaire[] tries; // null : à reconstruire
+        private byte[][][] niveaux; // niveaux[0] : un nœud par bloc ; le dernier niveau ne contient que la racine
+
+        /**
+         * Racine des comptes après ces modifications.
+         * @param modifies Comptes dont l'historique a pu changer depuis l'appel précédent.
+         * @param reconstruire Des comptes ont été ajoutés ou retirés depuis l'appel précédent.
+         */
+        byte[] racine(Collection<CompteBancaire> comptes, Collection<CompteBancaire> modifies, boolean reconstruire) {
+            if (reconstruire || tries == null || tries.length != comptes.size() || !mettreAJour(modifies)) {
+                construire(comptes);
+            }
+            return tries.length == 0 ? feuilleVide() : niveaux[niveaux.length - 1][0].clone();
+        }
+
+        private void construire(Collection<CompteBancaire> comptes) {
+            tries = comptes.toArray(new CompteBancaire[0]);
+            Arrays.sort(tries, (a, b) -> Integer.compare(a.getNumeroCompte(), b.getNumeroCompte()));
+            int blocs = (tries.length + TAILLE_BLOC - 1) / TAILLE_BLOC;
+            byte[][] parBloc = new byte[blocs][];
+            List<ForkJoinTask<?>> taches = new ArrayList<>();
+            for (int premier = 0; premier < blocs; premier += BLOCS_PAR_TACHE) {
+                int debut = premier;
+                int fin = Math.min(blocs, premier + BLOCS_PAR_TACHE);
+                taches.add(ForkJoinTask.adapt(() -> {
+                    for (int b = debut; b < fin; b++) {
+                        parBloc[b] = bloc(b);
+                    }
+                }));
+            }
+            ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(taches)));
+            List<byte[][]> liste = new ArrayList<>();
+            liste.add(parBloc);
+            byte[][] noeuds = parBloc;
+            while (noeuds.length > 1) {
+                byte[][] dessous = noeuds;
+                noeuds = new byte[(dessous.length + 1) / 2][];
+                for (int i = 0; i < noeuds.length; i++) {
+                    noeuds[i] = parent(dessous, i, null);
+                }
+                liste.add(noeuds);
+            }
+            niveaux = liste.toArray(new byte[0][][]);
+        }
+
+        /**
+         * Recalcule les blocs des comptes modifiés puis leurs ancêtres.
+         * @return false si un compte modifié n'est pas à sa place (l'arbre est alors à reconstruire).
+         */
+        private boolean mettreAJour(Collection<CompteBancaire> modifies) {
+            if (modifies.isEmpty()) {
+                return true;
+            }
+            BitSet blocs = new BitSet();
+            for (CompteBancaire compte : modifies) {
+                int indice = indice(compte.getNumeroCompte());
+                if (indice < 0 || tries[indice] != compte) {
+                    return false;
+                }
+                blocs.set(indice >> NIVEAU_BLOC);
+            }
+            for (int b = blocs.nextSetBit(0); b >= 0; b = blocs.nextSetBit(b + 1)) {
+                niveaux[0][b] = bloc(b);
+            }
+            for (int niveau = 1; niveau < niveaux.length; niveau++) {
+                BitSet parents = new BitSet();
+                for (int i = blocs.nextSetBit(0); i >= 0; i = blocs.nextSetBit(i + 1)) {
+                    parents.set(i >> 1);
+                }
+                for (int i = parents.nextSetBit(0); i >= 0; i = parents.nextSetBit(i + 1)) {
+                    niveaux[niveau][i] = parent(niveaux[niveau - 1], i, niveaux[niveau][i]);
+                }
+                blocs = parents;
+            }
+            return true;
+        }
+
+        private int indice(int numero) {
+            int bas = 0;
+            int haut = tries.length - 1;
+            while (bas <= haut) {
+                int milieu = (bas + haut) >>> 1;
+                int courant = tries[milieu].getNumeroCompte();
+                if (courant < numero) {
+                    bas = milieu + 1;
+                } else if (courant > numero) {
+                    haut = milieu - 1;
+                } else {
+                    return milieu;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Nœud du bloc b : ses feuilles réduites par niveaux.
+         */
+        private byte[] bloc(int b) {
+            int debut = b << NIVEAU_BLOC;
+            int nombre = Math.min(tries.length - debut, TAILLE_BLOC);
+            byte[][] noeuds = new byte[nombre][];
+            for (int i = 0; i < nombre; i++) {
+                noeuds[i] = feuille(tries[debut + i]);
+            }
+            for (; nombre > 1; nombre = (nombre + 1) / 2) {
+                for (int i = 0; i < nombre; i += 2) {
+                    noeuds[i / 2] = i + 1 < nombre ? AuditEmpreintes.noeud(noeuds[i], noeuds[i + 1], noeuds[i]) : noeuds[i];
+                }
+            }
+            return noeuds[0];
+        }
+
+        /**
+         * Nœud i du niveau au-dessus de dessous, écrit dans destination si elle est fournie.
+         */
+        private static byte[] parent(byte[][] dessous, int i, byte[] destination) {
+            if (2 * i + 1 == dessous.length) {
+                return dessous[2 * i]; // Sans voisin : remonte tel quel
+            }
+            byte[] noeud = destination != null && destination != dessous[2 * i] ? destination : new byte[TAILLE];
+            return AuditEmpreintes.noeud(dessous[2 * i], dessous[2 * i + 1], noeud);
+        }
+    }
+}
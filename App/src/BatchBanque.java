@@ -0,0 +1,163 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Exécution en lot, sans interface graphique, d'un script d'opérations sur le gestionnaire.
+ * Permet de rejouer du trafic ou de faire tourner le moteur sur un serveur sans affichage.
+ *
+ * Une opération par ligne, champs séparés par des points-virgules (# pour un commentaire) :
+ * <pre>
+ * CREER;numero;nom;soldeInitial
+ * DEPOT;numero;montant
+ * RETRAIT;numero;montant
+ * TRANSFERT;source;cible;montant
+ * SUPPRIMER;numero
+ * </pre>
+ * Usage : java BatchBanque script.txt [fichier_sauvegarde] [--sans-sauvegarde]
+ */
+public class BatchBanque {
+
+    /**
+     * Compteurs d'une exécution de script.
+     */
+    public static class Bilan {
+        private long operations;
+        private long lignesInvalides;
+        private long dureeNanos;
+        private final Map<ResultatOperation, Long> parResultat = new EnumMap<>(ResultatOperation.class);
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public long getEchecs() {
+            return operations - parResultat.getOrDefault(ResultatOperation.SUCCES, 0L);
+        }
+
+        public long getLignesInvalides() {
+            return lignesInvalides;
+        }
+
+        public Map<ResultatOperation, Long> getParResultat() {
+            return parResultat;
+        }
+
+        public double getOperationsParSeconde() {
+            return dureeNanos == 0 ? 0 : operations * 1e9 / dureeNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d opérations en %.3f s (%.0f op/s), %d échecs, %d lignes invalides%n",
+                    operations, dureeNanos / 1e9, getOperationsParSeconde(), getEchecs(), lignesInvalides));
+            for (Map.Entry<ResultatOperation, Long> entree : parResultat.entrySet()) {
+                sb.append(String.format("  %-20s %d%n", entree.getKey(), entree.getValue()));
+            }
+            return sb.toString();
+        }
+    }
+
+    private BatchBanque() {
+    }
+
+    /**
+     * Exécute toutes les opérations du script. La sauvegarde automatique est suspendue
+     * pendant l'exécution ; c'est à l'appelant de sauvegarder une fois à la fin.
+     */
+    public static Bilan executer(GestionnaireBanque gestionnaire, Reader script) throws IOException {
+        Bilan bilan = new Bilan();
+        boolean sauvegardeAutomatique = gestionnaire.isSauvegardeAutomatique();
+        gestionnaire.setSauvegardeAutomatique(false);
+        BufferedReader lecteur = script instanceof BufferedReader ? (BufferedReader) script : new BufferedReader(script, 1 << 16);
+        long debut = System.nanoTime();
+        try {
+            String ligne;
+            while ((ligne = lecteur.readLine()) != null) {
+                ligne = ligne.trim();
+                if (ligne.isEmpty() || ligne.startsWith("#")) {
+                    continue;
+                }
+                ResultatOperation resultat;
+                try {
+                    resultat = executerLigne(gestionnaire, ligne.split(";"));
+                } catch (IllegalArgumentException e) {
+                    resultat = null; // NumberFormatException comprise
+                }
+                if (resultat == null) {
+                    bilan.lignesInvalides++;
+                } else {
+                    bilan.operations++;
+                    bilan.parResultat.merge(resultat, 1L, Long::sum);
+                }
+            }
+        } finally {
+            bilan.dureeNanos = System.nanoTime() - debut;
+            gestionnaire.setSauvegardeAutomatique(sauvegardeAutomatique);
+        }
+        return bilan;
+    }
+
+    /**
+     * @return le résultat de l'opération, ou null si la ligne n'est pas une opération reconnue.
+     */
+    private static ResultatOperation executerLigne(GestionnaireBanque gestionnaire, String[] champs) {
+        switch (champs[0].trim().toUpperCase()) {
+            case "CREER":
+                return champs.length != 4 ? null
+                        : gestionnaire.creerCompte(entier(champs[1]), champs[2].trim(), montant(champs[3]));
+            case "DEPOT":
+                return champs.length != 3 ? null : gestionnaire.effectuerDepot(entier(champs[1]), montant(champs[2]));
+            case "RETRAIT":
+                return champs.length != 3 ? null : gestionnaire.effectuerRetrait(entier(champs[1]), montant(champs[2]));
+            case "TRANSFERT":
+                return champs.length != 4 ? null
+                        : gestionnaire.effectuerTransfert(entier(champs[1]), entier(champs[2]), montant(champs[3]));
+            case "SUPPRIMER":
+                return champs.length != 2 ? null : gestionnaire.supprimerCompte(entier(champs[1]));
+            default:
+                return null;
+        }
+    }
+
+    private static int entier(String champ) {
+        return Integer.parseInt(champ.trim());
+    }
+
+    private static double montant(String champ) {
+        return Double.parseDouble(champ.trim());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage : java BatchBanque script.txt [fichier_sauvegarde] [--sans-sauvegarde]");
+            System.exit(2);
+        }
+        String script = args[0];
+        String fichier = "donnees_banque.ser";
+        boolean sauvegarder = true;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--sans-sauvegarde")) {
+                sauvegarder = false;
+            } else {
+                fichier = args[i];
+            }
+        }
+
+        GestionnaireBanque gestionnaire = new GestionnaireBanque(fichier);
+        Bilan bilan;
+        try (Reader lecteur = Files.newBufferedReader(Paths.get(script))) {
+            bilan = executer(gestionnaire, lecteur);
+        }
+        if (sauvegarder) {
+            gestionnaire.sauvegarderDonnees();
+        }
+        System.out.print(bilan);
+        System.exit(bilan.getLignesInvalides() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache LRU des comptes en mémoire pour le mode « tas borné » du gestionnaire :
+ * les comptes résident dans une table sur disque et seuls les plus récemment utilisés
+ * sont gardés sous forme de CompteBancaire.
+ *
+ * Le cache ne fait qu'élire les comptes à évincer ; leur réécriture sur disque et le moment de
+ * l'éviction (aucune opération en cours) sont décidés par le gestionnaire.
+ */
+public class CacheComptes {
+
+    private final int capacite;
+    private final int marge; // Dépassement toléré avant de déclencher une éviction groupée
+    private final LinkedHashMap<Integer, CompteBancaire> comptes;
+
+    private final LongAdder succes = new LongAdder();
+    private final LongAdder echecs = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder reecritures = new LongAdder();
+
+    /**
+     * @param capacite Nombre de comptes gardés en mémoire après une éviction.
+     */
+    public CacheComptes(int capacite) {
+        this.capacite = Math.max(1, capacite);
+        this.marge = Math.max(1, this.capacite / 8);
+        this.comptes = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return Le compte s'il est en mémoire (il devient le plus récemment utilisé), sinon null.
+     */
+    public synchronized CompteBancaire get(int numero) {
+        CompteBancaire compte = comptes.get(numero);
+        if (compte != null) {
+            succes.increment();
+        } else {
+            echecs.increment();
+        }
+        return compte;
+    }
+
+    /**
+     * Ajoute un compte chargé depuis le disque. Si un autre thread l'a chargé entre-temps,
+     * c'est sa copie qui est conservée et renvoyée.
+     */
+    public synchronized CompteBancaire ajouter(CompteBancaire compte) {
+        CompteBancaire existant = comptes.putIfAbsent(compte.getNumeroCompte(), compte);
+        return existant != null ? existant : compte;
+    }
+
+    public synchronized void retirer(int numero) {
+        comptes.remove(numero);
+    }
+
+    /**
+     * Vrai quand le cache a dépassé sa capacité de plus de la marge.
+     */
+    public synchronized boolean estDepasse() {
+        return comptes.size() > capacite + marge;
+    }
+
+    /**
+     * Retire les comptes les moins récemment utilisés jusqu'à revenir à la capacité.
+     * @return Les comptes évincés, à réécrire sur disque s'ils ont été modifiés.
+     */
+    public synchronized List<CompteBancaire> evincerExcedent() {
+        List<CompteBancaire> evinces = new ArrayList<>(Math.max(0, comptes.size() - capacite));
+        Iterator<CompteBancaire> it = comptes.values().iterator();
+        while (comptes.size() > capacite && it.hasNext()) {
+            evinces.add(it.next());
+            it.remove();
+        }
+        evictions.add(evinces.size());
+        return evinces;
+    }
+
+    /**
+     * Copie des comptes actuellement en mémoire, du moins au plus récemment utilisé.
+     */
+    public synchronized List<CompteBancaire> getResidents() {
+        return new ArrayList<>(comptes.values());
+    }
+
+    void compterReecriture() {
+        reecritures.increment();
+    }
+
+    // --- Métriques (pour dimensionner le cache) ---
+
+    public int getCapacite() {
+        return capacite;
+    }
+
+    public synchronized int getTaille() {
+        return comptes.size();
+    }
+
+    public long getSucces() {
+        return succes.sum();
+    }
+
+    public long getEchecs() {
+        return echecs.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Comptes modifiés réécrits sur disque (à l'éviction ou à la sauvegarde).
+     */
+    public long getReecritures() {
+        return reecritures.sum();
+    }
+
+    /**
+     * Proportion des recherches servies par le cache (0 si aucune recherche).
+     */
+    public double getTauxSucces() {
+        long s = succes.sum();
+        long total = s + echecs.sum();
+        return total == 0 ? 0 : (double) s / total;
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache des clés d'idempotence récentes (clé fournie par le client → résultat de l'opération).
+ * Un client qui réessaie après un délai dépassé obtient le résultat de la première exécution
+ * au lieu de déplacer l'argent une seconde fois.
+ *
+ * Le cache est découpé en segments indépendants, chacun protégé par son propre verrou, pour que
+ * les recherches (O(1)) ne se sérialisent pas sur le chemin critique. Il est borné en taille
+ * (les plus anciennes entrées d'un segment sont évincées) et en durée de vie.
+ */
+public class CacheIdempotence {
+
+    /**
+     * Entrée du cache. Tant que l'opération du premier appelant n'est pas terminée, les appels
+     * concurrents portant la même clé attendent son résultat.
+     */
+    public static final class Entree {
+        private final long creation;
+        private volatile ResultatOperation resultat;
+        private final CountDownLatch termine = new CountDownLatch(1);
+
+        private Entree(long creation) {
+            this.creation = creation;
+        }
+
+        /**
+         * Attend (si besoin) et renvoie le résultat de la première exécution.
+         */
+        public ResultatOperation attendre() {
+            boolean interrompu = false;
+            while (true) {
+                try {
+                    termine.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrompu = true;
+                }
+            }
+            if (interrompu) {
+                Thread.currentThread().interrupt();
+            }
+            return resultat;
+        }
+
+        private void terminer(ResultatOperation resultat) {
+            this.resultat = resultat;
+            termine.countDown();
+        }
+
+        private boolean estTerminee() {
+            return termine.getCount() == 0;
+        }
+    }
+
+    private final Segment[] segments;
+    private final long dureeVieMillis;
+    private final LongAdder rejeux = new LongAdder();
+
+    /**
+     * @param capacite Nombre total de clés conservées.
+     * @param dureeVieMillis Durée au-delà de laquelle une clé est oubliée.
+     */
+    public CacheIdempotence(int capacite, long dureeVieMillis) {
+        int nbSegments = Integer.highestOneBit(Math.max(1, Math.min(64, capacite / 16)));
+        this.segments = new Segment[nbSegments];
+        for (int i = 0; i < nbSegments; i++) {
+            segments[i] = new Segment(Math.max(1, capacite / nbSegments));
+        }
+        this.dureeVieMillis = dureeVieMillis;
+    }
+
+    /**
+     * Réserve la clé pour l'appelant.
+     * @return null si l'appelant doit exécuter l'opération (puis appeler terminer ou abandonner),
+     *         sinon l'entrée existante dont il faut renvoyer le résultat.
+     */
+    public Entree reserver(String cle) {
+        long maintenant = System.currentTimeMillis();
+        Segment segment = segment(cle);
+        synchronized (segment) {
+            Entree existante = segment.entrees.get(cle);
+            if (existante != null && (!existante.estTerminee() || maintenant - existante.creation < dureeVieMillis)) {
+                rejeux.increment();
+                return existante;
+            }
+            segment.ajouter(cle, new Entree(maintenant), maintenant, dureeVieMillis);
+            return null;
+        }
+    }
+
+    /**
+     * Enregistre le résultat de l'opération et réveille les appels concurrents en attente.
+     */
+    public void terminer(String cle, ResultatOperation resultat) {
+        Segment segment = segment(cle);
+        Entree entree;
+        synchronized (segment) {
+            entree = segment.entrees.get(cle);
+        }
+        if (entree != null) {
+            entree.terminer(resultat);
+        }
+    }
+
+    /**
+     * L'opération a échoué sur une exception : la clé est libérée pour un nouvel essai.
+     */
+    public void abandonner(String cle) {
+        Segment segment = segment(cle);
+        Entree entree;
+        synchronized (segment) {
+            entree = segment.entrees.remove(cle);
+        }
+        if (entree != null) {
+            entree.terminer(null);
+        }
+    }
+
+    /**
+     * Résultat enregistré pour la clé, sans la réserver ; null si elle est inconnue (jamais vue, évincée)
+     * ou si l'opération est en cours.
+     */
+    public ResultatOperation resultat(String cle) {
+        Segment segment = segment(cle);
+        synchronized (segment) {
+            Entree entree = segment.entrees.get(cle);
+            return entree != null && entree.estTerminee() ? entree.resultat : null;
+        }
+    }
+
+    public long getDureeVieMillis() {
+        return dureeVieMillis;
+    }
+
+    public int getTaille() {
+        int taille = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                taille += segment.entrees.size();
+            }
+        }
+        return taille;
+    }
+
+    /**
+     * Nombre d'appels ayant reçu un résultat déjà connu au lieu d'exécuter l'opération.
+     */
+    public long getRejeux() {
+        return rejeux.sum();
+    }
+
+    // --- Persistance (avec les données des comptes) ---
+
+    /**
+     * Écrit les entrées terminées et non expirées.
+     */
+    void ecrire(ObjectOutputStream sortie) throws IOException {
+        long maintenant = System.currentTimeMillis();
+        List<String> cles = new ArrayList<>();
+        List<Entree> entrees = new ArrayList<>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Map.Entry<String, Entree> e : segment.entrees.entrySet()) {
+                    Entree entree = e.getValue();
+                    if (entree.estTerminee() && entree.resultat != null && maintenant - entree.creation < dureeVieMillis) {
+                        cles.add(e.getKey());
+                        entrees.add(entree);
+                    }
+                }
+            }
+        }
+        sortie.writeInt(cles.size());
+        for (int i = 0; i < cles.size(); i++) {
+            sortie.writeUTF(cles.get(i));
+            sortie.writeLong(entrees.get(i).creation);
+            sortie.writeByte(entrees.get(i).resultat.ordinal());
+        }
+    }
+
+    /**
+     * Recharge les entrées écrites par ecrire() ; les entrées expirées depuis sont ignorées.
+     */
+    void lire(ObjectInputStream entree) throws IOException {
+        long maintenant = System.currentTimeMillis();
+        ResultatOperation[] resultats = ResultatOperation.values();
+        int nombre = entree.readInt();
+        for (int i = 0; i < nombre; i++) {
+            String cle = entree.readUTF();
+            long creation = entree.readLong();
+            int ordinal = entree.readByte();
+            if (maintenant - creation >= dureeVieMillis || ordinal >= resultats.length) {
+                continue;
+            }
+            Entree restauree = new Entree(creation);
+            restauree.terminer(resultats[ordinal]);
+            Segment segment = segment(cle);
+            synchronized (segment) {
+                segment.ajouter(cle, restauree, maintenant, dureeVieMillis);
+            }
+        }
+    }
+
+    public void vider() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entrees.clear();
+            }
+        }
+    }
+
+    private Segment segment(String cle) {
+        int h = cle.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * Segment du cache : table dans l'ordre d'insertion, les plus anciennes entrées en tête.
+     */
+    private static final class Segment {
+        final LinkedHashMap<String, Entree> entrees = new LinkedHashMap<>();
+        final int capacite;
+
+        Segment(int capacite) {
+            this.capacite = capacite;
+        }
+
+        void ajouter(String cle, Entree entree, long maintenant, long dureeVie) {
+            entrees.remove(cle); // Réinsertion en queue si la clé expirée était encore présente
+            entrees.put(cle, entree);
+            // Éviction des entrées terminées trop anciennes ou en excès, depuis la tête (les plus anciennes)
+            Iterator<Entree> it = entrees.values().iterator();
+            while (it.hasNext()) {
+                Entree ancienne = it.next();
+                boolean expiree = maintenant - ancienne.creation >= dureeVie;
+                if (!(expiree || entrees.size() > capacite) || !ancienne.estTerminee()) {
+                    break;
+                }
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classement des comptes par valeur (solde, mouvement du jour...).
+ * Arbre d'ordre statistique (treap) : chaque noeud connaît la taille de son sous-arbre,
+ * ce qui donne l'insertion, la suppression et le rang en O(log n).
+ * Les égalités de valeur sont départagées par le numéro de compte.
+ */
+public class ClassementComptes {
+
+    private static final class Noeud {
+        double valeur;
+        int numero;
+        int priorite;
+        int taille;
+        Noeud gauche;
+        Noeud droite;
+    }
+
+    private Noeud racine;
+    private int graine = 0x2545F491;
+
+    // Résultats de decouper(), conservés ici pour éviter d'allouer une paire à chaque appel
+    private Noeud coupeGauche;
+    private Noeud coupeDroite;
+
+    // Noeuds retirés, réutilisés par inserer() (chaînés par « gauche ») : un compte qui sort du
+    // classement puis y revient n'alloue rien
+    private static final int MAX_LIBRES = 1024;
+    private Noeud libres;
+    private int nombreLibres;
+
+    /**
+     * Ajoute un compte au classement.
+     */
+    public void inserer(double valeur, int numero) {
+        Noeud noeud = libres;
+        if (noeud != null) {
+            libres = noeud.gauche;
+            nombreLibres--;
+        } else {
+            noeud = new Noeud();
+        }
+        noeud.priorite = prochainePriorite();
+        placer(noeud, valeur, numero);
+    }
+
+    /**
+     * Retire un compte du classement.
+     * @return true si le couple (valeur, numéro) était présent.
+     */
+    public boolean supprimer(double valeur, int numero) {
+        Noeud noeud = detacher(valeur, numero);
+        if (noeud == null) {
+            return false;
+        }
+        if (nombreLibres < MAX_LIBRES) {
+            noeud.gauche = libres;
+            noeud.droite = null;
+            libres = noeud;
+            nombreLibres++;
+        }
+        return true;
+    }
+
+    /**
+     * Déplace un compte de son ancienne valeur vers la nouvelle en réutilisant son noeud.
+     * Si le compte n'était pas classé, il est simplement inséré.
+     */
+    public void deplacer(double ancienneValeur, double nouvelleValeur, int numero) {
+        Noeud noeud = detacher(ancienneValeur, numero);
+        if (noeud == null) {
+            inserer(nouvelleValeur, numero);
+        } else {
+            placer(noeud, nouvelleValeur, numero);
+        }
+    }
+
+    /**
+     * Rang d'un compte dans l'ordre décroissant (1 = plus grande valeur).
+     * @return le rang, ou -1 si le compte n'est pas classé.
+     */
+    public int rang(double valeur, int numero) {
+        int plusGrands = 0;
+        Noeud courant = racine;
+        while (courant != null) {
+            int cmp = comparer(valeur, numero, courant);
+            if (cmp == 0) {
+                return plusGrands + taille(courant.droite) + 1;
+            } else if (cmp < 0) {
+                plusGrands += taille(courant.droite) + 1;
+                courant = courant.gauche;
+            } else {
+                courant = courant.droite;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Numéros des k comptes ayant les plus grandes valeurs, du plus grand au plus petit.
+     */
+    public List<Integer> plusGrands(int k) {
+        List<Integer> resultat = new ArrayList<>(Math.min(k, taille()));
+        parcourirDecroissant(racine, k, resultat);
+        return resultat;
+    }
+
+    /**
+     * Numéros des k comptes ayant les plus petites valeurs, du plus petit au plus grand.
+     */
+    public List<Integer> plusPetits(int k) {
+        List<Integer> resultat = new ArrayList<>(Math.min(k, taille()));
+        parcourirCroissant(racine, k, resultat);
+        return resultat;
+    }
+
+    public int taille() {
+        return taille(racine);
+    }
+
+    public void vider() {
+        racine = null;
+    }
+
+    // --- Mécanique interne du treap ---
+
+    private void placer(Noeud noeud, double valeur, int numero) {
+        noeud.valeur = valeur;
+        noeud.numero = numero;
+        noeud.gauche = null;
+        noeud.droite = null;
+        noeud.taille = 1;
+        racine = insererNoeud(racine, noeud);
+    }
+
+    private Noeud insererNoeud(Noeud arbre, Noeud noeud) {
+        if (arbre == null) {
+            return noeud;
+        }
+        if (noeud.priorite > arbre.priorite) {
+            decouper(arbre, noeud.valeur, noeud.numero);
+            noeud.gauche = coupeGauche;
+            noeud.droite = coupeDroite;
+            majTaille(noeud);
+            return noeud;
+        }
+        if (comparer(noeud.valeur, noeud.numero, arbre) < 0) {
+            arbre.gauche = insererNoeud(arbre.gauche, noeud);
+        } else {
+            arbre.droite = insererNoeud(arbre.droite, noeud);
+        }
+        majTaille(arbre);
+        return arbre;
+    }
+
+    /**
+     * Découpe l'arbre en deux : clés inférieures à (valeur, numero) et clés supérieures.
+     */
+    private void decouper(Noeud arbre, double valeur, int numero) {
+        if (arbre == null) {
+            coupeGauche = null;
+            coupeDroite = null;
+            return;
+        }
+        if (comparer(valeur, numero, arbre) > 0) {
+            decouper(arbre.droite, valeur, numero);
+            arbre.droite = coupeGauche;
+            majTaille(arbre);
+            coupeGauche = arbre;
+        } else {
+            decouper(arbre.gauche, valeur, numero);
+            arbre.gauche = coupeDroite;
+            majTaille(arbre);
+            coupeDroite = arbre;
+        }
+    }
+
+    private Noeud fusionner(Noeud gauche, Noeud droite) {
+        if (gauche == null) {
+            return droite;
+        }
+        if (droite == null) {
+            return gauche;
+        }
+        if (gauche.priorite > droite.priorite) {
+            gauche.droite = fusionner(gauche.droite, droite);
+            majTaille(gauche);
+            return gauche;
+        }
+        droite.gauche = fusionner(gauche, droite.gauche);
+        majTaille(droite);
+        return droite;
+    }
+
+    /**
+     * Retire le noeud (valeur, numero) de l'arbre et le renvoie, ou null s'il est absent.
+     */
+    private Noeud detacher(double valeur, int numero) {
+        Noeud parent = null;
+        Noeud courant = racine;
+        while (courant != null) {
+            int cmp = comparer(valeur, numero, courant);
+            if (cmp == 0) {
+                break;
+            }
+            parent = courant;
+            courant = cmp < 0 ? courant.gauche : courant.droite;
+        }
+        if (courant == null) {
+            return null;
+        }
+        Noeud remplacant = fusionner(courant.gauche, courant.droite);
+        if (parent == null) {
+            racine = remplacant;
+        } else if (parent.gauche == courant) {
+            parent.gauche = remplacant;
+        } else {
+            parent.droite = remplacant;
+        }
+        // Les ancêtres ont perdu un élément : on redescend depuis la racine pour corriger les tailles
+        Noeud n = racine;
+        while (n != null && n != remplacant) {
+            n.taille--;
+            n = comparer(valeur, numero, n) < 0 ? n.gauche : n.droite;
+        }
+        return courant;
+    }
+
+    private void parcourirDecroissant(Noeud noeud, int k, List<Integer> resultat) {
+        if (noeud == null || resultat.size() >= k) {
+            return;
+        }
+        parcourirDecroissant(noeud.droite, k, resultat);
+        if (resultat.size() < k) {
+            resultat.add(noeud.numero);
+            parcourirDecroissant(noeud.gauche, k, resultat);
+        }
+    }
+
+    private void parcourirCroissant(Noeud noeud, int k, List<Integer> resultat) {
+        if (noeud == null || resultat.size() >= k) {
+            return;
+        }
+        parcourirCroissant(noeud.gauche, k, resultat);
+        if (resultat.size() < k) {
+            resultat.add(noeud.numero);
+            parcourirCroissant(noeud.droite, k, resultat);
+        }
+    }
+
+    private static int comparer(double valeur, int numero, Noeud noeud) {
+        int cmp = Double.compare(valeur, noeud.valeur);
+        return cmp != 0 ? cmp : Integer.compare(numero, noeud.numero);
+    }
+
+    private static int taille(Noeud noeud) {
+        return noeud == null ? 0 : noeud.taille;
+    }
+
+    private static void majTaille(Noeud noeud) {
+        noeud.taille = 1 + taille(noeud.gauche) + taille(noeud.droite);
+    }
+
+    private int prochainePriorite() {
+        // xorshift : suffisant pour équilibrer le treap, sans dépendre de java.util.Random
+        graine ^= graine << 13;
+        graine ^= graine >>> 17;
+        graine ^= graine << 5;
+        return graine;
+    }
+}
@@ -1,7 +1,17 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.TimeZone;
 
 /**
  * Modèle de données pour un compte bancaire.
@@ -14,7 +24,42 @@ public class CompteBancaire implements Serializable {
     private int numeroCompte;
     private String nomTitulaire;
     private double solde;
-    private List<Transaction> historique; // Nouvelle liste pour l'historique
+    private transient JournalTransactions journal; // Historique en tableaux primitifs (champ « historique » dans le flux)
+    private double mouvementDuJour; // Somme signée des opérations du jour
+    private long jourMouvement; // Jour (epoch day) auquel se rapporte mouvementDuJour
+    private int nombreArchivees; // Transactions déplacées vers l'archive (ArchiveHistorique)
+    private double sommeArchivee; // Somme signée des transactions archivées
+    private LocalDateTime debutArchive; // Date de la première transaction archivée de ce compte
+    private int jourFinDeJournee; // Jour (epoch day) du dernier traitement de fin de journée appliqué, 0 si aucun
+
+    private static final TimeZone FUSEAU = TimeZone.getDefault();
+    private transient ObservateurCompte observateur;
+    private transient ControleVelocite.Fenetre fenetreVelocite; // Débits récents, au premier débit contrôlé
+
+    // Chaîne d'empreintes de l'historique (voir AuditEmpreintes), trois empreintes de 32 octets :
+    // ancre (jusqu'à la dernière transaction archivée), tête (jusqu'à la dernière transaction), dernier point vérifié
+    private static final int ANCRE = 0;
+    private static final int TETE = AuditEmpreintes.TAILLE;
+    private static final int VERIFIEE = 2 * AuditEmpreintes.TAILLE;
+    private transient byte[] empreintes;
+    private transient int verifiees; // Transactions du journal couvertes par le point vérifié
+    private transient boolean teteACalculer; // Tête inconnue (sauvegarde sans empreintes) : recalculée depuis l'ancre
+
+    // Format sérialisé inchangé : l'historique y reste une List<Transaction>
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("numeroCompte", int.class),
+            new ObjectStreamField("nomTitulaire", String.class),
+            new ObjectStreamField("solde", double.class),
+            new ObjectStreamField("historique", List.class),
+            new ObjectStreamField("mouvementDuJour", double.class),
+            new ObjectStreamField("jourMouvement", long.class),
+            new ObjectStreamField("nombreArchivees", int.class),
+            new ObjectStreamField("sommeArchivee", double.class),
+            new ObjectStreamField("debutArchive", LocalDateTime.class),
+            new ObjectStreamField("jourFinDeJournee", int.class),
+            new ObjectStreamField("ancreEmpreinte", byte[].class),
+            new ObjectStreamField("empreinte", byte[].class)
+    };
 
     /**
      * Constructeur d'un nouveau compte.
@@ -26,31 +71,96 @@ public class CompteBancaire implements Serializable {
         this.numeroCompte = numero;
         this.nomTitulaire = nom;
         this.solde = soldeInitial;
-        this.historique = new ArrayList<>();
+        this.journal = new JournalTransactions();
+        this.empreintes = new byte[3 * AuditEmpreintes.TAILLE];
         if (soldeInitial > 0) {
             enregistrerTransaction(soldeInitial, "DEPOT_INITIAL");
         }
     }
 
+    /**
+     * Reconstruit un compte existant lu depuis un stockage externe (table mappée...),
+     * sans enregistrer de transaction DEPOT_INITIAL.
+     */
+    static CompteBancaire restaurer(int numero, String nom, double solde) {
+        CompteBancaire compte = new CompteBancaire(numero, nom, 0);
+        compte.solde = solde;
+        return compte;
+    }
+
+    /**
+     * Rétablit le mouvement du jour d'un compte restauré.
+     */
+    void restaurerMouvement(double mouvementDuJour, long jourMouvement) {
+        this.mouvementDuJour = mouvementDuJour;
+        this.jourMouvement = jourMouvement;
+    }
+
+    /**
+     * Rétablit le résumé de l'historique archivé d'un compte restauré.
+     */
+    void restaurerArchivage(int nombreArchivees, double sommeArchivee, LocalDateTime debutArchive) {
+        this.nombreArchivees = nombreArchivees;
+        this.sommeArchivee = sommeArchivee;
+        this.debutArchive = debutArchive;
+    }
+
+    /**
+     * Rétablit le jour du dernier traitement de fin de journée d'un compte restauré.
+     */
+    void restaurerFinDeJournee(int jour) {
+        this.jourFinDeJournee = jour;
+    }
+
+    /**
+     * Complète un compte restauré dont tout l'historique est dans l'archive depuis la date donnée.
+     */
+    void restaurerArchive(LocalDateTime debut) {
+        this.debutArchive = debut;
+        this.sommeArchivee = solde; // Aucune transaction récente : l'archive explique tout le solde
+    }
+
     /**
      * Ajoute un montant au solde du compte et enregistre la transaction.
      * @param montant Montant à déposer.
      */
-    public void deposer(double montant) {
-        if (montant > 0) {
-            this.solde += montant;
-            enregistrerTransaction(montant, "DEPOT");
-        }
+    public synchronized void deposer(double montant) {
+        crediter(montant, "DEPOT");
     }
     
     /**
      * Ajoute un montant au solde du compte suite à un transfert reçu.
      * @param montant Montant à déposer.
      */
-    public void recevoirTransfert(double montant) {
+    public synchronized void recevoirTransfert(double montant) {
+        crediter(montant, "TRANSFERT_RECU");
+    }
+
+    /**
+     * Transfert reçu du compte source, noté comme contrepartie de la transaction.
+     */
+    synchronized void recevoirTransfert(double montant, int source) {
+        crediter(montant, "TRANSFERT_RECU", source);
+    }
+
+    /**
+     * Ajoute un montant au solde et enregistre la transaction sous le type donné.
+     * @param montant Montant à ajouter.
+     * @param typeTransaction Le type d'opération (DEPOT, TRANSFERT_RECU, MULTI_CREDIT...).
+     */
+    public synchronized void crediter(double montant, String typeTransaction) {
+        crediter(montant, typeTransaction, JournalTransactions.SANS_CONTREPARTIE);
+    }
+
+    /**
+     * @param contrepartie Compte d'en face d'une jambe de transfert, ou JournalTransactions.SANS_CONTREPARTIE.
+     */
+    synchronized void crediter(double montant, String typeTransaction, int contrepartie) {
         if (montant > 0) {
+            double ancienSolde = this.solde;
             this.solde += montant;
-            enregistrerTransaction(montant, "TRANSFERT_RECU");
+            enregistrerTransaction(System.currentTimeMillis(), montant, typeTransaction, contrepartie);
+            signalerMouvement(ancienSolde, montant);
         }
     }
 
@@ -60,21 +170,278 @@ public class CompteBancaire implements Serializable {
      * @param typeTransaction Le type d'opération (RETRAIT ou TRANSFERT_EMIS).
      * @return true si le retrait a réussi, false sinon.
      */
-    public boolean retirer(double montant, String typeTransaction) {
+    public synchronized boolean retirer(double montant, String typeTransaction) {
+        return debiter(montant, typeTransaction, System.currentTimeMillis(), JournalTransactions.SANS_CONTREPARTIE);
+    }
+
+    private boolean debiter(double montant, String typeTransaction, long date, int contrepartie) {
         if (montant > 0 && this.solde >= montant) {
+            double ancienSolde = this.solde;
             this.solde -= montant;
             // Enregistre soit un RETRAIT soit un TRANSFERT_EMIS
-            enregistrerTransaction(montant, typeTransaction);
+            enregistrerTransaction(date, montant, typeTransaction, contrepartie);
+            signalerMouvement(ancienSolde, -montant);
             return true;
         }
         return false;
     }
 
     /**
-     * Méthode interne pour enregistrer une transaction dans l'historique.
+     * Retrait soumis aux règles de vélocité : refusé si le solde manque, ou si ce débit ferait
+     * dépasser au compte un plafond de montant ou de nombre d'opérations sur une fenêtre glissante.
+     * @param controle Règles à appliquer, ou null pour un retrait sans contrôle.
+     * @return SUCCES, SOLDE_INSUFFISANT ou VELOCITE_DEPASSEE.
+     */
+    public synchronized ResultatOperation retirer(double montant, String typeTransaction, ControleVelocite controle) {
+        return retirer(montant, typeTransaction, controle, JournalTransactions.SANS_CONTREPARTIE);
+    }
+
+    /**
+     * @param contrepartie Destinataire d'un TRANSFERT_EMIS, ou JournalTransactions.SANS_CONTREPARTIE.
+     */
+    synchronized ResultatOperation retirer(double montant, String typeTransaction, ControleVelocite controle, int contrepartie) {
+        if (!(montant > 0) || this.solde < montant) {
+            return ResultatOperation.SOLDE_INSUFFISANT;
+        }
+        long maintenant = System.currentTimeMillis(); // Même date dans la fenêtre et dans l'historique
+        if (controle != null) {
+            if (fenetreVelocite == null || !fenetreVelocite.suit(controle)) {
+                fenetreVelocite = reconstruireFenetre(controle, maintenant);
+            }
+            if (!fenetreVelocite.autoriser(montant, maintenant)) {
+                return ResultatOperation.VELOCITE_DEPASSEE;
+            }
+        }
+        debiter(montant, typeTransaction, maintenant, contrepartie);
+        return ResultatOperation.SUCCES;
+    }
+
+    /**
+     * Fenêtre neuve remplie des débits de l'historique encore dans l'anneau, moins les transferts
+     * remboursés : un redémarrage, un rechargement du compte ou un changement de règles ne remet pas
+     * les plafonds à zéro.
+     */
+    private ControleVelocite.Fenetre reconstruireFenetre(ControleVelocite controle, long maintenant) {
+        ControleVelocite.Fenetre fenetre = controle.nouvelleFenetre();
+        fenetre.placer(maintenant);
+        int debut = journal.taille();
+        while (debut > 0 && fenetre.couvre(journal.getDate(debut - 1))) {
+            debut--;
+        }
+        for (int i = debut; i < journal.taille(); i++) {
+            if (estDebitControle(journal.getType(i))) {
+                fenetre.compter(journal.getMontant(i), journal.getDate(i));
+            } else if ("TRANSFERT_REMBOURSE".equals(journal.getType(i))) {
+                for (int j = i - 1; j >= debut; j--) {
+                    if (journal.getMontant(j) == journal.getMontant(i) && "TRANSFERT_EMIS".equals(journal.getType(j))
+                            && journal.getContrepartie(j) == journal.getContrepartie(i)) {
+                        fenetre.reprendre(journal.getMontant(j), journal.getDate(j));
+                        break;
+                    }
+                }
+            }
+        }
+        return fenetre;
+    }
+
+    private static boolean estDebitControle(String type) {
+        return "RETRAIT".equals(type) || "TRANSFERT_EMIS".equals(type) || "MULTI_DEBIT".equals(type);
+    }
+
+    /**
+     * Rembourse un transfert émis qui n'a pas pu être crédité (TRANSFERT_REMBOURSE) : le débit remboursé,
+     * le plus récent TRANSFERT_EMIS de ce montant, est repris de la fenêtre de vélocité.
+     */
+    public synchronized void rembourserTransfert(double montant) {
+        rembourserTransfert(montant, JournalTransactions.SANS_CONTREPARTIE);
+    }
+
+    /**
+     * @param cible Destinataire du transfert remboursé (contrepartie de la transaction), ou JournalTransactions.SANS_CONTREPARTIE.
+     */
+    synchronized void rembourserTransfert(double montant, int cible) {
+        if (fenetreVelocite != null) {
+            for (int i = journal.taille() - 1; i >= 0 && fenetreVelocite.couvre(journal.getDate(i)); i--) {
+                if (journal.getMontant(i) == montant && "TRANSFERT_EMIS".equals(journal.getType(i))
+                        && (cible == JournalTransactions.SANS_CONTREPARTIE || journal.getContrepartie(i) == cible)) {
+                    fenetreVelocite.reprendre(montant, journal.getDate(i));
+                    break;
+                }
+            }
+        }
+        crediter(montant, "TRANSFERT_REMBOURSE", cible);
+    }
+
+    /**
+     * Annule la dernière transaction (compensation d'une opération multiple interrompue) :
+     * le solde est rétabli, la transaction retirée de l'historique et, pour un débit soumis aux
+     * règles de vélocité, de la fenêtre.
+     */
+    synchronized void annulerDerniereTransaction() {
+        if (journal.estVide()) {
+            return;
+        }
+        int derniere = journal.taille() - 1;
+        String type = journal.getType(derniere);
+        if (fenetreVelocite != null && estDebitControle(type)) {
+            fenetreVelocite.reprendre(journal.getMontant(derniere), journal.getDate(derniere));
+        }
+        double variation = -Transaction.signe(type) * journal.getMontant(derniere);
+        journal.retirer(derniere, derniere + 1);
+        recalculerTete();
+        if (verifiees > journal.taille()) {
+            System.arraycopy(empreintes, ANCRE, empreintes, VERIFIEE, AuditEmpreintes.TAILLE);
+            verifiees = 0;
+        }
+        double ancienSolde = this.solde;
+        this.solde += variation;
+        signalerMouvement(ancienSolde, variation);
+    }
+
+    /**
+     * Transactions antérieures à la date limite, à déplacer vers l'archive (copie, l'historique n'est pas modifié).
+     */
+    synchronized List<Transaction> transactionsAvant(LocalDateTime limite) {
+        long limiteMillis = JournalTransactions.versMillis(limite);
+        List<Transaction> anciennes = new ArrayList<>();
+        for (int i = 0; i < journal.taille() && journal.getDate(i) < limiteMillis; i++) {
+            anciennes.add(journal.get(i));
+        }
+        return anciennes;
+    }
+
+    /**
+     * Retire de l'historique en mémoire les transactions désormais archivées (les plus anciennes).
+     */
+    synchronized void retirerArchivees(List<Transaction> archivees) {
+        if (debutArchive == null && !archivees.isEmpty()) {
+            debutArchive = archivees.get(0).getDateHeure();
+        }
+        for (Transaction transaction : archivees) {
+            sommeArchivee += Transaction.signe(transaction.getType()) * transaction.getMontant();
+        }
+        nombreArchivees += archivees.size();
+        // L'ancre avance sur les transactions archivées ; le point vérifié reste valable s'il était au-delà
+        AuditEmpreintes.chainer(empreintes, ANCRE, numeroCompte, journal, 0, archivees.size());
+        if (verifiees >= archivees.size()) {
+            verifiees -= archivees.size();
+        } else {
+            System.arraycopy(empreintes, ANCRE, empreintes, VERIFIEE, AuditEmpreintes.TAILLE);
+            verifiees = 0;
+        }
+        journal.retirer(0, archivees.size());
+    }
+
+    /**
+     * Méthode interne pour enregistrer une transaction dans l'historique (sans allocation :
+     * date en millisecondes, montant et type vont dans les tableaux du journal).
      */
     private void enregistrerTransaction(double montant, String type) {
-        this.historique.add(new Transaction(montant, type));
+        enregistrerTransaction(System.currentTimeMillis(), montant, type, JournalTransactions.SANS_CONTREPARTIE);
+    }
+
+    private void enregistrerTransaction(long date, double montant, String type, int contrepartie) {
+        journal.ajouter(date, montant, type, contrepartie);
+        if (teteACalculer) {
+            recalculerTete();
+        } else {
+            AuditEmpreintes.chainer(empreintes, TETE, numeroCompte, journal, journal.taille() - 1, journal.taille());
+        }
+    }
+
+    // --- Chaîne d'empreintes ---
+
+    private void recalculerTete() {
+        System.arraycopy(empreintes, ANCRE, empreintes, TETE, AuditEmpreintes.TAILLE);
+        AuditEmpreintes.chainer(empreintes, TETE, numeroCompte, journal, 0, journal.taille());
+        teteACalculer = false;
+    }
+
+    /**
+     * Rehache les transactions ajoutées depuis le dernier point vérifié et compare le résultat à la tête de chaîne.
+     * @return Le nombre de transactions hachées, ou -1 si l'historique ne correspond plus à la chaîne.
+     */
+    synchronized long verifierEmpreinte() {
+        if (teteACalculer) {
+            recalculerTete(); // Chaîne ouverte à partir de l'historique chargé
+        }
+        int taille = journal.taille();
+        if (verifiees > taille
+                || !AuditEmpreintes.verifier(empreintes, VERIFIEE, numeroCompte, journal, verifiees, taille, empreintes, TETE)) {
+            return -1;
+        }
+        System.arraycopy(empreintes, TETE, empreintes, VERIFIEE, AuditEmpreintes.TAILLE);
+        long hachees = taille - verifiees;
+        verifiees = taille;
+        return hachees;
+    }
+
+    /**
+     * Copie la tête de chaîne (empreinte de tout l'historique) dans destination[position, position + 32).
+     */
+    synchronized void copierEmpreinte(byte[] destination, int position) {
+        if (teteACalculer) {
+            recalculerTete();
+        }
+        System.arraycopy(empreintes, TETE, destination, position, AuditEmpreintes.TAILLE);
+    }
+
+    /**
+     * Écrit l'ancre puis la tête de chaîne (64 octets) à cette position (sauvegarde).
+     */
+    synchronized void ecrireEmpreintes(ByteBuffer tampon, int position) {
+        if (teteACalculer) {
+            recalculerTete();
+        }
+        tampon.put(position, empreintes, ANCRE, 2 * AuditEmpreintes.TAILLE);
+    }
+
+    /**
+     * Rétablit l'ancre et la tête lues depuis la sauvegarde ; sans elles (null), la chaîne repart de l'historique chargé.
+     */
+    void restaurerEmpreintes(ByteBuffer tampon, int position) {
+        if (tampon == null) {
+            Arrays.fill(empreintes, (byte) 0);
+            teteACalculer = true;
+        } else {
+            tampon.get(position, empreintes, ANCRE, 2 * AuditEmpreintes.TAILLE);
+            System.arraycopy(empreintes, ANCRE, empreintes, VERIFIEE, AuditEmpreintes.TAILLE);
+            teteACalculer = false;
+        }
+        verifiees = 0;
+    }
+
+    /**
+     * Réserve la place de ce nombre de transactions dans l'historique (import en masse, mesures d'allocation).
+     */
+    synchronized void reserverHistorique(int capacite) {
+        journal.reserver(capacite);
+    }
+
+    /**
+     * Met à jour le mouvement du jour et prévient l'observateur (classements du gestionnaire).
+     */
+    private void signalerMouvement(double ancienSolde, double variation) {
+        double ancienMouvement = this.mouvementDuJour;
+        long ancienJour = this.jourMouvement;
+        long jour = jourCourant();
+        this.mouvementDuJour = (ancienJour == jour ? ancienMouvement : 0) + variation;
+        this.jourMouvement = jour;
+        if (observateur != null) {
+            observateur.soldeModifie(this, ancienSolde, ancienMouvement, ancienJour);
+        }
+    }
+
+    /**
+     * Jour courant (epoch day) dans le fuseau local, calculé sans allocation.
+     */
+    static long jourCourant() {
+        long maintenant = System.currentTimeMillis();
+        return Math.floorDiv(maintenant + FUSEAU.getOffset(maintenant), 86_400_000L);
+    }
+
+    void setObservateur(ObservateurCompte observateur) {
+        this.observateur = observateur;
     }
 
     // --- Getters ---
@@ -91,8 +458,107 @@ public class CompteBancaire implements Serializable {
         return solde;
     }
     
+    /**
+     * Somme signée des dépôts et retraits effectués aujourd'hui (0 si aucune opération du jour).
+     */
+    public double getMouvementDuJour() {
+        return jourMouvement == jourCourant() ? mouvementDuJour : 0;
+    }
+
+    long getJourMouvement() {
+        return jourMouvement;
+    }
+
+    /**
+     * Jour (epoch day) du dernier traitement de fin de journée appliqué au compte, 0 si aucun.
+     * Lu et modifié sous le verrou du compte (TraitementFinDeJournee).
+     */
+    int getJourFinDeJournee() {
+        return jourFinDeJournee;
+    }
+
+    void marquerFinDeJournee(int jour) {
+        this.jourFinDeJournee = jour;
+    }
+
+    /**
+     * Transactions récentes gardées en mémoire (les plus anciennes peuvent avoir été archivées).
+     * Vue sur le journal du compte : chaque lecture crée un objet Transaction ; à parcourir sous le
+     * verrou du compte si des opérations sont en cours.
+     */
     public List<Transaction> getHistoriqueTransactions() {
-        return historique;
+        return new VueHistorique();
+    }
+
+    /**
+     * Accès direct aux tableaux de l'historique (sauvegarde), sous le verrou du compte.
+     */
+    JournalTransactions getJournal() {
+        return journal;
+    }
+
+    /**
+     * Historique vu comme une liste : ajout, retrait et sous-listes modifient le journal.
+     */
+    private final class VueHistorique extends AbstractList<Transaction> implements RandomAccess {
+        @Override
+        public Transaction get(int index) {
+            if (index < 0 || index >= journal.taille()) {
+                throw new IndexOutOfBoundsException("Indice " + index + ", taille " + journal.taille());
+            }
+            return journal.get(index);
+        }
+
+        @Override
+        public int size() {
+            return journal.taille();
+        }
+
+        @Override
+        public void add(int index, Transaction transaction) {
+            if (index < 0 || index > journal.taille()) {
+                throw new IndexOutOfBoundsException("Indice " + index + ", taille " + journal.taille());
+            }
+            journal.inserer(index, JournalTransactions.versMillis(transaction.getDateHeure()),
+                    transaction.getMontant(), transaction.getType(), contrepartie(transaction));
+            modCount++;
+        }
+
+        @Override
+        public Transaction remove(int index) {
+            Transaction transaction = get(index);
+            journal.retirer(index, index + 1);
+            modCount++;
+            return transaction;
+        }
+
+        @Override
+        protected void removeRange(int debut, int fin) {
+            journal.retirer(debut, fin);
+            modCount++;
+        }
+    }
+
+    /**
+     * Nombre de transactions déplacées vers l'archive.
+     */
+    public int getNombreArchivees() {
+        return nombreArchivees;
+    }
+
+    /**
+     * Date de la première transaction archivée (null si rien n'est archivé). Les transactions
+     * archivées plus anciennes sous le même numéro appartiennent à un compte supprimé.
+     */
+    LocalDateTime getDebutArchive() {
+        return debutArchive;
+    }
+
+    /**
+     * Somme signée des transactions archivées (pour rapprocher le solde de l'historique complet).
+     */
+    public double getSommeArchivee() {
+        return sommeArchivee;
     }
 
     /**
@@ -103,6 +569,65 @@ public class CompteBancaire implements Serializable {
         return df.format(solde) + " €";
     }
 
+    // --- Sérialisation (sauvegardes des versions antérieures) ---
+
+    private void writeObject(ObjectOutputStream sortie) throws IOException {
+        ObjectOutputStream.PutField champs = sortie.putFields();
+        champs.put("numeroCompte", numeroCompte);
+        champs.put("nomTitulaire", nomTitulaire);
+        champs.put("solde", solde);
+        champs.put("historique", new ArrayList<>(getHistoriqueTransactions()));
+        champs.put("mouvementDuJour", mouvementDuJour);
+        champs.put("jourMouvement", jourMouvement);
+        champs.put("nombreArchivees", nombreArchivees);
+        champs.put("sommeArchivee", sommeArchivee);
+        champs.put("debutArchive", debutArchive);
+        champs.put("jourFinDeJournee", jourFinDeJournee);
+        if (teteACalculer) {
+            recalculerTete();
+        }
+        champs.put("ancreEmpreinte", Arrays.copyOfRange(empreintes, ANCRE, TETE));
+        champs.put("empreinte", Arrays.copyOfRange(empreintes, TETE, VERIFIEE));
+        sortie.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream entree) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField champs = entree.readFields();
+        numeroCompte = champs.get("numeroCompte", 0);
+        nomTitulaire = (String) champs.get("nomTitulaire", null);
+        solde = champs.get("solde", 0.0);
+        mouvementDuJour = champs.get("mouvementDuJour", 0.0);
+        jourMouvement = champs.get("jourMouvement", 0L);
+        nombreArchivees = champs.get("nombreArchivees", 0);
+        sommeArchivee = champs.get("sommeArchivee", 0.0);
+        debutArchive = (LocalDateTime) champs.get("debutArchive", null);
+        jourFinDeJournee = champs.get("jourFinDeJournee", 0);
+        List<Transaction> historique = (List<Transaction>) champs.get("historique", null);
+        journal = new JournalTransactions(historique == null ? 4 : Math.max(4, historique.size()));
+        if (historique != null) {
+            for (Transaction transaction : historique) {
+                journal.ajouter(JournalTransactions.versMillis(transaction.getDateHeure()),
+                        transaction.getMontant(), transaction.getType(), contrepartie(transaction));
+            }
+        }
+        // Sauvegarde antérieure aux empreintes : la chaîne repart de l'historique relu
+        byte[] ancre = (byte[]) champs.get("ancreEmpreinte", null);
+        byte[] tete = (byte[]) champs.get("empreinte", null);
+        empreintes = new byte[3 * AuditEmpreintes.TAILLE];
+        if (ancre != null && tete != null) {
+            System.arraycopy(ancre, 0, empreintes, ANCRE, AuditEmpreintes.TAILLE);
+            System.arraycopy(tete, 0, empreintes, TETE, AuditEmpreintes.TAILLE);
+            System.arraycopy(ancre, 0, empreintes, VERIFIEE, AuditEmpreintes.TAILLE);
+        } else {
+            teteACalculer = true;
+        }
+    }
+
+    private static int contrepartie(Transaction transaction) {
+        return transaction.getContrepartie() != null ? transaction.getContrepartie() : JournalTransactions.SANS_CONTREPARTIE;
+    }
+
     @Override
     public String toString() {
         return "N°: " + numeroCompte + " | Titulaire: " + nomTitulaire + " | Solde: " + getSoldeFormate();
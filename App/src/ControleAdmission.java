@@ -0,0 +1,153 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contrôle d'admission devant les opérations du gestionnaire.
+ * Chaque classe d'opérations (mutations, lectures) a son propre pool de threads et une limite
+ * d'opérations en cours (en file ou en exécution). Au-delà, la demande est refusée immédiatement
+ * avec un délai conseillé avant de réessayer, plutôt que d'allonger indéfiniment la file.
+ * Un historique ou un rapport coûteux ne peut donc pas priver les transferts de threads.
+ */
+public class ControleAdmission {
+
+    public enum ClasseOperation { MUTATION, LECTURE }
+
+    /**
+     * Refus d'admission : la classe d'opérations est saturée.
+     */
+    public static class RejetAdmission extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final long reessayerApresMillis;
+
+        RejetAdmission(ClasseOperation classe, long reessayerApresMillis) {
+            super("Capacité atteinte pour les opérations " + classe + ", réessayer dans " + reessayerApresMillis + " ms");
+            this.reessayerApresMillis = reessayerApresMillis;
+        }
+
+        public long getReessayerApresMillis() {
+            return reessayerApresMillis;
+        }
+    }
+
+    private static final class Voie {
+        final ThreadPoolExecutor executeur;
+        final Semaphore places;
+        final int limite;
+        final int threads;
+        final LongAdder admises = new LongAdder();
+        final LongAdder rejets = new LongAdder();
+        final HistogrammeLatence service = new HistogrammeLatence();
+
+        Voie(ClasseOperation classe, int threads, int limite) {
+            this.threads = threads;
+            this.limite = limite;
+            this.places = new Semaphore(limite);
+            // File non bornée en apparence : c'est le sémaphore qui borne le nombre d'opérations en attente
+            this.executeur = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    tache -> {
+                        Thread thread = new Thread(tache, "banque-" + classe.name().toLowerCase());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    private final Map<ClasseOperation, Voie> voies = new EnumMap<>(ClasseOperation.class);
+
+    /**
+     * @param threadsMutation Threads dédiés aux dépôts, retraits et transferts.
+     * @param limiteMutation Nombre maximal de mutations en cours (file + exécution).
+     * @param threadsLecture Threads dédiés aux consultations et historiques.
+     * @param limiteLecture Nombre maximal de lectures en cours (file + exécution).
+     */
+    public ControleAdmission(int threadsMutation, int limiteMutation, int threadsLecture, int limiteLecture) {
+        voies.put(ClasseOperation.MUTATION, new Voie(ClasseOperation.MUTATION, threadsMutation, limiteMutation));
+        voies.put(ClasseOperation.LECTURE, new Voie(ClasseOperation.LECTURE, threadsLecture, limiteLecture));
+    }
+
+    /**
+     * Exécute l'opération sur le pool de sa classe et attend son résultat.
+     * @throws RejetAdmission si la classe est saturée (aucune attente dans ce cas).
+     */
+    public <T> T executer(ClasseOperation classe, Callable<T> operation) throws RejetAdmission, ExecutionException, InterruptedException {
+        Voie voie = voies.get(classe);
+        if (!voie.places.tryAcquire()) {
+            voie.rejets.increment();
+            throw new RejetAdmission(classe, delaiConseille(voie));
+        }
+        voie.admises.increment();
+        Future<T> resultat;
+        try {
+            resultat = voie.executeur.submit(() -> {
+                long debut = System.nanoTime();
+                try {
+                    return operation.call();
+                } finally {
+                    voie.service.enregistrer(System.nanoTime() - debut);
+                    voie.places.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            voie.places.release(); // Pool arrêté : la place n'a jamais été occupée
+            throw e;
+        }
+        return resultat.get();
+    }
+
+    /**
+     * Opérations en file d'attente (admises mais pas encore démarrées).
+     */
+    public int getProfondeurFile(ClasseOperation classe) {
+        return voies.get(classe).executeur.getQueue().size();
+    }
+
+    /**
+     * Opérations admises et non terminées (file + exécution).
+     */
+    public int getEnCours(ClasseOperation classe) {
+        Voie voie = voies.get(classe);
+        return voie.limite - voie.places.availablePermits();
+    }
+
+    public int getLimite(ClasseOperation classe) {
+        return voies.get(classe).limite;
+    }
+
+    public long getAdmises(ClasseOperation classe) {
+        return voies.get(classe).admises.sum();
+    }
+
+    public long getRejets(ClasseOperation classe) {
+        return voies.get(classe).rejets.sum();
+    }
+
+    /**
+     * Temps de service (hors attente en file) des opérations de la classe.
+     */
+    public HistogrammeLatence getTempsService(ClasseOperation classe) {
+        return voies.get(classe).service;
+    }
+
+    public void arreter() {
+        for (Voie voie : voies.values()) {
+            voie.executeur.shutdown();
+        }
+    }
+
+    /**
+     * Estimation du temps nécessaire pour écouler la file actuelle : profondeur × temps moyen / threads.
+     */
+    private static long delaiConseille(Voie voie) {
+        double moyenneNanos = voie.service.getMoyenne();
+        long estimation = (long) (voie.executeur.getQueue().size() * moyenneNanos / voie.threads / 1_000_000);
+        return Math.max(1, estimation);
+    }
+}
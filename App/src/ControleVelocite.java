@@ -0,0 +1,192 @@
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Règles de vélocité sur les débits (retraits, transferts émis, débits d'opérations multiples) : au plus tant d'euros et tant
+ * d'opérations par compte sur une fenêtre glissante (par exemple 1 000 € et 5 retraits en 10 minutes).
+ *
+ * Chaque compte garde un anneau de seaux (montant et nombre de débits par tranche de temps),
+ * alloué à son premier débit contrôlé. Une vérification avance l'anneau puis somme les seaux
+ * récents : quelques nanosecondes, sans allocation, sous le verrou du compte qui la demande.
+ * La fenêtre est glissante à un seau près. Un débit remboursé ou annulé est repris du seau où il
+ * avait été compté. Les anneaux ne sont pas sauvegardés : au premier débit contrôlé d'un compte (après
+ * un redémarrage, un rechargement ou un changement de règles), le sien est reconstruit à partir des
+ * débits récents de son historique. En mode tas borné, l'historique d'un compte évincé part dans
+ * l'archive : son anneau repart alors vide à son rechargement.
+ */
+public class ControleVelocite {
+
+    private final long dureeSeau; // ms
+    private final int nombreSeaux;
+
+    // Règles triées par fenêtre croissante (en nombre de seaux) ; remplacées en bloc à chaque ajout
+    private volatile Regles regles = new Regles(new int[0], new double[0], new int[0]);
+
+    private static final class Regles {
+        final int[] seaux;
+        final double[] montantsMax;
+        final int[] nombresMax;
+
+        Regles(int[] seaux, double[] montantsMax, int[] nombresMax) {
+            this.seaux = seaux;
+            this.montantsMax = montantsMax;
+            this.nombresMax = nombresMax;
+        }
+    }
+
+    /**
+     * @param dureeSeau Précision de la fenêtre glissante (par exemple 1 minute).
+     * @param nombreSeaux Taille de l'anneau : la plus longue fenêtre possible est dureeSeau × nombreSeaux.
+     */
+    public ControleVelocite(Duration dureeSeau, int nombreSeaux) {
+        if (dureeSeau.toMillis() <= 0 || nombreSeaux <= 0) {
+            throw new IllegalArgumentException("Durée de seau et nombre de seaux doivent être positifs");
+        }
+        this.dureeSeau = dureeSeau.toMillis();
+        this.nombreSeaux = nombreSeaux;
+    }
+
+    /**
+     * Ajoute une règle : sur la fenêtre donnée, les débits d'un compte ne dépassent ni montantMax
+     * ni nombreMax opérations (Double.POSITIVE_INFINITY ou Integer.MAX_VALUE pour ne limiter qu'un des deux).
+     * La fenêtre est arrondie au seau supérieur.
+     */
+    public synchronized ControleVelocite regle(Duration fenetre, double montantMax, int nombreMax) {
+        long seaux = (fenetre.toMillis() + dureeSeau - 1) / dureeSeau;
+        if (seaux <= 0 || seaux > nombreSeaux) {
+            throw new IllegalArgumentException("Fenêtre hors de l'anneau (" + nombreSeaux + " seaux de " + dureeSeau + " ms) : " + fenetre);
+        }
+        Regles actuelles = regles;
+        int n = actuelles.seaux.length;
+        int position = 0;
+        while (position < n && actuelles.seaux[position] <= seaux) {
+            position++;
+        }
+        int[] nouveauxSeaux = inserer(actuelles.seaux, position, (int) seaux);
+        double[] montants = Arrays.copyOf(actuelles.montantsMax, n + 1);
+        System.arraycopy(montants, position, montants, position + 1, n - position);
+        montants[position] = montantMax;
+        int[] nombres = inserer(actuelles.nombresMax, position, nombreMax);
+        regles = new Regles(nouveauxSeaux, montants, nombres);
+        return this;
+    }
+
+    private static int[] inserer(int[] valeurs, int position, int valeur) {
+        int[] resultat = Arrays.copyOf(valeurs, valeurs.length + 1);
+        System.arraycopy(resultat, position, resultat, position + 1, valeurs.length - position);
+        resultat[position] = valeur;
+        return resultat;
+    }
+
+    Fenetre nouvelleFenetre() {
+        return new Fenetre(this);
+    }
+
+    /**
+     * Anneau de seaux d'un compte. Non synchronisé : le compte propriétaire sert de verrou.
+     */
+    static final class Fenetre {
+        private final ControleVelocite controle;
+        private final double[] montants;
+        private final int[] nombres;
+        private long seauCourant; // Numéro absolu (temps / durée d'un seau) du seau le plus récent
+
+        private Fenetre(ControleVelocite controle) {
+            this.controle = controle;
+            this.montants = new double[controle.nombreSeaux];
+            this.nombres = new int[controle.nombreSeaux];
+        }
+
+        boolean suit(ControleVelocite controle) {
+            return this.controle == controle;
+        }
+
+        /**
+         * Vérifie qu'un débit de ce montant respecte toutes les règles et, si oui, le compte dans la fenêtre.
+         * @param maintenant Date en ms (System.currentTimeMillis()).
+         */
+        boolean autoriser(double montant, long maintenant) {
+            int n = montants.length;
+            avancer(maintenant / controle.dureeSeau);
+            Regles regles = controle.regles;
+            double somme = montant;
+            int nombre = 1;
+            int regle = 0;
+            for (int age = 0; regle < regles.seaux.length; age++) {
+                int i = (int) ((seauCourant - age) % n);
+                somme += montants[i];
+                nombre += nombres[i];
+                while (regle < regles.seaux.length && regles.seaux[regle] == age + 1) {
+                    if (somme > regles.montantsMax[regle] || nombre > regles.nombresMax[regle]) {
+                        return false;
+                    }
+                    regle++;
+                }
+            }
+            int courant = (int) (seauCourant % n);
+            montants[courant] += montant;
+            nombres[courant]++;
+            return true;
+        }
+
+        /**
+         * Place l'anneau neuf à cette date (ms), avant d'y compter les débits de l'historique.
+         */
+        void placer(long maintenant) {
+            avancer(maintenant / controle.dureeSeau);
+        }
+
+        /**
+         * Compte sans vérification un débit de l'historique dans le seau de sa date, s'il est encore dans l'anneau.
+         */
+        void compter(double montant, long date) {
+            long seau = Math.min(date / controle.dureeSeau, seauCourant);
+            if (seau <= seauCourant - montants.length) {
+                return;
+            }
+            int i = (int) (seau % montants.length);
+            montants[i] += montant;
+            nombres[i]++;
+        }
+
+        /**
+         * Retire un débit compté par autoriser (remboursé ou annulé) du seau de sa date, s'il n'est pas
+         * déjà sorti de la fenêtre.
+         * @param date Date du débit en ms, celle passée à autoriser.
+         */
+        void reprendre(double montant, long date) {
+            int n = montants.length;
+            long seau = Math.min(date / controle.dureeSeau, seauCourant); // Horloge reculée : compté dans le seau le plus récent
+            if (seau <= seauCourant - n) {
+                return;
+            }
+            int i = (int) (seau % n);
+            montants[i] = Math.max(0, montants[i] - montant);
+            nombres[i] = Math.max(0, nombres[i] - 1);
+        }
+
+        /**
+         * Vrai si un débit à cette date (ms) peut encore être compté dans l'anneau.
+         */
+        boolean couvre(long date) {
+            return date / controle.dureeSeau > seauCourant - montants.length;
+        }
+
+        /**
+         * Vide les seaux sortis de la fenêtre depuis le dernier débit.
+         * Une horloge qui recule compte dans le seau le plus récent.
+         */
+        private void avancer(long seau) {
+            int n = montants.length;
+            long ecart = Math.min(seau - seauCourant, n);
+            for (long k = 1; k <= ecart; k++) {
+                int i = (int) ((seauCourant + k) % n);
+                montants[i] = 0;
+                nombres[i] = 0;
+            }
+            if (seau > seauCourant) {
+                seauCourant = seau;
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Événements Java Flight Recorder des opérations métier, pour corréler dans un même enregistrement
+ * les pics de latence avec les pauses GC et les entrées-sorties.
+ *
+ * Les seuils n'enregistrent par défaut que les opérations lentes ; ils se changent dans un fichier
+ * .jfc ou sur la ligne de commande (-XX:StartFlightRecording:settings=...). Sans enregistrement en
+ * cours, les dépôts, retraits et transferts ne créent pas leur événement : un test de champ, aucune
+ * allocation (l'élimination de l'objet par le compilateur dépend de l'inlining, trop fragile).
+ */
+final class EvenementsBanque {
+
+    // Vrai tant qu'un enregistrement JFR est en cours, tenu à jour par l'écouteur ci-dessous
+    private static volatile boolean enregistrement;
+
+    static {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                actualiser(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                actualiser(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    private EvenementsBanque() {
+    }
+
+    private static void actualiser(FlightRecorder recorder) {
+        boolean enCours = false;
+        for (Recording recording : recorder.getRecordings()) {
+            enCours |= recording.getState() == RecordingState.RUNNING;
+        }
+        enregistrement = enCours;
+    }
+
+    @Name("banque.Transfert")
+    @Label("Transfert")
+    @Category({"Banque", "Opérations"})
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Transfert extends Event {
+        /**
+         * Événement commencé, ou null hors enregistrement.
+         */
+        static Transfert commencer() {
+            if (!enregistrement) {
+                return null;
+            }
+            Transfert evenement = new Transfert();
+            evenement.begin();
+            return evenement;
+        }
+
+        @Label("Compte source")
+        int source;
+
+        @Label("Compte cible")
+        int cible;
+
+        @Label("Montant")
+        double montant;
+
+        @Label("Résultat")
+        String resultat;
+
+        void terminer(int source, int cible, double montant, ResultatOperation resultat) {
+            end();
+            if (shouldCommit()) {
+                this.source = source;
+                this.cible = cible;
+                this.montant = montant;
+                this.resultat = resultat.name();
+                commit();
+            }
+        }
+    }
+
+    @Name("banque.Mouvement")
+    @Label("Dépôt ou retrait")
+    @Category({"Banque", "Opérations"})
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Mouvement extends Event {
+        /**
+         * Événement commencé, ou null hors enregistrement.
+         */
+        static Mouvement commencer() {
+            if (!enregistrement) {
+                return null;
+            }
+            Mouvement evenement = new Mouvement();
+            evenement.begin();
+            return evenement;
+        }
+
+        @Label("Type")
+        String type;
+
+        @Label("Compte")
+        int compte;
+
+        @Label("Montant")
+        double montant;
+
+        @Label("Résultat")
+        String resultat;
+
+        void terminer(String type, int compte, double montant, ResultatOperation resultat) {
+            end();
+            if (shouldCommit()) {
+                this.type = type;
+                this.compte = compte;
+                this.montant = montant;
+                this.resultat = resultat.name();
+                commit();
+            }
+        }
+    }
+
+    @Name("banque.Sauvegarde")
+    @Label("Sauvegarde")
+    @Category({"Banque", "Persistance"})
+    @Threshold("100 ms")
+    static final class Sauvegarde extends Event {
+        @Label("Comptes")
+        long comptes;
+
+        @Label("Octets écrits")
+        @Description("Journal, noms et pages réécrits (0 en mode tas borné)")
+        @DataAmount
+        long octetsEcrits;
+
+        @Label("Réussie")
+        boolean reussie;
+
+        void terminer(long comptes, long octetsEcrits, boolean reussie) {
+            end();
+            if (shouldCommit()) {
+                this.comptes = comptes;
+                this.octetsEcrits = octetsEcrits;
+                this.reussie = reussie;
+                commit();
+            }
+        }
+    }
+
+    @Name("banque.Chargement")
+    @Label("Chargement")
+    @Category({"Banque", "Persistance"})
+    @Threshold("100 ms")
+    static final class Chargement extends Event {
+        @Label("Comptes")
+        long comptes;
+
+        @Label("Réussi")
+        boolean reussi;
+
+        void terminer(long comptes, boolean reussi) {
+            end();
+            if (shouldCommit()) {
+                this.comptes = comptes;
+                this.reussi = reussi;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Écriture de l'historique des transactions dans un fichier colonnaire destiné à l'analyse hors ligne.
+ *
+ * Organisation du fichier :
+ * <pre>
+ * MAGIC
+ * bloc*      : nbLignes, statistiques min/max (date, compte, montant), longueur de chaque colonne, colonnes
+ * pied       : dictionnaire des types, puis index des blocs (position + statistiques)
+ * position du pied (long), MAGIC
+ * </pre>
+ * Les lignes sont écrites dans l'ordre chronologique (fusion des historiques de tous les comptes),
+ * si bien que chaque bloc couvre une plage de dates étroite et qu'un parcours filtré par date
+ * peut ignorer la plupart des blocs grâce à l'index. Colonnes : compte et date en delta + varint,
+ * montant (centimes signés) en varint zigzag, type en code de dictionnaire sur un octet.
+ *
+ * L'historique complet de chaque compte (archive comprise) est d'abord copié sous les verrous
+ * (GestionnaireBanque.copierHistoriqueComplet) : les opérations continuent pendant l'export, et la
+ * fusion lit directement les colonnes primitives des copies, sans objet par transaction.
+ */
+public class ExportColonnaire {
+
+    static final int MAGIC = 0x42514331; // "BQC1"
+    static final int LIGNES_PAR_BLOC = 65_536;
+    static final int NB_COLONNES = 4;
+
+    private ExportColonnaire() {
+    }
+
+    /**
+     * Exporte tout l'historique de la banque vers le fichier colonnaire (en mode tas borné, celui des
+     * comptes en mémoire, comme getComptes()).
+     * @return le nombre de transactions écrites.
+     */
+    public static long exporter(GestionnaireBanque gestionnaire, Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Ecrivain ecrivain = new Ecrivain(canal);
+            // Fusion k voies des historiques (chacun déjà chronologique) pour obtenir un fichier trié par date
+            PriorityQueue<Curseur> file = new PriorityQueue<>();
+            HeureLocale heureLocale = new HeureLocale();
+            for (CompteBancaire compte : gestionnaire.instantaneComptes()) {
+                JournalTransactions historique = new JournalTransactions(0);
+                gestionnaire.copierHistoriqueComplet(compte, historique);
+                Curseur curseur = new Curseur(compte.getNumeroCompte(), historique, heureLocale);
+                if (curseur.avancer()) {
+                    file.add(curseur);
+                }
+            }
+            while (!file.isEmpty()) {
+                Curseur curseur = file.poll();
+                ecrivain.ajouter(curseur.numero, curseur.date, curseur.montant(), curseur.type());
+                if (curseur.avancer()) {
+                    file.add(curseur);
+                }
+            }
+            ecrivain.terminer();
+            return ecrivain.lignesTotales;
+        }
+    }
+
+    /**
+     * Date d'une transaction en millisecondes ; l'heure locale est codée telle quelle (comme si elle était UTC).
+     */
+    static long versMillis(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * 1000 + date.getNano() / 1_000_000;
+    }
+
+    static long zigzag(long valeur) {
+        return (valeur << 1) ^ (valeur >> 63);
+    }
+
+    /**
+     * Conversion d'une date (ms depuis l'époque) en heure locale codée comme UTC (voir versMillis), sans
+     * allocation tant qu'aucun changement d'heure n'est franchi.
+     */
+    private static final class HeureLocale {
+        private final ZoneRules regles = ZoneId.systemDefault().getRules();
+        private long debut = Long.MAX_VALUE; // Décalage valable sur [debut, fin), en secondes depuis l'époque
+        private long fin = Long.MIN_VALUE;
+        private long decalageMillis;
+
+        long versLocale(long millis) {
+            long secondes = Math.floorDiv(millis, 1000);
+            if (secondes < debut || secondes >= fin) {
+                Instant instant = Instant.ofEpochSecond(secondes);
+                decalageMillis = regles.getOffset(instant).getTotalSeconds() * 1000L;
+                ZoneOffsetTransition precedente = regles.previousTransition(instant.plusSeconds(1));
+                ZoneOffsetTransition suivante = regles.nextTransition(instant);
+                debut = precedente == null ? Long.MIN_VALUE : precedente.toEpochSecond();
+                fin = suivante == null ? Long.MAX_VALUE : suivante.toEpochSecond();
+            }
+            return millis + decalageMillis;
+        }
+    }
+
+    private static final class Curseur implements Comparable<Curseur> {
+        final int numero;
+        final JournalTransactions historique;
+        final HeureLocale heureLocale;
+        int position = -1;
+        long date;
+
+        Curseur(int numero, JournalTransactions historique, HeureLocale heureLocale) {
+            this.numero = numero;
+            this.historique = historique;
+            this.heureLocale = heureLocale;
+        }
+
+        boolean avancer() {
+            if (position + 1 >= historique.taille()) {
+                return false;
+            }
+            position++;
+            date = heureLocale.versLocale(historique.getDate(position));
+            return true;
+        }
+
+        double montant() {
+            return historique.getMontant(position);
+        }
+
+        String type() {
+            return historique.getType(position);
+        }
+
+        @Override
+        public int compareTo(Curseur autre) {
+            int cmp = Long.compare(date, autre.date);
+            return cmp != 0 ? cmp : Integer.compare(numero, autre.numero);
+        }
+    }
+
+    /**
+     * Accumule un bloc en mémoire, colonne par colonne, puis l'écrit d'un seul tenant.
+     */
+    private static final class Ecrivain {
+        private final FileChannel canal;
+        private final TamponOctets comptes = new TamponOctets();
+        private final TamponOctets dates = new TamponOctets();
+        private final TamponOctets montants = new TamponOctets();
+        private final TamponOctets types = new TamponOctets();
+        private final Map<String, Integer> dictionnaire = new HashMap<>();
+        private final List<String> typesConnus = new ArrayList<>();
+        private final TamponOctets index = new TamponOctets();
+        private int nbBlocs;
+        private long position;
+        private long lignesTotales;
+
+        private int lignes;
+        private int dernierCompte;
+        private long derniereDate;
+        private long minDate, maxDate, minMontant, maxMontant;
+        private int minCompte, maxCompte;
+
+        Ecrivain(FileChannel canal) throws IOException {
+            this.canal = canal;
+            ByteBuffer entete = ByteBuffer.allocate(4).putInt(MAGIC);
+            entete.flip();
+            ecrireTout(entete);
+        }
+
+        void ajouter(int numero, long date, double montant, String type) throws IOException {
+            long centimes = Math.round(montant * 100) * (Transaction.signe(type) < 0 ? -1 : 1);
+            if (lignes == 0) {
+                minDate = maxDate = date;
+                minCompte = maxCompte = numero;
+                minMontant = maxMontant = centimes;
+                dernierCompte = 0;
+                derniereDate = 0;
+            }
+            comptes.varLong(zigzag((long) numero - dernierCompte));
+            dates.varLong(zigzag(date - derniereDate));
+            montants.varLong(zigzag(centimes));
+            types.octet(codeType(type));
+            dernierCompte = numero;
+            derniereDate = date;
+            minDate = Math.min(minDate, date);
+            maxDate = Math.max(maxDate, date);
+            minCompte = Math.min(minCompte, numero);
+            maxCompte = Math.max(maxCompte, numero);
+            minMontant = Math.min(minMontant, centimes);
+            maxMontant = Math.max(maxMontant, centimes);
+            lignesTotales++;
+            if (++lignes == LIGNES_PAR_BLOC) {
+                ecrireBloc();
+            }
+        }
+
+        void terminer() throws IOException {
+            if (lignes > 0) {
+                ecrireBloc();
+            }
+            TamponOctets pied = new TamponOctets();
+            pied.varLong(typesConnus.size());
+            for (String type : typesConnus) {
+                byte[] octets = type.getBytes(StandardCharsets.UTF_8);
+                pied.varLong(octets.length);
+                pied.octets(octets, octets.length);
+            }
+            pied.varLong(nbBlocs);
+            pied.octets(index.donnees, index.taille);
+            long positionPied = position;
+            ecrireTout(ByteBuffer.wrap(pied.donnees, 0, pied.taille));
+            ByteBuffer fin = ByteBuffer.allocate(12).putLong(positionPied).putInt(MAGIC);
+            fin.flip();
+            ecrireTout(fin);
+        }
+
+        private void ecrireBloc() throws IOException {
+            TamponOctets stats = new TamponOctets();
+            stats.varLong(lignes);
+            stats.varLong(zigzag(minDate));
+            stats.varLong(zigzag(maxDate));
+            stats.varLong(zigzag(minCompte));
+            stats.varLong(zigzag(maxCompte));
+            stats.varLong(zigzag(minMontant));
+            stats.varLong(zigzag(maxMontant));
+
+            // L'index du pied reprend les statistiques pour décider d'un saut sans lire le bloc
+            index.varLong(position);
+            index.octets(stats.donnees, stats.taille);
+
+            stats.varLong(comptes.taille);
+            stats.varLong(dates.taille);
+            stats.varLong(montants.taille);
+            stats.varLong(types.taille);
+            ecrireTout(ByteBuffer.wrap(stats.donnees, 0, stats.taille));
+            for (TamponOctets colonne : new TamponOctets[] {comptes, dates, montants, types}) {
+                ecrireTout(ByteBuffer.wrap(colonne.donnees, 0, colonne.taille));
+                colonne.taille = 0;
+            }
+            nbBlocs++;
+            lignes = 0;
+        }
+
+        private int codeType(String type) {
+            Integer code = dictionnaire.get(type);
+            if (code == null) {
+                if (typesConnus.size() == 256) {
+                    throw new IllegalStateException("Trop de types de transaction distincts pour un code sur un octet");
+                }
+                code = typesConnus.size();
+                dictionnaire.put(type, code);
+                typesConnus.add(type);
+            }
+            return code;
+        }
+
+        private void ecrireTout(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += canal.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Tableau d'octets extensible avec écriture de varints.
+     */
+    static final class TamponOctets {
+        byte[] donnees = new byte[1024];
+        int taille;
+
+        void octet(int valeur) {
+            assurer(1);
+            donnees[taille++] = (byte) valeur;
+        }
+
+        void octets(byte[] source, int longueur) {
+            assurer(longueur);
+            System.arraycopy(source, 0, donnees, taille, longueur);
+            taille += longueur;
+        }
+
+        void varLong(long valeur) {
+            assurer(10);
+            while ((valeur & ~0x7FL) != 0) {
+                donnees[taille++] = (byte) ((valeur & 0x7F) | 0x80);
+                valeur >>>= 7;
+            }
+            donnees[taille++] = (byte) valeur;
+        }
+
+        private void assurer(int supplement) {
+            if (taille + supplement > donnees.length) {
+                byte[] agrandi = new byte[Math.max(donnees.length * 2, taille + supplement)];
+                System.arraycopy(donnees, 0, agrandi, 0, taille);
+                donnees = agrandi;
+            }
+        }
+    }
+}
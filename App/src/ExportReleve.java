@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Export des relevés de compte (CSV ou largeur fixe) en flux continu.
+ * Chaque ligne est formatée directement en octets dans un ByteBuffer direct réutilisé puis
+ * écrite par un FileChannel : aucun objet n'est créé par transaction récente. L'historique complet
+ * d'un compte (archive comprise) est d'abord copié dans un journal réutilisé d'un compte à l'autre
+ * (voir GestionnaireBanque.copierHistoriqueComplet), puis formaté hors verrou.
+ */
+public class ExportReleve implements AutoCloseable {
+
+    public enum Format { CSV, LARGEUR_FIXE }
+
+    private static final int TAILLE_TAMPON = 256 * 1024;
+    private static final int TAILLE_MAX_LIGNE = 1024; // Marge suffisante pour une ligne, titulaire compris
+    private static final int LONGUEUR_MAX_TITULAIRE = 120; // Caractères conservés en CSV
+    private static final int LARGEUR_TITULAIRE = 30;
+    private static final int LARGEUR_TYPE = "TRANSFERT_REMBOURSE".length(); // Le plus long des types connus
+    private static final int LARGEUR_MONTANT = 15;
+    private static final ZoneId FUSEAU = ZoneId.systemDefault();
+
+    private final FileChannel canal;
+    private final ByteBuffer tampon = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+    private final Format format;
+    private final byte[] chiffres = new byte[20];
+    private long lignesEcrites;
+
+    private final JournalTransactions copie = new JournalTransactions(); // Historique du compte en cours d'export
+
+    // Décalage horaire valable sur [debutDecalage, finDecalage) (secondes depuis l'époque),
+    // et champs du dernier jour local formaté
+    private long debutDecalage = Long.MAX_VALUE;
+    private long finDecalage = Long.MIN_VALUE;
+    private int decalageSecondes;
+    private long jourCourant = Long.MIN_VALUE;
+    private int annee;
+    private int mois;
+    private int jourDuMois;
+
+    /**
+     * Ouvre (ou remplace) le fichier de relevé et écrit la ligne d'en-tête.
+     */
+    public ExportReleve(Path fichier, Format format) throws IOException {
+        this.canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.format = format;
+        ecrireEntete();
+    }
+
+    /**
+     * Exporte l'historique complet d'un compte, transactions archivées comprises.
+     */
+    public void exporterCompte(GestionnaireBanque gestionnaire, CompteBancaire compte) throws IOException {
+        // Le titulaire est encodé une seule fois par compte, pas à chaque ligne
+        byte[] titulaire = encoderTitulaire(compte.getNomTitulaire());
+        int numero = compte.getNumeroCompte();
+        gestionnaire.copierHistoriqueComplet(compte, copie);
+        for (int i = 0; i < copie.taille(); i++) {
+            ecrireLigne(numero, titulaire, copie.getDate(i), copie.getMontant(i), copie.getType(i));
+        }
+    }
+
+    /**
+     * Exporte l'historique de tous les comptes de la banque, compte par compte, pendant que les opérations
+     * continuent (en mode tas borné, seulement les comptes en mémoire, comme getComptes()).
+     */
+    public void exporterBanque(GestionnaireBanque gestionnaire) throws IOException {
+        for (CompteBancaire compte : gestionnaire.instantaneComptes()) {
+            exporterCompte(gestionnaire, compte);
+        }
+    }
+
+    public long getLignesEcrites() {
+        return lignesEcrites;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vider();
+        } finally {
+            canal.close();
+        }
+    }
+
+    // --- Formatage des lignes ---
+
+    private void ecrireEntete() throws IOException {
+        String entete = format == Format.CSV
+                ? "compte,titulaire,date_heure,type,montant\n"
+                : String.format("%10s %-" + LARGEUR_TITULAIRE + "s %-19s %-" + LARGEUR_TYPE + "s %" + LARGEUR_MONTANT + "s\n",
+                        "Compte", "Titulaire", "Date & Heure", "Type", "Montant");
+        tampon.put(entete.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void ecrireLigne(int numero, byte[] titulaire, long date, double montant, String type) throws IOException {
+        if (tampon.remaining() < TAILLE_MAX_LIGNE) {
+            vider();
+        }
+        long centimes = Math.round(montant * 100) * (Transaction.signe(type) < 0 ? -1 : 1);
+        if (format == Format.CSV) {
+            ecrireEntier(numero, 0);
+            tampon.put((byte) ',');
+            tampon.put(titulaire);
+            tampon.put((byte) ',');
+            ecrireDate(date);
+            tampon.put((byte) ',');
+            ecrireAscii(type, 0);
+            tampon.put((byte) ',');
+            ecrireMontant(centimes, 0);
+        } else {
+            ecrireEntier(numero, 10);
+            tampon.put((byte) ' ');
+            tampon.put(titulaire);
+            tampon.put((byte) ' ');
+            ecrireDate(date);
+            tampon.put((byte) ' ');
+            ecrireAscii(type, LARGEUR_TYPE);
+            tampon.put((byte) ' ');
+            ecrireMontant(centimes, LARGEUR_MONTANT);
+        }
+        tampon.put((byte) '\n');
+        lignesEcrites++;
+    }
+
+    /**
+     * Écrit la date (ms depuis l'époque, heure locale) au format yyyy-MM-dd HH:mm:ss, sans DateTimeFormatter.
+     * Le décalage horaire n'est recalculé qu'au franchissement d'un changement d'heure, l'année, le mois
+     * et le jour qu'au changement de jour.
+     */
+    private void ecrireDate(long millis) {
+        long secondes = Math.floorDiv(millis, 1000);
+        if (secondes < debutDecalage || secondes >= finDecalage) {
+            Instant instant = Instant.ofEpochSecond(secondes);
+            ZoneRules regles = FUSEAU.getRules();
+            decalageSecondes = regles.getOffset(instant).getTotalSeconds();
+            ZoneOffsetTransition precedente = regles.previousTransition(instant.plusSeconds(1));
+            ZoneOffsetTransition suivante = regles.nextTransition(instant);
+            debutDecalage = precedente == null ? Long.MIN_VALUE : precedente.toEpochSecond();
+            finDecalage = suivante == null ? Long.MAX_VALUE : suivante.toEpochSecond();
+        }
+        long locales = secondes + decalageSecondes;
+        if (Math.floorDiv(locales, 86_400) != jourCourant) {
+            jourCourant = Math.floorDiv(locales, 86_400);
+            LocalDate jour = LocalDate.ofEpochDay(jourCourant);
+            annee = jour.getYear();
+            mois = jour.getMonthValue();
+            jourDuMois = jour.getDayOfMonth();
+        }
+        int seconde = Math.floorMod(locales, 86_400);
+        ecrireZeros(annee, 4);
+        tampon.put((byte) '-');
+        ecrireZeros(mois, 2);
+        tampon.put((byte) '-');
+        ecrireZeros(jourDuMois, 2);
+        tampon.put((byte) ' ');
+        ecrireZeros(seconde / 3600, 2);
+        tampon.put((byte) ':');
+        ecrireZeros(seconde / 60 % 60, 2);
+        tampon.put((byte) ':');
+        ecrireZeros(seconde % 60, 2);
+    }
+
+    private void ecrireZeros(int valeur, int largeur) {
+        for (int i = largeur - 1; i >= 0; i--) {
+            chiffres[i] = (byte) ('0' + valeur % 10);
+            valeur /= 10;
+        }
+        tampon.put(chiffres, 0, largeur);
+    }
+
+    /**
+     * Écrit un montant en centimes sous la forme [-]unités.cc, aligné à droite sur largeur (0 = pas d'alignement).
+     */
+    private void ecrireMontant(long centimes, int largeur) {
+        boolean negatif = centimes < 0;
+        long reste = Math.abs(centimes);
+        int pos = chiffres.length;
+        chiffres[--pos] = (byte) ('0' + reste % 10);
+        reste /= 10;
+        chiffres[--pos] = (byte) ('0' + reste % 10);
+        reste /= 10;
+        chiffres[--pos] = '.';
+        do {
+            chiffres[--pos] = (byte) ('0' + reste % 10);
+            reste /= 10;
+        } while (reste > 0);
+        if (negatif) {
+            chiffres[--pos] = '-';
+        }
+        ecrireAligne(pos, largeur);
+    }
+
+    private void ecrireEntier(int valeur, int largeur) {
+        long reste = Math.abs((long) valeur);
+        int pos = chiffres.length;
+        do {
+            chiffres[--pos] = (byte) ('0' + reste % 10);
+            reste /= 10;
+        } while (reste > 0);
+        if (valeur < 0) {
+            chiffres[--pos] = '-';
+        }
+        ecrireAligne(pos, largeur);
+    }
+
+    private void ecrireAligne(int debut, int largeur) {
+        int longueur = chiffres.length - debut;
+        for (int i = longueur; i < largeur; i++) {
+            tampon.put((byte) ' ');
+        }
+        tampon.put(chiffres, debut, longueur);
+    }
+
+    /**
+     * Les types de transaction sont en ASCII : copie caractère par caractère, complétée par des espaces jusqu'à largeur.
+     */
+    private void ecrireAscii(String texte, int largeur) {
+        int longueur = texte.length();
+        for (int i = 0; i < longueur; i++) {
+            tampon.put((byte) texte.charAt(i));
+        }
+        for (int i = longueur; i < largeur; i++) {
+            tampon.put((byte) ' ');
+        }
+    }
+
+    private byte[] encoderTitulaire(String nom) {
+        if (format == Format.CSV) {
+            // Un nom démesuré ne doit pas déborder de TAILLE_MAX_LIGNE
+            if (nom.length() > LONGUEUR_MAX_TITULAIRE) {
+                nom = nom.substring(0, LONGUEUR_MAX_TITULAIRE);
+            }
+            if (nom.indexOf(',') >= 0 || nom.indexOf('"') >= 0 || nom.indexOf('\n') >= 0) {
+                nom = "\"" + nom.replace("\"", "\"\"") + "\"";
+            }
+            return nom.getBytes(StandardCharsets.UTF_8);
+        }
+        // Largeur fixe : on compte en caractères pour que les colonnes restent alignées à l'affichage
+        StringBuilder sb = new StringBuilder(LARGEUR_TITULAIRE);
+        sb.append(nom, 0, Math.min(nom.length(), LARGEUR_TITULAIRE));
+        while (sb.length() < LARGEUR_TITULAIRE) {
+            sb.append(' ');
+        }
+        return sb.toString().replace('\n', ' ').getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void vider() throws IOException {
+        tampon.flip();
+        while (tampon.hasRemaining()) {
+            canal.write(tampon);
+        }
+        tampon.clear();
+    }
+}
@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Générateur de charge synthétique et outil de dimensionnement.
+ *
+ * Pour chaque taille de banque demandée : construit N comptes via GestionnaireBanque, avec des
+ * historiques dont la longueur suit la même loi que le trafic, mesure le tas occupé par compte et les
+ * temps de sauvegarde et de chargement, puis lance un mélange de dépôts, retraits, transferts et
+ * lectures d'historique depuis plusieurs threads. Les comptes sont choisis selon une loi de Zipf :
+ * quelques comptes chauds reçoivent l'essentiel du trafic, comme en production.
+ *
+ * Débit et percentiles de latence sont affichés à intervalle régulier, puis résumés par taille.
+ * La sauvegarde automatique est désactivée pendant la charge (elle est mesurée à part).
+ *
+ * Usage : java GenerateurCharge [tailles] [threads] [durée_s] [exposant_zipf] [mélange] [historique_moyen]
+ *   tailles : nombres de comptes séparés par des virgules (10000,100000)
+ *   mélange : pourcentages dépôt,retrait,transfert,historique (40,30,20,10)
+ */
+public class GenerateurCharge {
+
+    private static final int INTERVALLE_RAPPORT_S = 5;
+    private static final int TRANSACTIONS_LUES = 20; // Comme la page d'historique de l'API
+
+    private final int threads;
+    private final int dureeSecondes;
+    private final double exposant;
+    private final int[] melange; // Seuils cumulés sur 100 : dépôt, retrait, transfert, historique
+    private final int historiqueMoyen;
+
+    private final HistogrammeLatence latencesIntervalle = new HistogrammeLatence();
+    private final HistogrammeLatence latencesTotal = new HistogrammeLatence();
+    private final LongAdder echecs = new LongAdder();
+
+    public GenerateurCharge(int threads, int dureeSecondes, double exposant, int[] pourcentages, int historiqueMoyen) {
+        this.threads = threads;
+        this.dureeSecondes = dureeSecondes;
+        this.exposant = exposant;
+        this.historiqueMoyen = historiqueMoyen;
+        this.melange = new int[pourcentages.length];
+        int cumul = 0;
+        for (int i = 0; i < pourcentages.length; i++) {
+            cumul += pourcentages[i];
+            melange[i] = cumul;
+        }
+        if (cumul != 100) {
+            throw new IllegalArgumentException("Le mélange doit totaliser 100 % (" + cumul + ")");
+        }
+    }
+
+    /**
+     * Tirage de comptes selon une loi de Zipf : le compte de rang k est choisi avec une probabilité
+     * proportionnelle à 1/k^exposant. Les rangs sont attribués aux numéros dans un ordre aléatoire fixe,
+     * pour que les comptes chauds ne soient pas simplement les premiers créés.
+     */
+    static final class DistributionZipf {
+        private final double[] repartition;
+        private final int[] numeroParRang;
+
+        DistributionZipf(int nombreComptes, double exposant, long graine) {
+            repartition = new double[nombreComptes];
+            double cumul = 0;
+            for (int rang = 0; rang < nombreComptes; rang++) {
+                cumul += 1 / Math.pow(rang + 1, exposant);
+                repartition[rang] = cumul;
+            }
+            for (int rang = 0; rang < nombreComptes; rang++) {
+                repartition[rang] /= cumul;
+            }
+            numeroParRang = new int[nombreComptes];
+            SplittableRandom aleatoire = new SplittableRandom(graine);
+            for (int i = 0; i < nombreComptes; i++) {
+                int j = aleatoire.nextInt(i + 1); // Mélange de Fisher-Yates des numéros 1..N
+                numeroParRang[i] = numeroParRang[j];
+                numeroParRang[j] = i + 1;
+            }
+        }
+
+        /**
+         * Probabilité de tirer le compte de rang donné (0 : le plus chaud).
+         */
+        double probabilite(int rang) {
+            return rang == 0 ? repartition[0] : repartition[rang] - repartition[rang - 1];
+        }
+
+        int numero(int rang) {
+            return numeroParRang[rang];
+        }
+
+        int tirer(SplittableRandom aleatoire) {
+            int rang = Arrays.binarySearch(repartition, aleatoire.nextDouble());
+            rang = rang >= 0 ? rang : Math.min(-rang - 1, repartition.length - 1);
+            return numeroParRang[rang];
+        }
+    }
+
+    /**
+     * Mesures d'une taille de banque, pour le tableau de dimensionnement final.
+     */
+    static final class Mesures {
+        final int nombreComptes;
+        final long transactions;
+        final double octetsParCompte;
+        final long sauvegardeMs;
+        final long chargementMs;
+        final double debit;
+        final HistogrammeLatence latences;
+        final long echecs;
+
+        Mesures(int nombreComptes, long transactions, double octetsParCompte, long sauvegardeMs, long chargementMs,
+                double debit, HistogrammeLatence latences, long echecs) {
+            this.nombreComptes = nombreComptes;
+            this.transactions = transactions;
+            this.octetsParCompte = octetsParCompte;
+            this.sauvegardeMs = sauvegardeMs;
+            this.chargementMs = chargementMs;
+            this.debit = debit;
+            this.latences = latences;
+            this.echecs = echecs;
+        }
+    }
+
+    /**
+     * Construit, mesure et charge une banque de la taille donnée dans un répertoire temporaire.
+     */
+    public Mesures executer(int nombreComptes) throws IOException, InterruptedException {
+        Path repertoire = Files.createTempDirectory("charge-banque");
+        try {
+            String fichier = repertoire.resolve("banque.ser").toString();
+            DistributionZipf zipf = new DistributionZipf(nombreComptes, exposant, 42);
+
+            long tasAvant = tasUtilise();
+            GestionnaireBanque gestionnaire = new GestionnaireBanque(fichier);
+            gestionnaire.setSauvegardeAutomatique(false);
+            long transactions = construire(gestionnaire, zipf, nombreComptes);
+
+            long debut = System.nanoTime();
+            gestionnaire.sauvegarderDonnees();
+            long sauvegardeMs = (System.nanoTime() - debut) / 1_000_000;
+
+            // Tas mesuré sur la banque rechargée, sans les déchets de la construction
+            gestionnaire = null;
+            debut = System.nanoTime();
+            gestionnaire = new GestionnaireBanque(fichier);
+            long chargementMs = (System.nanoTime() - debut) / 1_000_000;
+            double octetsParCompte = (double) (tasUtilise() - tasAvant) / nombreComptes;
+            System.out.printf("%d comptes, %d transactions : %.0f octets/compte, sauvegarde %d ms, chargement %d ms%n",
+                    nombreComptes, transactions, octetsParCompte, sauvegardeMs, chargementMs);
+
+            gestionnaire.setSauvegardeAutomatique(false);
+            double debit = charger(gestionnaire, zipf);
+            return new Mesures(nombreComptes, transactions, octetsParCompte, sauvegardeMs, chargementMs, debit,
+                    latencesTotal, echecs.sum());
+        } finally {
+            try (Stream<Path> fichiers = Files.walk(repertoire)) {
+                for (Path fichier : (Iterable<Path>) fichiers.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(fichier);
+                }
+            }
+        }
+    }
+
+    /**
+     * Crée les comptes ; la longueur de l'historique d'un compte est proportionnelle à sa probabilité
+     * d'être tiré (historiqueMoyen transactions en moyenne, au plus 100 fois plus pour les plus chauds).
+     * @return Nombre de transactions créées.
+     */
+    private long construire(GestionnaireBanque gestionnaire, DistributionZipf zipf, int nombreComptes) {
+        long transactions = 0;
+        for (int rang = 0; rang < nombreComptes; rang++) {
+            int numero = zipf.numero(rang);
+            gestionnaire.creerCompte(numero, "Titulaire " + numero, 1_000_000);
+            long longueur = Math.round(historiqueMoyen * (double) nombreComptes * zipf.probabilite(rang));
+            longueur = Math.max(1, Math.min(longueur, 100L * historiqueMoyen));
+            for (long i = 1; i < longueur; i++) {
+                gestionnaire.effectuerDepot(numero, 1 + i % 50);
+            }
+            transactions += longueur;
+        }
+        return transactions;
+    }
+
+    /**
+     * Lance la charge pendant la durée prévue et affiche débit et latences à chaque intervalle.
+     * @return Débit moyen (opérations par seconde).
+     */
+    private double charger(GestionnaireBanque gestionnaire, DistributionZipf zipf) throws InterruptedException {
+        latencesIntervalle.reinitialiser();
+        latencesTotal.reinitialiser();
+        echecs.reset();
+        long fin = System.nanoTime() + dureeSecondes * 1_000_000_000L;
+        List<Thread> travailleurs = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom aleatoire = new SplittableRandom(1000 + t);
+            Thread travailleur = new Thread(() -> {
+                while (System.nanoTime() < fin) {
+                    long debut = System.nanoTime();
+                    boolean succes = operation(gestionnaire, zipf, aleatoire);
+                    long duree = System.nanoTime() - debut;
+                    latencesIntervalle.enregistrer(duree);
+                    latencesTotal.enregistrer(duree);
+                    if (!succes) {
+                        echecs.increment();
+                    }
+                }
+            }, "charge-" + t);
+            travailleurs.add(travailleur);
+            travailleur.start();
+        }
+        long depart = System.nanoTime();
+        long precedent = depart;
+        while (System.nanoTime() < fin) {
+            Thread.sleep(Math.max(1, Math.min(INTERVALLE_RAPPORT_S * 1000L, (fin - System.nanoTime()) / 1_000_000)));
+            long maintenant = System.nanoTime();
+            long operations = latencesIntervalle.getNombre();
+            System.out.printf("  t=%3ds %9.0f op/s  p50=%s p99=%s p99.9=%s max=%s%n",
+                    (maintenant - depart) / 1_000_000_000, operations * 1e9 / (maintenant - precedent),
+                    micros(latencesIntervalle.getPercentile(0.50)), micros(latencesIntervalle.getPercentile(0.99)),
+                    micros(latencesIntervalle.getPercentile(0.999)), micros(latencesIntervalle.getMaximum()));
+            latencesIntervalle.reinitialiser();
+            precedent = maintenant;
+        }
+        for (Thread travailleur : travailleurs) {
+            travailleur.join();
+        }
+        return latencesTotal.getNombre() * 1e9 / (System.nanoTime() - depart);
+    }
+
+    private boolean operation(GestionnaireBanque gestionnaire, DistributionZipf zipf, SplittableRandom aleatoire) {
+        int tirage = aleatoire.nextInt(100);
+        int numero = zipf.tirer(aleatoire);
+        double montant = 1 + aleatoire.nextInt(100);
+        if (tirage < melange[0]) {
+            return gestionnaire.effectuerDepot(numero, montant).estSucces();
+        } else if (tirage < melange[1]) {
+            return gestionnaire.effectuerRetrait(numero, montant).estSucces();
+        } else if (tirage < melange[2]) {
+            int cible = zipf.tirer(aleatoire);
+            return cible == numero || gestionnaire.effectuerTransfert(numero, cible, montant).estSucces();
+        }
+        CompteBancaire compte = gestionnaire.trouverCompte(numero);
+        if (compte == null) {
+            return false;
+        }
+        List<Transaction> recentes;
+        synchronized (compte) {
+            List<Transaction> historique = compte.getHistoriqueTransactions();
+            recentes = new ArrayList<>(historique.subList(Math.max(0, historique.size() - TRANSACTIONS_LUES),
+                    historique.size()));
+        }
+        return !recentes.isEmpty();
+    }
+
+    private static long tasUtilise() {
+        MemoryMXBean memoire = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memoire.getHeapMemoryUsage().getUsed();
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1fµs", nanos / 1000.0);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int[] tailles = Arrays.stream((args.length > 0 ? args[0] : "10000,100000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int duree = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        double exposant = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+        int[] melange = Arrays.stream((args.length > 4 ? args[4] : "40,30,20,10").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int historiqueMoyen = args.length > 5 ? Integer.parseInt(args[5]) : 20;
+
+        List<Mesures> resultats = new ArrayList<>();
+        for (int taille : tailles) {
+            GenerateurCharge generateur = new GenerateurCharge(threads, duree, exposant, melange, historiqueMoyen);
+            resultats.add(generateur.executer(taille));
+        }
+        System.out.println();
+        System.out.println("   comptes  transactions  octets/compte  sauvegarde  chargement       op/s      p50      p99    p99.9      max  échecs");
+        for (Mesures m : resultats) {
+            System.out.printf("%10d %13d %14.0f %9dms %9dms %10.0f %8s %8s %8s %8s %7d%n", m.nombreComptes, m.transactions,
+                    m.octetsParCompte, m.sauvegardeMs, m.chargementMs, m.debit,
+                    micros(m.latences.getPercentile(0.50)), micros(m.latences.getPercentile(0.99)),
+                    micros(m.latences.getPercentile(0.999)), micros(m.latences.getMaximum()), m.echecs);
+        }
+    }
+}
@@ -1,57 +1,618 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import javax.management.JMException;
 
 /**
  * Gère la collection de comptes et la persistance des données (sauvegarde/chargement).
  */
-public class GestionnaireBanque implements Serializable {
+public class GestionnaireBanque implements Serializable, ObservateurCompte {
     private static final long serialVersionUID = 2L;
     private static final String FICHIER_SAUVEGARDE = "donnees_banque.ser";
 
     private List<CompteBancaire> comptes;
+    private final String fichierSauvegarde;
+    private volatile boolean sauvegardeAutomatique = true; // Sauvegarde après chaque opération réussie
+    private transient volatile ControleVelocite controleVelocite; // Plafonds des retraits et transferts émis, ou null
+
+    // Les opérations sur des comptes existants partagent le verrou (chaque compte se verrouille lui-même) ;
+    // création, suppression, sauvegarde et chargement le prennent en exclusivité.
+    private final transient ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    // Clés d'idempotence des dernières 24 h, sauvegardées avec les comptes
+    private final transient CacheIdempotence cacheIdempotence = new CacheIdempotence(100_000, 24 * 3600 * 1000L);
+
+    // Mode « tas borné » : comptes stockés dans une table mappée, seuls les plus récents en mémoire (null sinon)
+    private final transient TableComptesMappee table;
+    private final transient CacheComptes cache;
+
+    // Sauvegarde incrémentale du mode mémoire complète (null en mode tas borné)
+    private final transient SauvegardePaginee persistance;
+    private transient boolean fichierSauvegardeEcrit; // Mode mémoire complète : le fichier ne change plus une fois écrit
+
+    // Latences et résultats des opérations, publiables en JMX
+    private final transient MetriquesBanque metriques;
+
+    // Segments d'historique ancien, ouverts à la première utilisation
+    private transient ArchiveHistorique archive;
+
+    // Index et classements reconstruits au chargement (non sérialisés), sous leur propre moniteur
+    private final transient Object verrouClassements = new Object();
+    private transient IndexComptes index = new IndexComptes(16);
+    private transient ClassementComptes classementSoldes = new ClassementComptes();
+    private transient ClassementComptes classementMouvements = new ClassementComptes();
+    private transient long jourClassementMouvements = CompteBancaire.jourCourant();
 
     public GestionnaireBanque() {
+        this(FICHIER_SAUVEGARDE);
+    }
+
+    /**
+     * Crée un gestionnaire adossé à un fichier de sauvegarde donné.
+     * @param fichierSauvegarde Chemin du fichier de sauvegarde (chargé s'il existe).
+     */
+    public GestionnaireBanque(String fichierSauvegarde) {
         this.comptes = new ArrayList<>();
+        this.fichierSauvegarde = fichierSauvegarde;
+        this.table = null;
+        this.cache = null;
+        this.persistance = new SauvegardePaginee(fichierSauvegarde);
+        this.metriques = new MetriquesBanque(this, fichierSauvegarde);
         // Tente de charger les données existantes au démarrage
         chargerDonnees();
     }
 
+    /**
+     * Crée un gestionnaire en mode « tas borné » pour les très grosses banques : les comptes résident
+     * dans une table mappée (fichierSauvegarde.tbl, .idx, .noms) et seuls les plus récemment utilisés
+     * sont gardés en mémoire. Un compte modifié est réécrit à son éviction (ses transactions partent
+     * dans l'archive d'historique) ; le fichier de sauvegarde ne contient plus que les clés d'idempotence.
+     * Les classements (topN...) ne sont maintenus qu'en mode mémoire complète.
+     * @param capaciteCache Nombre de comptes gardés en mémoire.
+     */
+    public GestionnaireBanque(String fichierSauvegarde, int capaciteCache) throws IOException {
+        this.comptes = new ArrayList<>();
+        this.fichierSauvegarde = fichierSauvegarde;
+        this.table = new TableComptesMappee(fichierSauvegarde);
+        this.cache = new CacheComptes(capaciteCache);
+        this.persistance = null;
+        this.metriques = new MetriquesBanque(this, fichierSauvegarde);
+        chargerDonnees();
+    }
+
     /**
      * Tente d'ajouter un nouveau compte. Vérifie si le numéro existe déjà.
      * @return true si l'ajout a réussi, false si le numéro est déjà pris.
      */
     public boolean ajouterCompte(int numero, String nom, double soldeInitial) {
-        if (trouverCompte(numero) == null) {
-            comptes.add(new CompteBancaire(numero, nom, soldeInitial));
-            sauvegarderDonnees();
+        return creerCompte(numero, nom, soldeInitial).estSucces();
+    }
+
+    /**
+     * Crée un nouveau compte après vérification du numéro et du solde initial.
+     */
+    public ResultatOperation creerCompte(int numero, String nom, double soldeInitial) {
+        long debut = System.nanoTime();
+        if (soldeInitial < 0) {
+            return metriques.enregistrer(MetriquesBanque.Operation.CREATION, ResultatOperation.MONTANT_INVALIDE, debut);
+        }
+        verrou.writeLock().lock();
+        try {
+            if (trouverCompte(numero) != null) {
+                return metriques.enregistrer(MetriquesBanque.Operation.CREATION, ResultatOperation.NUMERO_EXISTANT, debut);
+            }
+            enregistrerCompte(new CompteBancaire(numero, nom, soldeInitial));
+        } finally {
+            verrou.writeLock().unlock();
+        }
+        sauvegardeApresOperation();
+        return metriques.enregistrer(MetriquesBanque.Operation.CREATION, ResultatOperation.SUCCES, debut);
+    }
+
+    /**
+     * Ajoute le compte si son numéro est libre, sans sauvegarder (import en masse) : la vérification
+     * et l'ajout se font sous le même verrou exclusif.
+     * @return false si le numéro existe déjà.
+     */
+    boolean enregistrerSiAbsent(CompteBancaire compte) {
+        verrou.writeLock().lock();
+        try {
+            if (trouverCompte(compte.getNumeroCompte()) != null) {
+                return false;
+            }
+            enregistrerCompte(compte);
             return true;
+        } finally {
+            verrou.writeLock().unlock();
         }
-        return false;
     }
     
+    /**
+     * Ajoute un compte dont le numéro a déjà été vérifié sous le verrou exclusif, sans sauvegarder.
+     */
+    private void enregistrerCompte(CompteBancaire compte) {
+        verrou.writeLock().lock();
+        try {
+            if (cache != null) {
+                // Solde nul dans la table : le solde réel y sera écrit avec la transaction DEPOT_INITIAL
+                table.creerCompte(compte.getNumeroCompte(), compte.getNomTitulaire(), 0);
+                cache.ajouter(compte);
+                evincerSiNecessaire();
+            } else {
+                comptes.add(compte);
+                indexerCompte(compte);
+                persistance.marquerCree(compte);
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
     /**
      * Effectue un transfert de fonds entre deux comptes.
      * @return true si le transfert a réussi, false sinon.
      */
     public boolean transfererFonds(int numSource, int numCible, double montant) {
+        return effectuerTransfert(numSource, numCible, montant).estSucces();
+    }
+
+    /**
+     * Effectue un transfert de fonds entre deux comptes en précisant la raison d'un éventuel échec.
+     */
+    public ResultatOperation effectuerTransfert(int numSource, int numCible, double montant) {
+        return effectuerTransfert(numSource, numCible, montant, null);
+    }
+
+    /**
+     * Variante idempotente : une clé déjà vue renvoie le résultat de la première exécution sans rejouer l'opération.
+     * @param cleIdempotence Clé fournie par le client, ou null.
+     */
+    public ResultatOperation effectuerTransfert(int numSource, int numCible, double montant, String cleIdempotence) {
+        EvenementsBanque.Transfert evenement = EvenementsBanque.Transfert.commencer();
+        long debut = System.nanoTime();
+        ResultatOperation resultat = executerTransfert(numSource, numCible, montant, cleIdempotence);
+        metriques.enregistrer(MetriquesBanque.Operation.TRANSFERT, resultat, debut);
+        if (evenement != null) {
+            evenement.terminer(numSource, numCible, montant, resultat);
+        }
+        return resultat;
+    }
+
+    private ResultatOperation executerTransfert(int numSource, int numCible, double montant, String cleIdempotence) {
+        ResultatOperation resultat;
+        verrou.readLock().lock();
+        try {
+            if (cleIdempotence == null) {
+                resultat = transfert(numSource, numCible, montant);
+            } else {
+                CacheIdempotence.Entree deja = cacheIdempotence.reserver(cleIdempotence);
+                if (deja != null) {
+                    return deja.attendre();
+                }
+                resultat = executerIdempotent(cleIdempotence, () -> transfert(numSource, numCible, montant));
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        if (resultat.estSucces()) {
+            sauvegardeApresOperation();
+        }
+        return resultat;
+    }
+
+    /**
+     * Exécute une série de transferts (virements planifiés arrivés à échéance ensemble) sous une seule
+     * prise du verrou partagé, avec au plus une sauvegarde à la fin. Une clé déjà vue n'est pas rejouée :
+     * son résultat est celui de la première exécution.
+     * @param cles Clés d'idempotence (éléments null permis).
+     * @return Le résultat de chaque transfert, dans l'ordre.
+     */
+    ResultatOperation[] effectuerTransferts(int nombre, int[] sources, int[] cibles, double[] montants, String[] cles) {
+        ResultatOperation[] resultats = new ResultatOperation[nombre];
+        boolean modifie = false;
+        verrou.readLock().lock();
+        try {
+            for (int i = 0; i < nombre; i++) {
+                long debut = System.nanoTime();
+                int source = sources[i];
+                int cible = cibles[i];
+                double montant = montants[i];
+                if (cles[i] == null) {
+                    resultats[i] = transfert(source, cible, montant);
+                    modifie |= resultats[i].estSucces();
+                } else {
+                    CacheIdempotence.Entree deja = cacheIdempotence.reserver(cles[i]);
+                    if (deja != null) {
+                        resultats[i] = deja.attendre();
+                    } else {
+                        resultats[i] = executerIdempotent(cles[i], () -> transfert(source, cible, montant));
+                        modifie |= resultats[i].estSucces();
+                    }
+                }
+                metriques.enregistrer(MetriquesBanque.Operation.TRANSFERT, resultats[i], debut);
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        if (modifie) {
+            sauvegardeApresOperation();
+        }
+        return resultats;
+    }
+
+    private ResultatOperation transfert(int numSource, int numCible, double montant) {
         CompteBancaire source = trouverCompte(numSource);
         CompteBancaire cible = trouverCompte(numCible);
         
-        if (source == null || cible == null || montant <= 0 || numSource == numCible) {
-            return false; // Erreur: comptes non trouvés, montant invalide ou même compte
+        if (source == null || cible == null) {
+            return ResultatOperation.COMPTE_INCONNU;
         }
-        
-        // 1. Tenter le retrait (avec enregistrement du type TRANSFERT_EMIS)
-        if (source.retirer(montant, "TRANSFERT_EMIS")) {
-            // 2. Effectuer le dépôt sur le compte cible (avec enregistrement du type TRANSFERT_RECU)
-            cible.recevoirTransfert(montant); 
-            sauvegarderDonnees();
-            return true;
+        if (!(montant > 0)) {
+            return ResultatOperation.MONTANT_INVALIDE;
+        }
+        if (numSource == numCible) {
+            return ResultatOperation.MEME_COMPTE;
+        }
+
+        // Verrouillage des deux comptes toujours dans l'ordre des numéros pour éviter les interblocages
+        CompteBancaire premier = numSource < numCible ? source : cible;
+        CompteBancaire second = premier == source ? cible : source;
+        synchronized (premier) {
+            synchronized (second) {
+                // 1. Tenter le retrait (avec enregistrement du type TRANSFERT_EMIS)
+                ResultatOperation debit = source.retirer(montant, "TRANSFERT_EMIS", controleVelocite, numCible);
+                if (debit.estSucces()) {
+                    // 2. Effectuer le dépôt sur le compte cible (avec enregistrement du type TRANSFERT_RECU)
+                    cible.recevoirTransfert(montant, numSource);
+                }
+                return debit; // Retrait impossible : solde insuffisant ou plafond de vélocité atteint
+            }
         }
-        return false; // Retrait impossible (solde insuffisant)
     }
 
+    /**
+     * Dépose un montant sur un compte.
+     */
+    public ResultatOperation effectuerDepot(int numero, double montant) {
+        return effectuerDepot(numero, montant, null);
+    }
+
+    /**
+     * Variante idempotente : une clé déjà vue renvoie le résultat de la première exécution sans rejouer l'opération.
+     * @param cleIdempotence Clé fournie par le client, ou null.
+     */
+    public ResultatOperation effectuerDepot(int numero, double montant, String cleIdempotence) {
+        EvenementsBanque.Mouvement evenement = EvenementsBanque.Mouvement.commencer();
+        long debut = System.nanoTime();
+        ResultatOperation resultat = executerDepot(numero, montant, cleIdempotence);
+        metriques.enregistrer(MetriquesBanque.Operation.DEPOT, resultat, debut);
+        if (evenement != null) {
+            evenement.terminer("DEPOT", numero, montant, resultat);
+        }
+        return resultat;
+    }
+
+    private ResultatOperation executerDepot(int numero, double montant, String cleIdempotence) {
+        ResultatOperation resultat;
+        verrou.readLock().lock();
+        try {
+            if (cleIdempotence == null) {
+                resultat = depot(numero, montant);
+            } else {
+                CacheIdempotence.Entree deja = cacheIdempotence.reserver(cleIdempotence);
+                if (deja != null) {
+                    return deja.attendre();
+                }
+                resultat = executerIdempotent(cleIdempotence, () -> depot(numero, montant));
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        if (resultat.estSucces()) {
+            sauvegardeApresOperation();
+        }
+        return resultat;
+    }
+
+    private ResultatOperation depot(int numero, double montant) {
+        CompteBancaire compte = trouverCompte(numero);
+        if (compte == null) {
+            return ResultatOperation.COMPTE_INCONNU;
+        }
+        if (!(montant > 0)) {
+            return ResultatOperation.MONTANT_INVALIDE;
+        }
+        compte.deposer(montant);
+        return ResultatOperation.SUCCES;
+    }
+
+    /**
+     * Retire un montant d'un compte si le solde le permet.
+     */
+    public ResultatOperation effectuerRetrait(int numero, double montant) {
+        return effectuerRetrait(numero, montant, null);
+    }
+
+    /**
+     * Variante idempotente : une clé déjà vue renvoie le résultat de la première exécution sans rejouer l'opération.
+     * @param cleIdempotence Clé fournie par le client, ou null.
+     */
+    public ResultatOperation effectuerRetrait(int numero, double montant, String cleIdempotence) {
+        EvenementsBanque.Mouvement evenement = EvenementsBanque.Mouvement.commencer();
+        long debut = System.nanoTime();
+        ResultatOperation resultat = executerRetrait(numero, montant, cleIdempotence);
+        metriques.enregistrer(MetriquesBanque.Operation.RETRAIT, resultat, debut);
+        if (evenement != null) {
+            evenement.terminer("RETRAIT", numero, montant, resultat);
+        }
+        return resultat;
+    }
+
+    private ResultatOperation executerRetrait(int numero, double montant, String cleIdempotence) {
+        ResultatOperation resultat;
+        verrou.readLock().lock();
+        try {
+            if (cleIdempotence == null) {
+                resultat = retrait(numero, montant);
+            } else {
+                CacheIdempotence.Entree deja = cacheIdempotence.reserver(cleIdempotence);
+                if (deja != null) {
+                    return deja.attendre();
+                }
+                resultat = executerIdempotent(cleIdempotence, () -> retrait(numero, montant));
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        if (resultat.estSucces()) {
+            sauvegardeApresOperation();
+        }
+        return resultat;
+    }
+
+    private ResultatOperation retrait(int numero, double montant) {
+        CompteBancaire compte = trouverCompte(numero);
+        if (compte == null) {
+            return ResultatOperation.COMPTE_INCONNU;
+        }
+        if (!(montant > 0)) {
+            return ResultatOperation.MONTANT_INVALIDE;
+        }
+        return compte.retirer(montant, "RETRAIT", controleVelocite);
+    }
+
+    /**
+     * Applique une seule jambe d'une opération coordonnée ailleurs (transfert entre partitions) :
+     * débit si le type est un débit (voir Transaction.signe), crédit sinon.
+     * @param contrepartie Compte d'en face, noté dans l'historique pour le rapprochement.
+     * @param cleIdempotence Clé de la jambe : une reprise après arrêt ne la rejoue pas si elle a été sauvegardée.
+     */
+    ResultatOperation appliquerMouvement(int numero, double montant, String type, int contrepartie, String cleIdempotence) {
+        long debut = System.nanoTime();
+        ResultatOperation resultat;
+        verrou.readLock().lock();
+        try {
+            CacheIdempotence.Entree deja = cacheIdempotence.reserver(cleIdempotence);
+            if (deja != null) {
+                return deja.attendre();
+            }
+            resultat = executerIdempotent(cleIdempotence, () -> mouvement(numero, montant, type, contrepartie));
+        } finally {
+            verrou.readLock().unlock();
+        }
+        if (resultat.estSucces()) {
+            sauvegardeApresOperation();
+        }
+        return metriques.enregistrer(MetriquesBanque.Operation.MOUVEMENT, resultat, debut);
+    }
+
+    private ResultatOperation mouvement(int numero, double montant, String type, int contrepartie) {
+        CompteBancaire compte = trouverCompte(numero);
+        if (compte == null) {
+            return ResultatOperation.COMPTE_INCONNU;
+        }
+        if (!(montant > 0)) {
+            return ResultatOperation.MONTANT_INVALIDE;
+        }
+        if (Transaction.signe(type) < 0) {
+            return compte.retirer(montant, type, controleVelocite, contrepartie);
+        }
+        if ("TRANSFERT_REMBOURSE".equals(type)) {
+            compte.rembourserTransfert(montant, contrepartie);
+        } else {
+            compte.crediter(montant, type, contrepartie);
+        }
+        return ResultatOperation.SUCCES;
+    }
+
+
+    /**
+     * Applique une opération à plusieurs jambes de façon atomique : toutes les jambes sont appliquées, ou aucune.
+     */
+    public ResultatOperation executerOperationMultiple(OperationMultiple operation) {
+        return executerOperationMultiple(operation, null);
+    }
+
+    /**
+     * Variante idempotente de executerOperationMultiple.
+     * @param cleIdempotence Clé fournie par le client, ou null.
+     */
+    public ResultatOperation executerOperationMultiple(OperationMultiple operation, String cleIdempotence) {
+        long debut = System.nanoTime();
+        ResultatOperation resultat;
+        verrou.readLock().lock();
+        try {
+            if (cleIdempotence == null) {
+                resultat = operationMultiple(operation);
+            } else {
+                CacheIdempotence.Entree deja = cacheIdempotence.reserver(cleIdempotence);
+                if (deja != null) {
+                    return metriques.enregistrer(MetriquesBanque.Operation.OPERATION_MULTIPLE, deja.attendre(), debut);
+                }
+                resultat = executerIdempotent(cleIdempotence, () -> operationMultiple(operation));
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        if (resultat.estSucces()) {
+            sauvegardeApresOperation();
+        }
+        return metriques.enregistrer(MetriquesBanque.Operation.OPERATION_MULTIPLE, resultat, debut);
+    }
+
+    private ResultatOperation operationMultiple(OperationMultiple operation) {
+        ResultatOperation forme = operation.verifierForme();
+        if (!forme.estSucces()) {
+            return forme;
+        }
+        // Comptes concernés triés par numéro (ordre de verrouillage) et total débité par compte
+        TreeMap<Integer, CompteBancaire> concernes = new TreeMap<>();
+        Map<CompteBancaire, Double> debits = new HashMap<>();
+        for (OperationMultiple.Jambe jambe : operation.getJambes()) {
+            CompteBancaire compte = trouverCompte(jambe.getNumeroCompte());
+            if (compte == null) {
+                return ResultatOperation.COMPTE_INCONNU;
+            }
+            concernes.put(compte.getNumeroCompte(), compte);
+            if (jambe.estDebit()) {
+                debits.merge(compte, jambe.getMontant(), Double::sum);
+            }
+        }
+        return verrouillerEtAppliquer(concernes.values().toArray(new CompteBancaire[0]), 0, operation, debits);
+    }
+
+    /**
+     * Verrouille les comptes un à un dans l'ordre des numéros (pas d'interblocage possible avec un
+     * transfert ou une autre opération multiple), puis vérifie et applique toutes les jambes.
+     * Chaque jambe débitrice passe le contrôle de vélocité sous ces verrous ; si l'une est refusée, les
+     * débits déjà passés sont annulés et repris de leur fenêtre.
+     * Les opérations sur d'autres comptes continuent en parallèle.
+     */
+    private ResultatOperation verrouillerEtAppliquer(CompteBancaire[] ordre, int i, OperationMultiple operation,
+                                                     Map<CompteBancaire, Double> debits) {
+        if (i < ordre.length) {
+            synchronized (ordre[i]) {
+                return verrouillerEtAppliquer(ordre, i + 1, operation, debits);
+            }
+        }
+        for (Map.Entry<CompteBancaire, Double> debit : debits.entrySet()) {
+            if (debit.getKey().getSolde() < debit.getValue()) {
+                return ResultatOperation.SOLDE_INSUFFISANT;
+            }
+        }
+        // Débits d'abord, puis crédits ; en cas d'échec inattendu, les jambes déjà passées sont compensées
+        List<CompteBancaire> appliquees = new ArrayList<>();
+        boolean complet = false;
+        try {
+            for (OperationMultiple.Jambe jambe : operation.getJambes()) {
+                if (jambe.estDebit()) {
+                    CompteBancaire compte = trouverCompte(jambe.getNumeroCompte());
+                    ResultatOperation debit = compte.retirer(jambe.getMontant(), "MULTI_DEBIT", controleVelocite);
+                    if (!debit.estSucces()) {
+                        return debit;
+                    }
+                    appliquees.add(compte);
+                }
+            }
+            for (OperationMultiple.Jambe jambe : operation.getJambes()) {
+                if (!jambe.estDebit()) {
+                    CompteBancaire compte = trouverCompte(jambe.getNumeroCompte());
+                    compte.crediter(jambe.getMontant(), "MULTI_CREDIT");
+                    appliquees.add(compte);
+                }
+            }
+            complet = true;
+            return ResultatOperation.SUCCES;
+        } finally {
+            if (!complet) {
+                for (int j = appliquees.size() - 1; j >= 0; j--) {
+                    appliquees.get(j).annulerDerniereTransaction();
+                }
+            }
+        }
+    }
+
+    /**
+     * Exécute une opération dont la clé vient d'être réservée et enregistre son résultat.
+     * Appelé sous le verrou partagé : une sauvegarde voit à la fois l'opération et sa clé, ou aucune des deux.
+     */
+    private ResultatOperation executerIdempotent(String cle, Supplier<ResultatOperation> operation) {
+        ResultatOperation resultat = null;
+        try {
+            resultat = operation.get();
+            return resultat;
+        } finally {
+            if (resultat == null) {
+                cacheIdempotence.abandonner(cle);
+            } else {
+                cacheIdempotence.terminer(cle, resultat);
+            }
+        }
+    }
+
+    public CacheIdempotence getCacheIdempotence() {
+        return cacheIdempotence;
+    }
+
+    public MetriquesBanque getMetriques() {
+        return metriques;
+    }
+
+    /**
+     * Publie les métriques du gestionnaire en JMX (voir MetriquesBanque).
+     */
+    public void publierMetriquesJmx() {
+        try {
+            metriques.publier();
+        } catch (JMException e) {
+            System.err.println("Erreur lors de la publication JMX : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Nombre de comptes, y compris ceux qui ne sont pas en mémoire en mode tas borné.
+     */
+    public long getNombreComptes() {
+        return cache != null ? table.getNombreComptes() : comptes.size();
+    }
+
+    /**
+     * Transactions récentes gardées en mémoire, tous comptes résidents confondus.
+     */
+    public long getTransactionsEnMemoire() {
+        long total = 0;
+        verrou.readLock().lock();
+        try {
+            for (CompteBancaire compte : getComptes()) {
+                total += compte.getHistoriqueTransactions().size();
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        return total;
+    }
+
+    /**
+     * Octets écrits par la dernière sauvegarde (mode mémoire complète ; 0 en mode tas borné, où les
+     * comptes sont réécrits sur place dans la table).
+     */
+    public long getOctetsDerniereSauvegarde() {
+        return persistance != null ? persistance.getOctetsEcrits() : 0;
+    }
 
     /**
      * Recherche un compte par son numéro.
@@ -59,12 +620,21 @@ public class GestionnaireBanque implements Serializable {
      * @return L'objet CompteBancaire ou null si non trouvé.
      */
     public CompteBancaire trouverCompte(int numero) {
-        for (CompteBancaire compte : comptes) {
-            if (compte.getNumeroCompte() == numero) {
-                return compte;
+        if (cache == null) {
+            return index.get(numero);
+        }
+        CompteBancaire compte = cache.get(numero);
+        if (compte == null) {
+            // Chargement sous le verrou partagé : aucune éviction ne peut réécrire ce compte pendant la lecture
+            verrou.readLock().lock();
+            try {
+                compte = chargerDepuisTable(numero);
+            } finally {
+                verrou.readLock().unlock();
             }
+            evincerSiNecessaire();
         }
-        return null;
+        return compte;
     }
 
     /**
@@ -73,46 +643,683 @@ public class GestionnaireBanque implements Serializable {
      * @return true si la suppression a réussi, false sinon.
      */
     public boolean supprimerCompte(CompteBancaire compte) {
-        boolean removed = comptes.remove(compte);
+        long debut = System.nanoTime();
+        boolean removed;
+        verrou.writeLock().lock();
+        try {
+            if (cache != null) {
+                removed = table.supprimerCompte(compte.getNumeroCompte()).estSucces();
+                cache.retirer(compte.getNumeroCompte());
+            } else {
+                removed = comptes.remove(compte);
+                if (removed) {
+                    desindexerCompte(compte);
+                    persistance.marquerSupprime(compte);
+                }
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
         if (removed) {
-            sauvegarderDonnees();
+            sauvegardeApresOperation();
         }
+        metriques.enregistrer(MetriquesBanque.Operation.SUPPRESSION,
+                removed ? ResultatOperation.SUCCES : ResultatOperation.COMPTE_INCONNU, debut);
         return removed;
     }
 
+    /**
+     * Supprime un compte à partir de son numéro.
+     */
+    public ResultatOperation supprimerCompte(int numero) {
+        long debut = System.nanoTime();
+        CompteBancaire compte = trouverCompte(numero);
+        if (compte == null) {
+            return metriques.enregistrer(MetriquesBanque.Operation.SUPPRESSION, ResultatOperation.COMPTE_INCONNU, debut);
+        }
+        return supprimerCompte(compte) ? ResultatOperation.SUCCES : ResultatOperation.COMPTE_INCONNU;
+    }
+
     // --- Persistance des Données (Backend Local) ---
 
     /**
-     * Sauvegarde la liste des comptes dans un fichier binaire (Sérialisation).
+     * Active ou désactive la sauvegarde après chaque opération réussie (activée par défaut).
+     * Les traitements en lot la désactivent et appellent sauvegarderDonnees() une seule fois à la fin.
+     */
+    public void setSauvegardeAutomatique(boolean sauvegardeAutomatique) {
+        this.sauvegardeAutomatique = sauvegardeAutomatique;
+    }
+
+    public boolean isSauvegardeAutomatique() {
+        return sauvegardeAutomatique;
+    }
+
+    /**
+     * Installe les règles de vélocité appliquées aux retraits, aux transferts émis et à chaque jambe
+     * débitrice des opérations multiples (null : aucun plafond).
+     */
+    public void setControleVelocite(ControleVelocite controleVelocite) {
+        this.controleVelocite = controleVelocite;
+    }
+
+    public ControleVelocite getControleVelocite() {
+        return controleVelocite;
+    }
+
+    private void sauvegardeApresOperation() {
+        evincerSiNecessaire();
+        if (sauvegardeAutomatique) {
+            sauvegarderDonnees();
+        }
+    }
+
+    /**
+     * Sauvegarde les comptes modifiés depuis la dernière sauvegarde et les clés d'idempotence récentes,
+     * validés ensemble par l'en-tête des pages (voir SauvegardePaginee).
+     * En mode tas borné, les comptes modifiés sont réécrits dans la table, puis les clés dans le fichier
+     * de sauvegarde.
      */
     public void sauvegarderDonnees() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(FICHIER_SAUVEGARDE))) {
-            oos.writeObject(comptes);
-            System.out.println("Données sauvegardées localement dans " + FICHIER_SAUVEGARDE);
+        sauvegarder();
+    }
+
+    /**
+     * Numéro de la dernière sauvegarde validée (chargée ou écrite), ou -1 en mode tas borné (non numéroté).
+     */
+    long getNumeroSauvegarde() {
+        return persistance != null ? persistance.getNumeroSauvegarde() : -1;
+    }
+
+    /**
+     * Dernier jour (epoch day) dont le traitement de fin de journée s'est terminé, 0 si aucun
+     * (ou en mode tas borné, où il ne s'applique pas).
+     */
+    long getJourFinDeJournee() {
+        return persistance != null ? persistance.getJourFinDeJournee() : 0;
+    }
+
+    /**
+     * Sauvegarde les comptes en notant le jour de fin de journée comme terminé : la marque est validée
+     * par le même en-tête que les comptes traités.
+     * @return false si la sauvegarde a échoué (la marque sera écrite par la prochaine).
+     */
+    boolean sauvegarderFinDeJournee(long jour) {
+        verrou.writeLock().lock();
+        try {
+            if (persistance != null) {
+                persistance.setJourFinDeJournee(jour);
+            }
+            return sauvegarder();
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Comme sauvegarderDonnees(), pour les traitements qui ne doivent continuer qu'une fois les comptes sur disque.
+     * @return false si la sauvegarde a échoué.
+     */
+    boolean sauvegarder() {
+        EvenementsBanque.Sauvegarde evenement = new EvenementsBanque.Sauvegarde();
+        evenement.begin();
+        long debut = System.nanoTime();
+        boolean reussie = false;
+        // Verrou exclusif : aucune opération ne modifie les comptes pendant l'écriture
+        verrou.writeLock().lock();
+        try {
+            if (persistance != null) {
+                ByteArrayOutputStream cles = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(cles)) {
+                    cacheIdempotence.ecrire(oos);
+                }
+                persistance.sauvegarder(comptes, cles.toByteArray());
+                if (!fichierSauvegardeEcrit) {
+                    ecrireFichierSauvegarde(false);
+                    fichierSauvegardeEcrit = true;
+                }
+            } else {
+                reecrireComptes(cache.getResidents(), false);
+                table.forcer();
+                ecrireFichierSauvegarde(true);
+            }
+            System.out.println("Données sauvegardées localement dans " + fichierSauvegarde
+                    + (persistance != null ? " (racine " + persistance.getRacine() + ")" : ""));
+            reussie = true;
         } catch (IOException e) {
             System.err.println("Erreur lors de la sauvegarde : " + e.getMessage());
+        } finally {
+            evenement.terminer(getNombreComptes(), getOctetsDerniereSauvegarde(), reussie);
+            verrou.writeLock().unlock();
+            metriques.enregistrerEntreeSortie(MetriquesBanque.Operation.SAUVEGARDE, reussie, debut);
         }
+        return reussie;
     }
 
     /**
-     * Charge la liste des comptes à partir du fichier binaire.
+     * Fichier de sauvegarde : une liste de comptes vide (les comptes sont dans les fichiers paginés ou
+     * la table ; elle reste lisible par les anciennes versions), puis les clés d'idempotence en mode tas
+     * borné. Écrit à côté, forcé sur disque puis renommé : une interruption laisse l'ancien intact.
+     */
+    private void ecrireFichierSauvegarde(boolean avecCles) throws IOException {
+        Path temporaire = Path.of(fichierSauvegarde + ".tmp");
+        try (FileOutputStream fichier = new FileOutputStream(temporaire.toFile());
+             ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(fichier))) {
+            oos.writeObject(new ArrayList<CompteBancaire>());
+            if (avecCles) {
+                cacheIdempotence.ecrire(oos);
+            }
+            oos.flush();
+            fichier.getFD().sync();
+        }
+        Files.move(temporaire, Path.of(fichierSauvegarde), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Charge les comptes (fichiers paginés, ou fichier binaire d'une version antérieure)
+     * et les clés d'idempotence.
      */
-    @SuppressWarnings("unchecked")
     public void chargerDonnees() {
-        File file = new File(FICHIER_SAUVEGARDE);
+        EvenementsBanque.Chargement evenement = new EvenementsBanque.Chargement();
+        evenement.begin();
+        long debut = System.nanoTime();
+        boolean reussi = true;
+        File file = new File(fichierSauvegarde);
+        verrou.writeLock().lock();
+        try {
+            if (persistance != null && persistance.existe()) {
+                try {
+                    comptes = persistance.charger();
+                } catch (IOException e) {
+                    System.err.println("Erreur lors du chargement des données. Nouveau gestionnaire créé.");
+                    comptes = new ArrayList<>();
+                    persistance.demanderReecritureComplete();
+                    reussi = false;
+                }
+                reconstruireIndex();
+                reussi &= chargerFichier(file, true);
+                reussi &= chargerCles(persistance.getClesChargees());
+            } else {
+                reussi = chargerFichier(file, false);
+                if (persistance != null) {
+                    persistance.demanderReecritureComplete(); // Passage au format paginé à la prochaine sauvegarde
+                }
+            }
+        } finally {
+            evenement.terminer(getNombreComptes(), reussi);
+            verrou.writeLock().unlock();
+            metriques.enregistrerEntreeSortie(MetriquesBanque.Operation.CHARGEMENT, reussi, debut);
+        }
+    }
+
+    /**
+     * Remplace les clés d'idempotence par celles validées avec les fichiers paginés (null : format
+     * antérieur, les clés du fichier de sauvegarde sont gardées).
+     */
+    private boolean chargerCles(byte[] cles) {
+        if (cles == null) {
+            return true;
+        }
+        cacheIdempotence.vider();
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(cles))) {
+            cacheIdempotence.lire(ois);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Erreur lors du chargement des clés d'idempotence : " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Lit le fichier de sauvegarde : liste des comptes (sauf s'ils viennent des fichiers paginés)
+     * puis clés d'idempotence.
+     * @return false si le fichier existe mais n'a pas pu être lu.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean chargerFichier(File file, boolean comptesPagines) {
         if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                this.comptes = (List<CompteBancaire>) ois.readObject();
-                System.out.println("Données chargées depuis " + FICHIER_SAUVEGARDE + " (" + comptes.size() + " comptes)");
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                List<CompteBancaire> lus = (List<CompteBancaire>) ois.readObject();
+                if (!comptesPagines) {
+                    this.comptes = lus;
+                    if (cache != null && !comptes.isEmpty()) {
+                        convertirVersTable();
+                    }
+                    reconstruireIndex();
+                }
+                cacheIdempotence.vider();
+                try {
+                    cacheIdempotence.lire(ois);
+                } catch (EOFException e) {
+                    // Sauvegarde antérieure aux clés d'idempotence : rien à recharger
+                }
+                System.out.println("Données chargées depuis " + fichierSauvegarde + " (" + comptes.size() + " comptes)");
             } catch (IOException | ClassNotFoundException e) {
                 System.err.println("Erreur lors du chargement des données. Nouveau gestionnaire créé.");
                 // Si le fichier est corrompu, on repart d'une liste vide
-                this.comptes = new ArrayList<>();
+                if (!comptesPagines) {
+                    this.comptes = new ArrayList<>();
+                    reconstruireIndex();
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // --- Mode tas borné (cache LRU sur la table mappée) ---
+
+    public CacheComptes getCacheComptes() {
+        return cache;
+    }
+
+    private CompteBancaire chargerDepuisTable(int numero) {
+        CompteBancaire compte = table.lireCompte(numero);
+        if (compte == null) {
+            return null;
+        }
+        long debutArchive = table.getPointeurHistorique(numero);
+        if (debutArchive >= 0) {
+            compte.restaurerArchive(LocalDateTime.ofInstant(Instant.ofEpochMilli(debutArchive), ZoneId.systemDefault()));
+        }
+        return cache.ajouter(compte);
+    }
+
+    /**
+     * Évince les comptes les moins récemment utilisés une fois la marge du cache dépassée.
+     * Nécessite le verrou exclusif (aucune opération ne doit détenir un compte évincé) : si le thread
+     * détient seulement le verrou partagé, l'éviction est remise à la fin de l'opération.
+     */
+    private void evincerSiNecessaire() {
+        if (cache == null || !cache.estDepasse()
+                || (verrou.getReadHoldCount() > 0 && !verrou.isWriteLockedByCurrentThread())) {
+            return;
+        }
+        verrou.writeLock().lock();
+        try {
+            List<CompteBancaire> evinces = cache.evincerExcedent();
+            try {
+                reecrireComptes(evinces, false);
+            } catch (IOException e) {
+                // Réécriture impossible : les comptes restent en mémoire plutôt que de perdre leurs modifications
+                System.err.println("Erreur lors de la réécriture de " + evinces.size() + " comptes évincés : " + e.getMessage());
+                for (CompteBancaire compte : evinces) {
+                    cache.ajouter(compte);
+                }
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Réécrit des comptes dans la table ; leurs transactions récentes partent dans l'archive, forcée sur
+     * disque avant que la première ligne ne change : la table est projetée en mémoire et peut atteindre
+     * le disque à tout moment, une ligne ne doit donc jamais y précéder l'historique qui explique son solde.
+     * Un compte chargé depuis la table n'a pas d'historique en mémoire : il est modifié si et
+     * seulement si son historique n'est plus vide.
+     * @param memeSansHistorique Écrit aussi la ligne des comptes sans transaction récente.
+     * @throws IOException Si l'archive n'a pas pu être écrite : aucun compte n'est alors modifié.
+     */
+    private void reecrireComptes(List<CompteBancaire> aReecrire, boolean memeSansHistorique) throws IOException {
+        Map<CompteBancaire, List<Transaction>> archivees = new LinkedHashMap<>();
+        for (CompteBancaire compte : aReecrire) {
+            synchronized (compte) {
+                List<Transaction> copie = new ArrayList<>(compte.getHistoriqueTransactions());
+                if (!copie.isEmpty()) {
+                    getArchive().archiver(compte.getNumeroCompte(), copie);
+                }
+                archivees.put(compte, copie);
+            }
+        }
+        getArchive().forcer();
+        for (Map.Entry<CompteBancaire, List<Transaction>> entree : archivees.entrySet()) {
+            CompteBancaire compte = entree.getKey();
+            synchronized (compte) {
+                if (!entree.getValue().isEmpty()) {
+                    compte.retirerArchivees(entree.getValue());
+                    cache.compterReecriture();
+                } else if (!memeSansHistorique) {
+                    continue;
+                }
+                ecrireEnTable(compte);
+            }
+        }
+    }
+
+    /**
+     * Écrit le solde et la date de début d'archive du compte (le pointeur d'historique de la table).
+     */
+    private void ecrireEnTable(CompteBancaire compte) {
+        LocalDateTime debutArchive = compte.getDebutArchive();
+        long pointeur = debutArchive == null ? -1 : debutArchive.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        table.ecrireCompte(compte.getNumeroCompte(), compte.getSolde(), pointeur);
+    }
+
+    /**
+     * Première ouverture en mode tas borné d'une sauvegarde classique : ses comptes passent dans la table.
+     */
+    private void convertirVersTable() throws IOException {
+        List<CompteBancaire> crees = new ArrayList<>();
+        for (CompteBancaire compte : comptes) {
+            if (table.creerCompte(compte.getNumeroCompte(), compte.getNomTitulaire(), 0).estSucces()) {
+                crees.add(compte);
+            }
+        }
+        reecrireComptes(crees, true); // Aussi pour un compte sans transaction récente (historique déjà archivé)
+        table.forcer();
+        comptes = new ArrayList<>();
+    }
+
+    // --- Rapprochement ---
+
+    /**
+     * Vérifie que chaque solde égale la somme signée de son historique et que les transferts
+     * s'apparient (voir RapprochementComptes). Les opérations sont suspendues pendant la vérification,
+     * le temps de voir chaque transfert en entier. En mode tas borné, seuls les soldes des comptes
+     * en mémoire sont vérifiés : l'historique des autres est dans l'archive.
+     */
+    public RapprochementComptes.Rapport rapprocher() {
+        verrou.writeLock().lock();
+        try {
+            return RapprochementComptes.verifier(getComptes(), cache == null);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    // --- Piste d'audit ---
+
+    /**
+     * Vérifie la chaîne d'empreintes de chaque compte (seules les transactions ajoutées depuis la
+     * vérification précédente sont hachées) et calcule la racine de Merkle de la banque, en parallèle.
+     * Les opérations sont suspendues pendant la vérification, le temps que la racine décrive un état unique.
+     * Le rapport reprend les anomalies constatées au chargement (empreintes absentes, racine différente
+     * de celle de la sauvegarde).
+     * En mode tas borné, seuls les comptes en mémoire sont vérifiés, et leur chaîne repart à chaque rechargement.
+     */
+    public AuditEmpreintes.Rapport verifierEmpreintes() {
+        verrou.writeLock().lock();
+        try {
+            return AuditEmpreintes.verifier(getComptes(),
+                    persistance != null ? persistance.getAnomaliesEmpreintes() : Collections.emptyList());
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vérifie la chaîne d'empreintes d'un compte depuis sa dernière vérification.
+     * @return false si le compte est inconnu ou si son historique ne correspond plus à sa chaîne.
+     */
+    public boolean verifierEmpreinte(int numero) {
+        verrou.readLock().lock();
+        try {
+            CompteBancaire compte = trouverCompte(numero);
+            return compte != null && compte.verifierEmpreinte() >= 0;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // --- Historique archivé ---
+
+    /**
+     * Déplace vers l'archive les transactions plus anciennes que l'âge donné, puis sauvegarde :
+     * le tas et le fichier de sauvegarde ne contiennent plus que l'activité récente.
+     * @return Le nombre de transactions archivées.
+     */
+    public int archiverHistorique(Duration ageMax) throws IOException {
+        long debut = System.nanoTime();
+        boolean reussi = false;
+        LocalDateTime limite = LocalDateTime.now().minus(ageMax);
+        verrou.writeLock().lock();
+        try {
+            ArchiveHistorique archive = getArchive();
+            Map<CompteBancaire, List<Transaction>> archivees = new HashMap<>();
+            int total = 0;
+            try {
+                for (CompteBancaire compte : comptes) {
+                    List<Transaction> anciennes = compte.transactionsAvant(limite);
+                    if (!anciennes.isEmpty()) {
+                        LocalDateTime premiere = compte.getDebutArchive() != null ? compte.getDebutArchive() : anciennes.get(0).getDateHeure();
+                        long debutMillis = premiere.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                        // Transactions déjà archivées par un archivage interrompu avant la sauvegarde principale
+                        long deja = archive.getNombreArchivees(compte.getNumeroCompte(), debutMillis) - compte.getNombreArchivees();
+                        int ignorees = (int) Math.max(0, Math.min(deja, anciennes.size()));
+                        archive.archiver(compte.getNumeroCompte(), debutMillis, compte.getNombreArchivees() + ignorees,
+                                anciennes.subList(ignorees, anciennes.size()));
+                        archivees.put(compte, anciennes);
+                        total += anciennes.size();
+                    }
+                }
+                // L'archive est sur disque (et validée) avant que les transactions ne quittent la sauvegarde principale
+                archive.forcer();
+            } catch (IOException | RuntimeException e) {
+                archive.annuler();
+                throw e;
+            }
+            for (Map.Entry<CompteBancaire, List<Transaction>> e : archivees.entrySet()) {
+                e.getKey().retirerArchivees(e.getValue());
+            }
+            if (total > 0) {
+                if (persistance != null) {
+                    persistance.demanderReecritureComplete(); // Le journal contient encore les transactions archivées
+                }
+                sauvegarderDonnees();
+            }
+            reussi = true;
+            return total;
+        } finally {
+            verrou.writeLock().unlock();
+            metriques.enregistrerEntreeSortie(MetriquesBanque.Operation.ARCHIVAGE, reussi, debut);
+        }
+    }
+
+    /**
+     * Historique complet d'un compte (transactions archivées relues depuis le disque, puis récentes).
+     */
+    public List<Transaction> getHistoriqueComplet(CompteBancaire compte) throws IOException {
+        return getHistoriqueDepuis(compte, null);
+    }
+
+    /**
+     * Remplace le contenu de copie par l'historique complet du compte (transactions archivées relues sur
+     * disque, puis récentes), pour un export. Le tout sous le verrou partagé, pour qu'aucun archivage ni
+     * éviction ne s'intercale entre l'archive et la mémoire ; les récentes sous le verrou du compte.
+     */
+    void copierHistoriqueComplet(CompteBancaire compte, JournalTransactions copie) throws IOException {
+        verrou.readLock().lock();
+        try {
+            copie.vider();
+            LocalDateTime debutArchive = compte.getDebutArchive();
+            if (debutArchive != null) {
+                for (Transaction transaction : getArchive().lire(compte.getNumeroCompte(), debutArchive)) {
+                    copie.ajouter(JournalTransactions.versMillis(transaction.getDateHeure()), transaction.getMontant(),
+                            transaction.getType());
+                }
+            }
+            synchronized (compte) {
+                copie.ajouter(compte.getJournal());
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Historique d'un compte depuis une date : seuls les segments d'archive de la période sont ouverts.
+     * @param depuis Date de début, ou null pour tout l'historique.
+     */
+    public List<Transaction> getHistoriqueDepuis(CompteBancaire compte, LocalDateTime depuis) throws IOException {
+        List<Transaction> historique = new ArrayList<>();
+        LocalDateTime debutArchive = compte.getDebutArchive();
+        if (debutArchive != null) {
+            // Un numéro réutilisé après suppression : l'archive antérieure appartient à l'ancien compte
+            historique.addAll(getArchive().lire(compte.getNumeroCompte(),
+                    depuis == null || depuis.isBefore(debutArchive) ? debutArchive : depuis));
+        }
+        synchronized (compte) {
+            for (Transaction transaction : compte.getHistoriqueTransactions()) {
+                if (depuis == null || !transaction.getDateHeure().isBefore(depuis)) {
+                    historique.add(transaction);
+                }
+            }
+        }
+        return historique;
+    }
+
+    private synchronized ArchiveHistorique getArchive() throws IOException {
+        if (archive == null) {
+            archive = new ArchiveHistorique(Path.of(fichierSauvegarde + ".archives"), 12);
+        }
+        return archive;
+    }
+
+    // --- Index et Classements ---
+
+    /**
+     * Les k comptes ayant le plus gros solde, du plus riche au moins riche. O(k + log n).
+     */
+    public List<CompteBancaire> topN(int k) {
+        synchronized (verrouClassements) {
+            return versComptes(classementSoldes.plusGrands(k));
+        }
+    }
+
+    /**
+     * Les k comptes ayant le mouvement net du jour le plus négatif (seuls les mouvements négatifs sont retenus).
+     */
+    public List<CompteBancaire> plusFortesBaissesDuJour(int k) {
+        List<CompteBancaire> resultat;
+        synchronized (verrouClassements) {
+            verifierJourClassement();
+            resultat = versComptes(classementMouvements.plusPetits(k));
+        }
+        resultat.removeIf(compte -> compte.getMouvementDuJour() >= 0);
+        return resultat;
+    }
+
+    /**
+     * Rang du compte par solde décroissant (1 = plus gros solde), ou -1 si le compte est inconnu. O(log n).
+     */
+    public int rangParSolde(CompteBancaire compte) {
+        synchronized (verrouClassements) {
+            return classementSoldes.rang(compte.getSolde(), compte.getNumeroCompte());
+        }
+    }
+
+    /**
+     * Tient les classements à jour à chaque dépôt, retrait ou transfert sur un compte géré.
+     * Seuls les classements sont sous leur moniteur : le suivi des comptes à sauvegarder est concurrent.
+     */
+    @Override
+    public void soldeModifie(CompteBancaire compte, double ancienSolde, double ancienMouvement, long ancienJour) {
+        if (persistance != null) {
+            persistance.marquerModifie(compte);
+        }
+        int numero = compte.getNumeroCompte();
+        double solde = compte.getSolde();
+        double mouvement = compte.getMouvementDuJour();
+        synchronized (verrouClassements) {
+            classementSoldes.deplacer(ancienSolde, solde, numero);
+
+            verifierJourClassement();
+            boolean etaitClasse = ancienJour == jourClassementMouvements && ancienMouvement != 0;
+            if (mouvement == 0) {
+                if (etaitClasse) {
+                    classementMouvements.supprimer(ancienMouvement, numero);
+                }
+            } else if (etaitClasse) {
+                classementMouvements.deplacer(ancienMouvement, mouvement, numero);
+            } else {
+                classementMouvements.inserer(mouvement, numero);
+            }
+        }
+    }
+
+    private void indexerCompte(CompteBancaire compte) {
+        synchronized (verrouClassements) {
+            index.ajouter(compte);
+            classementSoldes.inserer(compte.getSolde(), compte.getNumeroCompte());
+            verifierJourClassement();
+            if (compte.getMouvementDuJour() != 0) {
+                classementMouvements.inserer(compte.getMouvementDuJour(), compte.getNumeroCompte());
+            }
+        }
+        compte.setObservateur(this);
+    }
+
+    private void desindexerCompte(CompteBancaire compte) {
+        compte.setObservateur(null);
+        synchronized (verrouClassements) {
+            index.retirer(compte.getNumeroCompte());
+            classementSoldes.supprimer(compte.getSolde(), compte.getNumeroCompte());
+            if (compte.getJourMouvement() == jourClassementMouvements) {
+                classementMouvements.supprimer(compte.getMouvementDuJour(), compte.getNumeroCompte());
             }
         }
     }
 
+    private void reconstruireIndex() {
+        synchronized (verrouClassements) {
+            index = new IndexComptes(comptes.size());
+            classementSoldes = new ClassementComptes();
+            classementMouvements = new ClassementComptes();
+            jourClassementMouvements = CompteBancaire.jourCourant();
+            for (CompteBancaire compte : comptes) {
+                indexerCompte(compte);
+            }
+        }
+    }
+
+    /**
+     * Au changement de jour, tous les mouvements repartent de zéro : on vide le classement.
+     */
+    private void verifierJourClassement() {
+        long jour = CompteBancaire.jourCourant();
+        if (jour != jourClassementMouvements) {
+            classementMouvements.vider();
+            jourClassementMouvements = jour;
+        }
+    }
+
+    private List<CompteBancaire> versComptes(List<Integer> numeros) {
+        List<CompteBancaire> resultat = new ArrayList<>(numeros.size());
+        for (int numero : numeros) {
+            resultat.add(index.get(numero));
+        }
+        return resultat;
+    }
+
+    /**
+     * Tous les comptes en mode mémoire complète ; en mode tas borné, seulement ceux présents dans le cache.
+     */
     public List<CompteBancaire> getComptes() {
-        return comptes;
+        return cache != null ? cache.getResidents() : comptes;
+    }
+
+    /**
+     * Copie de getComptes() prise sous le verrou partagé, à parcourir pendant que les opérations continuent.
+     */
+    List<CompteBancaire> instantaneComptes() {
+        verrou.readLock().lock();
+        try {
+            return new ArrayList<>(getComptes());
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exécute un traitement sur des comptes existants sous le verrou partagé, comme une opération :
+     * aucune sauvegarde ne s'intercale entre ses modifications, qui restent marquées pour la suivante.
+     */
+    void executerSousVerrouPartage(Runnable traitement) {
+        verrou.readLock().lock();
+        try {
+            traitement.run();
+        } finally {
+            verrou.readLock().unlock();
+        }
     }
 }
\ No newline at end of file
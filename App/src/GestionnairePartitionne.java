@@ -0,0 +1,590 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Banque découpée en N partitions indépendantes pour exploiter plusieurs cœurs.
+ * Les comptes sont répartis par hachage de leur numéro ; chaque partition est un
+ * {@link GestionnaireBanque} complet (index, classements, fichier de sauvegarde) servi par
+ * son propre thread, si bien que les partitions n'entrent jamais en concurrence entre elles.
+ *
+ * Un transfert entre deux comptes d'une même partition reste local. Entre deux partitions,
+ * il est coordonné explicitement : débit sur la partition source, puis crédit sur la partition
+ * cible ; si le compte cible a disparu entre-temps, la source est remboursée (TRANSFERT_REMBOURSE).
+ *
+ * Avant le débit, l'intention (identifiant, comptes, montant) est écrite et forcée dans
+ * prefixe-virements.log ; les intentions ouvertes en même temps partagent un forçage (validation groupée).
+ * Chaque jambe porte une clé d'idempotence tirée de l'identifiant : à l'ouverture, les intentions non
+ * terminées sont reprises depuis le début, et une jambe déjà sauvegardée renvoie son résultat au lieu
+ * d'être rejouée. Un arrêt entre le débit et le crédit ne perd donc pas l'argent : le transfert est
+ * achevé (ou remboursé) à la réouverture.
+ *
+ * La fin d'un transfert note, pour chaque jambe appliquée, le numéro de sauvegarde de sa partition juste
+ * avant elle (chaque partition applique ses jambes et se sauvegarde sur son seul thread) : la jambe est
+ * sur disque dès que la partition a validé une sauvegarde de numéro supérieur. Une intention terminée
+ * reste dans le journal tant que toutes ses jambes n'y sont pas ; à la réouverture, seules les jambes
+ * absentes des partitions chargées sont réappliquées.
+ */
+public class GestionnairePartitionne {
+
+    private static final long SANS_JAMBE = Long.MIN_VALUE; // Jambe non appliquée (échec, ou transfert sans remboursement)
+
+    private final GestionnaireBanque[] partitions;
+    private final ExecutorService[] executeurs;
+    private final JournalVirements journal;
+
+    /**
+     * Ouvre (ou crée) une banque partitionnée ; la partition i est sauvegardée dans prefixe-p{i}.ser.
+     * Les transferts entre partitions interrompus par un arrêt sont ensuite repris.
+     * @param ouvertureParallele Charge les fichiers des partitions en parallèle, chacune sur son thread.
+     * @throws UncheckedIOException si le journal des transferts ne peut pas être relu ou réécrit.
+     */
+    public GestionnairePartitionne(String prefixe, int nbPartitions, boolean ouvertureParallele) {
+        this.partitions = new GestionnaireBanque[nbPartitions];
+        this.executeurs = new ExecutorService[nbPartitions];
+        for (int i = 0; i < nbPartitions; i++) {
+            int numeroPartition = i;
+            executeurs[i] = Executors.newSingleThreadExecutor(tache -> {
+                Thread thread = new Thread(tache, "banque-partition-" + numeroPartition);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        List<Future<GestionnaireBanque>> ouvertures = new ArrayList<>();
+        for (int i = 0; i < nbPartitions; i++) {
+            String fichier = prefixe + "-p" + i + ".ser";
+            if (ouvertureParallele) {
+                ouvertures.add(executeurs[i].submit(() -> new GestionnaireBanque(fichier)));
+            } else {
+                partitions[i] = new GestionnaireBanque(fichier);
+            }
+        }
+        for (int i = 0; i < ouvertures.size(); i++) {
+            partitions[i] = attendre(ouvertures.get(i));
+        }
+        this.journal = new JournalVirements(Path.of(prefixe + "-virements.log"));
+        try {
+            reprendreVirements();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Achève les transferts du journal laissé par l'exécution précédente et réapplique les jambes des
+     * transferts terminés qui manquent aux partitions chargées, puis réécrit le journal.
+     * Au-delà de la durée de vie des clés d'idempotence, une jambe sauvegardée d'un transfert non terminé ne
+     * serait plus reconnue : ces intentions sont signalées (le rapprochement montrera la jambe orpheline) et non rejouées.
+     */
+    private void reprendreVirements() throws IOException {
+        long limite = System.currentTimeMillis() - partitions[0].getCacheIdempotence().getDureeVieMillis();
+        // Sauvegarde automatique encore active ici : chaque jambe reprise est sauvegardée avant la compaction
+        for (Intention intention : journal.relire()) {
+            if (intention.terminee) {
+                reappliquer(intention, intention.source, intention.cible, intention.avantDebit, "TRANSFERT_EMIS", "debit");
+                reappliquer(intention, intention.cible, intention.source, intention.avantCredit, "TRANSFERT_RECU", "credit");
+                reappliquer(intention, intention.source, intention.cible, intention.avantRemboursement, "TRANSFERT_REMBOURSE",
+                        "remboursement");
+                journal.reprendre(intention);
+            } else if (intention.date < limite) {
+                System.err.println("Transfert " + intention + " interrompu depuis trop longtemps : non repris, à vérifier");
+            } else {
+                System.out.println("Reprise du transfert " + intention + " : " + executer(intention).join());
+            }
+        }
+        journal.compacter(this::jambesSurDisque);
+    }
+
+    /**
+     * Réapplique la jambe d'un transfert terminé si la partition chargée ne la contient pas (sauvegarde
+     * perdue) ; sa clé, sauvegardée avec elle, est alors absente aussi.
+     */
+    private void reappliquer(Intention intention, int numero, int contrepartie, long avant, String type, String jambe) {
+        if (surDisque(numero, avant)) {
+            return;
+        }
+        long nouvelAvant = partitions[partitionDe(numero)].getNumeroSauvegarde();
+        ResultatOperation resultat = surPartition(numero, partition ->
+                partition.appliquerMouvement(numero, intention.montant, type, contrepartie, intention.cle(jambe))).join();
+        System.out.println("Transfert " + intention + " : jambe " + jambe + " non sauvegardée, réappliquée : " + resultat);
+        if (!resultat.estSucces()) {
+            System.err.println("Transfert " + intention + " : jambe " + jambe + " impossible à réappliquer, à vérifier");
+            nouvelAvant = SANS_JAMBE;
+        }
+        switch (jambe) {
+            case "debit":
+                intention.avantDebit = nouvelAvant;
+                break;
+            case "credit":
+                intention.avantCredit = nouvelAvant;
+                break;
+            default:
+                intention.avantRemboursement = nouvelAvant;
+        }
+    }
+
+    /**
+     * Toutes les jambes appliquées du transfert sont dans des sauvegardes validées de leurs partitions.
+     */
+    private boolean jambesSurDisque(Intention intention) {
+        return surDisque(intention.source, intention.avantDebit) && surDisque(intention.cible, intention.avantCredit)
+                && surDisque(intention.source, intention.avantRemboursement);
+    }
+
+    private boolean surDisque(int numero, long avant) {
+        return avant == SANS_JAMBE || partitions[partitionDe(numero)].getNumeroSauvegarde() > avant;
+    }
+
+    public int getNombrePartitions() {
+        return partitions.length;
+    }
+
+    /**
+     * Partition responsable d'un numéro de compte.
+     */
+    public int partitionDe(int numero) {
+        int h = numero * 0x9E3779B9; // Mélange de Fibonacci : des numéros consécutifs se répartissent uniformément
+        return Math.floorMod(h ^ (h >>> 16), partitions.length);
+    }
+
+    public GestionnaireBanque getPartition(int indice) {
+        return partitions[indice];
+    }
+
+    /**
+     * Lecture directe (l'index de chaque partition supporte les accès concurrents).
+     */
+    public CompteBancaire trouverCompte(int numero) {
+        return partitions[partitionDe(numero)].trouverCompte(numero);
+    }
+
+    public long getNombreComptes() {
+        long total = 0;
+        for (GestionnaireBanque partition : partitions) {
+            total += partition.getComptes().size();
+        }
+        return total;
+    }
+
+    public void setSauvegardeAutomatique(boolean sauvegardeAutomatique) {
+        for (GestionnaireBanque partition : partitions) {
+            partition.setSauvegardeAutomatique(sauvegardeAutomatique);
+        }
+    }
+
+    /**
+     * Mêmes règles de vélocité pour toutes les partitions (un compte n'est suivi que par la sienne).
+     */
+    public void setControleVelocite(ControleVelocite controleVelocite) {
+        for (GestionnaireBanque partition : partitions) {
+            partition.setControleVelocite(controleVelocite);
+        }
+    }
+
+    // --- Opérations asynchrones (exécutées sur le thread de la partition) ---
+
+    public CompletableFuture<ResultatOperation> creerCompteAsync(int numero, String nom, double soldeInitial) {
+        return surPartition(numero, partition -> partition.creerCompte(numero, nom, soldeInitial));
+    }
+
+    public CompletableFuture<ResultatOperation> depotAsync(int numero, double montant) {
+        return surPartition(numero, partition -> partition.effectuerDepot(numero, montant));
+    }
+
+    public CompletableFuture<ResultatOperation> retraitAsync(int numero, double montant) {
+        return surPartition(numero, partition -> partition.effectuerRetrait(numero, montant));
+    }
+
+    public CompletableFuture<ResultatOperation> supprimerCompteAsync(int numero) {
+        return surPartition(numero, partition -> partition.supprimerCompte(numero));
+    }
+
+    public CompletableFuture<ResultatOperation> transfertAsync(int numSource, int numCible, double montant) {
+        int pSource = partitionDe(numSource);
+        int pCible = partitionDe(numCible);
+        if (pSource == pCible) {
+            return surPartition(numSource, partition -> partition.effectuerTransfert(numSource, numCible, montant));
+        }
+        if (trouverCompte(numCible) == null) {
+            return CompletableFuture.completedFuture(ResultatOperation.COMPTE_INCONNU);
+        }
+        Intention intention;
+        try {
+            intention = journal.ouvrir(numSource, numCible, montant);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e); // Rien n'a été débité
+        }
+        return executer(intention);
+    }
+
+    /**
+     * 1. Débit sur la partition source, 2. crédit sur la partition cible, 3. remboursement si la cible a disparu.
+     * L'intention n'est close qu'une fois le transfert achevé ; une exception la laisse à reprendre.
+     */
+    private CompletableFuture<ResultatOperation> executer(Intention v) {
+        return surPartition(v.source, partition -> {
+            long avant = partition.getNumeroSauvegarde();
+            ResultatOperation debit = partition.appliquerMouvement(v.source, v.montant, "TRANSFERT_EMIS", v.cible, v.cle("debit"));
+            v.avantDebit = debit.estSucces() ? avant : SANS_JAMBE;
+            return debit;
+        }).thenCompose(debit -> {
+            if (!debit.estSucces()) {
+                return CompletableFuture.completedFuture(debit);
+            }
+            return surPartition(v.cible, partition -> {
+                long avant = partition.getNumeroSauvegarde();
+                ResultatOperation credit = partition.appliquerMouvement(v.cible, v.montant, "TRANSFERT_RECU", v.source, v.cle("credit"));
+                v.avantCredit = credit.estSucces() ? avant : SANS_JAMBE;
+                return credit;
+            }).thenCompose(credit -> credit.estSucces()
+                    ? CompletableFuture.completedFuture(credit)
+                    : surPartition(v.source, partition -> {
+                        long avant = partition.getNumeroSauvegarde();
+                        ResultatOperation remboursement = partition.appliquerMouvement(v.source, v.montant, "TRANSFERT_REMBOURSE",
+                                v.cible, v.cle("remboursement"));
+                        v.avantRemboursement = remboursement.estSucces() ? avant : SANS_JAMBE;
+                        return remboursement;
+                    }).thenApply(remboursement -> credit));
+        })
+                .whenComplete((resultat, erreur) -> {
+                    if (erreur == null) {
+                        journal.terminer(v);
+                    }
+                });
+    }
+
+    // --- Versions synchrones ---
+
+    public ResultatOperation creerCompte(int numero, String nom, double soldeInitial) {
+        return creerCompteAsync(numero, nom, soldeInitial).join();
+    }
+
+    public ResultatOperation effectuerDepot(int numero, double montant) {
+        return depotAsync(numero, montant).join();
+    }
+
+    public ResultatOperation effectuerRetrait(int numero, double montant) {
+        return retraitAsync(numero, montant).join();
+    }
+
+    public ResultatOperation effectuerTransfert(int numSource, int numCible, double montant) {
+        return transfertAsync(numSource, numCible, montant).join();
+    }
+
+    public ResultatOperation supprimerCompte(int numero) {
+        return supprimerCompteAsync(numero).join();
+    }
+
+    /**
+     * Sauvegarde toutes les partitions en parallèle, chacune sur son thread, puis allège le journal des
+     * transferts : n'y restent que les intentions ouvertes et les transferts terminés dont une jambe n'est
+     * pas encore dans une sauvegarde validée (partition en échec, par exemple).
+     * @return false si une partition ou le journal n'a pas pu être sauvegardé.
+     */
+    public boolean sauvegarderDonnees() {
+        List<Future<Boolean>> sauvegardes = new ArrayList<>();
+        for (int i = 0; i < partitions.length; i++) {
+            GestionnaireBanque partition = partitions[i];
+            sauvegardes.add(executeurs[i].submit(partition::sauvegarder));
+        }
+        boolean reussie = true;
+        for (Future<Boolean> sauvegarde : sauvegardes) {
+            reussie &= attendre(sauvegarde);
+        }
+        try {
+            journal.compacter(this::jambesSurDisque);
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la réécriture du journal des transferts : " + e.getMessage());
+            reussie = false;
+        }
+        return reussie;
+    }
+
+    /**
+     * Rapproche les comptes de toutes les partitions ensemble, pour apparier aussi les transferts
+     * entre partitions (y compris les remboursements). À lancer banque au repos, au démarrage par
+     * exemple : un transfert entre partitions en cours n'a pas encore sa contrepartie.
+     */
+    public RapprochementComptes.Rapport rapprocher() {
+        List<CompteBancaire> comptes = new ArrayList<>();
+        for (GestionnaireBanque partition : partitions) {
+            comptes.addAll(partition.instantaneComptes());
+        }
+        return RapprochementComptes.verifier(comptes);
+    }
+
+    /**
+     * Arrête les threads des partitions après avoir traité les opérations déjà soumises.
+     */
+    public void fermer() {
+        for (ExecutorService executeur : executeurs) {
+            executeur.shutdown();
+        }
+    }
+
+    /**
+     * Transfert entre partitions tel qu'écrit dans le journal avant son débit.
+     */
+    private static final class Intention {
+        final String id;
+        final long date;
+        final int source;
+        final int cible;
+        final double montant;
+        // Numéro de sauvegarde de la partition avant chaque jambe appliquée (SANS_JAMBE sinon), écrits dans la fin
+        volatile long avantDebit = SANS_JAMBE;
+        volatile long avantCredit = SANS_JAMBE;
+        volatile long avantRemboursement = SANS_JAMBE;
+        boolean terminee; // Relue terminée dans le journal
+
+        Intention(String id, long date, int source, int cible, double montant) {
+            this.id = id;
+            this.date = date;
+            this.source = source;
+            this.cible = cible;
+            this.montant = montant;
+        }
+
+        /**
+         * Clé d'idempotence d'une jambe (préfixe distinct des clés fournies par les clients).
+         */
+        String cle(String jambe) {
+            return "virement:" + id + ":" + jambe;
+        }
+
+        @Override
+        public String toString() {
+            return id + " (" + source + " -> " + cible + ", " + montant + ")";
+        }
+    }
+
+    /**
+     * Journal des transferts entre partitions : une intention forcée sur disque avant le débit, une fin
+     * écrite (sans forçage : une fin perdue fait seulement reprendre des jambes déjà connues) une fois
+     * le transfert achevé. Un enregistrement tronqué en fin de fichier est ignoré à la relecture.
+     *
+     * Validation groupée : une intention est ajoutée au fichier sous le verrou du journal, puis son auteur
+     * attend qu'un forçage la couvre ; un seul thread force à la fois, pour toutes les intentions ajoutées
+     * jusque-là.
+     */
+    private static final class JournalVirements {
+        private static final byte INTENTION = 1;
+        private static final byte FIN = 2; // Format antérieur, sans les numéros de sauvegarde des jambes
+        private static final byte FIN_JAMBES = 3;
+
+        private final Path fichier;
+        private FileChannel canal;
+        private final Map<String, Intention> ouvertes = new ConcurrentHashMap<>();
+        // Terminées, dont une jambe n'était pas encore dans une sauvegarde validée à la dernière compaction
+        private final Map<String, Intention> terminees = new ConcurrentHashMap<>();
+        // Identifiants uniques d'une exécution à l'autre : les clés des jambes restent 24 h dans les partitions
+        private final String prefixeIds = Long.toString(System.currentTimeMillis(), 36) + "-";
+        private final AtomicLong compteur = new AtomicLong();
+
+        private final Object forcage = new Object(); // Pris avant le verrou du journal
+        private long ajoutes; // Enregistrements ajoutés au canal (sous le verrou du journal)
+        private volatile long forces; // Enregistrements couverts par un forçage
+
+        JournalVirements(Path fichier) {
+            this.fichier = fichier;
+        }
+
+        /**
+         * Intentions du journal existant : non terminées, ou terminées (avec les numéros de sauvegarde de leurs jambes).
+         */
+        List<Intention> relire() throws IOException {
+            Map<String, Intention> intentions = new LinkedHashMap<>();
+            if (Files.exists(fichier)) {
+                DataInputStream entree = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(fichier)));
+                try {
+                    while (true) {
+                        byte type = entree.readByte();
+                        String id = entree.readUTF();
+                        if (type == INTENTION) {
+                            intentions.put(id, new Intention(id, entree.readLong(), entree.readInt(), entree.readInt(), entree.readDouble()));
+                        } else if (type == FIN_JAMBES) {
+                            long avantDebit = entree.readLong();
+                            long avantCredit = entree.readLong();
+                            long avantRemboursement = entree.readLong();
+                            Intention intention = intentions.get(id);
+                            if (intention != null) {
+                                intention.avantDebit = avantDebit;
+                                intention.avantCredit = avantCredit;
+                                intention.avantRemboursement = avantRemboursement;
+                                intention.terminee = true;
+                            }
+                        } else {
+                            intentions.remove(id);
+                        }
+                    }
+                } catch (EOFException e) {
+                    // Fin du journal (ou dernier enregistrement tronqué, jamais forcé)
+                }
+            }
+            return new ArrayList<>(intentions.values());
+        }
+
+        Intention ouvrir(int source, int cible, double montant) throws IOException {
+            Intention intention = new Intention(prefixeIds + compteur.incrementAndGet(), System.currentTimeMillis(), source, cible, montant);
+            ouvertes.put(intention.id, intention);
+            try {
+                forcer(ajouter(INTENTION, intention));
+            } catch (IOException e) {
+                ouvertes.remove(intention.id);
+                throw e;
+            }
+            return intention;
+        }
+
+        void terminer(Intention intention) {
+            terminees.put(intention.id, intention);
+            ouvertes.remove(intention.id);
+            try {
+                ajouter(FIN_JAMBES, intention);
+            } catch (IOException e) {
+                // L'intention reste dans le journal : elle sera reprise, sans effet, à la réouverture
+                System.err.println("Erreur lors de l'écriture du journal des transferts : " + e.getMessage());
+            }
+        }
+
+        /**
+         * Transfert terminé relu dans le journal (jambes manquantes réappliquées) : gardé jusqu'à ce que ses jambes soient sur disque.
+         */
+        void reprendre(Intention intention) {
+            terminees.put(intention.id, intention);
+        }
+
+        /**
+         * Remplace le journal (renommage atomique) par les intentions ouvertes et les transferts terminés
+         * que jambesSurDisque ne couvre pas encore.
+         */
+        void compacter(Predicate<Intention> jambesSurDisque) throws IOException {
+            synchronized (forcage) {
+                synchronized (this) {
+                    terminees.values().removeIf(jambesSurDisque);
+                    ByteArrayOutputStream octets = new ByteArrayOutputStream();
+                    try (DataOutputStream sortie = new DataOutputStream(octets)) {
+                        for (Intention intention : terminees.values()) {
+                            ecrire(sortie, INTENTION, intention);
+                            ecrire(sortie, FIN_JAMBES, intention);
+                        }
+                        for (Intention intention : ouvertes.values()) {
+                            ecrire(sortie, INTENTION, intention);
+                        }
+                    }
+                    Path temporaire = Path.of(fichier + ".tmp");
+                    try (FileChannel nouveau = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                        ecrireTout(nouveau, ByteBuffer.wrap(octets.toByteArray()));
+                        nouveau.force(false);
+                    }
+                    if (canal != null) {
+                        canal.close();
+                        canal = null;
+                    }
+                    Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    forces = ajoutes; // Les intentions ajoutées jusqu'ici sont ouvertes (réécrites) ou terminées
+                }
+            }
+        }
+
+        /**
+         * Ajoute un enregistrement, sans forçage.
+         * @return Son rang, à passer à forcer().
+         */
+        private synchronized long ajouter(byte type, Intention intention) throws IOException {
+            if (canal == null) {
+                canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteArrayOutputStream octets = new ByteArrayOutputStream(64);
+            try (DataOutputStream sortie = new DataOutputStream(octets)) {
+                ecrire(sortie, type, intention);
+            }
+            ecrireTout(canal, ByteBuffer.wrap(octets.toByteArray()));
+            return ++ajoutes;
+        }
+
+        /**
+         * Attend qu'un forçage couvre l'enregistrement de ce rang ; le premier thread arrivé force pour tous
+         * les enregistrements ajoutés jusque-là.
+         */
+        private void forcer(long rang) throws IOException {
+            if (forces >= rang) {
+                return;
+            }
+            synchronized (forcage) {
+                if (forces >= rang) {
+                    return;
+                }
+                long couverts;
+                synchronized (this) {
+                    couverts = ajoutes;
+                    canal.force(false);
+                }
+                forces = couverts;
+            }
+        }
+
+        private static void ecrire(DataOutputStream sortie, byte type, Intention intention) throws IOException {
+            sortie.writeByte(type);
+            sortie.writeUTF(intention.id);
+            if (type == INTENTION) {
+                sortie.writeLong(intention.date);
+                sortie.writeInt(intention.source);
+                sortie.writeInt(intention.cible);
+                sortie.writeDouble(intention.montant);
+            } else if (type == FIN_JAMBES) {
+                sortie.writeLong(intention.avantDebit);
+                sortie.writeLong(intention.avantCredit);
+                sortie.writeLong(intention.avantRemboursement);
+            }
+        }
+
+        private static void ecrireTout(FileChannel canal, ByteBuffer tampon) throws IOException {
+            while (tampon.hasRemaining()) {
+                canal.write(tampon);
+            }
+        }
+    }
+
+    private CompletableFuture<ResultatOperation> surPartition(int numero, Function<GestionnaireBanque, ResultatOperation> operation) {
+        int indice = partitionDe(numero);
+        GestionnaireBanque partition = partitions[indice];
+        return CompletableFuture.supplyAsync(() -> operation.apply(partition), executeurs[indice]);
+    }
+
+    private static <T> T attendre(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompu pendant l'attente d'une partition", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Échec sur une partition", e.getCause());
+        }
+    }
+}
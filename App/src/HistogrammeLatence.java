@@ -0,0 +1,117 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences sans verrou, à seaux log-linéaires (à la manière de HdrHistogram).
+ * Chaque puissance de deux est découpée en 16 sous-seaux, soit une précision relative d'environ 6 %
+ * de la nanoseconde à plusieurs heures, pour une empreinte fixe de quelques kilo-octets.
+ * L'enregistrement ne fait qu'un incrément atomique : il peut être appelé depuis n'importe quel thread.
+ */
+public class HistogrammeLatence {
+
+    private static final int BITS_SOUS_SEAUX = 4;
+    private static final int SOUS_SEAUX = 1 << BITS_SOUS_SEAUX;
+    private static final int NB_SEAUX = (64 - BITS_SOUS_SEAUX + 1) * SOUS_SEAUX;
+
+    private final AtomicLongArray seaux = new AtomicLongArray(NB_SEAUX);
+    private final LongAdder nombre = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator maximum = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Enregistre une durée en nanosecondes (les valeurs négatives comptent pour 0).
+     */
+    public void enregistrer(long nanos) {
+        long valeur = Math.max(0, nanos);
+        seaux.incrementAndGet(indice(valeur));
+        nombre.increment();
+        total.add(valeur);
+        maximum.accumulate(valeur);
+    }
+
+    public long getNombre() {
+        return nombre.sum();
+    }
+
+    public long getMaximum() {
+        return maximum.get();
+    }
+
+    public double getMoyenne() {
+        long n = nombre.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * Valeur (borne haute du seau) en dessous de laquelle se trouve la fraction demandée des mesures.
+     * @param fraction entre 0 et 1, par exemple 0.99 pour le p99.
+     */
+    public long getPercentile(double fraction) {
+        long[] copie = new long[NB_SEAUX];
+        long n = 0;
+        for (int i = 0; i < NB_SEAUX; i++) {
+            copie[i] = seaux.get(i);
+            n += copie[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rang = Math.max(1, (long) Math.ceil(fraction * n));
+        long cumul = 0;
+        for (int i = 0; i < NB_SEAUX; i++) {
+            cumul += copie[i];
+            if (cumul >= rang) {
+                return Math.min(borneHaute(i), getMaximum());
+            }
+        }
+        return getMaximum();
+    }
+
+    /**
+     * Remet l'histogramme à zéro (les enregistrements concurrents peuvent être partiellement conservés).
+     */
+    public void reinitialiser() {
+        for (int i = 0; i < NB_SEAUX; i++) {
+            seaux.set(i, 0);
+        }
+        nombre.reset();
+        total.reset();
+        maximum.reset();
+    }
+
+    /**
+     * Ajoute le contenu d'un autre histogramme à celui-ci (agrégation de plusieurs threads ou périodes).
+     */
+    public void ajouter(HistogrammeLatence autre) {
+        for (int i = 0; i < NB_SEAUX; i++) {
+            long n = autre.seaux.get(i);
+            if (n != 0) {
+                seaux.addAndGet(i, n);
+            }
+        }
+        nombre.add(autre.nombre.sum());
+        total.add(autre.total.sum());
+        maximum.accumulate(autre.maximum.get());
+    }
+
+    static int indice(long valeur) {
+        if (valeur < SOUS_SEAUX) {
+            return (int) valeur;
+        }
+        int exposant = 63 - Long.numberOfLeadingZeros(valeur); // >= BITS_SOUS_SEAUX
+        int sousSeau = (int) (valeur >>> (exposant - BITS_SOUS_SEAUX)) & (SOUS_SEAUX - 1);
+        return (exposant - BITS_SOUS_SEAUX + 1) * SOUS_SEAUX + sousSeau;
+    }
+
+    static long borneHaute(int indice) {
+        if (indice < SOUS_SEAUX) {
+            return indice;
+        }
+        int exposant = indice / SOUS_SEAUX + BITS_SOUS_SEAUX - 1;
+        long sousSeau = indice % SOUS_SEAUX;
+        long base = (SOUS_SEAUX + sousSeau) << (exposant - BITS_SOUS_SEAUX);
+        long largeur = 1L << (exposant - BITS_SOUS_SEAUX);
+        return base + largeur - 1;
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Import en masse de comptes depuis un fichier CSV (numero, nom, solde initial).
+ * Le fichier est lu ligne à ligne, les doublons sont détectés contre les comptes existants
+ * et à l'intérieur du fichier, et la sauvegarde n'a lieu qu'une seule fois à la fin.
+ */
+public class ImportComptes {
+
+    /** Nombre maximal de rejets détaillés conservés dans le rapport (les suivants sont seulement comptés). */
+    public static final int MAX_REJETS_DETAILLES = 1000;
+
+    /**
+     * Résultat d'un import : comptes créés et lignes rejetées.
+     */
+    public static class RapportImport {
+        private int comptesCrees;
+        private int lignesRejetees;
+        private final List<String> rejets = new ArrayList<>();
+
+        public int getComptesCrees() {
+            return comptesCrees;
+        }
+
+        public int getLignesRejetees() {
+            return lignesRejetees;
+        }
+
+        /**
+         * Détail des premiers rejets ("ligne N : raison"), limité à MAX_REJETS_DETAILLES.
+         */
+        public List<String> getRejets() {
+            return rejets;
+        }
+
+        private void rejeter(long ligne, String raison) {
+            lignesRejetees++;
+            if (rejets.size() < MAX_REJETS_DETAILLES) {
+                rejets.add("ligne " + ligne + " : " + raison);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return comptesCrees + " comptes importés, " + lignesRejetees + " lignes rejetées";
+        }
+    }
+
+    private ImportComptes() {
+    }
+
+    /**
+     * Importe les comptes lus dans source. Une éventuelle ligne d'en-tête est ignorée.
+     * Séparateur : virgule ou point-virgule ; le nom peut être entre guillemets.
+     */
+    public static RapportImport importer(GestionnaireBanque gestionnaire, Reader source) throws IOException {
+        RapportImport rapport = new RapportImport();
+        Set<Integer> numerosDuFichier = new HashSet<>();
+        BufferedReader lecteur = source instanceof BufferedReader
+                ? (BufferedReader) source : new BufferedReader(source, 1 << 16);
+        String[] champs = new String[3];
+        long numeroLigne = 0;
+        String ligne;
+        while ((ligne = lecteur.readLine()) != null) {
+            numeroLigne++;
+            if (ligne.isBlank()) {
+                continue;
+            }
+            if (!decouper(ligne, champs)) {
+                rapport.rejeter(numeroLigne, "3 champs attendus (numero, nom, solde)");
+                continue;
+            }
+            int numero;
+            double solde;
+            try {
+                numero = Integer.parseInt(champs[0]);
+                solde = Double.parseDouble(champs[2]);
+            } catch (NumberFormatException e) {
+                if (numeroLigne == 1) {
+                    continue; // Ligne d'en-tête
+                }
+                rapport.rejeter(numeroLigne, "numéro ou solde non numérique");
+                continue;
+            }
+            String nom = champs[1];
+            if (nom.isEmpty() || numero <= 0 || solde < 0 || Double.isNaN(solde) || Double.isInfinite(solde)) {
+                rapport.rejeter(numeroLigne, "valeurs invalides");
+            } else if (!numerosDuFichier.add(numero)) {
+                rapport.rejeter(numeroLigne, "le numéro " + numero + " apparaît plusieurs fois dans le fichier");
+            } else if (!gestionnaire.enregistrerSiAbsent(new CompteBancaire(numero, nom, solde))) {
+                // Vérifié sous le verrou de l'ajout : un compte créé pendant l'import n'est pas écrasé
+                rapport.rejeter(numeroLigne, "le numéro " + numero + " existe déjà");
+            } else {
+                rapport.comptesCrees++;
+            }
+        }
+        if (rapport.comptesCrees > 0) {
+            gestionnaire.sauvegarderDonnees();
+        }
+        return rapport;
+    }
+
+    /**
+     * Découpe une ligne en exactement trois champs nettoyés.
+     * @return false si la ligne n'a pas trois champs.
+     */
+    private static boolean decouper(String ligne, String[] champs) {
+        int nbChamps = 0;
+        int i = 0;
+        int longueur = ligne.length();
+        while (i <= longueur) {
+            if (nbChamps == champs.length) {
+                return false;
+            }
+            String champ;
+            int suite;
+            int debut = i;
+            while (debut < longueur && ligne.charAt(debut) == ' ') {
+                debut++;
+            }
+            if (debut < longueur && ligne.charAt(debut) == '"') {
+                // Champ entre guillemets ("" pour un guillemet littéral)
+                StringBuilder sb = new StringBuilder();
+                int j = debut + 1;
+                while (j < longueur) {
+                    char c = ligne.charAt(j);
+                    if (c == '"') {
+                        if (j + 1 < longueur && ligne.charAt(j + 1) == '"') {
+                            sb.append('"');
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    sb.append(c);
+                    j++;
+                }
+                champ = sb.toString();
+                suite = prochainSeparateur(ligne, j + 1);
+            } else {
+                suite = prochainSeparateur(ligne, debut);
+                champ = ligne.substring(debut, suite);
+            }
+            champs[nbChamps++] = champ.trim();
+            i = suite + 1;
+        }
+        return nbChamps == champs.length;
+    }
+
+    private static int prochainSeparateur(String ligne, int depuis) {
+        for (int i = depuis; i < ligne.length(); i++) {
+            char c = ligne.charAt(i);
+            if (c == ',' || c == ';') {
+                return i;
+            }
+        }
+        return ligne.length();
+    }
+}
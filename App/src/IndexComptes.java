@@ -0,0 +1,122 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Index des comptes par numéro : table à adressage ouvert (sondage linéaire) indexée directement par
+ * l'entier, sans boxing de la clé. La recherche est sans verrou et n'alloue rien ; ajout et retrait
+ * sont synchronisés (le gestionnaire les fait déjà sous son propre verrou).
+ *
+ * Un retrait laisse une marque (SUPPRIME) pour ne pas couper les chaînes de sondage des lecteurs
+ * concurrents ; les marques sont éliminées au prochain redimensionnement.
+ */
+class IndexComptes {
+
+    private static final Object SUPPRIME = new Object();
+
+    // Emplacements : null (libre), SUPPRIME ou un CompteBancaire ; taille en puissance de 2
+    private volatile AtomicReferenceArray<Object> table;
+    private int occupes; // Comptes et marques de suppression
+    private int taille;
+
+    IndexComptes(int capacite) {
+        table = new AtomicReferenceArray<>(capaciteTable(capacite));
+    }
+
+    int taille() {
+        return taille;
+    }
+
+    CompteBancaire get(int numero) {
+        AtomicReferenceArray<Object> t = table;
+        int masque = t.length() - 1;
+        for (int i = melanger(numero) & masque; ; i = (i + 1) & masque) {
+            Object valeur = t.get(i);
+            if (valeur == null) {
+                return null;
+            }
+            if (valeur != SUPPRIME && ((CompteBancaire) valeur).getNumeroCompte() == numero) {
+                return (CompteBancaire) valeur;
+            }
+        }
+    }
+
+    synchronized void ajouter(CompteBancaire compte) {
+        if (2 * (occupes + 1) > table.length()) {
+            redimensionner(Math.max(taille + 1, 2));
+        }
+        int numero = compte.getNumeroCompte();
+        AtomicReferenceArray<Object> t = table;
+        int masque = t.length() - 1;
+        int libre = -1;
+        for (int i = melanger(numero) & masque; ; i = (i + 1) & masque) {
+            Object valeur = t.get(i);
+            if (valeur == null) {
+                if (libre < 0) {
+                    libre = i;
+                    occupes++;
+                }
+                break;
+            }
+            if (valeur == SUPPRIME) {
+                if (libre < 0) {
+                    libre = i; // Réutilisée, mais on cherche encore un doublon plus loin dans la chaîne
+                }
+            } else if (((CompteBancaire) valeur).getNumeroCompte() == numero) {
+                t.set(i, compte);
+                return;
+            }
+        }
+        t.set(libre, compte);
+        taille++;
+    }
+
+    synchronized void retirer(int numero) {
+        AtomicReferenceArray<Object> t = table;
+        int masque = t.length() - 1;
+        for (int i = melanger(numero) & masque; ; i = (i + 1) & masque) {
+            Object valeur = t.get(i);
+            if (valeur == null) {
+                return;
+            }
+            if (valeur != SUPPRIME && ((CompteBancaire) valeur).getNumeroCompte() == numero) {
+                t.set(i, SUPPRIME);
+                taille--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reconstruit la table sans les marques de suppression, puis la publie d'un coup :
+     * un lecteur voit soit l'ancienne table complète, soit la nouvelle.
+     */
+    private void redimensionner(int minimum) {
+        AtomicReferenceArray<Object> ancienne = table;
+        AtomicReferenceArray<Object> nouvelle = new AtomicReferenceArray<>(capaciteTable(minimum));
+        int masque = nouvelle.length() - 1;
+        for (int j = 0; j < ancienne.length(); j++) {
+            Object valeur = ancienne.get(j);
+            if (valeur != null && valeur != SUPPRIME) {
+                int i = melanger(((CompteBancaire) valeur).getNumeroCompte()) & masque;
+                while (nouvelle.get(i) != null) {
+                    i = (i + 1) & masque;
+                }
+                nouvelle.set(i, valeur);
+            }
+        }
+        occupes = taille;
+        table = nouvelle;
+    }
+
+    /**
+     * Plus petite puissance de 2 gardant le taux de remplissage sous 1/2.
+     */
+    private static int capaciteTable(int comptes) {
+        return Math.max(16, Integer.highestOneBit(Math.max(1, comptes) * 2 - 1) << 1);
+    }
+
+    // Les numéros sont souvent consécutifs : on disperse les bits avant le masque
+    private static int melanger(int numero) {
+        int h = numero * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -11,9 +11,14 @@ import java.util.List;
  */
 public class InterfaceBanque extends JFrame {
 
+    private static final String TRI_CREATION = "Ordre de création";
+    private static final String TRI_SOLDE = "Solde (décroissant)";
+    private static final String TRI_BAISSES_JOUR = "Plus fortes baisses du jour";
+
     private GestionnaireBanque gestionnaire; // Le contrôleur pour la logique métier
     private DefaultListModel<CompteBancaire> listModel; // Modèle pour afficher les comptes
     private JList<CompteBancaire> listeComptes;
+    private JComboBox<String> choixTri; // Ordre d'affichage de la liste des comptes
     private JTextArea messageArea; // Pour afficher les résultats d'opération
 
     public InterfaceBanque() {
@@ -21,6 +26,7 @@ public class InterfaceBanque extends JFrame {
         
         // Initialiser le gestionnaire (charge les données existantes)
         gestionnaire = new GestionnaireBanque();
+        gestionnaire.publierMetriquesJmx(); // Latences et compteurs visibles dans jconsole
 
         // Configuration de la fenêtre principale
         this.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE); // On gère la fermeture pour la sauvegarde
@@ -45,6 +51,18 @@ public class InterfaceBanque extends JFrame {
         this.add(panelOperations, BorderLayout.CENTER);
         this.add(new JScrollPane(messageArea), BorderLayout.SOUTH);
 
+        // Rapprochement des soldes avec l'historique au démarrage : anomalies signalées en rouge
+        RapprochementComptes.Rapport rapprochement = gestionnaire.rapprocher();
+        if (!rapprochement.estCoherent()) {
+            System.err.print(rapprochement);
+            displayMessage("Anomalies au rapprochement des comptes (détail sur la console)", Color.RED);
+        }
+        AuditEmpreintes.Rapport empreintes = gestionnaire.verifierEmpreintes();
+        if (!empreintes.estIntegre()) {
+            System.err.println(empreintes);
+            displayMessage("Piste d'audit non intègre (détail sur la console)", Color.RED);
+        }
+
         // --- Gestion de la fermeture (Sauvegarde) ---
         this.addWindowListener(new WindowAdapter() {
             @Override
@@ -69,6 +87,14 @@ public class InterfaceBanque extends JFrame {
         listModel = new DefaultListModel<>();
         listeComptes = new JList<>(listModel);
         listeComptes.setFont(new Font("SansSerif", Font.PLAIN, 14));
+
+        // Tri de la liste : les classements sont maintenus par le gestionnaire, pas de tri à chaque rafraîchissement
+        choixTri = new JComboBox<>(new String[] {TRI_CREATION, TRI_SOLDE, TRI_BAISSES_JOUR});
+        choixTri.addActionListener(e -> refreshCompteList());
+        JPanel panelTri = new JPanel(new BorderLayout(5, 0));
+        panelTri.add(new JLabel("Trier par :"), BorderLayout.WEST);
+        panelTri.add(choixTri, BorderLayout.CENTER);
+        panelListe.add(panelTri, BorderLayout.NORTH);
         
         refreshCompteList();
         
@@ -84,7 +110,13 @@ public class InterfaceBanque extends JFrame {
             }
         });
         
-        panelListe.add(btnHistorique, BorderLayout.SOUTH);
+        JButton btnExportBanque = new JButton("Exporter Tous les Relevés");
+        btnExportBanque.addActionListener(e -> exporterReleve(null));
+
+        JPanel panelBoutons = new JPanel(new GridLayout(2, 1, 5, 5));
+        panelBoutons.add(btnHistorique);
+        panelBoutons.add(btnExportBanque);
+        panelListe.add(panelBoutons, BorderLayout.SOUTH);
         return panelListe;
     }
 
@@ -115,7 +147,7 @@ public class InterfaceBanque extends JFrame {
     }
 
     private JPanel createNouveauComptePanel() {
-        JPanel panel = new JPanel(new GridLayout(4, 2, 5, 5));
+        JPanel panel = new JPanel(new GridLayout(5, 2, 5, 5));
         panel.setBorder(BorderFactory.createTitledBorder("Créer un Nouveau Compte"));
 
         JTextField fieldNom = new JTextField();
@@ -131,6 +163,11 @@ public class InterfaceBanque extends JFrame {
         panel.add(fieldSolde);
         panel.add(new JLabel("")); // Espace vide pour l'alignement
         panel.add(btnCreer);
+        panel.add(new JLabel(""));
+        JButton btnImporter = new JButton("Importer des Comptes (CSV)");
+        panel.add(btnImporter);
+
+        btnImporter.addActionListener(e -> importerComptes(btnImporter));
 
         btnCreer.addActionListener(e -> {
             try {
@@ -257,40 +294,31 @@ public class InterfaceBanque extends JFrame {
                 return;
             }
 
-            CompteBancaire compte = gestionnaire.trouverCompte(numero);
+            // Le gestionnaire applique l'opération et sauvegarde les données
+            ResultatOperation resultat = type.equals("DEPOT")
+                    ? gestionnaire.effectuerDepot(numero, montant)
+                    : gestionnaire.effectuerRetrait(numero, montant);
 
-            if (compte != null) {
-                boolean success = false;
-                String transactionMessage = "";
+            if (resultat.estSucces()) {
+                refreshCompteList(); // Met à jour la liste pour afficher le nouveau solde
                 
-                if (type.equals("DEPOT")) {
-                    compte.deposer(montant);
-                    success = true;
-                    transactionMessage = "Dépôt de " + montant + " € sur le compte N°" + numero + " effectué.";
-                } else if (type.equals("RETRAIT")) {
-                    // Utilise la nouvelle signature de retirer avec le type de transaction
-                    if (compte.retirer(montant, "RETRAIT")) { 
-                        success = true;
-                        transactionMessage = "Retrait de " + montant + " € du compte N°" + numero + " effectué.";
-                    } else {
-                        displayMessage("Erreur: Solde insuffisant pour un retrait de " + montant + " €.", Color.RED);
-                    }
-                }
-                
-                if (success) {
-                    gestionnaire.sauvegarderDonnees(); // Sauvegarde après chaque transaction
-                    refreshCompteList(); // Met à jour la liste pour afficher le nouveau solde
-                    
-                    // Récupère l'heure réelle de la transaction pour l'affichage du message
-                    List<Transaction> historique = compte.getHistoriqueTransactions();
-                    String dateHeure = "";
-                    if (!historique.isEmpty()) {
-                        dateHeure = " (" + historique.get(historique.size() - 1).getDateHeureFormatee() + ")";
-                    }
-                    displayMessage(transactionMessage + dateHeure, Color.BLUE);
+                // Récupère l'heure réelle de la transaction pour l'affichage du message
+                CompteBancaire compte = gestionnaire.trouverCompte(numero);
+                List<Transaction> historique = compte.getHistoriqueTransactions();
+                String dateHeure = "";
+                if (!historique.isEmpty()) {
+                    dateHeure = " (" + historique.get(historique.size() - 1).getDateHeureFormatee() + ")";
                 }
-            } else {
+                String transactionMessage = type.equals("DEPOT")
+                        ? "Dépôt de " + montant + " € sur le compte N°" + numero + " effectué."
+                        : "Retrait de " + montant + " € du compte N°" + numero + " effectué.";
+                displayMessage(transactionMessage + dateHeure, Color.BLUE);
+            } else if (resultat == ResultatOperation.SOLDE_INSUFFISANT) {
+                displayMessage("Erreur: Solde insuffisant pour un retrait de " + montant + " €.", Color.RED);
+            } else if (resultat == ResultatOperation.COMPTE_INCONNU) {
                 displayMessage("Erreur: Compte N°" + numero + " non trouvé.", Color.RED);
+            } else {
+                displayMessage("Erreur: " + resultat.getLibelle() + ".", Color.RED);
             }
         } catch (NumberFormatException ex) {
             displayMessage("Erreur: Le numéro de compte et le montant doivent être numériques.", Color.RED);
@@ -316,7 +344,8 @@ public class InterfaceBanque extends JFrame {
             }
             
             // Appel de la méthode de transfert centralisée dans le gestionnaire
-            if (gestionnaire.transfererFonds(numSource, numCible, montant)) {
+            ResultatOperation resultat = gestionnaire.effectuerTransfert(numSource, numCible, montant);
+            if (resultat.estSucces()) {
                 refreshCompteList();
                 
                 // Récupère l'heure réelle de la transaction pour l'affichage du message
@@ -330,8 +359,8 @@ public class InterfaceBanque extends JFrame {
                 displayMessage("Transfert de " + montant + " € de N°" + numSource + " vers N°" + numCible + " réussi." + dateHeure, Color.BLUE);
                 fieldSource.setText(""); fieldCible.setText(""); fieldMontant.setText("");
             } else {
-                // Le gestionnaire gère déjà si le solde est insuffisant ou si les comptes n'existent pas
-                displayMessage("Erreur de transfert : Vérifiez les numéros de compte ou le solde insuffisant sur le compte source.", Color.RED);
+                // Le gestionnaire indique la raison : compte inconnu, solde insuffisant, plafond de vélocité...
+                displayMessage("Erreur de transfert : " + resultat.getLibelle() + ".", Color.RED);
             }
 
         } catch (NumberFormatException ex) {
@@ -356,8 +385,14 @@ public class InterfaceBanque extends JFrame {
         historyText.append(String.format("%-25s %-15s %-15s\n", "Date & Heure", "Type", "Montant"));
         historyText.append("--------------------------------------------------------------------------------\n");
         
-        // Afficher les transactions stockées
-        List<Transaction> historique = compte.getHistoriqueTransactions();
+        // Afficher les transactions stockées (archivées comprises)
+        List<Transaction> historique;
+        try {
+            historique = gestionnaire.getHistoriqueComplet(compte);
+        } catch (java.io.IOException e) {
+            historique = compte.getHistoriqueTransactions();
+            historyText.append("(Archive illisible, seules les transactions récentes sont affichées : ").append(e.getMessage()).append(")\n");
+        }
         
         if (historique.isEmpty()) {
             historyText.append("\nAucune transaction enregistrée pour ce compte.");
@@ -374,10 +409,14 @@ public class InterfaceBanque extends JFrame {
         
         dialog.add(new JScrollPane(historyArea), BorderLayout.CENTER);
         
+        JButton exportButton = new JButton("Exporter le Relevé");
+        exportButton.addActionListener(e -> exporterReleve(compte));
+
         JButton closeButton = new JButton("Fermer");
         closeButton.addActionListener(e -> dialog.dispose());
         
         JPanel southPanel = new JPanel();
+        southPanel.add(exportButton);
         southPanel.add(closeButton);
         dialog.add(southPanel, BorderLayout.SOUTH);
         
@@ -386,12 +425,106 @@ public class InterfaceBanque extends JFrame {
     }
 
 
+    /**
+     * Importe en masse des comptes depuis un fichier CSV (numero, nom, solde initial).
+     * La lecture et la sauvegarde finale se font hors de l'EDT ; le bouton reste désactivé pendant l'import.
+     */
+    private void importerComptes(JButton btnImporter) {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path fichier = chooser.getSelectedFile().toPath();
+        btnImporter.setEnabled(false);
+        displayMessage("Import de " + fichier.getFileName() + " en cours...", Color.BLUE);
+        new SwingWorker<ImportComptes.RapportImport, Void>() {
+            @Override
+            protected ImportComptes.RapportImport doInBackground() throws java.io.IOException {
+                try (java.io.Reader source = java.nio.file.Files.newBufferedReader(fichier)) {
+                    return ImportComptes.importer(gestionnaire, source);
+                }
+            }
+
+            @Override
+            protected void done() {
+                btnImporter.setEnabled(true);
+                try {
+                    ImportComptes.RapportImport rapport = get();
+                    refreshCompteList();
+                    String message = "Import : " + rapport + ".";
+                    if (!rapport.getRejets().isEmpty()) {
+                        message += " Premier rejet : " + rapport.getRejets().get(0);
+                    }
+                    displayMessage(message, rapport.getLignesRejetees() == 0 ? Color.BLUE : Color.ORANGE);
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    refreshCompteList(); // Les comptes créés avant l'erreur restent enregistrés
+                    displayMessage("Erreur lors de l'import : " + ex.getCause().getMessage(), Color.RED);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Exporte le relevé d'un compte, ou de toute la banque si compte est null, en CSV ou largeur fixe.
+     * L'export se fait hors de l'EDT, comme l'import.
+     */
+    private void exporterReleve(CompteBancaire compte) {
+        ExportReleve.Format[] formats = ExportReleve.Format.values();
+        ExportReleve.Format format = (ExportReleve.Format) JOptionPane.showInputDialog(this,
+                "Format du relevé :", "Export de Relevé", JOptionPane.QUESTION_MESSAGE, null, formats, formats[0]);
+        if (format == null) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        String nomFichier = compte == null ? "releves_banque" : "releve_" + compte.getNumeroCompte();
+        chooser.setSelectedFile(new java.io.File(nomFichier + (format == ExportReleve.Format.CSV ? ".csv" : ".txt")));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.io.File fichier = chooser.getSelectedFile();
+        displayMessage("Export du relevé dans " + fichier.getName() + " en cours...", Color.BLUE);
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws java.io.IOException {
+                try (ExportReleve export = new ExportReleve(fichier.toPath(), format)) {
+                    if (compte == null) {
+                        export.exporterBanque(gestionnaire);
+                    } else {
+                        export.exporterCompte(gestionnaire, compte);
+                    }
+                    return export.getLignesEcrites();
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    displayMessage("Relevé exporté (" + get() + " opérations) dans " + fichier.getName() + ".", Color.BLUE);
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    displayMessage("Erreur lors de l'export du relevé : " + ex.getCause().getMessage(), Color.RED);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
     /**
      * Met à jour la liste des comptes affichée à gauche.
      */
     private void refreshCompteList() {
         listModel.clear();
-        List<CompteBancaire> comptes = gestionnaire.getComptes();
+        List<CompteBancaire> comptes;
+        Object tri = choixTri.getSelectedItem();
+        if (TRI_SOLDE.equals(tri)) {
+            comptes = gestionnaire.topN(gestionnaire.getComptes().size());
+        } else if (TRI_BAISSES_JOUR.equals(tri)) {
+            comptes = gestionnaire.plusFortesBaissesDuJour(gestionnaire.getComptes().size());
+        } else {
+            comptes = gestionnaire.getComptes();
+        }
         for (CompteBancaire compte : comptes) {
             listModel.addElement(compte);
         }
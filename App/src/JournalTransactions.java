@@ -0,0 +1,195 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Historique des transactions d'un compte rangé dans des tableaux primitifs : date (ms depuis l'époque),
+ * montant, code du type et, pour une jambe de transfert, numéro du compte d'en face. Ajouter une transaction n'alloue rien tant que la capacité suffit ;
+ * les objets Transaction ne sont créés qu'à la lecture (affichage, export, archivage).
+ *
+ * Non synchronisé : le compte propriétaire sert de verrou.
+ */
+class JournalTransactions {
+
+    private static final ZoneId FUSEAU = ZoneId.systemDefault();
+
+    static final int SANS_CONTREPARTIE = Integer.MIN_VALUE; // Pas une jambe de transfert, ou transaction antérieure
+
+    // Types de transaction connus, numérotés à leur première apparition (DEPOT, RETRAIT...)
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();
+    private static volatile String[] types = new String[0];
+    private static volatile byte[][] typesOctets = new byte[0][]; // En UTF-8, pour les empreintes
+
+    private long[] dates;
+    private double[] montants;
+    private byte[] codes;
+    private int[] contreparties;
+    private int taille;
+
+    JournalTransactions() {
+        this(4);
+    }
+
+    JournalTransactions(int capacite) {
+        dates = new long[capacite];
+        montants = new double[capacite];
+        codes = new byte[capacite];
+        contreparties = new int[capacite];
+    }
+
+    int taille() {
+        return taille;
+    }
+
+    boolean estVide() {
+        return taille == 0;
+    }
+
+    long getDate(int i) {
+        return dates[i];
+    }
+
+    double getMontant(int i) {
+        return montants[i];
+    }
+
+    String getType(int i) {
+        return types[codes[i]];
+    }
+
+    /**
+     * Compte d'en face de la jambe de transfert d'indice i, ou SANS_CONTREPARTIE.
+     */
+    int getContrepartie(int i) {
+        return contreparties[i];
+    }
+
+    byte[] getTypeOctets(int i) {
+        return typesOctets[codes[i]];
+    }
+
+    /**
+     * Matérialise la transaction d'indice i (allocation : réservé aux lectures).
+     */
+    Transaction get(int i) {
+        return new Transaction(montants[i], getType(i), versDate(dates[i]),
+                contreparties[i] == SANS_CONTREPARTIE ? null : contreparties[i]);
+    }
+
+    void ajouter(long date, double montant, String type) {
+        ajouter(date, montant, type, SANS_CONTREPARTIE);
+    }
+
+    void ajouter(long date, double montant, String type, int contrepartie) {
+        if (taille == dates.length) {
+            agrandir(taille + 1);
+        }
+        dates[taille] = date;
+        montants[taille] = montant;
+        codes[taille] = code(type);
+        contreparties[taille] = contrepartie;
+        taille++;
+    }
+
+    void inserer(int position, long date, double montant, String type, int contrepartie) {
+        if (taille == dates.length) {
+            agrandir(taille + 1);
+        }
+        int aDecaler = taille - position;
+        System.arraycopy(dates, position, dates, position + 1, aDecaler);
+        System.arraycopy(montants, position, montants, position + 1, aDecaler);
+        System.arraycopy(codes, position, codes, position + 1, aDecaler);
+        System.arraycopy(contreparties, position, contreparties, position + 1, aDecaler);
+        dates[position] = date;
+        montants[position] = montant;
+        codes[position] = code(type);
+        contreparties[position] = contrepartie;
+        taille++;
+    }
+
+    /**
+     * Ajoute à la suite une copie de toutes les transactions de source (copie d'export, réutilisée).
+     */
+    void ajouter(JournalTransactions source) {
+        reserver(taille + source.taille);
+        System.arraycopy(source.dates, 0, dates, taille, source.taille);
+        System.arraycopy(source.montants, 0, montants, taille, source.taille);
+        System.arraycopy(source.codes, 0, codes, taille, source.taille);
+        System.arraycopy(source.contreparties, 0, contreparties, taille, source.taille);
+        taille += source.taille;
+    }
+
+    /**
+     * Vide le journal en gardant sa capacité.
+     */
+    void vider() {
+        taille = 0;
+    }
+
+    /**
+     * Retire les transactions d'indices [debut, fin).
+     */
+    void retirer(int debut, int fin) {
+        int aDecaler = taille - fin;
+        System.arraycopy(dates, fin, dates, debut, aDecaler);
+        System.arraycopy(montants, fin, montants, debut, aDecaler);
+        System.arraycopy(codes, fin, codes, debut, aDecaler);
+        System.arraycopy(contreparties, fin, contreparties, debut, aDecaler);
+        taille -= fin - debut;
+    }
+
+    /**
+     * Garantit la place pour au moins ce nombre de transactions sans réallocation.
+     */
+    void reserver(int capacite) {
+        if (capacite > dates.length) {
+            agrandir(capacite);
+        }
+    }
+
+    private void agrandir(int minimum) {
+        int capacite = Math.max(minimum, dates.length + (dates.length >> 1) + 1);
+        dates = Arrays.copyOf(dates, capacite);
+        montants = Arrays.copyOf(montants, capacite);
+        codes = Arrays.copyOf(codes, capacite);
+        contreparties = Arrays.copyOf(contreparties, capacite);
+    }
+
+    // --- Conversions ---
+
+    static long versMillis(LocalDateTime date) {
+        return date.atZone(FUSEAU).toInstant().toEpochMilli();
+    }
+
+    static LocalDateTime versDate(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), FUSEAU);
+    }
+
+    private static byte code(String type) {
+        Integer code = CODES.get(type);
+        return code != null ? (byte) (int) code : enregistrerType(type);
+    }
+
+    private static synchronized byte enregistrerType(String type) {
+        Integer existant = CODES.get(type);
+        if (existant != null) {
+            return (byte) (int) existant;
+        }
+        String[] connus = types;
+        if (connus.length == 128) {
+            throw new IllegalStateException("Trop de types de transaction distincts");
+        }
+        String[] nouveaux = Arrays.copyOf(connus, connus.length + 1);
+        nouveaux[connus.length] = type;
+        byte[][] octets = Arrays.copyOf(typesOctets, connus.length + 1);
+        octets[connus.length] = type.getBytes(StandardCharsets.UTF_8);
+        typesOctets = octets;
+        types = nouveaux; // Publiés avant le code : un lecteur qui voit le code voit aussi le type
+        CODES.put(type, connus.length);
+        return (byte) connus.length;
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Lecture sélective d'un fichier produit par {@link ExportColonnaire}.
+ * Le pied du fichier (dictionnaire des types et statistiques de chaque bloc) est lu à l'ouverture ;
+ * un parcours filtré par date ne lit ensuite que les blocs dont la plage [min, max] recoupe le filtre,
+ * et seulement les colonnes demandées.
+ */
+public class LecteurColonnaire implements AutoCloseable {
+
+    public enum Colonne { COMPTE, DATE, MONTANT, TYPE }
+
+    /**
+     * Reçoit les lignes retenues. Les colonnes non demandées valent 0 (ou null pour le type).
+     */
+    public interface Visiteur {
+        void ligne(int compte, long dateMillis, long centimes, String type);
+    }
+
+    private final FileChannel canal;
+    private final String[] types;
+    private final long[] positionsBlocs;
+    private final long[][] statsBlocs; // nbLignes, minDate, maxDate, minCompte, maxCompte, minMontant, maxMontant
+    // Un tampon réutilisé par colonne, plus un pour les en-têtes et le pied
+    private final ByteBuffer[] tampons = new ByteBuffer[ExportColonnaire.NB_COLONNES + 1];
+    private static final int TAMPON_GENERAL = ExportColonnaire.NB_COLONNES;
+    private int blocsLus;
+    private int blocsIgnores;
+    private long octetsLus;
+
+    public LecteurColonnaire(Path fichier) throws IOException {
+        this.canal = FileChannel.open(fichier, StandardOpenOption.READ);
+        try {
+            long taille = canal.size();
+            ByteBuffer fin = taille < 16 ? null : lire(TAMPON_GENERAL, taille - 12, 12);
+            long positionPied = fin == null ? -1 : fin.getLong();
+            if (fin == null || fin.getInt() != ExportColonnaire.MAGIC || lire(TAMPON_GENERAL, 0, 4).getInt() != ExportColonnaire.MAGIC
+                    || positionPied < 4 || positionPied > taille - 12) {
+                throw new IOException("Fichier colonnaire invalide : " + fichier);
+            }
+            ByteBuffer pied = lire(TAMPON_GENERAL, positionPied, (int) (taille - 12 - positionPied));
+            types = new String[(int) varLong(pied)];
+            for (int i = 0; i < types.length; i++) {
+                byte[] octets = new byte[(int) varLong(pied)];
+                pied.get(octets);
+                types[i] = new String(octets, StandardCharsets.UTF_8);
+            }
+            int nbBlocs = (int) varLong(pied);
+            positionsBlocs = new long[nbBlocs];
+            statsBlocs = new long[nbBlocs][];
+            for (int i = 0; i < nbBlocs; i++) {
+                positionsBlocs[i] = varLong(pied);
+                statsBlocs[i] = lireStats(pied);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Fichier tronqué ou pied corrompu : le canal ne doit pas survivre à l'échec
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Parcourt toutes les transactions dont la date est comprise dans [debut, fin] (bornes incluses).
+     * @return le nombre de lignes transmises au visiteur.
+     */
+    public long parcourir(LocalDateTime debut, LocalDateTime fin, Set<Colonne> colonnes, Visiteur visiteur) throws IOException {
+        return parcourir(ExportColonnaire.versMillis(debut), ExportColonnaire.versMillis(fin), colonnes, visiteur);
+    }
+
+    public long parcourir(long debutMillis, long finMillis, Set<Colonne> colonnes, Visiteur visiteur) throws IOException {
+        EnumSet<Colonne> lues = EnumSet.copyOf(colonnes);
+        lues.add(Colonne.DATE); // Toujours nécessaire pour filtrer ligne à ligne
+        long retenues = 0;
+        for (int b = 0; b < positionsBlocs.length; b++) {
+            long[] stats = statsBlocs[b];
+            if (stats[2] < debutMillis || stats[1] > finMillis) {
+                blocsIgnores++;
+                continue;
+            }
+            blocsLus++;
+            retenues += lireBloc(b, debutMillis, finMillis, lues, visiteur);
+        }
+        return retenues;
+    }
+
+    public int getNombreBlocs() {
+        return positionsBlocs.length;
+    }
+
+    public int getBlocsLus() {
+        return blocsLus;
+    }
+
+    public int getBlocsIgnores() {
+        return blocsIgnores;
+    }
+
+    /**
+     * Octets de données de blocs effectivement lus depuis l'ouverture (hors pied).
+     */
+    public long getOctetsLus() {
+        return octetsLus;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private long lireBloc(int bloc, long debut, long fin, Set<Colonne> colonnes, Visiteur visiteur) throws IOException {
+        // L'en-tête du bloc tient largement dans 128 octets (11 varints au plus)
+        long position = positionsBlocs[bloc];
+        ByteBuffer entete = lire(TAMPON_GENERAL, position, (int) Math.min(128, canal.size() - position));
+        long[] stats = lireStats(entete);
+        int lignes = (int) stats[0];
+        int[] longueurs = new int[ExportColonnaire.NB_COLONNES];
+        for (int c = 0; c < longueurs.length; c++) {
+            longueurs[c] = (int) varLong(entete);
+        }
+        long debutColonne = position + entete.position();
+
+        ByteBuffer[] donnees = new ByteBuffer[ExportColonnaire.NB_COLONNES];
+        for (Colonne colonne : Colonne.values()) {
+            int c = colonne.ordinal();
+            if (colonnes.contains(colonne)) {
+                donnees[c] = lire(c, debutColonne, longueurs[c]);
+                octetsLus += longueurs[c];
+            }
+            debutColonne += longueurs[c];
+        }
+
+        long retenues = 0;
+        int compte = 0;
+        long date = 0;
+        for (int i = 0; i < lignes; i++) {
+            long centimes = 0;
+            String type = null;
+            if (donnees[0] != null) {
+                compte += (int) dezigzag(varLong(donnees[0]));
+            }
+            date += dezigzag(varLong(donnees[1]));
+            if (donnees[2] != null) {
+                centimes = dezigzag(varLong(donnees[2]));
+            }
+            if (donnees[3] != null) {
+                type = types[donnees[3].get() & 0xFF];
+            }
+            if (date >= debut && date <= fin) {
+                visiteur.ligne(compte, date, centimes, type);
+                retenues++;
+            }
+        }
+        return retenues;
+    }
+
+    private static long[] lireStats(ByteBuffer buffer) {
+        long[] stats = new long[7];
+        stats[0] = varLong(buffer);
+        for (int i = 1; i < stats.length; i++) {
+            stats[i] = dezigzag(varLong(buffer));
+        }
+        return stats;
+    }
+
+    /**
+     * Lit longueur octets à la position donnée dans le tampon réutilisé n° emplacement (agrandi si besoin).
+     */
+    private ByteBuffer lire(int emplacement, long position, int longueur) throws IOException {
+        ByteBuffer tampon = tampons[emplacement];
+        if (tampon == null || tampon.capacity() < longueur) {
+            tampon = ByteBuffer.allocate(Math.max(longueur, tampon == null ? 64 * 1024 : tampon.capacity() * 2));
+            tampons[emplacement] = tampon;
+        }
+        tampon.clear().limit(longueur);
+        while (tampon.hasRemaining()) {
+            if (canal.read(tampon, position + tampon.position()) < 0) {
+                throw new IOException("Fin de fichier inattendue");
+            }
+        }
+        tampon.flip();
+        return tampon;
+    }
+
+    private static long varLong(ByteBuffer buffer) {
+        long valeur = 0;
+        int decalage = 0;
+        byte octet;
+        do {
+            octet = buffer.get();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            decalage += 7;
+        } while (octet < 0);
+        return valeur;
+    }
+
+    private static long dezigzag(long valeur) {
+        return (valeur >>> 1) ^ -(valeur & 1);
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métriques d'un gestionnaire : pour chaque opération, histogramme de latence et compteurs de
+ * résultats par raison d'échec ; jauges de volume des données. Publiées en MXBeans
+ * (banque:type=Operation,... et banque:type=Donnees,...) pour jconsole, VisualVM ou un agent JMX.
+ *
+ * L'enregistrement n'utilise que des compteurs sans verrou (HistogrammeLatence, LongAdder) :
+ * quelques dizaines de nanosecondes par opération, appel à System.nanoTime() compris.
+ */
+public class MetriquesBanque {
+
+    /**
+     * Opérations mesurées. Les recherches (trouverCompte) sont comprises dans les opérations qui les font.
+     */
+    public enum Operation {
+        CREATION, SUPPRESSION, DEPOT, RETRAIT, TRANSFERT, OPERATION_MULTIPLE, MOUVEMENT,
+        SAUVEGARDE, CHARGEMENT, ARCHIVAGE
+    }
+
+    public interface OperationMXBean {
+        long getNombre();
+
+        long getSucces();
+
+        long getEchecs();
+
+        /**
+         * Échecs par raison (nom de ResultatOperation, ou ENTREE_SORTIE pour une erreur de fichier).
+         */
+        Map<String, Long> getEchecsParRaison();
+
+        double getMoyenneMicros();
+
+        double getP50Micros();
+
+        double getP99Micros();
+
+        double getP999Micros();
+
+        double getMaxMicros();
+
+        void reinitialiser();
+    }
+
+    public interface DonneesMXBean {
+        long getNombreComptes();
+
+        /**
+         * Transactions gardées en mémoire (parcourt les comptes résidents à chaque lecture).
+         */
+        long getTransactionsEnMemoire();
+
+        /**
+         * Comptes en mémoire en mode tas borné (-1 en mode mémoire complète).
+         */
+        long getComptesEnCache();
+
+        long getOctetsDerniereSauvegarde();
+
+        /**
+         * Taille totale des fichiers de sauvegarde (hors archive d'historique).
+         */
+        long getTailleFichiers();
+    }
+
+    /**
+     * Mesures d'une opération.
+     */
+    static final class MesuresOperation implements OperationMXBean {
+        private final HistogrammeLatence latences = new HistogrammeLatence();
+        private final LongAdder[] parResultat = new LongAdder[ResultatOperation.values().length];
+        private final LongAdder erreursEntreeSortie = new LongAdder();
+
+        MesuresOperation() {
+            for (int i = 0; i < parResultat.length; i++) {
+                parResultat[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public long getNombre() {
+            return latences.getNombre();
+        }
+
+        @Override
+        public long getSucces() {
+            return parResultat[ResultatOperation.SUCCES.ordinal()].sum();
+        }
+
+        @Override
+        public long getEchecs() {
+            long echecs = erreursEntreeSortie.sum();
+            for (ResultatOperation resultat : ResultatOperation.values()) {
+                if (!resultat.estSucces()) {
+                    echecs += parResultat[resultat.ordinal()].sum();
+                }
+            }
+            return echecs;
+        }
+
+        @Override
+        public Map<String, Long> getEchecsParRaison() {
+            Map<String, Long> echecs = new LinkedHashMap<>();
+            for (ResultatOperation resultat : ResultatOperation.values()) {
+                if (!resultat.estSucces()) {
+                    echecs.put(resultat.name(), parResultat[resultat.ordinal()].sum());
+                }
+            }
+            echecs.put("ENTREE_SORTIE", erreursEntreeSortie.sum());
+            return echecs;
+        }
+
+        @Override
+        public double getMoyenneMicros() {
+            return latences.getMoyenne() / 1000;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return latences.getPercentile(0.50) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return latences.getPercentile(0.99) / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return latences.getPercentile(0.999) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return latences.getMaximum() / 1000.0;
+        }
+
+        @Override
+        public void reinitialiser() {
+            latences.reinitialiser();
+            for (LongAdder compteur : parResultat) {
+                compteur.reset();
+            }
+            erreursEntreeSortie.reset();
+        }
+    }
+
+    private final GestionnaireBanque gestionnaire;
+    private final Path fichierSauvegarde;
+    private final MesuresOperation[] operations = new MesuresOperation[Operation.values().length];
+    private ObjectName[] noms; // Noms JMX une fois publiées
+
+    MetriquesBanque(GestionnaireBanque gestionnaire, String fichierSauvegarde) {
+        this.gestionnaire = gestionnaire;
+        this.fichierSauvegarde = Path.of(fichierSauvegarde).toAbsolutePath();
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new MesuresOperation();
+        }
+    }
+
+    /**
+     * Enregistre une opération terminée.
+     * @param debut Valeur de System.nanoTime() au début de l'opération.
+     * @return Le résultat, inchangé.
+     */
+    ResultatOperation enregistrer(Operation operation, ResultatOperation resultat, long debut) {
+        MesuresOperation mesures = operations[operation.ordinal()];
+        mesures.latences.enregistrer(System.nanoTime() - debut);
+        mesures.parResultat[resultat.ordinal()].increment();
+        return resultat;
+    }
+
+    /**
+     * Enregistre une opération sur les fichiers (sauvegarde, chargement, archivage).
+     */
+    void enregistrerEntreeSortie(Operation operation, boolean reussie, long debut) {
+        MesuresOperation mesures = operations[operation.ordinal()];
+        mesures.latences.enregistrer(System.nanoTime() - debut);
+        if (reussie) {
+            mesures.parResultat[ResultatOperation.SUCCES.ordinal()].increment();
+        } else {
+            mesures.erreursEntreeSortie.increment();
+        }
+    }
+
+    public OperationMXBean getOperation(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /**
+     * Publie les MXBeans sur le serveur de la plateforme ; le fichier de sauvegarde distingue
+     * plusieurs gestionnaires d'une même JVM (partitions).
+     */
+    public synchronized void publier() throws JMException {
+        if (noms != null) {
+            return;
+        }
+        MBeanServer serveur = ManagementFactory.getPlatformMBeanServer();
+        String fichier = ObjectName.quote(fichierSauvegarde.toString());
+        ObjectName[] aPublier = new ObjectName[operations.length + 1];
+        for (Operation operation : Operation.values()) {
+            aPublier[operation.ordinal()] = new ObjectName("banque:type=Operation,fichier=" + fichier
+                    + ",nom=" + operation.name().toLowerCase());
+            serveur.registerMBean(operations[operation.ordinal()], aPublier[operation.ordinal()]);
+        }
+        aPublier[operations.length] = new ObjectName("banque:type=Donnees,fichier=" + fichier);
+        serveur.registerMBean(new Donnees(), aPublier[operations.length]);
+        noms = aPublier;
+    }
+
+    /**
+     * Retire les MXBeans publiés (gestionnaire fermé).
+     */
+    public synchronized void retirer() throws JMException {
+        if (noms == null) {
+            return;
+        }
+        MBeanServer serveur = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName nom : noms) {
+            if (serveur.isRegistered(nom)) {
+                serveur.unregisterMBean(nom);
+            }
+        }
+        noms = null;
+    }
+
+    private final class Donnees implements DonneesMXBean {
+        @Override
+        public long getNombreComptes() {
+            return gestionnaire.getNombreComptes();
+        }
+
+        @Override
+        public long getTransactionsEnMemoire() {
+            return gestionnaire.getTransactionsEnMemoire();
+        }
+
+        @Override
+        public long getComptesEnCache() {
+            CacheComptes cache = gestionnaire.getCacheComptes();
+            return cache == null ? -1 : cache.getTaille();
+        }
+
+        @Override
+        public long getOctetsDerniereSauvegarde() {
+            return gestionnaire.getOctetsDerniereSauvegarde();
+        }
+
+        @Override
+        public long getTailleFichiers() {
+            long total = 0;
+            String prefixe = fichierSauvegarde.getFileName().toString();
+            try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(fichierSauvegarde.getParent(), prefixe + "*")) {
+                for (Path fichier : fichiers) {
+                    if (Files.isRegularFile(fichier)) {
+                        total += Files.size(fichier);
+                    }
+                }
+            } catch (IOException e) {
+                return -1;
+            }
+            return total;
+        }
+    }
+}
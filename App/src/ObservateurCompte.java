@@ -0,0 +1,14 @@
+/**
+ * Reçoit les changements de solde d'un compte (classements, index...).
+ */
+public interface ObservateurCompte {
+
+    /**
+     * Appelé après chaque modification du solde d'un compte.
+     * @param compte Le compte modifié (déjà à jour).
+     * @param ancienSolde Le solde avant l'opération.
+     * @param ancienMouvement Le mouvement net du jour avant l'opération.
+     * @param ancienJour Le jour (epoch day) auquel se rapportait ancienMouvement.
+     */
+    void soldeModifie(CompteBancaire compte, double ancienSolde, double ancienMouvement, long ancienJour);
+}
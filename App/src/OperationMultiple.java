@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Opération à plusieurs jambes (un débit et plusieurs crédits, partage d'une note...).
+ * Le gestionnaire l'applique en bloc : toutes les jambes réussissent, ou aucune.
+ * Le total des débits doit être égal au total des crédits.
+ */
+public class OperationMultiple {
+
+    /**
+     * Une jambe : un montant positif débité ou crédité sur un compte.
+     */
+    public static final class Jambe {
+        private final int numeroCompte;
+        private final double montant;
+        private final boolean debit;
+
+        private Jambe(int numeroCompte, double montant, boolean debit) {
+            this.numeroCompte = numeroCompte;
+            this.montant = montant;
+            this.debit = debit;
+        }
+
+        public int getNumeroCompte() {
+            return numeroCompte;
+        }
+
+        public double getMontant() {
+            return montant;
+        }
+
+        public boolean estDebit() {
+            return debit;
+        }
+    }
+
+    private final List<Jambe> jambes = new ArrayList<>();
+
+    public OperationMultiple debiter(int numeroCompte, double montant) {
+        jambes.add(new Jambe(numeroCompte, montant, true));
+        return this;
+    }
+
+    public OperationMultiple crediter(int numeroCompte, double montant) {
+        jambes.add(new Jambe(numeroCompte, montant, false));
+        return this;
+    }
+
+    public List<Jambe> getJambes() {
+        return Collections.unmodifiableList(jambes);
+    }
+
+    /**
+     * Vérifie la forme de l'opération (indépendamment des soldes) :
+     * au moins un débit et un crédit, montants positifs, débits et crédits équilibrés au centime.
+     */
+    ResultatOperation verifierForme() {
+        long debits = 0;
+        long credits = 0;
+        for (Jambe jambe : jambes) {
+            if (!(jambe.montant > 0) || Double.isInfinite(jambe.montant)) {
+                return ResultatOperation.MONTANT_INVALIDE;
+            }
+            long centimes = Math.round(jambe.montant * 100);
+            if (jambe.debit) {
+                debits += centimes;
+            } else {
+                credits += centimes;
+            }
+        }
+        if (debits == 0 || credits == 0 || debits != credits) {
+            return ResultatOperation.MONTANT_INVALIDE;
+        }
+        return ResultatOperation.SUCCES;
+    }
+}
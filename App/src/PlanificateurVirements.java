@@ -0,0 +1,712 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Virements planifiés et permanents (loyer mensuel, épargne hebdomadaire...) exécutés par le gestionnaire.
+ *
+ * Les échéances sont rangées dans une roue temporelle hiérarchique : 4 niveaux de 256 seaux, le premier
+ * d'un tic par seau, chaque niveau 256 fois plus grossier que le précédent. Planifier ou annuler coûte
+ * O(1) quel que soit le nombre de virements (des millions), et chaque tic ne visite qu'un seau ; les
+ * virements d'un seau lointain redescendent d'un niveau quand la roue inférieure fait un tour.
+ * Tous les virements échus au même tic sont exécutés en lot (GestionnaireBanque.effectuerTransferts).
+ *
+ * Persistance : un instantané (.virements) et un journal des changements depuis l'instantané
+ * (.virements.journal), rejoué au chargement puis compacté. Au redémarrage, les échéances passées
+ * pendant l'arrêt sont rattrapées, une occurrence par tic. Avant chaque lot, les occurrences qu'il va
+ * payer sont journalisées et forcées sur disque avec le numéro de la dernière sauvegarde de la banque ;
+ * leurs fins ne sont journalisées qu'après une sauvegarde de la banque qui contient les paiements.
+ * Au redémarrage, une occurrence commencée sans fin journalisée :
+ * - dont la clé d'idempotence (virement-id-occurrence, sauvegardée avec les comptes) est connue a été
+ *   payée : elle reprend son résultat ;
+ * - sinon, si la banque chargée est la sauvegarde d'avant le lot, le paiement n'a pas atteint le disque :
+ *   l'occurrence est rejouée ;
+ * - sinon (clé expirée, sauvegarde intercalée pendant le lot) elle n'est pas rejouée et est signalée à vérifier.
+ */
+public class PlanificateurVirements implements AutoCloseable {
+
+    public enum Periodicite { UNIQUE, QUOTIDIENNE, HEBDOMADAIRE, MENSUELLE }
+
+    private static final int MAGIC = 0x42565031; // "BVP1"
+    private static final int BITS_NIVEAU = 8;
+    private static final int SEAUX = 1 << BITS_NIVEAU;
+    private static final int NIVEAUX = 4;
+    private static final long PORTEE = 1L << (BITS_NIVEAU * NIVEAUX); // Tics couverts par la roue
+    private static final int LOT = 4096; // Transferts par prise du verrou du gestionnaire
+
+    // Enregistrements du journal
+    private static final byte AJOUT = 1;
+    private static final byte ANNULATION = 2;
+    private static final byte OCCURRENCE = 3;
+    private static final byte DEBUT_LOT = 4;
+
+    /**
+     * Un virement planifié. Les champs mobiles (occurrence, échéance, dernier résultat) changent à
+     * chaque exécution ; un instantané cohérent s'obtient par getVirement().
+     */
+    public static final class Virement {
+        private final long id;
+        private final int source;
+        private final int cible;
+        private final double montant;
+        private final Periodicite periodicite;
+        private final long premiere; // ms
+        private final long fin; // ms, Long.MAX_VALUE sans fin
+        private int occurrence; // Numéro de la prochaine occurrence (0 = première échéance)
+        private long echeance; // ms
+        private ResultatOperation dernierResultat;
+        private boolean annule;
+
+        // Chaînage dans un seau de la roue
+        private Virement precedent;
+        private Virement suivant;
+        private int niveau = -1;
+        private int seau;
+
+        private Virement(long id, int source, int cible, double montant, Periodicite periodicite, long premiere, long fin) {
+            this.id = id;
+            this.source = source;
+            this.cible = cible;
+            this.montant = montant;
+            this.periodicite = periodicite;
+            this.premiere = premiere;
+            this.fin = fin;
+        }
+
+        private Virement copie() {
+            Virement copie = new Virement(id, source, cible, montant, periodicite, premiere, fin);
+            copie.occurrence = occurrence;
+            copie.echeance = echeance;
+            copie.dernierResultat = dernierResultat;
+            return copie;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getSource() {
+            return source;
+        }
+
+        public int getCible() {
+            return cible;
+        }
+
+        public double getMontant() {
+            return montant;
+        }
+
+        public Periodicite getPeriodicite() {
+            return periodicite;
+        }
+
+        public LocalDateTime getProchaineEcheance() {
+            return JournalTransactions.versDate(echeance);
+        }
+
+        /**
+         * Résultat de la dernière occurrence exécutée, ou null.
+         */
+        public ResultatOperation getDernierResultat() {
+            return dernierResultat;
+        }
+    }
+
+    private final GestionnaireBanque gestionnaire;
+    private final Path fichier;
+    private final Path fichierJournal;
+    private final long dureeTic; // ms
+
+    private final Map<Long, Virement> virements = new HashMap<>();
+    private final Virement[][] roue = new Virement[NIVEAUX][SEAUX];
+    private int dansLaRoue;
+    private long courant; // Dernier tic traité
+    private long prochainId = 1;
+
+    private FileOutputStream fluxJournal;
+    private DataOutputStream journal;
+    private long enregistrementsJournal;
+
+    private final Object tic = new Object(); // Un seul avancement de la roue à la fois
+    private ScheduledExecutorService horloge;
+    private final LongAdder executes = new LongAdder();
+    private final LongAdder echecs = new LongAdder();
+    // Occurrences payées {id, occurrence suivante ou -1}, journalisées après la sauvegarde de la banque
+    private final List<long[]> aConfirmer = new ArrayList<>();
+
+    /**
+     * Ouvre le planificateur adossé au fichier de sauvegarde du gestionnaire (créé s'il n'existe pas).
+     * @param dureeTic Précision des échéances (par exemple une seconde).
+     */
+    public PlanificateurVirements(GestionnaireBanque gestionnaire, String fichierSauvegarde, Duration dureeTic) throws IOException {
+        if (dureeTic.toMillis() <= 0) {
+            throw new IllegalArgumentException("Durée de tic invalide : " + dureeTic);
+        }
+        this.gestionnaire = gestionnaire;
+        this.fichier = Path.of(fichierSauvegarde + ".virements");
+        this.fichierJournal = Path.of(fichierSauvegarde + ".virements.journal");
+        this.dureeTic = dureeTic.toMillis();
+        this.courant = tic(System.currentTimeMillis());
+        charger();
+        sauvegarder(); // Compacte le journal rejoué
+    }
+
+    // --- Planification ---
+
+    public long planifier(int source, int cible, double montant, LocalDateTime premiereEcheance, Periodicite periodicite) {
+        return planifier(source, cible, montant, premiereEcheance, periodicite, null);
+    }
+
+    /**
+     * Planifie un virement ; une échéance déjà passée est exécutée au prochain tic.
+     * @param fin Dernière date d'exécution possible, ou null pour un virement permanent sans fin.
+     * @return L'identifiant du virement.
+     */
+    public synchronized long planifier(int source, int cible, double montant, LocalDateTime premiereEcheance,
+                                       Periodicite periodicite, LocalDateTime fin) {
+        if (!(montant > 0)) {
+            throw new IllegalArgumentException("Montant invalide : " + montant);
+        }
+        if (source == cible) {
+            throw new IllegalArgumentException("Comptes source et cible identiques");
+        }
+        Virement virement = new Virement(prochainId++, source, cible, montant, periodicite,
+                JournalTransactions.versMillis(premiereEcheance), fin == null ? Long.MAX_VALUE : JournalTransactions.versMillis(fin));
+        virement.echeance = virement.premiere;
+        virements.put(virement.id, virement);
+        placer(virement, courant + 1);
+        journaliser(() -> {
+            journal.writeByte(AJOUT);
+            ecrireVirement(journal, virement);
+        });
+        return virement.id;
+    }
+
+    /**
+     * Annule un virement (les occurrences en cours d'exécution se terminent).
+     * @return false si l'identifiant est inconnu ou le virement déjà terminé.
+     */
+    public synchronized boolean annuler(long id) {
+        Virement virement = virements.remove(id);
+        if (virement == null) {
+            return false;
+        }
+        virement.annule = true;
+        retirer(virement);
+        journaliser(() -> {
+            journal.writeByte(ANNULATION);
+            journal.writeLong(id);
+        });
+        return true;
+    }
+
+    /**
+     * Copie du virement, ou null s'il est inconnu (annulé ou terminé).
+     */
+    public synchronized Virement getVirement(long id) {
+        Virement virement = virements.get(id);
+        return virement == null ? null : virement.copie();
+    }
+
+    public synchronized int getNombreVirements() {
+        return virements.size();
+    }
+
+    public long getExecutes() {
+        return executes.sum();
+    }
+
+    public long getEchecs() {
+        return echecs.sum();
+    }
+
+    // --- Exécution ---
+
+    /**
+     * Lance le thread qui fait avancer la roue à chaque tic.
+     */
+    public synchronized void demarrer() {
+        if (horloge != null) {
+            return;
+        }
+        horloge = Executors.newSingleThreadScheduledExecutor(tache -> {
+            Thread thread = new Thread(tache, "banque-virements");
+            thread.setDaemon(true);
+            return thread;
+        });
+        horloge.scheduleAtFixedRate(() -> {
+            try {
+                avancer(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                System.err.println("Erreur du planificateur de virements : " + e.getMessage());
+            }
+        }, dureeTic - System.currentTimeMillis() % dureeTic, dureeTic, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Traite tous les tics jusqu'à l'instant donné et exécute les virements échus.
+     * Appelé par le thread de demarrer(), ou directement (traitements en lot, tests).
+     * @param maintenant Date en ms.
+     */
+    public void avancer(long maintenant) {
+        long cible = tic(maintenant);
+        // Sous le verrou tic jusqu'au compactage : aucun instantané n'est pris pendant qu'un lot s'exécute
+        synchronized (tic) {
+            while (true) {
+                List<Virement> dus;
+                synchronized (this) {
+                    if (dansLaRoue == 0 && courant < cible) {
+                        courant = cible; // Roue vide : rien à visiter
+                    }
+                    if (courant >= cible) {
+                        break;
+                    }
+                    dus = etape();
+                }
+                if (!dus.isEmpty()) {
+                    executer(dus, maintenant);
+                }
+            }
+            // Fins d'occurrences : une sauvegarde par appel, même pour un rattrapage de plusieurs tics ;
+            // après un échec, retentée au tic suivant
+            boolean confirmees = confirmerOccurrences();
+            synchronized (this) {
+                if (confirmees && enregistrementsJournal > Math.max(100_000, virements.size())) {
+                    try {
+                        sauvegarder();
+                    } catch (IOException e) {
+                        System.err.println("Erreur lors du compactage des virements : " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sauvegarde la banque puis journalise (forcé) les fins des occurrences payées depuis : une fin
+     * n'atteint le journal qu'une fois le paiement sur disque. Appelé sous le verrou tic.
+     * @return false si la sauvegarde de la banque a échoué (fins gardées pour la tentative suivante).
+     */
+    private boolean confirmerOccurrences() {
+        synchronized (this) {
+            if (aConfirmer.isEmpty()) {
+                return true;
+            }
+        }
+        if (!gestionnaire.sauvegarder()) {
+            return false;
+        }
+        synchronized (this) {
+            for (long[] fin : aConfirmer) {
+                journaliser(() -> {
+                    journal.writeByte(OCCURRENCE);
+                    journal.writeLong(fin[0]);
+                    journal.writeInt((int) fin[1]);
+                });
+            }
+            aConfirmer.clear();
+            forcerJournal();
+        }
+        return true;
+    }
+
+    /**
+     * Passe au tic suivant : redescend les seaux des niveaux supérieurs dont c'est le tour
+     * (du plus haut au plus bas), puis détache les virements du seau courant.
+     */
+    private List<Virement> etape() {
+        long t = courant + 1;
+        for (int niveau = NIVEAUX - 1; niveau > 0; niveau--) {
+            if ((t & ((1L << (BITS_NIVEAU * niveau)) - 1)) == 0) {
+                int seau = (int) (t >>> (BITS_NIVEAU * niveau)) & (SEAUX - 1);
+                Virement virement = roue[niveau][seau];
+                roue[niveau][seau] = null;
+                while (virement != null) {
+                    Virement suivant = virement.suivant;
+                    virement.niveau = -1;
+                    dansLaRoue--;
+                    placer(virement, t);
+                    virement = suivant;
+                }
+            }
+        }
+        courant = t;
+        List<Virement> dus = new ArrayList<>();
+        int seau = (int) t & (SEAUX - 1);
+        Virement virement = roue[0][seau];
+        roue[0][seau] = null;
+        while (virement != null) {
+            Virement suivant = virement.suivant;
+            virement.niveau = -1;
+            dansLaRoue--;
+            if (tic(virement.echeance) > t) {
+                placer(virement, t + 1); // Au-delà de la portée de la roue lors de son placement
+            } else {
+                dus.add(virement);
+            }
+            virement = suivant;
+        }
+        return dus;
+    }
+
+    /**
+     * Exécute un lot de virements échus puis les replace à leur occurrence suivante. Les occurrences
+     * d'un lot sont journalisées (forcé) avant son exécution, leurs fins par confirmerOccurrences().
+     */
+    private void executer(List<Virement> dus, long maintenant) {
+        int[] sources = new int[Math.min(LOT, dus.size())];
+        int[] cibles = new int[sources.length];
+        double[] montants = new double[sources.length];
+        String[] cles = new String[sources.length];
+        for (int debut = 0; debut < dus.size(); debut += LOT) {
+            int nombre = Math.min(LOT, dus.size() - debut);
+            List<Virement> lot = dus.subList(debut, debut + nombre);
+            synchronized (this) {
+                for (int i = 0; i < nombre; i++) {
+                    Virement virement = lot.get(i);
+                    sources[i] = virement.source;
+                    cibles[i] = virement.cible;
+                    montants[i] = virement.montant;
+                    cles[i] = cle(virement);
+                }
+                long sauvegardeBanque = gestionnaire.getNumeroSauvegarde();
+                journaliser(() -> {
+                    journal.writeByte(DEBUT_LOT);
+                    journal.writeLong(sauvegardeBanque);
+                    journal.writeInt(nombre);
+                    for (Virement virement : lot) {
+                        journal.writeLong(virement.id);
+                        journal.writeInt(virement.occurrence);
+                    }
+                });
+                forcerJournal();
+            }
+            ResultatOperation[] resultats = gestionnaire.effectuerTransferts(nombre, sources, cibles, montants, cles);
+            synchronized (this) {
+                for (int i = 0; i < nombre; i++) {
+                    Virement virement = dus.get(debut + i);
+                    (resultats[i].estSucces() ? executes : echecs).increment();
+                    virement.dernierResultat = resultats[i];
+                    if (!virement.annule) {
+                        passerOccurrenceSuivante(virement, maintenant);
+                    }
+                }
+            }
+        }
+    }
+
+    private void passerOccurrenceSuivante(Virement virement, long maintenant) {
+        boolean termine = occurrenceSuivante(virement);
+        int occurrence = termine ? -1 : virement.occurrence;
+        if (termine) {
+            virements.remove(virement.id);
+        } else {
+            placer(virement, courant + 1); // Une échéance déjà passée (rattrapage) part au tic suivant
+        }
+        aConfirmer.add(new long[] {virement.id, occurrence});
+    }
+
+    /**
+     * Passe le virement à son occurrence suivante.
+     * @return true s'il est terminé (virement unique, ou prochaine échéance après sa fin).
+     */
+    private static boolean occurrenceSuivante(Virement virement) {
+        virement.occurrence++;
+        if (virement.periodicite == Periodicite.UNIQUE) {
+            return true;
+        }
+        virement.echeance = echeance(virement.premiere, virement.periodicite, virement.occurrence);
+        return virement.echeance > virement.fin;
+    }
+
+    private static String cle(Virement virement) {
+        return "virement-" + virement.id + "-" + virement.occurrence;
+    }
+
+    /**
+     * Date de la n-ième occurrence, calculée depuis la première (un virement du 31 passe le 30 avril
+     * puis revient au 31 mai) et en heure locale (pas de décalage aux changements d'heure).
+     */
+    private static long echeance(long premiere, Periodicite periodicite, int occurrence) {
+        LocalDateTime debut = JournalTransactions.versDate(premiere);
+        switch (periodicite) {
+            case QUOTIDIENNE:
+                return JournalTransactions.versMillis(debut.plusDays(occurrence));
+            case HEBDOMADAIRE:
+                return JournalTransactions.versMillis(debut.plusWeeks(occurrence));
+            case MENSUELLE:
+                return JournalTransactions.versMillis(debut.plusMonths(occurrence));
+            default:
+                return premiere;
+        }
+    }
+
+    // --- Roue ---
+
+    private long tic(long millis) {
+        return Math.floorDiv(millis, dureeTic);
+    }
+
+    /**
+     * Range un virement dans la roue : niveau selon l'éloignement de l'échéance, seau selon ses bits.
+     * @param reference Premier tic encore à traiter.
+     */
+    private void placer(Virement virement, long reference) {
+        long t = Math.max(tic(virement.echeance), reference);
+        long ecart = t - reference;
+        if (ecart >= PORTEE) {
+            t = reference + PORTEE - 1; // Replacé au passage, plus près de son échéance
+            ecart = PORTEE - 1;
+        }
+        int niveau = 0;
+        while (ecart >= 1L << (BITS_NIVEAU * (niveau + 1))) {
+            niveau++;
+        }
+        int seau = (int) (t >>> (BITS_NIVEAU * niveau)) & (SEAUX - 1);
+        virement.niveau = niveau;
+        virement.seau = seau;
+        virement.precedent = null;
+        virement.suivant = roue[niveau][seau];
+        if (virement.suivant != null) {
+            virement.suivant.precedent = virement;
+        }
+        roue[niveau][seau] = virement;
+        dansLaRoue++;
+    }
+
+    private void retirer(Virement virement) {
+        if (virement.niveau < 0) {
+            return; // En cours d'exécution
+        }
+        if (virement.precedent != null) {
+            virement.precedent.suivant = virement.suivant;
+        } else {
+            roue[virement.niveau][virement.seau] = virement.suivant;
+        }
+        if (virement.suivant != null) {
+            virement.suivant.precedent = virement.precedent;
+        }
+        virement.precedent = null;
+        virement.suivant = null;
+        virement.niveau = -1;
+        dansLaRoue--;
+    }
+
+    // --- Persistance ---
+
+    private interface Ecriture {
+        void ecrire() throws IOException;
+    }
+
+    /**
+     * Ajoute un enregistrement au journal (vidé vers le système à chaque appel, forcé sur disque après
+     * les exécutions d'un avancement).
+     */
+    private void journaliser(Ecriture ecriture) {
+        try {
+            ecriture.ecrire();
+            journal.flush();
+            enregistrementsJournal++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture du journal des virements impossible", e);
+        }
+    }
+
+    private void forcerJournal() {
+        try {
+            fluxJournal.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture du journal des virements impossible", e);
+        }
+    }
+
+    /**
+     * Écrit l'instantané de tous les virements (renommage atomique) puis repart d'un journal vide.
+     * Attend la fin du lot en cours : ses débuts d'occurrences ne doivent pas quitter le journal ;
+     * les occurrences payées sont d'abord confirmées.
+     * @throws IOException Si la banque n'a pas pu être sauvegardée (journal conservé) ou l'instantané écrit.
+     */
+    public void sauvegarder() throws IOException {
+        synchronized (tic) {
+            exigerConfirmation();
+            synchronized (this) {
+                ecrireInstantane();
+            }
+        }
+    }
+
+    private void exigerConfirmation() throws IOException {
+        if (!confirmerOccurrences()) {
+            throw new IOException("Sauvegarde de la banque impossible : virements payés non confirmés, journal conservé");
+        }
+    }
+
+    private void ecrireInstantane() throws IOException {
+        Path temporaire = Path.of(fichier + ".tmp");
+        try (FileOutputStream flux = new FileOutputStream(temporaire.toFile());
+             DataOutputStream sortie = new DataOutputStream(new BufferedOutputStream(flux, 1 << 16))) {
+            sortie.writeInt(MAGIC);
+            sortie.writeLong(prochainId);
+            sortie.writeInt(virements.size());
+            for (Virement virement : virements.values()) {
+                ecrireVirement(sortie, virement);
+            }
+            sortie.flush();
+            flux.getFD().sync();
+        }
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Rejouer un journal déjà compris dans l'instantané ne change rien : un arrêt ici est sans effet
+        if (journal != null) {
+            journal.close();
+        }
+        fluxJournal = new FileOutputStream(fichierJournal.toFile());
+        journal = new DataOutputStream(new BufferedOutputStream(fluxJournal, 1 << 16));
+        enregistrementsJournal = 0;
+    }
+
+    private static void ecrireVirement(DataOutputStream sortie, Virement virement) throws IOException {
+        sortie.writeLong(virement.id);
+        sortie.writeInt(virement.source);
+        sortie.writeInt(virement.cible);
+        sortie.writeDouble(virement.montant);
+        sortie.writeByte(virement.periodicite.ordinal());
+        sortie.writeLong(virement.premiere);
+        sortie.writeLong(virement.fin);
+        sortie.writeInt(virement.occurrence);
+    }
+
+    private static Virement lireVirement(DataInputStream entree) throws IOException {
+        Virement virement = new Virement(entree.readLong(), entree.readInt(), entree.readInt(), entree.readDouble(),
+                Periodicite.values()[entree.readByte()], entree.readLong(), entree.readLong());
+        virement.occurrence = entree.readInt();
+        virement.echeance = echeance(virement.premiere, virement.periodicite, virement.occurrence);
+        return virement;
+    }
+
+    /**
+     * Lit l'instantané, rejoue le journal (une fin tronquée par un arrêt brutal est ignorée), règle les
+     * occurrences commencées sans fin journalisée (voir la description de la classe), puis remplit la roue.
+     */
+    private void charger() throws IOException {
+        if (Files.exists(fichier)) {
+            try (DataInputStream entree = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichier), 1 << 16))) {
+                if (entree.readInt() != MAGIC) {
+                    throw new IOException("Fichier de virements invalide : " + fichier);
+                }
+                prochainId = entree.readLong();
+                for (int n = entree.readInt(); n > 0; n--) {
+                    Virement virement = lireVirement(entree);
+                    virements.put(virement.id, virement);
+                }
+            }
+        }
+        // Identifiant → {occurrence commencée, pas encore terminée ; sauvegarde de la banque avant son lot}
+        Map<Long, long[]> commencees = new HashMap<>();
+        if (Files.exists(fichierJournal)) {
+            try (DataInputStream entree = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichierJournal), 1 << 16))) {
+                while (true) {
+                    byte type = entree.readByte();
+                    if (type == AJOUT) {
+                        Virement virement = lireVirement(entree);
+                        virements.put(virement.id, virement);
+                        prochainId = Math.max(prochainId, virement.id + 1);
+                    } else if (type == ANNULATION) {
+                        virements.remove(entree.readLong());
+                    } else if (type == DEBUT_LOT) {
+                        long sauvegardeBanque = entree.readLong();
+                        for (int n = entree.readInt(); n > 0; n--) {
+                            commencees.put(entree.readLong(), new long[] {entree.readInt(), sauvegardeBanque});
+                        }
+                    } else if (type == OCCURRENCE) {
+                        long id = entree.readLong();
+                        int occurrence = entree.readInt();
+                        commencees.remove(id);
+                        Virement virement = virements.get(id);
+                        if (occurrence < 0) {
+                            virements.remove(id);
+                        } else if (virement != null) {
+                            virement.occurrence = occurrence;
+                            virement.echeance = echeance(virement.premiere, virement.periodicite, occurrence);
+                        }
+                    } else {
+                        break; // Octet inconnu : fin du journal corrompue, ignorée
+                    }
+                }
+            } catch (EOFException e) {
+                // Fin du journal (éventuellement tronquée)
+            }
+        }
+        long sauvegardeBanque = gestionnaire.getNumeroSauvegarde();
+        for (Map.Entry<Long, long[]> commencee : commencees.entrySet()) {
+            Virement virement = virements.get(commencee.getKey());
+            if (virement == null || virement.occurrence != commencee.getValue()[0]) {
+                continue;
+            }
+            String cle = cle(virement);
+            virement.dernierResultat = gestionnaire.getCacheIdempotence().resultat(cle);
+            if (virement.dernierResultat == null) {
+                if (sauvegardeBanque >= 0 && sauvegardeBanque == commencee.getValue()[1]) {
+                    continue; // Aucune sauvegarde de la banque depuis le lot : non payée sur disque, rejouée au prochain tic
+                }
+                System.err.println("Virement planifié " + cle + " commencé avant l'arrêt, exécution non confirmée : non rejoué, à vérifier");
+            }
+            if (occurrenceSuivante(virement)) {
+                virements.remove(virement.id);
+            }
+        }
+        for (Virement virement : virements.values()) {
+            placer(virement, courant + 1);
+        }
+    }
+
+    /**
+     * Arrête le thread du planificateur et écrit l'instantané.
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService aArreter;
+        synchronized (this) {
+            aArreter = horloge;
+            horloge = null;
+        }
+        if (aArreter != null) {
+            aArreter.shutdown();
+            try {
+                aArreter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (tic) {
+            try {
+                exigerConfirmation();
+                synchronized (this) {
+                    ecrireInstantane();
+                }
+            } finally {
+                synchronized (this) {
+                    journal.close();
+                }
+            }
+        }
+    }
+}
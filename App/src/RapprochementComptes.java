@@ -0,0 +1,513 @@
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rapprochement des soldes avec l'historique, en parallèle (fork-join) :
+ * <ul>
+ * <li>pour chaque compte, le solde doit égaler la somme archivée plus la somme signée des transactions
+ * en mémoire (sens de Transaction.signe), au demi-centime près ;</li>
+ * <li>chaque TRANSFERT_EMIS doit avoir sa contrepartie, le TRANSFERT_RECU du compte destinataire (ou le
+ * TRANSFERT_REMBOURSE du compte émetteur) du même montant, et réciproquement ;</li>
+ * <li>les débits et crédits des opérations multiples doivent s'équilibrer au centime.</li>
+ * </ul>
+ * Chaque jambe de transfert note le compte d'en face : les jambes sont appariées par émetteur, destinataire
+ * et montant, dans l'ordre des dates. Celles d'un historique antérieur, sans compte d'en face, ne sont
+ * appariées qu'entre elles, par montant à ECART_MAX_MS près. Un transfert impliquant un compte supprimé,
+ * ou à cheval sur la limite d'un archivage, apparaît donc sans contrepartie.
+ *
+ * Chaque compte est lu sous son propre verrou ; pour que les transferts soient vus en entier,
+ * l'appelant suspend les opérations (voir GestionnaireBanque.rapprocher()).
+ */
+public class RapprochementComptes {
+
+    static final long ECART_MAX_MS = 60_000; // Jambes sans compte d'en face : décalage admis entre débit et crédit
+    private static final long PAIRE_INCONNUE = Long.MIN_VALUE;
+    private static final int COMPTES_PAR_TACHE = 4096;
+    private static final int GROUPES = 256; // Groupes de jambes (par montant) appariés en parallèle
+    private static final int ANOMALIES_DETAILLEES = 1000;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    /**
+     * Un écart constaté sur un compte.
+     */
+    public static final class Anomalie {
+        private final int numeroCompte;
+        private final String description;
+
+        private Anomalie(int numeroCompte, String description) {
+            this.numeroCompte = numeroCompte;
+            this.description = description;
+        }
+
+        public int getNumeroCompte() {
+            return numeroCompte;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public String toString() {
+            return "Compte " + numeroCompte + " : " + description;
+        }
+    }
+
+    /**
+     * Bilan d'un rapprochement.
+     */
+    public static final class Rapport {
+        private final long comptes;
+        private final long transferts;
+        private final long ecartsSolde;
+        private final long jambesSansContrepartie;
+        private final long ecartOperationsMultiples; // En centimes : débits - crédits
+        private final long nombreAnomalies;
+        private final List<Anomalie> anomalies;
+        private final long dureeMs;
+
+        private Rapport(long comptes, long transferts, long ecartsSolde, long jambesSansContrepartie,
+                        long ecartOperationsMultiples, long nombreAnomalies, List<Anomalie> anomalies, long dureeMs) {
+            this.comptes = comptes;
+            this.transferts = transferts;
+            this.ecartsSolde = ecartsSolde;
+            this.jambesSansContrepartie = jambesSansContrepartie;
+            this.ecartOperationsMultiples = ecartOperationsMultiples;
+            this.nombreAnomalies = nombreAnomalies;
+            this.anomalies = anomalies;
+            this.dureeMs = dureeMs;
+        }
+
+        public boolean estCoherent() {
+            return nombreAnomalies == 0 && ecartOperationsMultiples == 0;
+        }
+
+        public long getComptes() {
+            return comptes;
+        }
+
+        /**
+         * Transferts dont les deux jambes ont été appariées.
+         */
+        public long getTransferts() {
+            return transferts;
+        }
+
+        /**
+         * Comptes dont le solde diffère de la somme de l'historique.
+         */
+        public long getEcartsSolde() {
+            return ecartsSolde;
+        }
+
+        public long getJambesSansContrepartie() {
+            return jambesSansContrepartie;
+        }
+
+        /**
+         * Total des débits moins total des crédits des opérations multiples, en euros (0 si équilibré).
+         */
+        public double getEcartOperationsMultiples() {
+            return ecartOperationsMultiples / 100.0;
+        }
+
+        public long getNombreAnomalies() {
+            return nombreAnomalies;
+        }
+
+        /**
+         * Les premières anomalies, triées par numéro de compte (au plus 1000).
+         */
+        public List<Anomalie> getAnomalies() {
+            return anomalies;
+        }
+
+        public long getDureeMs() {
+            return dureeMs;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Rapprochement : ").append(comptes).append(" comptes, ").append(transferts).append(" transferts appariés en ")
+                    .append(dureeMs).append(" ms\n");
+            if (estCoherent()) {
+                sb.append("Aucune anomalie\n");
+                return sb.toString();
+            }
+            sb.append(ecartsSolde).append(" écarts de solde, ").append(jambesSansContrepartie).append(" jambes de transfert sans contrepartie");
+            if (ecartOperationsMultiples != 0) {
+                sb.append(", opérations multiples déséquilibrées de ").append(String.format("%.2f", getEcartOperationsMultiples())).append(" €");
+            }
+            sb.append('\n');
+            for (Anomalie anomalie : anomalies) {
+                sb.append("  ").append(anomalie).append('\n');
+            }
+            if (nombreAnomalies > anomalies.size()) {
+                sb.append("  ... et ").append(nombreAnomalies - anomalies.size()).append(" autres\n");
+            }
+            return sb.toString();
+        }
+    }
+
+    private RapprochementComptes() {
+    }
+
+    /**
+     * Rapproche ces comptes (qui peuvent venir de plusieurs partitions : les transferts entre
+     * partitions sont alors appariés aussi).
+     */
+    public static Rapport verifier(List<CompteBancaire> comptes) {
+        return verifier(comptes, true);
+    }
+
+    /**
+     * @param apparierTransferts false pour ne vérifier que les soldes (historiques partiels).
+     */
+    static Rapport verifier(List<CompteBancaire> comptes, boolean apparierTransferts) {
+        long debut = System.nanoTime();
+        Constats constats = new Constats();
+
+        // 1. Soldes, et relevé des jambes de transfert de chaque tranche de comptes
+        Jambes[] debits = new Jambes[(comptes.size() + COMPTES_PAR_TACHE - 1) / COMPTES_PAR_TACHE];
+        Jambes[] credits = new Jambes[debits.length];
+        if (debits.length > 0) {
+            ForkJoinPool.commonPool().invoke(new Comptes(comptes, 0, debits.length, debits, credits, constats));
+        }
+
+        // 2. Appariement : les jambes sont réparties par montant, chaque groupe est trié et apparié à part
+        if (apparierTransferts) {
+            Jambes[] groupesDebits = repartir(debits);
+            Jambes[] groupesCredits = repartir(credits);
+            ForkJoinPool.commonPool().invoke(new Appariement(groupesDebits, groupesCredits, 0, GROUPES, constats));
+        }
+
+        List<Anomalie> anomalies = new ArrayList<>(constats.anomalies);
+        anomalies.sort((a, b) -> Integer.compare(a.numeroCompte, b.numeroCompte));
+        return new Rapport(comptes.size(), constats.transferts.sum(), constats.ecartsSolde.sum(),
+                constats.sansContrepartie.sum(), constats.multiDebits.sum() - constats.multiCredits.sum(),
+                constats.nombreAnomalies.get(), Collections.unmodifiableList(anomalies),
+                (System.nanoTime() - debut) / 1_000_000);
+    }
+
+    /**
+     * Résultats partagés par toutes les tâches.
+     */
+    private static final class Constats {
+        final LongAdder ecartsSolde = new LongAdder();
+        final LongAdder transferts = new LongAdder();
+        final LongAdder sansContrepartie = new LongAdder();
+        final LongAdder multiDebits = new LongAdder(); // Centimes
+        final LongAdder multiCredits = new LongAdder();
+        final AtomicInteger nombreAnomalies = new AtomicInteger();
+        final List<Anomalie> anomalies = Collections.synchronizedList(new ArrayList<>());
+
+        void signaler(int numeroCompte, String description) {
+            if (nombreAnomalies.incrementAndGet() <= ANOMALIES_DETAILLEES) {
+                anomalies.add(new Anomalie(numeroCompte, description));
+            }
+        }
+    }
+
+    /**
+     * Émetteur et destinataire d'une jambe réunis en une clé, PAIRE_INCONNUE sans compte d'en face.
+     */
+    private static long paire(int emetteur, int destinataire) {
+        return ((long) emetteur << 32) | (destinataire & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Jambes de transfert : paire émetteur-destinataire, montant en centimes, date (ms) et compte qui
+     * porte la jambe, en tableaux parallèles.
+     */
+    private static final class Jambes {
+        long[] paires;
+        long[] centimes;
+        long[] dates;
+        int[] numeros;
+        int taille;
+
+        Jambes(int capacite) {
+            paires = new long[capacite];
+            centimes = new long[capacite];
+            dates = new long[capacite];
+            numeros = new int[capacite];
+        }
+
+        void ajouter(long paire, long montant, long date, int numero) {
+            if (taille == centimes.length) {
+                int capacite = Math.max(16, taille * 2);
+                paires = Arrays.copyOf(paires, capacite);
+                centimes = Arrays.copyOf(centimes, capacite);
+                dates = Arrays.copyOf(dates, capacite);
+                numeros = Arrays.copyOf(numeros, capacite);
+            }
+            paires[taille] = paire;
+            centimes[taille] = montant;
+            dates[taille] = date;
+            numeros[taille] = numero;
+            taille++;
+        }
+
+        /**
+         * Compare la jambe i à (paire, montant) : négatif si elle la précède dans l'ordre de tri.
+         */
+        int comparer(int i, long paire, long montant) {
+            int ordre = Long.compare(paires[i], paire);
+            return ordre != 0 ? ordre : Long.compare(centimes[i], montant);
+        }
+
+        /**
+         * Tri par paire, montant puis date (tri rapide sur les tableaux à la fois).
+         */
+        void trier() {
+            trier(0, taille - 1);
+        }
+
+        private void trier(int bas, int haut) {
+            while (bas < haut) {
+                int milieu = (bas + haut) >>> 1;
+                long pivotPaire = paires[milieu];
+                long pivotMontant = centimes[milieu];
+                long pivotDate = dates[milieu];
+                int i = bas;
+                int j = haut;
+                while (i <= j) {
+                    while (avant(i, pivotPaire, pivotMontant, pivotDate)) {
+                        i++;
+                    }
+                    while (apres(j, pivotPaire, pivotMontant, pivotDate)) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        echanger(i++, j--);
+                    }
+                }
+                // Récursion sur la plus petite moitié : profondeur de pile en O(log n)
+                if (j - bas < haut - i) {
+                    trier(bas, j);
+                    bas = i;
+                } else {
+                    trier(i, haut);
+                    haut = j;
+                }
+            }
+        }
+
+        private boolean avant(int i, long paire, long montant, long date) {
+            int ordre = comparer(i, paire, montant);
+            return ordre < 0 || (ordre == 0 && dates[i] < date);
+        }
+
+        private boolean apres(int i, long paire, long montant, long date) {
+            int ordre = comparer(i, paire, montant);
+            return ordre > 0 || (ordre == 0 && dates[i] > date);
+        }
+
+        private void echanger(int i, int j) {
+            long paire = paires[i];
+            paires[i] = paires[j];
+            paires[j] = paire;
+            long montant = centimes[i];
+            centimes[i] = centimes[j];
+            centimes[j] = montant;
+            long date = dates[i];
+            dates[i] = dates[j];
+            dates[j] = date;
+            int numero = numeros[i];
+            numeros[i] = numeros[j];
+            numeros[j] = numero;
+        }
+    }
+
+    private static int groupe(long paire, long centimes) {
+        long h = (paire * 31 + centimes) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 56); // 8 bits de poids fort : GROUPES = 256
+    }
+
+    /**
+     * Regroupe les jambes relevées par tranche de comptes en GROUPES groupes selon leur paire et leur montant.
+     */
+    private static Jambes[] repartir(Jambes[] releves) {
+        int[] tailles = new int[GROUPES];
+        for (Jambes releve : releves) {
+            for (int i = 0; i < releve.taille; i++) {
+                tailles[groupe(releve.paires[i], releve.centimes[i])]++;
+            }
+        }
+        Jambes[] groupes = new Jambes[GROUPES];
+        for (int g = 0; g < GROUPES; g++) {
+            groupes[g] = new Jambes(tailles[g]);
+        }
+        for (Jambes releve : releves) {
+            for (int i = 0; i < releve.taille; i++) {
+                groupes[groupe(releve.paires[i], releve.centimes[i])].ajouter(releve.paires[i], releve.centimes[i], releve.dates[i],
+                        releve.numeros[i]);
+            }
+        }
+        return groupes;
+    }
+
+    /**
+     * Tranches de comptes [debut, fin) : coupées en deux jusqu'à une seule, vérifiée sur place.
+     */
+    private static final class Comptes extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<CompteBancaire> comptes;
+        private final int debut;
+        private final int fin;
+        private final transient Jambes[] debits;
+        private final transient Jambes[] credits;
+        private final transient Constats constats;
+
+        Comptes(List<CompteBancaire> comptes, int debut, int fin, Jambes[] debits, Jambes[] credits, Constats constats) {
+            this.comptes = comptes;
+            this.debut = debut;
+            this.fin = fin;
+            this.debits = debits;
+            this.credits = credits;
+            this.constats = constats;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - debut > 1) {
+                int milieu = (debut + fin) >>> 1;
+                invokeAll(new Comptes(comptes, debut, milieu, debits, credits, constats),
+                        new Comptes(comptes, milieu, fin, debits, credits, constats));
+                return;
+            }
+            Jambes emis = new Jambes(COMPTES_PAR_TACHE);
+            Jambes recus = new Jambes(COMPTES_PAR_TACHE);
+            int dernier = Math.min(comptes.size(), (debut + 1) * COMPTES_PAR_TACHE);
+            for (int i = debut * COMPTES_PAR_TACHE; i < dernier; i++) {
+                verifierCompte(comptes.get(i), emis, recus);
+            }
+            debits[debut] = emis;
+            credits[debut] = recus;
+        }
+
+        private void verifierCompte(CompteBancaire compte, Jambes emis, Jambes recus) {
+            int numero = compte.getNumeroCompte();
+            synchronized (compte) {
+                JournalTransactions journal = compte.getJournal();
+                double somme = compte.getSommeArchivee();
+                for (int i = 0; i < journal.taille(); i++) {
+                    String type = journal.getType(i);
+                    double montant = journal.getMontant(i);
+                    int signe = Transaction.signe(type);
+                    if (signe == 0) {
+                        constats.signaler(numero, "type de transaction inconnu " + type + " (" + montant + " €)");
+                        continue;
+                    }
+                    somme += signe * montant;
+                    int contrepartie = journal.getContrepartie(i);
+                    boolean connue = contrepartie != JournalTransactions.SANS_CONTREPARTIE;
+                    switch (type) {
+                        case "TRANSFERT_EMIS":
+                        case "TRANSFERT_REMBOURSE": // Crédit de l'émetteur : même paire que le débit remboursé
+                            (signe < 0 ? emis : recus).ajouter(connue ? paire(numero, contrepartie) : PAIRE_INCONNUE,
+                                    Math.round(montant * 100), journal.getDate(i), numero);
+                            break;
+                        case "TRANSFERT_RECU":
+                            recus.ajouter(connue ? paire(contrepartie, numero) : PAIRE_INCONNUE,
+                                    Math.round(montant * 100), journal.getDate(i), numero);
+                            break;
+                        case "MULTI_DEBIT":
+                            constats.multiDebits.add(Math.round(montant * 100));
+                            break;
+                        case "MULTI_CREDIT":
+                            constats.multiCredits.add(Math.round(montant * 100));
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                double solde = compte.getSolde();
+                if (!(Math.abs(solde - somme) < 0.005)) {
+                    constats.ecartsSolde.increment();
+                    constats.signaler(numero, String.format("solde %.2f € mais historique %.2f € (écart %.2f €)", solde, somme, solde - somme));
+                }
+            }
+        }
+    }
+
+    /**
+     * Groupes de jambes [debut, fin) : chaque groupe est trié, puis chaque débit est apparié au
+     * premier crédit de la même paire et du même montant non encore pris ; sans compte d'en face, ce
+     * crédit doit de plus tomber dans la fenêtre de dates du débit (glouton, optimal ici car toutes les
+     * fenêtres ont la même largeur).
+     */
+    private static final class Appariement extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Jambes[] debits;
+        private final transient Jambes[] credits;
+        private final int debut;
+        private final int fin;
+        private final transient Constats constats;
+
+        Appariement(Jambes[] debits, Jambes[] credits, int debut, int fin, Constats constats) {
+            this.debits = debits;
+            this.credits = credits;
+            this.debut = debut;
+            this.fin = fin;
+            this.constats = constats;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - debut > 1) {
+                int milieu = (debut + fin) >>> 1;
+                invokeAll(new Appariement(debits, credits, debut, milieu, constats),
+                        new Appariement(debits, credits, milieu, fin, constats));
+                return;
+            }
+            Jambes d = debits[debut];
+            Jambes c = credits[debut];
+            d.trier();
+            c.trier();
+            long apparies = 0;
+            int j = 0;
+            for (int i = 0; i < d.taille; i++) {
+                long paire = d.paires[i];
+                long montant = d.centimes[i];
+                long ecart = paire == PAIRE_INCONNUE ? ECART_MAX_MS : Long.MAX_VALUE / 2;
+                long date = d.dates[i];
+                // Crédits avant ce débit dans l'ordre de tri, ou trop anciens pour lui (et donc pour les suivants) : orphelins
+                while (j < c.taille && (c.comparer(j, paire, montant) < 0
+                        || (c.comparer(j, paire, montant) == 0 && c.dates[j] < date - ecart))) {
+                    orphelin(c, j++, "transfert reçu");
+                }
+                if (j < c.taille && c.comparer(j, paire, montant) == 0 && c.dates[j] <= date + ecart) {
+                    j++;
+                    apparies++;
+                } else {
+                    orphelin(d, i, "transfert émis");
+                }
+            }
+            while (j < c.taille) {
+                orphelin(c, j++, "transfert reçu");
+            }
+            constats.transferts.add(apparies);
+        }
+
+        private void orphelin(Jambes jambes, int i, String type) {
+            constats.sansContrepartie.increment();
+            String paire = "";
+            if (jambes.paires[i] != PAIRE_INCONNUE) {
+                paire = String.format(" (compte %d vers compte %d)", (int) (jambes.paires[i] >> 32), (int) jambes.paires[i]);
+            }
+            constats.signaler(jambes.numeros[i], String.format("%s de %.2f €%s du %s sans contrepartie", type,
+                    jambes.centimes[i] / 100.0, paire, JournalTransactions.versDate(jambes.dates[i]).format(DATE)));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Issue d'une opération du gestionnaire, avec la raison précise d'un échec.
+ */
+public enum ResultatOperation {
+    SUCCES("Opération effectuée"),
+    COMPTE_INCONNU("Compte inconnu"),
+    SOLDE_INSUFFISANT("Solde insuffisant"),
+    NUMERO_EXISTANT("Numéro de compte déjà utilisé"),
+    MONTANT_INVALIDE("Montant invalide"),
+    MEME_COMPTE("Comptes source et cible identiques"),
+    VELOCITE_DEPASSEE("Plafond de débits sur la période atteint");
+
+    private final String libelle;
+
+    ResultatOperation(String libelle) {
+        this.libelle = libelle;
+    }
+
+    public boolean estSucces() {
+        return this == SUCCES;
+    }
+
+    public String getLibelle() {
+        return libelle;
+    }
+}
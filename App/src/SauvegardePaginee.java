@@ -0,0 +1,1022 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sauvegarde incrémentale des comptes : seuls les comptes modifiés depuis la dernière sauvegarde
+ * sont réécrits, si bien qu'un dépôt sur un compte ne réécrit plus toute la banque.
+ *
+ * Trois fichiers à côté du fichier de sauvegarde :
+ * - .pages : en-tête puis pages de 4 Ko de 64 enregistrements de 64 octets (état de chaque compte),
+ *   seules les pages contenant un compte modifié sont réécrites ;
+ * - .journal.N : transactions ajoutées à la suite, jamais réécrites (le bit de poids fort de l'emplacement
+ *   signale une jambe de transfert suivie du numéro du compte d'en face) ;
+ * - .noms.N : noms des titulaires, écrits une fois à la création du compte.
+ *
+ * L'en-tête indique la longueur valide du journal et des noms : il est écrit après que le reste a été
+ * forcé sur disque, et ce qui le dépasse (sauvegarde interrompue) est ignoré. Les pages modifiées ne sont
+ * pas réécrites sur place avant lui : elles sont d'abord copiées (avec leurs empreintes) dans .pages.dw,
+ * forcé, puis l'en-tête valide la sauvegarde, et seulement ensuite les pages sont recopiées à leur place.
+ * Au chargement, la copie de la sauvegarde validée par l'en-tête est rejouée : une recopie interrompue
+ * ne laisse pas de page à moitié écrite, ni de page plus récente que l'en-tête.
+ * Il porte aussi le numéro de la sauvegarde : les clés d'idempotence fournies par le gestionnaire sont
+ * écrites avant lui dans .cles.0 ou .cles.1 (selon la parité du numéro, par renommage atomique) et ne
+ * sont relues que si elles portent le numéro validé ; celles de la sauvegarde précédente restent intactes.
+ * L'en-tête porte enfin le dernier jour de fin de journée terminé (TraitementFinDeJournee), validé avec
+ * les comptes traités, et la racine de Merkle des comptes sauvegardés (voir plus bas).
+ * L'archivage de l'historique ou trop d'emplacements libérés déclenchent une réécriture complète,
+ * dans une nouvelle génération N de fichiers.
+ *
+ * Un quatrième fichier, .empreintes, suit la même pagination que .pages : pour chaque compte, l'ancre
+ * et la tête de sa chaîne d'empreintes (AuditEmpreintes), 64 octets réécrits avec sa page. Absent ou
+ * d'une autre génération (sauvegarde antérieure, réécriture interrompue), les chaînes repartent de
+ * l'historique chargé, ce que l'audit signale comme anomalie. Ses pages passent par la même copie
+ * que celles de .pages.
+ * La racine de Merkle des comptes, tenue à jour par AuditEmpreintes.ArbreIncremental, est écrite dans
+ * l'en-tête de chaque sauvegarde et ajoutée à .racines (numéro de sauvegarde, date, chaînes rouvertes ou
+ * non, racine), journal à ancrer hors de la banque. Au chargement, la racine des empreintes relues est
+ * comparée à celle de l'en-tête : un écart est aussi une anomalie.
+ *
+ * Un petit manifeste (.segments) découpe le journal en segments d'environ 64 K transactions
+ * décodables indépendamment : au chargement, pages et segments sont décodés en parallèle
+ * (fork-join), puis les transactions sont rattachées aux comptes dans l'ordre des segments.
+ */
+public class SauvegardePaginee {
+
+    private static final int MAGIC = 0x42535031; // "BSP1"
+    private static final int TAILLE_PAGE = 4096;
+    private static final int TAILLE_ENREGISTREMENT = 64;
+    private static final int PAR_PAGE = TAILLE_PAGE / TAILLE_ENREGISTREMENT;
+    private static final ZoneId FUSEAU = ZoneId.systemDefault();
+    private static final long SANS_DATE = Long.MIN_VALUE;
+    private static final int TAILLE_ENTETE = 56 + AuditEmpreintes.TAILLE;
+    private static final int MAGIC_MANIFESTE = 0x42534D31; // "BSM1"
+    private static final int TRANSACTIONS_PAR_SEGMENT = 1 << 16;
+    private static final int AVEC_CONTREPARTIE = 0x80000000; // Marque de l'emplacement dans le journal
+    private static final int PAGES_PAR_TACHE = 256;
+    private static final int MAGIC_EMPREINTES = 0x42534531; // "BSE1"
+    private static final int MAGIC_CLES = 0x42534331; // "BSC1"
+    private static final int MAGIC_DOUBLE_ECRITURE = 0x42534431; // "BSD1"
+    private static final int TAILLE_ENTETE_DOUBLE_ECRITURE = 24;
+    private static final int MAGIC_RACINES = 0x42535231; // "BSR1"
+    private static final int TAILLE_RACINE = 20 + AuditEmpreintes.TAILLE;
+
+    // Positions dans un enregistrement
+    private static final int CHAMP_NUMERO = 0;
+    private static final int CHAMP_ETAT = 4;
+    private static final int CHAMP_SOLDE = 8;
+    private static final int CHAMP_MOUVEMENT = 16;
+    private static final int CHAMP_JOUR = 24;
+    private static final int CHAMP_SOMME_ARCHIVEE = 32;
+    private static final int CHAMP_DEBUT_ARCHIVE = 40;
+    private static final int CHAMP_NOM = 48;
+    private static final int CHAMP_NOMBRE_ARCHIVEES = 56;
+    private static final int CHAMP_JOUR_FIN_DE_JOURNEE = 60;
+
+    private final String base;
+    private final Path fichierPages;
+    private final Path fichierManifeste;
+    private final Path fichierEmpreintes;
+    private final Path fichierDoubleEcriture;
+    private final Path fichierRacines;
+    private long generation; // Suffixe des fichiers .journal et .noms en cours, changé à chaque réécriture complète
+    private long numeroSauvegarde; // Dernière sauvegarde validée par un en-tête
+    private long jourFinDeJournee; // Epoch day, écrit dans chaque en-tête (0 : aucun)
+    private byte[] clesChargees;
+
+    // Emplacement de chaque compte dans le fichier de pages (null : emplacement libéré)
+    private final List<CompteBancaire> parEmplacement = new ArrayList<>();
+    private final List<Long> nomParEmplacement = new ArrayList<>(); // Position du nom dans .noms
+    private final Map<CompteBancaire, Integer> emplacements = new IdentityHashMap<>();
+    // Nombre de transactions de l'historique en mémoire déjà présentes dans le journal
+    private final Map<CompteBancaire, Integer> transactionsEcrites = new IdentityHashMap<>();
+    private int emplacementsLibres;
+    private long tailleJournal;
+    private long transactionsJournal;
+    private long tailleNoms;
+    // Début de chaque segment du journal : [position, indice de la première transaction]
+    private final List<long[]> segments = new ArrayList<>();
+
+    // Modifications depuis la dernière sauvegarde ; les mouvements arrivent de plusieurs threads
+    private final Set<CompteBancaire> modifies = ConcurrentHashMap.newKeySet();
+    private final List<CompteBancaire> crees = new ArrayList<>();
+    private final Set<Integer> pagesLiberees = new TreeSet<>();
+    private boolean reecritureComplete = true;
+
+    // Racine de Merkle des comptes, recalculée à chaque sauvegarde
+    private final AuditEmpreintes.ArbreIncremental arbre = new AuditEmpreintes.ArbreIncremental();
+    private boolean comptesAjoutesOuRetires = true;
+    private byte[] racine; // Écrite dans l'en-tête
+    private byte[] racineChargee; // Lue dans l'en-tête, null pour un en-tête antérieur
+    private boolean chainesRouvertes; // Au chargement, noté avec la racine de la sauvegarde suivante
+    private final List<String> anomaliesEmpreintes = new ArrayList<>();
+
+    // Statistiques de la dernière sauvegarde
+    private long pagesEcrites;
+    private long octetsEcrits;
+
+    public SauvegardePaginee(String fichierSauvegarde) {
+        this.base = fichierSauvegarde;
+        this.fichierPages = Path.of(fichierSauvegarde + ".pages");
+        this.fichierManifeste = Path.of(fichierSauvegarde + ".segments");
+        this.fichierEmpreintes = Path.of(fichierSauvegarde + ".empreintes");
+        this.fichierDoubleEcriture = Path.of(fichierSauvegarde + ".pages.dw");
+        this.fichierRacines = Path.of(fichierSauvegarde + ".racines");
+    }
+
+    public boolean existe() {
+        return Files.exists(fichierPages);
+    }
+
+    // --- Suivi des modifications (appelé par le gestionnaire) ---
+
+    /**
+     * Le solde ou l'historique du compte a changé.
+     */
+    void marquerModifie(CompteBancaire compte) {
+        modifies.add(compte);
+    }
+
+    /**
+     * Nouveau compte (sous le verrou exclusif du gestionnaire).
+     */
+    void marquerCree(CompteBancaire compte) {
+        crees.add(compte);
+        comptesAjoutesOuRetires = true;
+    }
+
+    /**
+     * Compte supprimé (sous le verrou exclusif du gestionnaire) : son emplacement est libéré.
+     */
+    void marquerSupprime(CompteBancaire compte) {
+        comptesAjoutesOuRetires = true;
+        modifies.remove(compte);
+        if (crees.remove(compte)) {
+            return; // Jamais écrit
+        }
+        Integer emplacement = emplacements.remove(compte);
+        if (emplacement != null) {
+            transactionsEcrites.remove(compte);
+            parEmplacement.set(emplacement, null);
+            emplacementsLibres++;
+            pagesLiberees.add(emplacement / PAR_PAGE);
+        }
+    }
+
+    /**
+     * La prochaine sauvegarde réécrira tout (historiques raccourcis par l'archivage, ancien format...).
+     */
+    void demanderReecritureComplete() {
+        reecritureComplete = true;
+    }
+
+    /**
+     * Pages réécrites par la dernière sauvegarde.
+     */
+    public long getPagesEcrites() {
+        return pagesEcrites;
+    }
+
+    /**
+     * Octets écrits par la dernière sauvegarde (journal, noms, pages et en-tête).
+     */
+    public long getOctetsEcrits() {
+        return octetsEcrits;
+    }
+
+    /**
+     * Clés d'idempotence de la sauvegarde chargée, ou null si elle n'en a pas (format antérieur).
+     */
+    byte[] getClesChargees() {
+        return clesChargees;
+    }
+
+    /**
+     * Dernier jour de fin de journée terminé, tel que validé par l'en-tête chargé ou à écrire.
+     */
+    long getJourFinDeJournee() {
+        return jourFinDeJournee;
+    }
+
+    /**
+     * Jour de fin de journée terminé, écrit par la prochaine sauvegarde (sous le verrou exclusif du gestionnaire).
+     */
+    void setJourFinDeJournee(long jour) {
+        this.jourFinDeJournee = jour;
+    }
+
+    /**
+     * Numéro de la dernière sauvegarde validée (chargée ou écrite), 0 pour un en-tête antérieur.
+     */
+    long getNumeroSauvegarde() {
+        return numeroSauvegarde;
+    }
+
+    /**
+     * Racine de Merkle écrite par la dernière sauvegarde (ou vérifiée au chargement), en hexadécimal, ou null.
+     */
+    public String getRacine() {
+        return racine != null ? AuditEmpreintes.hexadecimal(racine) : null;
+    }
+
+    /**
+     * Anomalies de la piste d'audit constatées au chargement (voir AuditEmpreintes.Rapport).
+     */
+    List<String> getAnomaliesEmpreintes() {
+        return List.copyOf(anomaliesEmpreintes);
+    }
+
+    // --- Sauvegarde ---
+
+    /**
+     * Écrit les modifications depuis la dernière sauvegarde. Appelé sous le verrou exclusif du
+     * gestionnaire : aucun compte ne change pendant l'écriture.
+     * @param comptes Tous les comptes, dans l'ordre de création (pour une réécriture complète).
+     * @param cles Clés d'idempotence sérialisées, validées par le même en-tête que les comptes.
+     */
+    void sauvegarder(List<CompteBancaire> comptes, byte[] cles) throws IOException {
+        if (emplacementsLibres > PAR_PAGE && emplacementsLibres > parEmplacement.size() / 2) {
+            reecritureComplete = true; // Compactage des emplacements libérés
+        }
+        try {
+            byte[] nouvelleRacine = arbre.racine(comptes, modifies, comptesAjoutesOuRetires || reecritureComplete);
+            comptesAjoutesOuRetires = false;
+            ajouterRacine(numeroSauvegarde + 1, nouvelleRacine);
+            racine = nouvelleRacine;
+            if (reecritureComplete || !existe() || !Files.exists(fichierEmpreintes)) {
+                reecrireTout(comptes, cles);
+            } else {
+                List<CompteBancaire> aEcrire = new ArrayList<>(crees);
+                for (CompteBancaire compte : modifies) {
+                    if (emplacements.containsKey(compte)) {
+                        aEcrire.add(compte);
+                    }
+                }
+                Set<Integer> pages = new TreeSet<>(pagesLiberees);
+                try (FileChannel canalPages = FileChannel.open(fichierPages, StandardOpenOption.WRITE);
+                     FileChannel canalEmpreintes = FileChannel.open(fichierEmpreintes, StandardOpenOption.WRITE)) {
+                    ecrireComptes(aEcrire, pages, canalPages, canalEmpreintes, cles, true);
+                }
+                numeroSauvegarde++;
+                pagesEcrites = pages.size();
+            }
+        } catch (IOException e) {
+            // L'état en mémoire ne correspond plus aux fichiers : la prochaine sauvegarde repartira de zéro
+            reecritureComplete = true;
+            throw e;
+        }
+        modifies.clear();
+        crees.clear();
+        pagesLiberees.clear();
+        reecritureComplete = false;
+        chainesRouvertes = false;
+    }
+
+    /**
+     * Ajoute la racine de la sauvegarde numero à .racines. Il n'est pas forcé sur disque : c'est l'en-tête
+     * qui valide la racine ; un enregistrement incomplet (écriture interrompue) est remplacé.
+     */
+    private void ajouterRacine(long numero, byte[] racineSauvegarde) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichierRacines, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long taille = canal.size();
+            long position = taille < 4 ? 0 : 4 + (taille - 4) / TAILLE_RACINE * TAILLE_RACINE;
+            ByteBuffer tampon = ByteBuffer.allocate(4 + TAILLE_RACINE);
+            if (position == 0) {
+                tampon.putInt(MAGIC_RACINES);
+            }
+            tampon.putLong(numero).putLong(System.currentTimeMillis()).putInt(chainesRouvertes ? 1 : 0).put(racineSauvegarde).flip();
+            ecrireTout(canal, tampon, position);
+        }
+    }
+
+    /**
+     * Réécriture complète dans une nouvelle génération de fichiers : le fichier de pages n'est remplacé
+     * (renommage atomique) qu'une fois tout écrit, une interruption laisse donc la sauvegarde précédente intacte.
+     */
+    private void reecrireTout(List<CompteBancaire> comptes, byte[] cles) throws IOException {
+        long ancienneGeneration = generation;
+        generation = ancienneGeneration + 1;
+        parEmplacement.clear();
+        nomParEmplacement.clear();
+        emplacements.clear();
+        transactionsEcrites.clear();
+        emplacementsLibres = 0;
+        tailleJournal = 0;
+        transactionsJournal = 0;
+        tailleNoms = 0;
+        segments.clear();
+        Files.deleteIfExists(fichierJournal(generation));
+        Files.deleteIfExists(fichierNoms(generation));
+        Path temporaire = Path.of(fichierPages + ".tmp");
+        Path empreintesTemporaire = Path.of(fichierEmpreintes + ".tmp");
+        Set<Integer> pages = new TreeSet<>();
+        try (FileChannel canalPages = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel canalEmpreintes = FileChannel.open(empreintesTemporaire, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ecrireComptes(comptes, pages, canalPages, canalEmpreintes, cles, false);
+        }
+        Files.move(empreintesTemporaire, fichierEmpreintes, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(temporaire, fichierPages, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        numeroSauvegarde++;
+        Files.deleteIfExists(fichierJournal(ancienneGeneration));
+        Files.deleteIfExists(fichierNoms(ancienneGeneration));
+        pagesEcrites = pages.size();
+    }
+
+    /**
+     * Ajoute les noms des nouveaux comptes et les nouvelles transactions, puis écrit les pages
+     * concernées (et leurs empreintes), les clés d'idempotence, et enfin l'en-tête qui valide le tout
+     * sous le numéro numeroSauvegarde + 1 (pris en compte par l'appelant une fois l'en-tête en place).
+     * @param surPlace Les canaux sont les fichiers validés : les pages passent par .pages.dw avant
+     *                 l'en-tête et ne sont écrites à leur place qu'après lui.
+     */
+    private void ecrireComptes(List<CompteBancaire> aEcrire, Set<Integer> pages, FileChannel canalPages,
+                               FileChannel canalEmpreintes, byte[] cles, boolean surPlace) throws IOException {
+        ByteArrayOutputStream octetsJournal = new ByteArrayOutputStream();
+        DataOutputStream journal = new DataOutputStream(octetsJournal);
+        ByteArrayOutputStream octetsNoms = new ByteArrayOutputStream();
+        DataOutputStream noms = new DataOutputStream(octetsNoms);
+        int nombreSegments = segments.size();
+        if (segments.isEmpty()) {
+            segments.add(new long[] {0, 0});
+        }
+        long debutSegment = segments.get(segments.size() - 1)[1];
+        long journalAvant = tailleJournal;
+        long nomsAvant = tailleNoms;
+        try (FileChannel canalJournal = ouvrirAjout(fichierJournal(generation));
+             FileChannel canalNoms = ouvrirAjout(fichierNoms(generation))) {
+            for (CompteBancaire compte : aEcrire) {
+                Integer emplacement = emplacements.get(compte);
+                if (emplacement == null) {
+                    emplacement = parEmplacement.size();
+                    parEmplacement.add(compte);
+                    emplacements.put(compte, emplacement);
+                    transactionsEcrites.put(compte, 0);
+                    nomParEmplacement.add(tailleNoms + octetsNoms.size());
+                    byte[] nom = compte.getNomTitulaire().getBytes(StandardCharsets.UTF_8);
+                    noms.writeInt(nom.length);
+                    noms.write(nom);
+                }
+                JournalTransactions historique = compte.getJournal();
+                for (int i = transactionsEcrites.get(compte); i < historique.taille(); i++) {
+                    if (transactionsJournal - debutSegment >= TRANSACTIONS_PAR_SEGMENT) {
+                        segments.add(new long[] {tailleJournal + octetsJournal.size(), transactionsJournal});
+                        debutSegment = transactionsJournal;
+                    }
+                    ecrireTransaction(journal, emplacement, historique.getDate(i), historique.getMontant(i), historique.getType(i),
+                            historique.getContrepartie(i));
+                    transactionsJournal++;
+                }
+                transactionsEcrites.put(compte, historique.taille());
+                pages.add(emplacement / PAR_PAGE);
+                if (octetsJournal.size() > 1 << 20) {
+                    tailleJournal += ecrireTout(canalJournal, octetsJournal, tailleJournal);
+                }
+            }
+            tailleJournal += ecrireTout(canalJournal, octetsJournal, tailleJournal);
+            tailleNoms += ecrireTout(canalNoms, octetsNoms, tailleNoms);
+            canalJournal.force(false);
+            canalNoms.force(false);
+        }
+
+        long numero = numeroSauvegarde + 1;
+        long copie = 0;
+        if (surPlace) {
+            copie = ecrireDoubleEcriture(pages, numero);
+        } else {
+            ecrirePages(pages, canalPages, canalEmpreintes);
+        }
+        if (segments.size() != nombreSegments) {
+            ecrireManifeste();
+        }
+        ecrireCles(cles, numero);
+        // L'en-tête valide le journal, les noms, les clés et la copie des pages qui viennent d'être écrits
+        ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE);
+        entete.putInt(MAGIC).putInt(parEmplacement.size()).putLong(generation)
+                .putLong(tailleJournal).putLong(transactionsJournal).putLong(tailleNoms).putLong(numero)
+                .putLong(jourFinDeJournee).put(racine).flip();
+        ecrireTout(canalPages, entete, 0);
+        canalPages.force(false);
+        if (surPlace) {
+            ecrirePages(pages, canalPages, canalEmpreintes); // Rejouées depuis la copie si interrompu
+        }
+        octetsEcrits = (tailleJournal - journalAvant) + (tailleNoms - nomsAvant)
+                + (long) pages.size() * TAILLE_PAGE + TAILLE_ENTETE + cles.length + copie;
+    }
+
+    private void ecrirePages(Set<Integer> pages, FileChannel canalPages, FileChannel canalEmpreintes) throws IOException {
+        ByteBuffer page = ByteBuffer.allocate(TAILLE_PAGE);
+        for (int numeroPage : pages) {
+            remplirPage(page, numeroPage);
+            ecrireTout(canalPages, page, (numeroPage + 1L) * TAILLE_PAGE);
+            remplirEmpreintes(page, numeroPage);
+            ecrireTout(canalEmpreintes, page, (numeroPage + 1L) * TAILLE_PAGE);
+        }
+        ByteBuffer enteteEmpreintes = ByteBuffer.allocate(12);
+        enteteEmpreintes.putInt(MAGIC_EMPREINTES).putLong(generation).flip();
+        ecrireTout(canalEmpreintes, enteteEmpreintes, 0);
+        canalEmpreintes.force(false);
+        canalPages.force(false);
+    }
+
+    /**
+     * Copie des pages d'une sauvegarde sur place, forcée avant son en-tête : magic, génération, numéro
+     * de la sauvegarde, nombre de pages, puis (numéro de page, page, page d'empreintes) de chacune.
+     * @return Les octets écrits.
+     */
+    private long ecrireDoubleEcriture(Set<Integer> pages, long numero) throws IOException {
+        ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE_DOUBLE_ECRITURE);
+        entete.putInt(MAGIC_DOUBLE_ECRITURE).putLong(generation).putLong(numero).putInt(pages.size()).flip();
+        ByteBuffer indice = ByteBuffer.allocate(4);
+        ByteBuffer page = ByteBuffer.allocate(TAILLE_PAGE);
+        long position = TAILLE_ENTETE_DOUBLE_ECRITURE;
+        try (FileChannel canal = FileChannel.open(fichierDoubleEcriture, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ecrireTout(canal, entete, 0);
+            for (int numeroPage : pages) {
+                indice.clear();
+                indice.putInt(0, numeroPage);
+                ecrireTout(canal, indice, position);
+                remplirPage(page, numeroPage);
+                ecrireTout(canal, page, position + 4);
+                remplirEmpreintes(page, numeroPage);
+                ecrireTout(canal, page, position + 4 + TAILLE_PAGE);
+                position += 4 + 2L * TAILLE_PAGE;
+            }
+            canal.force(false);
+        }
+        return position;
+    }
+
+    /**
+     * Clés d'idempotence de la sauvegarde numero, dans le fichier de sa parité (celui de la sauvegarde
+     * validée n'est pas touché) : magic, numéro, longueur puis les octets.
+     */
+    private void ecrireCles(byte[] cles, long numero) throws IOException {
+        ByteBuffer entete = ByteBuffer.allocate(16);
+        entete.putInt(MAGIC_CLES).putLong(numero).putInt(cles.length).flip();
+        Path temporaire = Path.of(fichierCles(numero) + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ecrireTout(canal, entete, 0);
+            ecrireTout(canal, ByteBuffer.wrap(cles), 16);
+            canal.force(false);
+        }
+        Files.move(temporaire, fichierCles(numero), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void remplirPage(ByteBuffer page, int numeroPage) {
+        page.clear();
+        for (int i = 0; i < PAR_PAGE; i++) {
+            int emplacement = numeroPage * PAR_PAGE + i;
+            CompteBancaire compte = emplacement < parEmplacement.size() ? parEmplacement.get(emplacement) : null;
+            int base = i * TAILLE_ENREGISTREMENT;
+            if (compte == null) {
+                for (int j = 0; j < TAILLE_ENREGISTREMENT; j += 8) {
+                    page.putLong(base + j, 0);
+                }
+                continue;
+            }
+            LocalDateTime debutArchive = compte.getDebutArchive();
+            page.putInt(base + CHAMP_NUMERO, compte.getNumeroCompte());
+            page.putInt(base + CHAMP_ETAT, 1);
+            page.putDouble(base + CHAMP_SOLDE, compte.getSolde());
+            page.putDouble(base + CHAMP_MOUVEMENT, compte.getMouvementDuJour());
+            page.putLong(base + CHAMP_JOUR, compte.getJourMouvement());
+            page.putDouble(base + CHAMP_SOMME_ARCHIVEE, compte.getSommeArchivee());
+            page.putLong(base + CHAMP_DEBUT_ARCHIVE, debutArchive == null ? SANS_DATE : versMillis(debutArchive));
+            page.putLong(base + CHAMP_NOM, nomParEmplacement.get(emplacement));
+            page.putInt(base + CHAMP_NOMBRE_ARCHIVEES, compte.getNombreArchivees());
+            page.putInt(base + CHAMP_JOUR_FIN_DE_JOURNEE, compte.getJourFinDeJournee());
+        }
+        page.position(0).limit(TAILLE_PAGE);
+    }
+
+    /**
+     * Ancre et tête de chaîne de chaque compte de la page, aux mêmes positions que ses enregistrements.
+     */
+    private void remplirEmpreintes(ByteBuffer page, int numeroPage) {
+        page.clear();
+        for (int i = 0; i < PAR_PAGE; i++) {
+            int emplacement = numeroPage * PAR_PAGE + i;
+            CompteBancaire compte = emplacement < parEmplacement.size() ? parEmplacement.get(emplacement) : null;
+            int base = i * TAILLE_ENREGISTREMENT;
+            if (compte == null) {
+                for (int j = 0; j < TAILLE_ENREGISTREMENT; j += 8) {
+                    page.putLong(base + j, 0);
+                }
+            } else {
+                compte.ecrireEmpreintes(page, base);
+            }
+        }
+        page.position(0).limit(TAILLE_PAGE);
+    }
+
+    /**
+     * Manifeste : génération, nombre de segments puis (position, indice de première transaction) de chacun.
+     * Remplacé par renommage atomique ; les segments au-delà de la partie validée par l'en-tête sont ignorés.
+     */
+    private void ecrireManifeste() throws IOException {
+        ByteArrayOutputStream octets = new ByteArrayOutputStream(16 + segments.size() * 16);
+        try (DataOutputStream sortie = new DataOutputStream(octets)) {
+            sortie.writeInt(MAGIC_MANIFESTE);
+            sortie.writeLong(generation);
+            sortie.writeInt(segments.size());
+            for (long[] segment : segments) {
+                sortie.writeLong(segment[0]);
+                sortie.writeLong(segment[1]);
+            }
+        }
+        Path temporaire = Path.of(fichierManifeste + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ecrireTout(canal, octets, 0);
+            canal.force(false);
+        }
+        Files.move(temporaire, fichierManifeste, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void ecrireTransaction(DataOutputStream journal, int emplacement, long millis, double montant,
+                                          String type, int contrepartie) throws IOException {
+        if (contrepartie == JournalTransactions.SANS_CONTREPARTIE) {
+            journal.writeInt(emplacement);
+        } else {
+            journal.writeInt(emplacement | AVEC_CONTREPARTIE);
+            journal.writeInt(contrepartie);
+        }
+        journal.writeLong(millis);
+        journal.writeDouble(montant);
+        journal.writeUTF(type);
+    }
+
+    // --- Chargement ---
+
+    /**
+     * Relit les comptes (dans l'ordre des emplacements) et rejoue le journal dans leurs historiques.
+     * Les pages et les segments du journal sont décodés en parallèle.
+     */
+    List<CompteBancaire> charger() throws IOException {
+        parEmplacement.clear();
+        nomParEmplacement.clear();
+        emplacements.clear();
+        transactionsEcrites.clear();
+        modifies.clear();
+        crees.clear();
+        pagesLiberees.clear();
+        emplacementsLibres = 0;
+        comptesAjoutesOuRetires = true;
+        racine = null;
+        anomaliesEmpreintes.clear();
+        CompteBancaire[] lus;
+        long[] positionsNoms;
+        try (FileChannel canalPages = FileChannel.open(fichierPages, StandardOpenOption.READ)) {
+            ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE);
+            lireTout(canalPages, entete, 0);
+            entete.flip();
+            if (entete.getInt() != MAGIC) {
+                throw new IOException("Fichier de pages invalide : " + fichierPages);
+            }
+            int nombreEmplacements = entete.getInt();
+            generation = entete.getLong();
+            tailleJournal = entete.getLong();
+            transactionsJournal = entete.getLong();
+            tailleNoms = entete.getLong();
+            numeroSauvegarde = entete.getLong(); // 0 pour un en-tête antérieur (page d'en-tête complétée de zéros)
+            jourFinDeJournee = entete.getLong();
+            racineChargee = new byte[AuditEmpreintes.TAILLE];
+            entete.get(racineChargee);
+            if (Arrays.equals(racineChargee, new byte[AuditEmpreintes.TAILLE])) {
+                racineChargee = null;
+            }
+            rejouerDoubleEcriture();
+            byte[] noms = lirePrefixe(fichierNoms(generation), tailleNoms);
+
+            lus = new CompteBancaire[nombreEmplacements];
+            positionsNoms = new long[nombreEmplacements];
+            int nombrePages = (nombreEmplacements + PAR_PAGE - 1) / PAR_PAGE;
+            executer(new DecodagePages(canalPages, noms, lus, positionsNoms, 0, nombrePages));
+        }
+        List<CompteBancaire> comptes = new ArrayList<>(lus.length);
+        for (int emplacement = 0; emplacement < lus.length; emplacement++) {
+            CompteBancaire compte = lus[emplacement];
+            parEmplacement.add(compte);
+            nomParEmplacement.add(positionsNoms[emplacement]);
+            if (compte == null) {
+                emplacementsLibres++;
+            } else {
+                emplacements.put(compte, emplacement);
+                comptes.add(compte);
+            }
+        }
+
+        // Rejeu du journal (limité à la partie validée par l'en-tête)
+        lireManifeste();
+        List<DecodageJournal> decodages = new ArrayList<>(segments.size());
+        try (FileChannel canalJournal = FileChannel.open(fichierJournal(generation), StandardOpenOption.READ)) {
+            for (int i = 0; i < segments.size(); i++) {
+                long[] debut = segments.get(i);
+                long[] fin = i + 1 < segments.size() ? segments.get(i + 1) : new long[] {tailleJournal, transactionsJournal};
+                decodages.add(new DecodageJournal(canalJournal, debut[0], fin[0], (int) (fin[1] - debut[1])));
+            }
+            executer(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(decodages)));
+        }
+        for (DecodageJournal decodage : decodages) {
+            for (int i = 0; i < decodage.emplacements.length; i++) {
+                int emplacement = decodage.emplacements[i];
+                CompteBancaire compte = emplacement < lus.length ? lus[emplacement] : null;
+                if (compte != null) {
+                    compte.getJournal().ajouter(decodage.dates[i], decodage.montants[i], decodage.types[i], decodage.contreparties[i]);
+                }
+            }
+        }
+        for (CompteBancaire compte : comptes) {
+            transactionsEcrites.put(compte, compte.getJournal().taille());
+        }
+        // Empreintes en dernier : elles couvrent l'historique qui vient d'être rejoué
+        chainesRouvertes = !lireEmpreintes(lus);
+        reecritureComplete = chainesRouvertes;
+        if (chainesRouvertes && !comptes.isEmpty()) {
+            anomaliesEmpreintes.add("empreintes absentes ou d'une autre génération (" + fichierEmpreintes.getFileName()
+                    + ") : chaînes rouvertes sur l'historique chargé");
+        } else if (!chainesRouvertes) {
+            verifierRacine(comptes);
+        }
+        clesChargees = lireCles();
+        return comptes;
+    }
+
+    /**
+     * Recopie à leur place les pages de .pages.dw si l'en-tête valide la sauvegarde qui les a écrites
+     * (même génération, même numéro) : leur écriture sur place a pu être interrompue. Une copie d'une
+     * autre sauvegarde (jamais validée, ou déjà recopiée) est ignorée.
+     */
+    private void rejouerDoubleEcriture() throws IOException {
+        if (numeroSauvegarde == 0 || !Files.exists(fichierDoubleEcriture)) {
+            return;
+        }
+        try (FileChannel copie = FileChannel.open(fichierDoubleEcriture, StandardOpenOption.READ)) {
+            if (copie.size() < TAILLE_ENTETE_DOUBLE_ECRITURE) {
+                return;
+            }
+            ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE_DOUBLE_ECRITURE);
+            lireTout(copie, entete, 0);
+            entete.flip();
+            if (entete.getInt() != MAGIC_DOUBLE_ECRITURE || entete.getLong() != generation || entete.getLong() != numeroSauvegarde) {
+                return;
+            }
+            int nombre = entete.getInt();
+            ByteBuffer indice = ByteBuffer.allocate(4);
+            ByteBuffer page = ByteBuffer.allocate(TAILLE_PAGE);
+            try (FileChannel canalPages = FileChannel.open(fichierPages, StandardOpenOption.WRITE);
+                 FileChannel canalEmpreintes = Files.exists(fichierEmpreintes)
+                         ? FileChannel.open(fichierEmpreintes, StandardOpenOption.WRITE) : null) {
+                long position = TAILLE_ENTETE_DOUBLE_ECRITURE;
+                for (int i = 0; i < nombre; i++) {
+                    indice.clear();
+                    lireTout(copie, indice, position);
+                    long destination = (indice.getInt(0) + 1L) * TAILLE_PAGE;
+                    page.clear();
+                    lireTout(copie, page, position + 4);
+                    page.flip();
+                    ecrireTout(canalPages, page, destination);
+                    page.clear();
+                    lireTout(copie, page, position + 4 + TAILLE_PAGE);
+                    page.flip();
+                    if (canalEmpreintes != null) {
+                        ecrireTout(canalEmpreintes, page, destination);
+                    }
+                    position += 4 + 2L * TAILLE_PAGE;
+                }
+                canalPages.force(false);
+                if (canalEmpreintes != null) {
+                    canalEmpreintes.force(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clés d'idempotence écrites avec la sauvegarde validée par l'en-tête, ou null.
+     */
+    private byte[] lireCles() throws IOException {
+        Path fichier = fichierCles(numeroSauvegarde);
+        if (numeroSauvegarde == 0 || !Files.exists(fichier)) {
+            return null;
+        }
+        ByteBuffer contenu = ByteBuffer.wrap(Files.readAllBytes(fichier));
+        if (contenu.remaining() < 16 || contenu.getInt() != MAGIC_CLES || contenu.getLong() != numeroSauvegarde
+                || contenu.getInt() != contenu.remaining()) {
+            return null; // Clés d'une sauvegarde non validée
+        }
+        byte[] cles = new byte[contenu.remaining()];
+        contenu.get(cles);
+        return cles;
+    }
+
+    /**
+     * Compare la racine des empreintes relues à celle de l'en-tête chargé (sauf en-tête antérieur, sans racine).
+     */
+    private void verifierRacine(List<CompteBancaire> comptes) {
+        if (racineChargee == null) {
+            return;
+        }
+        racine = arbre.racine(comptes, List.of(), true);
+        comptesAjoutesOuRetires = false;
+        if (!Arrays.equals(racine, racineChargee)) {
+            anomaliesEmpreintes.add("racine des empreintes chargées " + AuditEmpreintes.hexadecimal(racine)
+                    + " différente de celle de la sauvegarde " + numeroSauvegarde + " (" + AuditEmpreintes.hexadecimal(racineChargee) + ")");
+        }
+    }
+
+    /**
+     * Rétablit la chaîne d'empreintes de chaque compte depuis .empreintes.
+     * @return false si le fichier manque ou n'est pas de la génération en cours (chaînes rouvertes
+     *         depuis l'historique chargé, à réécrire entièrement).
+     */
+    private boolean lireEmpreintes(CompteBancaire[] lus) throws IOException {
+        if (Files.exists(fichierEmpreintes) && Files.size(fichierEmpreintes) >= TAILLE_PAGE * (1L + (lus.length + PAR_PAGE - 1) / PAR_PAGE)) {
+            try (FileChannel canal = FileChannel.open(fichierEmpreintes, StandardOpenOption.READ)) {
+                ByteBuffer entete = ByteBuffer.allocate(12);
+                lireTout(canal, entete, 0);
+                entete.flip();
+                if (entete.getInt() == MAGIC_EMPREINTES && entete.getLong() == generation) {
+                    executer(new DecodageEmpreintes(canal, lus, 0, (lus.length + PAR_PAGE - 1) / PAR_PAGE));
+                    return true;
+                }
+            }
+        }
+        for (CompteBancaire compte : lus) {
+            if (compte != null) {
+                compte.restaurerEmpreintes(null, 0);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Relit les débuts de segments ; sans manifeste valide pour la génération en cours,
+     * le journal est relu d'un seul segment.
+     */
+    private void lireManifeste() throws IOException {
+        segments.clear();
+        segments.add(new long[] {0, 0});
+        if (!Files.exists(fichierManifeste)) {
+            return;
+        }
+        try (DataInputStream entree = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(fichierManifeste)))) {
+            if (entree.readInt() != MAGIC_MANIFESTE || entree.readLong() != generation) {
+                return;
+            }
+            int nombre = entree.readInt();
+            for (int i = 0; i < nombre; i++) {
+                long position = entree.readLong();
+                long indice = entree.readLong();
+                if (position > 0 && position < tailleJournal && indice < transactionsJournal) {
+                    segments.add(new long[] {position, indice});
+                }
+            }
+        } catch (EOFException e) {
+            segments.subList(1, segments.size()).clear(); // Manifeste tronqué : un seul segment
+        }
+    }
+
+    /**
+     * Décode un intervalle de pages dans les tableaux partagés (chaque tâche écrit ses propres cases).
+     */
+    private static final class DecodagePages extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel canal;
+        private final byte[] noms;
+        private final CompteBancaire[] lus;
+        private final long[] positionsNoms;
+        private final int premiere;
+        private final int fin;
+
+        DecodagePages(FileChannel canal, byte[] noms, CompteBancaire[] lus, long[] positionsNoms, int premiere, int fin) {
+            this.canal = canal;
+            this.noms = noms;
+            this.lus = lus;
+            this.positionsNoms = positionsNoms;
+            this.premiere = premiere;
+            this.fin = fin;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - premiere > PAGES_PAR_TACHE) {
+                int milieu = (premiere + fin) >>> 1;
+                invokeAll(new DecodagePages(canal, noms, lus, positionsNoms, premiere, milieu),
+                        new DecodagePages(canal, noms, lus, positionsNoms, milieu, fin));
+                return;
+            }
+            ByteBuffer page = ByteBuffer.allocate(TAILLE_PAGE);
+            try {
+                for (int numeroPage = premiere; numeroPage < fin; numeroPage++) {
+                    page.clear();
+                    lireTout(canal, page, (numeroPage + 1L) * TAILLE_PAGE);
+                    for (int i = 0; i < PAR_PAGE && numeroPage * PAR_PAGE + i < lus.length; i++) {
+                        int base = i * TAILLE_ENREGISTREMENT;
+                        lus[numeroPage * PAR_PAGE + i] = lireEnregistrement(page, base, noms);
+                        positionsNoms[numeroPage * PAR_PAGE + i] = page.getLong(base + CHAMP_NOM);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Rétablit les empreintes des comptes d'un intervalle de pages de .empreintes.
+     */
+    private static final class DecodageEmpreintes extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel canal;
+        private final CompteBancaire[] lus;
+        private final int premiere;
+        private final int fin;
+
+        DecodageEmpreintes(FileChannel canal, CompteBancaire[] lus, int premiere, int fin) {
+            this.canal = canal;
+            this.lus = lus;
+            this.premiere = premiere;
+            this.fin = fin;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - premiere > PAGES_PAR_TACHE) {
+                int milieu = (premiere + fin) >>> 1;
+                invokeAll(new DecodageEmpreintes(canal, lus, premiere, milieu), new DecodageEmpreintes(canal, lus, milieu, fin));
+                return;
+            }
+            ByteBuffer page = ByteBuffer.allocate(TAILLE_PAGE);
+            try {
+                for (int numeroPage = premiere; numeroPage < fin; numeroPage++) {
+                    page.clear();
+                    lireTout(canal, page, (numeroPage + 1L) * TAILLE_PAGE);
+                    for (int i = 0; i < PAR_PAGE && numeroPage * PAR_PAGE + i < lus.length; i++) {
+                        CompteBancaire compte = lus[numeroPage * PAR_PAGE + i];
+                        if (compte != null) {
+                            compte.restaurerEmpreintes(page, i * TAILLE_ENREGISTREMENT);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Décode un segment du journal ; les transactions sont rattachées aux comptes ensuite, dans l'ordre.
+     */
+    private static final class DecodageJournal extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel canal;
+        private final long debut;
+        private final long fin;
+        final int[] emplacements;
+        final long[] dates;
+        final double[] montants;
+        final String[] types;
+        final int[] contreparties;
+
+        DecodageJournal(FileChannel canal, long debut, long fin, int nombre) {
+            this.canal = canal;
+            this.debut = debut;
+            this.fin = fin;
+            this.emplacements = new int[nombre];
+            this.dates = new long[nombre];
+            this.montants = new double[nombre];
+            this.types = new String[nombre];
+            this.contreparties = new int[nombre];
+        }
+
+        @Override
+        protected void compute() {
+            ByteBuffer octets = ByteBuffer.allocate(Math.toIntExact(fin - debut));
+            try {
+                lireTout(canal, octets, debut);
+                DataInputStream segment = new DataInputStream(new ByteArrayInputStream(octets.array()));
+                for (int i = 0; i < emplacements.length; i++) {
+                    int emplacement = segment.readInt();
+                    emplacements[i] = emplacement & ~AVEC_CONTREPARTIE;
+                    contreparties[i] = emplacement < 0 ? segment.readInt() : JournalTransactions.SANS_CONTREPARTIE;
+                    dates[i] = segment.readLong();
+                    montants[i] = segment.readDouble();
+                    types[i] = segment.readUTF();
+                }
+            } catch (EOFException e) {
+                throw new UncheckedIOException(new IOException("Journal tronqué à la position " + debut, e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void executer(ForkJoinTask<?> tache) throws IOException {
+        try {
+            ForkJoinPool.commonPool().invoke(tache);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static CompteBancaire lireEnregistrement(ByteBuffer page, int base, byte[] noms) {
+        if (page.getInt(base + CHAMP_ETAT) != 1) {
+            return null;
+        }
+        long positionNom = page.getLong(base + CHAMP_NOM);
+        ByteBuffer nom = ByteBuffer.wrap(noms);
+        int longueur = nom.getInt((int) positionNom);
+        CompteBancaire compte = CompteBancaire.restaurer(page.getInt(base + CHAMP_NUMERO),
+                new String(noms, (int) positionNom + 4, longueur, StandardCharsets.UTF_8), page.getDouble(base + CHAMP_SOLDE));
+        compte.restaurerMouvement(page.getDouble(base + CHAMP_MOUVEMENT), page.getLong(base + CHAMP_JOUR));
+        long debutArchive = page.getLong(base + CHAMP_DEBUT_ARCHIVE);
+        compte.restaurerArchivage(page.getInt(base + CHAMP_NOMBRE_ARCHIVEES), page.getDouble(base + CHAMP_SOMME_ARCHIVEE),
+                debutArchive == SANS_DATE ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(debutArchive), FUSEAU));
+        compte.restaurerFinDeJournee(page.getInt(base + CHAMP_JOUR_FIN_DE_JOURNEE));
+        return compte;
+    }
+
+    // --- Utilitaires ---
+
+    private static long versMillis(LocalDateTime date) {
+        return date.atZone(FUSEAU).toInstant().toEpochMilli();
+    }
+
+    private Path fichierJournal(long generation) {
+        return Path.of(base + ".journal." + generation);
+    }
+
+    private Path fichierNoms(long generation) {
+        return Path.of(base + ".noms." + generation);
+    }
+
+    private Path fichierCles(long numero) {
+        return Path.of(base + ".cles." + (numero & 1));
+    }
+
+    private static FileChannel ouvrirAjout(Path fichier) throws IOException {
+        return FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static int ecrireTout(FileChannel canal, ByteArrayOutputStream octets, long position) throws IOException {
+        int longueur = octets.size();
+        ecrireTout(canal, ByteBuffer.wrap(octets.toByteArray()), position);
+        octets.reset();
+        return longueur;
+    }
+
+    private static void ecrireTout(FileChannel canal, ByteBuffer tampon, long position) throws IOException {
+        while (tampon.hasRemaining()) {
+            canal.write(tampon, position + tampon.position());
+        }
+    }
+
+    private static void lireTout(FileChannel canal, ByteBuffer tampon, long position) throws IOException {
+        while (tampon.hasRemaining()) {
+            if (canal.read(tampon, position + tampon.position()) < 0) {
+                throw new EOFException("Fichier de pages tronqué : " + canal);
+            }
+        }
+    }
+
+    private static byte[] lirePrefixe(Path fichier, long longueur) throws IOException {
+        byte[] octets = new byte[Math.toIntExact(longueur)];
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            lireTout(canal, ByteBuffer.wrap(octets), 0);
+        }
+        return octets;
+    }
+}
@@ -0,0 +1,585 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * API HTTP locale devant le gestionnaire, pour les outils internes (pas d'interface graphique).
+ * <pre>
+ * GET  /comptes/{numero}                         consultation d'un compte
+ * POST /comptes/{numero}/depot?montant=M         dépôt
+ * POST /comptes/{numero}/retrait?montant=M       retrait
+ * GET  /comptes/{numero}/historique[?limite=N]   dernières transactions
+ * POST /transferts?source=S&amp;cible=C&amp;montant=M    transfert
+ * POST /virements?source=S&amp;cible=C&amp;montant=M&amp;premiere=AAAA-MM-JJTHH:MM[&amp;periodicite=P][&amp;fin=...]
+ *                                                virement planifié (P : UNIQUE, QUOTIDIENNE, HEBDOMADAIRE, MENSUELLE)
+ * GET  /virements/{id}                           prochaine échéance et dernier résultat
+ * DELETE /virements/{id}                         annulation
+ * GET  /metriques                                latences par point d'accès
+ * </pre>
+ * Les virements planifiés n'existent qu'avec un {@link PlanificateurVirements} (setPlanificateur),
+ * démarré et arrêté avec le serveur.
+ * Les opérations POST acceptent un en-tête Idempotency-Key : un client qui réessaie avec la même clé
+ * reçoit le résultat de la première exécution au lieu de rejouer l'opération.
+ * Les réponses sont en JSON écrit à la main (pas de réflexion). Chaque requête est traitée sur un
+ * thread virtuel lorsque la JVM en propose (Java 21+), sinon sur un pool borné dimensionné sur les
+ * limites d'admission. Les opérations passent ensuite par un {@link ControleAdmission} : mutations et
+ * lectures ont des pools séparés et bornés, et une classe saturée répond 503 avec un en-tête Retry-After.
+ * Si le pool de requêtes lui-même est plein, la requête reçoit aussi un 503, sans attendre en file.
+ * La sauvegarde automatique est remplacée par une sauvegarde périodique.
+ */
+public class ServeurApi {
+
+    private static final String[] POINTS_ACCES = {"compte", "depot", "retrait", "historique", "transfert", "virement", "metriques"};
+
+    // Requêtes refusées par le pool plein en attente de leur réponse 503 ; au-delà, la connexion est fermée
+    private static final int REFUS_EN_ATTENTE = 64;
+
+    // Vrai pendant qu'une requête refusée par le pool plein est traitée par le thread des refus
+    private static final ThreadLocal<Boolean> POOL_PLEIN = new ThreadLocal<>();
+
+    private final GestionnaireBanque gestionnaire;
+    private final HttpServer serveur;
+    private final ExecutorService executeur;
+    private final ThreadPoolExecutor refus = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(REFUS_EN_ATTENTE));
+    private final ControleAdmission admission;
+    private final Map<String, HistogrammeLatence> latences = new LinkedHashMap<>();
+    private final Map<String, LongAdder> erreurs = new HashMap<>();
+    private final AtomicBoolean modifie = new AtomicBoolean();
+    private ScheduledExecutorService sauvegardes;
+    private PlanificateurVirements planificateur;
+    private final AtomicLong virementsSauvegardes = new AtomicLong(); // Occurrences payées à la dernière sauvegarde
+
+    public ServeurApi(GestionnaireBanque gestionnaire, int port) throws IOException {
+        this(gestionnaire, port, new ControleAdmission(
+                Runtime.getRuntime().availableProcessors(), 256,
+                Math.max(2, Runtime.getRuntime().availableProcessors() / 2), 64));
+    }
+
+    public ServeurApi(GestionnaireBanque gestionnaire, int port, ControleAdmission admission) throws IOException {
+        this.gestionnaire = gestionnaire;
+        this.admission = admission;
+        this.serveur = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.executeur = creerExecuteur(admission, refus);
+        for (String point : POINTS_ACCES) {
+            latences.put(point, new HistogrammeLatence());
+            erreurs.put(point, new LongAdder());
+        }
+        serveur.createContext("/comptes/", sauf503(this::traiterComptes));
+        serveur.createContext("/transferts", sauf503(this::traiterTransfert));
+        serveur.createContext("/metriques", sauf503(this::traiterMetriques));
+        serveur.setExecutor(executeur);
+    }
+
+    /**
+     * Expose les virements planifiés (/virements). À appeler avant demarrer : le planificateur démarre
+     * avec le serveur et il est fermé par arreter.
+     */
+    public void setPlanificateur(PlanificateurVirements planificateur) {
+        this.planificateur = planificateur;
+        serveur.createContext("/virements", sauf503(this::traiterVirements));
+    }
+
+    /**
+     * Démarre le serveur et la sauvegarde périodique (toutes les intervalleSecondes, si des données ont changé).
+     */
+    public void demarrer(int intervalleSecondes) {
+        gestionnaire.setSauvegardeAutomatique(false);
+        sauvegardes = Executors.newSingleThreadScheduledExecutor();
+        sauvegardes.scheduleWithFixedDelay(this::sauvegarderSiModifie, intervalleSecondes, intervalleSecondes, TimeUnit.SECONDS);
+        if (planificateur != null) {
+            planificateur.demarrer();
+        }
+        serveur.start();
+    }
+
+    /**
+     * Arrête le serveur (et le planificateur) et effectue une dernière sauvegarde.
+     */
+    public void arreter() {
+        serveur.stop(1);
+        executeur.shutdown();
+        refus.shutdown();
+        admission.arreter();
+        if (sauvegardes != null) {
+            sauvegardes.shutdown();
+        }
+        if (planificateur != null) {
+            try {
+                planificateur.close();
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la sauvegarde des virements planifiés : " + e.getMessage());
+            }
+        }
+        sauvegarderSiModifie();
+    }
+
+    public int getPort() {
+        return serveur.getAddress().getPort();
+    }
+
+    /**
+     * Sauvegarde si une requête a modifié des comptes, ou si le planificateur a payé des virements depuis.
+     */
+    private void sauvegarderSiModifie() {
+        long payes = planificateur == null ? 0 : planificateur.getExecutes();
+        boolean virements = virementsSauvegardes.getAndSet(payes) != payes;
+        if (modifie.getAndSet(false) | virements) {
+            gestionnaire.sauvegarderDonnees();
+        }
+    }
+
+    // --- Points d'accès ---
+
+    private void traiterComptes(HttpExchange echange) throws IOException {
+        String[] segments = echange.getRequestURI().getPath().split("/");
+        // segments : "", "comptes", numero [, action]
+        String action = segments.length > 3 ? segments[3] : "";
+        String point = action.isEmpty() ? "compte" : action;
+        boolean actionConnue = action.isEmpty() || action.equals("depot") || action.equals("retrait") || action.equals("historique");
+        if (segments.length < 3 || segments.length > 4 || !actionConnue) {
+            repondre(echange, 404, erreur("Ressource inconnue"));
+            return;
+        }
+        long debut = System.nanoTime();
+        int statut;
+        try {
+            int numero = Integer.parseInt(segments[2]);
+            Map<String, String> parametres = parametres(echange);
+            switch (point) {
+                case "compte":
+                    statut = exiger(echange, "GET")
+                            ? admettre(echange, ControleAdmission.ClasseOperation.LECTURE, () -> repondreCompte(echange, numero)) : 405;
+                    break;
+                case "historique":
+                    int limite = Integer.parseInt(parametres.getOrDefault("limite", "100"));
+                    statut = exiger(echange, "GET")
+                            ? admettre(echange, ControleAdmission.ClasseOperation.LECTURE, () -> repondreHistorique(echange, numero, limite)) : 405;
+                    break;
+                case "depot": {
+                    double montant = montant(parametres);
+                    statut = exiger(echange, "POST") ? admettre(echange, ControleAdmission.ClasseOperation.MUTATION,
+                            () -> repondreResultat(echange, numero, gestionnaire.effectuerDepot(numero, montant, cleIdempotence(echange)))) : 405;
+                    break;
+                }
+                case "retrait": {
+                    double montant = montant(parametres);
+                    statut = exiger(echange, "POST") ? admettre(echange, ControleAdmission.ClasseOperation.MUTATION,
+                            () -> repondreResultat(echange, numero, gestionnaire.effectuerRetrait(numero, montant, cleIdempotence(echange)))) : 405;
+                    break;
+                }
+                default:
+                    statut = repondre(echange, 404, erreur("Ressource inconnue"));
+            }
+        } catch (NumberFormatException e) {
+            statut = repondre(echange, 400, erreur("Paramètre numérique invalide"));
+        }
+        terminer(point, debut, statut);
+    }
+
+    private void traiterTransfert(HttpExchange echange) throws IOException {
+        long debut = System.nanoTime();
+        int statut;
+        if (!exiger(echange, "POST")) {
+            statut = 405;
+        } else {
+            try {
+                Map<String, String> parametres = parametres(echange);
+                int source = Integer.parseInt(parametres.getOrDefault("source", ""));
+                int cible = Integer.parseInt(parametres.getOrDefault("cible", ""));
+                double montant = montant(parametres);
+                statut = admettre(echange, ControleAdmission.ClasseOperation.MUTATION,
+                        () -> repondreResultat(echange, source, gestionnaire.effectuerTransfert(source, cible, montant, cleIdempotence(echange))));
+            } catch (NumberFormatException e) {
+                statut = repondre(echange, 400, erreur("Paramètre numérique invalide"));
+            }
+        }
+        terminer("transfert", debut, statut);
+    }
+
+    private void traiterVirements(HttpExchange echange) throws IOException {
+        String[] segments = echange.getRequestURI().getPath().split("/");
+        // segments : "", "virements" [, id]
+        long debut = System.nanoTime();
+        int statut;
+        try {
+            if (segments.length == 2) {
+                if (exiger(echange, "POST")) {
+                    Map<String, String> parametres = parametres(echange);
+                    int source = Integer.parseInt(parametres.getOrDefault("source", ""));
+                    int cible = Integer.parseInt(parametres.getOrDefault("cible", ""));
+                    double montant = montant(parametres);
+                    LocalDateTime premiere = LocalDateTime.parse(parametres.getOrDefault("premiere", ""));
+                    PlanificateurVirements.Periodicite periodicite =
+                            PlanificateurVirements.Periodicite.valueOf(parametres.getOrDefault("periodicite", "UNIQUE"));
+                    LocalDateTime fin = parametres.containsKey("fin") ? LocalDateTime.parse(parametres.get("fin")) : null;
+                    statut = admettre(echange, ControleAdmission.ClasseOperation.MUTATION, () -> {
+                        long id = planificateur.planifier(source, cible, montant, premiere, periodicite, fin);
+                        return repondre(echange, 201, new StringBuilder(32).append("{\"id\":").append(id).append('}'));
+                    });
+                } else {
+                    statut = 405;
+                }
+            } else if (segments.length == 3) {
+                long id = Long.parseLong(segments[2]);
+                switch (echange.getRequestMethod()) {
+                    case "GET":
+                        statut = admettre(echange, ControleAdmission.ClasseOperation.LECTURE, () -> repondreVirement(echange, id));
+                        break;
+                    case "DELETE":
+                        statut = admettre(echange, ControleAdmission.ClasseOperation.MUTATION, () -> planificateur.annuler(id)
+                                ? repondre(echange, 200, new StringBuilder("{\"id\":").append(id).append(",\"annule\":true}"))
+                                : repondre(echange, 404, erreur("Virement planifié inconnu")));
+                        break;
+                    default:
+                        statut = repondre(echange, 405, erreur("Méthode " + echange.getRequestMethod() + " non autorisée"));
+                }
+            } else {
+                statut = repondre(echange, 404, erreur("Ressource inconnue"));
+            }
+        } catch (DateTimeParseException e) {
+            statut = repondre(echange, 400, erreur("Date invalide (attendu AAAA-MM-JJTHH:MM) : " + e.getParsedString()));
+        } catch (NumberFormatException e) {
+            statut = repondre(echange, 400, erreur("Paramètre numérique invalide"));
+        } catch (IllegalArgumentException e) {
+            statut = repondre(echange, 400, erreur("Périodicité inconnue"));
+        }
+        terminer("virement", debut, statut);
+    }
+
+    private int repondreVirement(HttpExchange echange, long id) throws IOException {
+        PlanificateurVirements.Virement virement = planificateur.getVirement(id);
+        if (virement == null) {
+            return repondre(echange, 404, erreur("Virement planifié inconnu (annulé ou terminé)"));
+        }
+        StringBuilder json = new StringBuilder(192);
+        json.append("{\"id\":").append(id).append(",\"source\":").append(virement.getSource())
+                .append(",\"cible\":").append(virement.getCible()).append(",\"montant\":");
+        montantJson(json, virement.getMontant());
+        json.append(",\"periodicite\":\"").append(virement.getPeriodicite().name())
+                .append("\",\"prochaine_echeance\":\"").append(virement.getProchaineEcheance()).append('"');
+        if (virement.getDernierResultat() != null) {
+            json.append(",\"dernier_resultat\":\"").append(virement.getDernierResultat().name()).append('"');
+        }
+        json.append('}');
+        return repondre(echange, 200, json);
+    }
+
+    private void traiterMetriques(HttpExchange echange) throws IOException {
+        long debut = System.nanoTime();
+        StringBuilder json = new StringBuilder(512).append('{');
+        boolean premier = true;
+        for (Map.Entry<String, HistogrammeLatence> entree : latences.entrySet()) {
+            HistogrammeLatence h = entree.getValue();
+            if (!premier) {
+                json.append(',');
+            }
+            premier = false;
+            json.append('"').append(entree.getKey()).append("\":{\"requetes\":").append(h.getNombre())
+                    .append(",\"erreurs\":").append(erreurs.get(entree.getKey()).sum())
+                    .append(",\"moyenne_us\":").append(Math.round(h.getMoyenne() / 1000))
+                    .append(",\"p50_us\":").append(h.getPercentile(0.50) / 1000)
+                    .append(",\"p99_us\":").append(h.getPercentile(0.99) / 1000)
+                    .append(",\"p999_us\":").append(h.getPercentile(0.999) / 1000)
+                    .append(",\"max_us\":").append(h.getMaximum() / 1000).append('}');
+        }
+        json.append(",\"admission\":{");
+        for (ControleAdmission.ClasseOperation classe : ControleAdmission.ClasseOperation.values()) {
+            if (classe.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(classe.name()).append("\":{\"en_cours\":").append(admission.getEnCours(classe))
+                    .append(",\"file\":").append(admission.getProfondeurFile(classe))
+                    .append(",\"limite\":").append(admission.getLimite(classe))
+                    .append(",\"admises\":").append(admission.getAdmises(classe))
+                    .append(",\"rejets\":").append(admission.getRejets(classe)).append('}');
+        }
+        json.append('}');
+        CacheComptes cache = gestionnaire.getCacheComptes();
+        if (cache != null) {
+            json.append(",\"cache\":{\"taille\":").append(cache.getTaille())
+                    .append(",\"capacite\":").append(cache.getCapacite())
+                    .append(",\"succes\":").append(cache.getSucces())
+                    .append(",\"echecs\":").append(cache.getEchecs())
+                    .append(",\"evictions\":").append(cache.getEvictions())
+                    .append(",\"reecritures\":").append(cache.getReecritures()).append('}');
+        }
+        json.append('}');
+        terminer("metriques", debut, repondre(echange, 200, json));
+    }
+
+    private int repondreCompte(HttpExchange echange, int numero) throws IOException {
+        CompteBancaire compte = gestionnaire.trouverCompte(numero);
+        if (compte == null) {
+            return repondre(echange, 404, erreur(ResultatOperation.COMPTE_INCONNU.getLibelle()));
+        }
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"numero\":").append(numero).append(",\"titulaire\":");
+        chaine(json, compte.getNomTitulaire());
+        json.append(",\"solde\":");
+        montantJson(json, compte.getSolde());
+        json.append('}');
+        return repondre(echange, 200, json);
+    }
+
+    private int repondreHistorique(HttpExchange echange, int numero, int limite) throws IOException {
+        CompteBancaire compte = gestionnaire.trouverCompte(numero);
+        if (compte == null) {
+            return repondre(echange, 404, erreur(ResultatOperation.COMPTE_INCONNU.getLibelle()));
+        }
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"numero\":").append(numero).append(",\"transactions\":[");
+        int nombre = Math.max(0, limite);
+        List<Transaction> transactions;
+        // Le compte est verrouillé le temps de la copie : l'historique n'est pas modifié pendant le parcours
+        synchronized (compte) {
+            List<Transaction> recentes = compte.getHistoriqueTransactions();
+            transactions = new ArrayList<>(recentes.subList(Math.max(0, recentes.size() - nombre), recentes.size()));
+        }
+        if (transactions.size() < nombre && compte.getDebutArchive() != null) {
+            // Les transactions récentes ne suffisent pas : l'archive est relue
+            List<Transaction> complet = gestionnaire.getHistoriqueComplet(compte);
+            transactions = complet.subList(Math.max(0, complet.size() - nombre), complet.size());
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"date\":\"").append(transaction.getDateHeureFormatee()).append("\",\"type\":");
+            chaine(json, transaction.getType());
+            json.append(",\"montant\":");
+            montantJson(json, Transaction.signe(transaction.getType()) < 0 ? -transaction.getMontant() : transaction.getMontant());
+            json.append('}');
+        }
+        json.append("]}");
+        return repondre(echange, 200, json);
+    }
+
+    private int repondreResultat(HttpExchange echange, int numero, ResultatOperation resultat) throws IOException {
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"resultat\":\"").append(resultat.name()).append('"');
+        if (resultat.estSucces()) {
+            modifie.set(true);
+            CompteBancaire compte = gestionnaire.trouverCompte(numero);
+            if (compte != null) {
+                json.append(",\"solde\":");
+                montantJson(json, compte.getSolde());
+            }
+        }
+        json.append('}');
+        int statut;
+        switch (resultat) {
+            case SUCCES:
+                statut = 200;
+                break;
+            case COMPTE_INCONNU:
+                statut = 404;
+                break;
+            default:
+                statut = 422; // Requête bien formée mais refusée par les règles métier
+        }
+        return repondre(echange, statut, json);
+    }
+
+    // --- Utilitaires HTTP et JSON ---
+
+    /**
+     * Fait traiter la requête par le pool de sa classe d'opérations ; répond 503 + Retry-After si elle est saturée.
+     */
+    private int admettre(HttpExchange echange, ControleAdmission.ClasseOperation classe, Callable<Integer> traitement) throws IOException {
+        try {
+            return admission.executer(classe, traitement);
+        } catch (ControleAdmission.RejetAdmission rejet) {
+            long secondes = (rejet.getReessayerApresMillis() + 999) / 1000;
+            echange.getResponseHeaders().set("Retry-After", Long.toString(secondes));
+            return repondre(echange, 503, erreur(rejet.getMessage()));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            return repondre(echange, 500, erreur("Erreur interne : " + e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return repondre(echange, 503, erreur("Serveur en cours d'arrêt"));
+        }
+    }
+
+    private void terminer(String point, long debut, int statut) {
+        latences.get(point).enregistrer(System.nanoTime() - debut);
+        if (statut >= 400) {
+            erreurs.get(point).increment();
+        }
+    }
+
+    private static boolean exiger(HttpExchange echange, String methode) throws IOException {
+        if (methode.equals(echange.getRequestMethod())) {
+            return true;
+        }
+        repondre(echange, 405, erreur("Méthode " + echange.getRequestMethod() + " non autorisée"));
+        return false;
+    }
+
+    private static int repondre(HttpExchange echange, int statut, CharSequence json) throws IOException {
+        byte[] corps = json.toString().getBytes(StandardCharsets.UTF_8);
+        echange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        echange.sendResponseHeaders(statut, corps.length);
+        try (OutputStream sortie = echange.getResponseBody()) {
+            sortie.write(corps);
+        }
+        return statut;
+    }
+
+    private static String cleIdempotence(HttpExchange echange) {
+        String cle = echange.getRequestHeaders().getFirst("Idempotency-Key");
+        return cle == null || cle.isBlank() ? null : cle;
+    }
+
+    private static Map<String, String> parametres(HttpExchange echange) {
+        Map<String, String> parametres = new HashMap<>();
+        String requete = echange.getRequestURI().getRawQuery();
+        if (requete != null) {
+            for (String paire : requete.split("&")) {
+                int egal = paire.indexOf('=');
+                if (egal > 0) {
+                    parametres.put(URLDecoder.decode(paire.substring(0, egal), StandardCharsets.UTF_8),
+                            URLDecoder.decode(paire.substring(egal + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parametres;
+    }
+
+    private static double montant(Map<String, String> parametres) {
+        return Double.parseDouble(parametres.getOrDefault("montant", ""));
+    }
+
+    private static StringBuilder erreur(String message) {
+        StringBuilder json = new StringBuilder("{\"erreur\":");
+        chaine(json, message);
+        return json.append('}');
+    }
+
+    /**
+     * Montant écrit avec deux décimales exactes, à partir des centimes.
+     */
+    private static void montantJson(StringBuilder json, double montant) {
+        long centimes = Math.round(montant * 100);
+        if (centimes < 0) {
+            json.append('-');
+            centimes = -centimes;
+        }
+        json.append(centimes / 100).append('.');
+        long reste = centimes % 100;
+        if (reste < 10) {
+            json.append('0');
+        }
+        json.append(reste);
+    }
+
+    private static void chaine(StringBuilder json, String texte) {
+        json.append('"');
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Un thread virtuel par requête si la JVM le permet (Java 21+). Sinon un pool sans file : un thread
+     * par opération admissible (chacun attend son résultat dans ControleAdmission.executer), plus une
+     * marge pour les refus et les métriques. Pool plein : la requête passe au thread des refus, qui
+     * répond aussitôt 503 (voir sauf503) ; si lui aussi est débordé, le serveur ferme la connexion.
+     * Le thread de réception n'attend jamais.
+     */
+    private static ExecutorService creerExecuteur(ControleAdmission admission, ExecutorService refus) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int coeurs = Runtime.getRuntime().availableProcessors();
+            int gestionnaires = admission.getLimite(ControleAdmission.ClasseOperation.MUTATION)
+                    + admission.getLimite(ControleAdmission.ClasseOperation.LECTURE) + 2 * coeurs;
+            return new ThreadPoolExecutor(coeurs, gestionnaires, 30, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                    (requete, pool) -> refus.execute(() -> {
+                        POOL_PLEIN.set(Boolean.TRUE);
+                        try {
+                            requete.run();
+                        } finally {
+                            POOL_PLEIN.remove();
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * Répond 503 + Retry-After sans rien exécuter quand la requête arrive par le refus du pool plein.
+     */
+    private static HttpHandler sauf503(HttpHandler traitement) {
+        return echange -> {
+            if (POOL_PLEIN.get() != null) {
+                echange.getResponseHeaders().set("Retry-After", "1");
+                repondre(echange, 503, erreur("Serveur saturé, réessayer plus tard"));
+            } else {
+                traitement.handle(echange);
+            }
+        };
+    }
+
+    /**
+     * Usage : java ServeurApi [port] [fichier_sauvegarde] [intervalle_sauvegarde_secondes] [capacite_cache_comptes]
+     * Les virements planifiés sont gardés à côté de la sauvegarde (.virements) et exécutés à la seconde près.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String fichier = args.length > 1 ? args[1] : "donnees_banque.ser";
+        int intervalle = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        // Capacité du cache de comptes : active le mode tas borné (comptes dans une table mappée)
+        int capaciteCache = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        GestionnaireBanque gestionnaire = capaciteCache > 0
+                ? new GestionnaireBanque(fichier, capaciteCache) : new GestionnaireBanque(fichier);
+        gestionnaire.publierMetriquesJmx();
+        RapprochementComptes.Rapport rapprochement = gestionnaire.rapprocher();
+        (rapprochement.estCoherent() ? System.out : System.err).print(rapprochement);
+        AuditEmpreintes.Rapport empreintes = gestionnaire.verifierEmpreintes();
+        (empreintes.estIntegre() ? System.out : System.err).println(empreintes);
+        ServeurApi api = new ServeurApi(gestionnaire, port);
+        api.setPlanificateur(new PlanificateurVirements(gestionnaire, fichier, Duration.ofSeconds(1)));
+        Runtime.getRuntime().addShutdownHook(new Thread(api::arreter));
+        api.demarrer(intervalle);
+        System.out.println("API bancaire à l'écoute sur http://127.0.0.1:" + api.getPort());
+    }
+}
@@ -0,0 +1,549 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stockage des comptes hors du tas, pour les très grosses banques.
+ * Les comptes sont des enregistrements de largeur fixe dans un fichier mappé en mémoire
+ * (prefixe.tbl), retrouvés par une table de hachage elle aussi mappée (prefixe.idx) ; les noms
+ * des titulaires sont ajoutés à la suite dans prefixe.noms.
+ *
+ * L'ouverture ne lit rien : les pages sont chargées par le système à la demande, si bien qu'une
+ * banque de plusieurs dizaines de millions de comptes s'ouvre instantanément et que le tas ne
+ * contient que les CompteBancaire réellement matérialisés (ceux affichés par l'interface).
+ *
+ * Enregistrement (32 octets) : numéro (int), état (int), solde en centimes (long),
+ * position du nom dans prefixe.noms (long), pointeur d'historique (long, -1 si aucun).
+ */
+public class TableComptesMappee implements AutoCloseable {
+
+    private static final int MAGIC_TABLE = 0x42544331; // "BTC1"
+    private static final int MAGIC_INDEX = 0x42494331; // "BIC1"
+    private static final int ENTETE_TABLE = 64;
+    private static final int ENTETE_INDEX = 16;
+    private static final int TAILLE_ENREGISTREMENT = 32;
+    private static final int TAILLE_ENTREE_INDEX = 8;
+    private static final long CAPACITE_MINIMALE = 1024;
+    private static final double CHARGE_MAX_INDEX = 0.7;
+    private static final int LONGUEUR_MAX_NOM = 0xFFFF; // Octets UTF-8 conservés pour un nom
+
+    // Positions dans l'en-tête de la table
+    private static final int POS_CAPACITE = 8;
+    private static final int POS_EMPLACEMENTS = 16;
+    private static final int POS_ACTIFS = 24;
+    private static final int POS_TAILLE_NOMS = 32;
+
+    // Positions dans un enregistrement
+    private static final int CHAMP_NUMERO = 0;
+    private static final int CHAMP_ETAT = 4;
+    private static final int CHAMP_SOLDE = 8;
+    private static final int CHAMP_NOM = 16;
+    private static final int CHAMP_HISTORIQUE = 24;
+
+    private static final int ETAT_ACTIF = 1;
+    private static final int ETAT_SUPPRIME = 2;
+
+    private final Path fichierTable;
+    private final Path fichierIndex;
+    private final ZoneMappee table;
+    private ZoneMappee index;
+    private final FileChannel noms;
+
+    private long capacite;        // Enregistrements que peut contenir le fichier actuel
+    private long emplacements;    // Enregistrements utilisés (comptes supprimés compris)
+    private long actifs;
+    private long tailleNoms;
+    private int bitsIndex;
+
+    // Création/suppression (et remappage) en exclusif ; les mouvements sur des comptes existants en partagé
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+    // Les mouvements d'un même compte sont sérialisés par un verrou choisi selon son emplacement
+    private final Object[] verrousComptes = new Object[256];
+
+    /**
+     * Ouvre (ou crée) la table de préfixe donné.
+     */
+    public TableComptesMappee(String prefixe) throws IOException {
+        this.fichierTable = Path.of(prefixe + ".tbl");
+        this.fichierIndex = Path.of(prefixe + ".idx");
+        for (int i = 0; i < verrousComptes.length; i++) {
+            verrousComptes[i] = new Object();
+        }
+        boolean nouvelle = !Files.exists(fichierTable) || Files.size(fichierTable) < ENTETE_TABLE;
+        this.table = new ZoneMappee(fichierTable, ENTETE_TABLE + CAPACITE_MINIMALE * TAILLE_ENREGISTREMENT);
+        this.noms = FileChannel.open(Path.of(prefixe + ".noms"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (nouvelle) {
+            capacite = CAPACITE_MINIMALE;
+            table.putInt(0, MAGIC_TABLE);
+            table.putInt(4, 1);
+            ecrireEntete();
+        } else {
+            if (table.getInt(0) != MAGIC_TABLE) {
+                throw new IOException("Fichier de table invalide : " + fichierTable);
+            }
+            capacite = table.getLong(POS_CAPACITE);
+            emplacements = table.getLong(POS_EMPLACEMENTS);
+            actifs = table.getLong(POS_ACTIFS);
+            tailleNoms = table.getLong(POS_TAILLE_NOMS);
+            table.agrandir(ENTETE_TABLE + capacite * TAILLE_ENREGISTREMENT);
+        }
+        ouvrirIndex();
+    }
+
+    /**
+     * Convertit une banque chargée en mémoire en table mappée (les historiques ne sont pas repris).
+     */
+    public static TableComptesMappee convertir(GestionnaireBanque gestionnaire, String prefixe) throws IOException {
+        TableComptesMappee table = new TableComptesMappee(prefixe);
+        for (CompteBancaire compte : gestionnaire.getComptes()) {
+            table.creerCompte(compte.getNumeroCompte(), compte.getNomTitulaire(), compte.getSolde());
+        }
+        return table;
+    }
+
+    // --- Gestion des comptes ---
+
+    public ResultatOperation creerCompte(int numero, String nom, double soldeInitial) {
+        if (!(soldeInitial >= 0) || Double.isInfinite(soldeInitial)) {
+            return ResultatOperation.MONTANT_INVALIDE;
+        }
+        verrou.writeLock().lock();
+        try {
+            long emplacement = chercher(numero);
+            if (emplacement >= 0 && etat(emplacement) == ETAT_ACTIF) {
+                return ResultatOperation.NUMERO_EXISTANT;
+            }
+            if (emplacement < 0) {
+                // Nouveau numéro : enregistrement ajouté en fin de table
+                if (emplacements == capacite) {
+                    agrandirTable();
+                }
+                if (emplacements + 1 > (long) ((1L << bitsIndex) * CHARGE_MAX_INDEX)) {
+                    reconstruireIndex(bitsIndex + 1);
+                }
+                emplacement = emplacements++;
+                insererIndex(numero, emplacement);
+            }
+            // Un numéro supprimé puis recréé réutilise son ancien enregistrement
+            long position = positionEnregistrement(emplacement);
+            table.putInt(position + CHAMP_NUMERO, numero);
+            table.putInt(position + CHAMP_ETAT, ETAT_ACTIF);
+            table.putLong(position + CHAMP_SOLDE, versCentimes(soldeInitial));
+            table.putLong(position + CHAMP_NOM, ajouterNom(nom));
+            table.putLong(position + CHAMP_HISTORIQUE, -1);
+            actifs++;
+            ecrireEntete();
+            return ResultatOperation.SUCCES;
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible d'agrandir la table des comptes", e);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    public ResultatOperation supprimerCompte(int numero) {
+        verrou.writeLock().lock();
+        try {
+            long emplacement = chercherActif(numero);
+            if (emplacement < 0) {
+                return ResultatOperation.COMPTE_INCONNU;
+            }
+            table.putInt(positionEnregistrement(emplacement) + CHAMP_ETAT, ETAT_SUPPRIME);
+            actifs--;
+            ecrireEntete();
+            return ResultatOperation.SUCCES;
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    public boolean existe(int numero) {
+        verrou.readLock().lock();
+        try {
+            return chercherActif(numero) >= 0;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    public long getNombreComptes() {
+        verrou.readLock().lock();
+        try {
+            return actifs;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Le solde du compte, ou Double.NaN si le compte n'existe pas.
+     */
+    public double getSolde(int numero) {
+        verrou.readLock().lock();
+        try {
+            long emplacement = chercherActif(numero);
+            if (emplacement < 0) {
+                return Double.NaN;
+            }
+            synchronized (verrouCompte(emplacement)) {
+                return table.getLong(positionEnregistrement(emplacement) + CHAMP_SOLDE) / 100.0;
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Matérialise un compte sur le tas (pour l'affichage), sans son historique.
+     * @return Le compte, ou null s'il n'existe pas.
+     */
+    public CompteBancaire lireCompte(int numero) {
+        verrou.readLock().lock();
+        try {
+            long emplacement = chercherActif(numero);
+            return emplacement < 0 ? null : materialiser(emplacement);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Matérialise une page de comptes dans l'ordre de création, pour un affichage paginé.
+     * @param premier Rang (parmi les comptes actifs) du premier compte de la page.
+     */
+    public List<CompteBancaire> lirePage(long premier, int nombre) {
+        List<CompteBancaire> page = new ArrayList<>(nombre);
+        verrou.readLock().lock();
+        try {
+            long rang = 0;
+            for (long emplacement = 0; emplacement < emplacements && page.size() < nombre; emplacement++) {
+                if (etat(emplacement) != ETAT_ACTIF) {
+                    continue;
+                }
+                if (rang++ >= premier) {
+                    page.add(materialiser(emplacement));
+                }
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        return page;
+    }
+
+    // --- Historique (pointeur géré par le stockage d'historique) ---
+
+    long getPointeurHistorique(int numero) {
+        verrou.readLock().lock();
+        try {
+            long emplacement = chercherActif(numero);
+            return emplacement < 0 ? -1 : table.getLong(positionEnregistrement(emplacement) + CHAMP_HISTORIQUE);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    void setPointeurHistorique(int numero, long pointeur) {
+        verrou.readLock().lock();
+        try {
+            long emplacement = chercherActif(numero);
+            if (emplacement >= 0) {
+                synchronized (verrouCompte(emplacement)) {
+                    table.putLong(positionEnregistrement(emplacement) + CHAMP_HISTORIQUE, pointeur);
+                }
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Réécrit le solde et le pointeur d'historique d'un compte (compte évincé d'un cache en mémoire).
+     */
+    void ecrireCompte(int numero, double solde, long pointeurHistorique) {
+        verrou.readLock().lock();
+        try {
+            long emplacement = chercherActif(numero);
+            if (emplacement >= 0) {
+                long position = positionEnregistrement(emplacement);
+                synchronized (verrouCompte(emplacement)) {
+                    table.putLong(position + CHAMP_SOLDE, versCentimes(solde));
+                    table.putLong(position + CHAMP_HISTORIQUE, pointeurHistorique);
+                }
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // --- Persistance ---
+
+    /**
+     * Force l'écriture sur disque des pages modifiées (sinon le système les écrit à son rythme).
+     */
+    public void forcer() throws IOException {
+        verrou.writeLock().lock();
+        try {
+            table.forcer();
+            index.forcer();
+            noms.force(false);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        verrou.writeLock().lock();
+        try {
+            table.forcer();
+            index.forcer();
+            table.fermer();
+            index.fermer();
+            noms.close();
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    // --- Fonctionnement interne ---
+
+    private CompteBancaire materialiser(long emplacement) {
+        long position = positionEnregistrement(emplacement);
+        int numero = table.getInt(position + CHAMP_NUMERO);
+        long solde;
+        synchronized (verrouCompte(emplacement)) {
+            solde = table.getLong(position + CHAMP_SOLDE);
+        }
+        return CompteBancaire.restaurer(numero, lireNom(table.getLong(position + CHAMP_NOM)), solde / 100.0);
+    }
+
+    private int etat(long emplacement) {
+        return table.getInt(positionEnregistrement(emplacement) + CHAMP_ETAT);
+    }
+
+    private static long positionEnregistrement(long emplacement) {
+        return ENTETE_TABLE + emplacement * TAILLE_ENREGISTREMENT;
+    }
+
+    private static long versCentimes(double montant) {
+        return Math.round(montant * 100);
+    }
+
+    private Object verrouCompte(long emplacement) {
+        return verrousComptes[indiceVerrou(emplacement)];
+    }
+
+    private int indiceVerrou(long emplacement) {
+        return (int) (emplacement & (verrousComptes.length - 1));
+    }
+
+    private void ecrireEntete() {
+        table.putLong(POS_CAPACITE, capacite);
+        table.putLong(POS_EMPLACEMENTS, emplacements);
+        table.putLong(POS_ACTIFS, actifs);
+        table.putLong(POS_TAILLE_NOMS, tailleNoms);
+    }
+
+    private void agrandirTable() throws IOException {
+        capacite *= 2;
+        table.agrandir(ENTETE_TABLE + capacite * TAILLE_ENREGISTREMENT);
+        ecrireEntete();
+    }
+
+    // Noms : [longueur sur 2 octets][octets UTF-8], ajoutés en fin de fichier
+
+    private long ajouterNom(String nom) throws IOException {
+        byte[] octets = (nom == null ? "" : nom).getBytes(StandardCharsets.UTF_8);
+        int longueur = Math.min(octets.length, LONGUEUR_MAX_NOM);
+        ByteBuffer tampon = ByteBuffer.allocate(2 + longueur);
+        tampon.putShort((short) longueur).put(octets, 0, longueur).flip();
+        long position = tailleNoms;
+        while (tampon.hasRemaining()) {
+            noms.write(tampon, position + tampon.position());
+        }
+        tailleNoms += 2 + longueur;
+        return position;
+    }
+
+    private String lireNom(long position) {
+        try {
+            ByteBuffer longueur = ByteBuffer.allocate(2);
+            lireComplet(longueur, position);
+            ByteBuffer octets = ByteBuffer.allocate(Short.toUnsignedInt(longueur.getShort(0)));
+            lireComplet(octets, position + 2);
+            return new String(octets.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Lecture du nom impossible dans " + fichierTable, e);
+        }
+    }
+
+    private void lireComplet(ByteBuffer tampon, long position) throws IOException {
+        while (tampon.hasRemaining()) {
+            if (noms.read(tampon, position + tampon.position()) < 0) {
+                throw new IOException("Fichier des noms tronqué");
+            }
+        }
+    }
+
+    // Index : adressage ouvert (sondage linéaire), entrée = [numéro][emplacement + 1], 0 = case vide.
+    // Un compte supprimé garde son entrée : le numéro pointe toujours vers son enregistrement.
+
+    private void ouvrirIndex() throws IOException {
+        int bitsAttendus = bitsPour(Math.max(emplacements, capacite));
+        if (Files.exists(fichierIndex) && Files.size(fichierIndex) >= ENTETE_INDEX) {
+            index = new ZoneMappee(fichierIndex, 0);
+            int bits = index.getInt(4);
+            if (index.getInt(0) == MAGIC_INDEX && index.getLong(8) == emplacements && bits > 0 && bits < 32
+                    && index.getTaille() >= ENTETE_INDEX + ((long) TAILLE_ENTREE_INDEX << bits)) {
+                bitsIndex = bits;
+                return;
+            }
+            index.fermer();
+        }
+        // Index absent ou périmé (arrêt brutal) : il se reconstruit à partir de la table
+        index = null;
+        reconstruireIndex(bitsAttendus);
+    }
+
+    /**
+     * Reconstruit l'index avec 2^bits cases dans un fichier temporaire, puis le substitue à l'ancien.
+     */
+    private void reconstruireIndex(int bits) throws IOException {
+        Path temporaire = Path.of(fichierIndex + ".tmp");
+        Files.deleteIfExists(temporaire);
+        ZoneMappee nouveau = new ZoneMappee(temporaire, ENTETE_INDEX + ((long) TAILLE_ENTREE_INDEX << bits));
+        ZoneMappee ancien = index;
+        index = nouveau;
+        bitsIndex = bits;
+        index.putInt(0, MAGIC_INDEX);
+        index.putInt(4, bits);
+        for (long emplacement = 0; emplacement < emplacements; emplacement++) {
+            insererIndex(table.getInt(positionEnregistrement(emplacement) + CHAMP_NUMERO), emplacement);
+        }
+        if (ancien != null) {
+            ancien.fermer();
+        }
+        Files.move(temporaire, fichierIndex, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int bitsPour(long nombre) {
+        long cases = (long) Math.ceil(nombre / CHARGE_MAX_INDEX);
+        return Math.max(10, 64 - Long.numberOfLeadingZeros(cases - 1));
+    }
+
+    private long caseInitiale(int numero) {
+        return (numero * 0x9E3779B97F4A7C15L) >>> (64 - bitsIndex);
+    }
+
+    private long chercher(int numero) {
+        long masque = (1L << bitsIndex) - 1;
+        for (long c = caseInitiale(numero); ; c = (c + 1) & masque) {
+            long position = ENTETE_INDEX + c * TAILLE_ENTREE_INDEX;
+            int emplacement = index.getInt(position + 4);
+            if (emplacement == 0) {
+                return -1;
+            }
+            if (index.getInt(position) == numero) {
+                return emplacement - 1L;
+            }
+        }
+    }
+
+    private long chercherActif(int numero) {
+        long emplacement = chercher(numero);
+        return emplacement >= 0 && etat(emplacement) == ETAT_ACTIF ? emplacement : -1;
+    }
+
+    private void insererIndex(int numero, long emplacement) {
+        long masque = (1L << bitsIndex) - 1;
+        long c = caseInitiale(numero);
+        while (index.getInt(ENTETE_INDEX + c * TAILLE_ENTREE_INDEX + 4) != 0) {
+            c = (c + 1) & masque;
+        }
+        long position = ENTETE_INDEX + c * TAILLE_ENTREE_INDEX;
+        index.putInt(position, numero);
+        index.putInt(position + 4, (int) (emplacement + 1));
+        index.putLong(8, emplacement + 1); // Nombre d'enregistrements indexés, vérifié à l'ouverture
+    }
+
+    /**
+     * Fichier mappé par morceaux d'au plus 1 Go (un MappedByteBuffer est limité à 2 Go).
+     * Les enregistrements et les entrées d'index ne chevauchent jamais deux morceaux.
+     */
+    private static final class ZoneMappee {
+        private static final int BITS_MORCEAU = 30;
+        private static final long TAILLE_MORCEAU = 1L << BITS_MORCEAU;
+        private static final long MASQUE_MORCEAU = TAILLE_MORCEAU - 1;
+
+        private final FileChannel canal;
+        private MappedByteBuffer[] morceaux = new MappedByteBuffer[0];
+        private long taille;
+
+        ZoneMappee(Path fichier, long tailleMinimale) throws IOException {
+            this.canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            agrandir(Math.max(tailleMinimale, canal.size()));
+        }
+
+        /**
+         * Étend le fichier et le mappage ; seuls le dernier morceau et les nouveaux sont remappés.
+         */
+        void agrandir(long nouvelleTaille) throws IOException {
+            if (nouvelleTaille <= taille) {
+                return;
+            }
+            int nombre = (int) ((nouvelleTaille + MASQUE_MORCEAU) >>> BITS_MORCEAU);
+            MappedByteBuffer[] nouveaux = Arrays.copyOf(morceaux, nombre);
+            for (int i = 0; i < nombre; i++) {
+                long debut = (long) i << BITS_MORCEAU;
+                long longueur = Math.min(TAILLE_MORCEAU, nouvelleTaille - debut);
+                if (nouveaux[i] == null || nouveaux[i].capacity() < longueur) {
+                    nouveaux[i] = canal.map(FileChannel.MapMode.READ_WRITE, debut, longueur);
+                }
+            }
+            morceaux = nouveaux;
+            taille = nouvelleTaille;
+        }
+
+        long getTaille() {
+            return taille;
+        }
+
+        int getInt(long position) {
+            return morceaux[(int) (position >>> BITS_MORCEAU)].getInt((int) (position & MASQUE_MORCEAU));
+        }
+
+        void putInt(long position, int valeur) {
+            morceaux[(int) (position >>> BITS_MORCEAU)].putInt((int) (position & MASQUE_MORCEAU), valeur);
+        }
+
+        long getLong(long position) {
+            return morceaux[(int) (position >>> BITS_MORCEAU)].getLong((int) (position & MASQUE_MORCEAU));
+        }
+
+        void putLong(long position, long valeur) {
+            morceaux[(int) (position >>> BITS_MORCEAU)].putLong((int) (position & MASQUE_MORCEAU), valeur);
+        }
+
+        void forcer() {
+            for (MappedByteBuffer morceau : morceaux) {
+                morceau.force();
+            }
+        }
+
+        void fermer() throws IOException {
+            canal.close();
+        }
+    }
+}
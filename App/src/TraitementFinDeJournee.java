@@ -0,0 +1,306 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traitement de fin de journée : intérêts d'épargne (INTERETS) et frais de tenue de compte (FRAIS)
+ * appliqués à tous les comptes selon un barème, en parallèle (fork-join) pendant que les opérations
+ * continuent. Chaque compte est traité sous son propre verrou, par partitions de plages de numéros ;
+ * une partition tient le verrou partagé du gestionnaire, comme une opération, pour qu'aucune sauvegarde
+ * ne s'intercale entre la marque d'un compte et ses mouvements.
+ *
+ * Chaque compte note le dernier jour qui lui a été appliqué, sauvegardé avec son solde : une sauvegarde
+ * intermédiaire (périodique ou d'une opération) ne peut donc pas enregistrer les intérêts d'un compte sans
+ * sa marque. Relancé pour le même jour (après arreter(), une erreur ou un arrêt brutal), le traitement
+ * saute les comptes déjà marqués. La sauvegarde finale note de plus le jour comme terminé dans l'en-tête
+ * qui valide ces comptes : une nouvelle exécution pour ce jour ou un jour antérieur ne fait alors rien.
+ *
+ * Comme archiverHistorique, ne porte que sur les comptes en mémoire (mode mémoire complète).
+ */
+public class TraitementFinDeJournee {
+
+    private static final int COMPTES_PAR_PARTITION = 4096;
+
+    /**
+     * Barème : taux d'intérêt annuel par palier de solde, frais journaliers sous un seuil de solde.
+     */
+    public static final class Bareme {
+        private double[] seuils = new double[0];
+        private double[] taux = new double[0];
+        private double frais;
+        private double soldeExoneration;
+
+        /**
+         * Taux annuel (0.02 pour 2 %) appliqué aux soldes à partir de ce seuil, jusqu'au palier suivant.
+         */
+        public Bareme palier(double soldeMinimum, double tauxAnnuel) {
+            int position = 0;
+            while (position < seuils.length && seuils[position] < soldeMinimum) {
+                position++;
+            }
+            double[] nouveauxSeuils = new double[seuils.length + 1];
+            double[] nouveauxTaux = new double[taux.length + 1];
+            System.arraycopy(seuils, 0, nouveauxSeuils, 0, position);
+            System.arraycopy(taux, 0, nouveauxTaux, 0, position);
+            nouveauxSeuils[position] = soldeMinimum;
+            nouveauxTaux[position] = tauxAnnuel;
+            System.arraycopy(seuils, position, nouveauxSeuils, position + 1, seuils.length - position);
+            System.arraycopy(taux, position, nouveauxTaux, position + 1, taux.length - position);
+            seuils = nouveauxSeuils;
+            taux = nouveauxTaux;
+            return this;
+        }
+
+        /**
+         * Frais prélevés chaque jour sur les comptes dont le solde est inférieur au seuil d'exonération.
+         */
+        public Bareme frais(double fraisJournaliers, double soldeExoneration) {
+            this.frais = fraisJournaliers;
+            this.soldeExoneration = soldeExoneration;
+            return this;
+        }
+
+        /**
+         * Intérêts d'une journée pour ce solde, arrondis au centime.
+         */
+        double interets(double solde) {
+            int palier = Arrays.binarySearch(seuils, solde);
+            palier = palier >= 0 ? palier : -palier - 2; // Dernier seuil inférieur ou égal au solde
+            if (palier < 0 || !(solde > 0)) {
+                return 0;
+            }
+            return Math.round(solde * taux[palier] / 365 * 100) / 100.0;
+        }
+
+        double frais(double solde) {
+            return solde < soldeExoneration ? frais : 0;
+        }
+    }
+
+    /**
+     * Bilan d'une exécution (les comptes déjà traités par une exécution précédente n'y figurent pas).
+     */
+    public static final class Rapport {
+        private final long comptes;
+        private final double interets;
+        private final double frais;
+        private final long fraisImpayes;
+        private final long comptesDejaTraites;
+
+        private Rapport(long comptes, double interets, double frais, long fraisImpayes, long comptesDejaTraites) {
+            this.comptes = comptes;
+            this.interets = interets;
+            this.frais = frais;
+            this.fraisImpayes = fraisImpayes;
+            this.comptesDejaTraites = comptesDejaTraites;
+        }
+
+        public long getComptes() {
+            return comptes;
+        }
+
+        public double getInterets() {
+            return interets;
+        }
+
+        public double getFrais() {
+            return frais;
+        }
+
+        /**
+         * Comptes dont le solde ne couvrait pas les frais (non prélevés).
+         */
+        public long getFraisImpayes() {
+            return fraisImpayes;
+        }
+
+        /**
+         * Comptes auxquels une exécution précédente avait déjà appliqué ce jour, sautés.
+         */
+        public long getComptesDejaTraites() {
+            return comptesDejaTraites;
+        }
+
+        @Override
+        public String toString() {
+            return comptes + " comptes, intérêts " + String.format("%.2f", interets) + " €, frais "
+                    + String.format("%.2f", frais) + " € (" + fraisImpayes + " impayés), " + comptesDejaTraites + " déjà traités";
+        }
+    }
+
+    private final GestionnaireBanque gestionnaire;
+    private final Bareme bareme;
+    private volatile boolean arret;
+
+    public TraitementFinDeJournee(GestionnaireBanque gestionnaire, Bareme bareme) {
+        this.gestionnaire = gestionnaire;
+        this.bareme = bareme;
+    }
+
+    /**
+     * Demande l'arrêt du traitement en cours : les partitions commencées se terminent, puis il sauvegarde
+     * les comptes traités.
+     */
+    public void arreter() {
+        arret = true;
+    }
+
+    /**
+     * Applique le barème de la journée aux comptes qui ne l'ont pas encore reçu.
+     * @throws IOException Si le traitement a été arrêté ou a échoué sur une partition (les comptes traités
+     *                     sont sauvegardés, une nouvelle exécution termine les autres), ou si la sauvegarde
+     *                     finale a échoué.
+     */
+    public Rapport executer(LocalDate jour) throws IOException {
+        arret = false;
+        if (jour.toEpochDay() <= gestionnaire.getJourFinDeJournee()) {
+            return new Rapport(0, 0, 0, 0, 0); // Déjà terminé et sauvegardé
+        }
+        List<CompteBancaire> comptes = gestionnaire.instantaneComptes();
+        comptes.sort((a, b) -> Integer.compare(a.getNumeroCompte(), b.getNumeroCompte()));
+        int[] bornes = bornes(comptes);
+        boolean[] faites = new boolean[bornes.length];
+
+        Bilan bilan = new Bilan((int) jour.toEpochDay());
+        ForkJoinPool.commonPool().invoke(new Partitions(comptes, bornes, faites, 0, bornes.length, bilan));
+
+        int restantes = 0;
+        for (boolean faite : faites) {
+            restantes += faite ? 0 : 1;
+        }
+        if (restantes > 0) {
+            gestionnaire.sauvegarderDonnees();
+            throw new IOException("Traitement de fin de journée du " + jour + " interrompu : " + restantes + " partitions sur "
+                    + bornes.length + " à reprendre" + (bilan.erreur != null ? " (" + bilan.erreur + ")" : ""));
+        }
+        if (!gestionnaire.sauvegarderFinDeJournee(jour.toEpochDay())) {
+            throw new IOException("Traitement de fin de journée du " + jour + " appliqué mais non sauvegardé");
+        }
+        return new Rapport(bilan.comptes.sum(), bilan.interets.sum(), bilan.frais.sum(), bilan.fraisImpayes.sum(),
+                bilan.dejaTraites.sum());
+    }
+
+    /**
+     * Premier numéro de chaque partition ; la partition p couvre [bornes[p], bornes[p + 1]).
+     */
+    private static int[] bornes(List<CompteBancaire> comptes) {
+        int nombre = Math.max(1, (comptes.size() + COMPTES_PAR_PARTITION - 1) / COMPTES_PAR_PARTITION);
+        int[] bornes = new int[nombre];
+        bornes[0] = Integer.MIN_VALUE;
+        for (int p = 1; p < nombre; p++) {
+            bornes[p] = comptes.get(p * COMPTES_PAR_PARTITION).getNumeroCompte();
+        }
+        return bornes;
+    }
+
+    /**
+     * Compteurs partagés par toutes les tâches d'une exécution.
+     */
+    private static final class Bilan {
+        final int jour;
+        final LongAdder comptes = new LongAdder();
+        final DoubleAdder interets = new DoubleAdder();
+        final DoubleAdder frais = new DoubleAdder();
+        final LongAdder fraisImpayes = new LongAdder();
+        final LongAdder dejaTraites = new LongAdder();
+        volatile String erreur;
+
+        Bilan(int jour) {
+            this.jour = jour;
+        }
+    }
+
+    /**
+     * Partitions [debut, fin) : découpées en deux jusqu'à une seule, traitée sur place.
+     */
+    private final class Partitions extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<CompteBancaire> comptes;
+        private final int[] bornes;
+        private final boolean[] faites;
+        private final int debut;
+        private final int fin;
+        private final transient Bilan bilan;
+
+        Partitions(List<CompteBancaire> comptes, int[] bornes, boolean[] faites, int debut, int fin, Bilan bilan) {
+            this.comptes = comptes;
+            this.bornes = bornes;
+            this.faites = faites;
+            this.debut = debut;
+            this.fin = fin;
+            this.bilan = bilan;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - debut > 1) {
+                int milieu = (debut + fin) >>> 1;
+                invokeAll(new Partitions(comptes, bornes, faites, debut, milieu, bilan),
+                        new Partitions(comptes, bornes, faites, milieu, fin, bilan));
+            } else if (!faites[debut] && !arret) {
+                try {
+                    traiterPartition(debut);
+                    faites[debut] = true; // Lu après la fin de invoke() : visible par le thread appelant
+                } catch (RuntimeException e) {
+                    bilan.erreur = "partition " + debut + " : " + e;
+                    arret = true; // Les partitions non commencées attendront la reprise
+                }
+            }
+        }
+
+        private void traiterPartition(int p) {
+            int premier = bornes[p];
+            long dernier = p + 1 < bornes.length ? bornes[p + 1] : (long) Integer.MAX_VALUE + 1;
+            gestionnaire.executerSousVerrouPartage(() -> {
+                for (int i = premierIndice(premier); i < comptes.size() && comptes.get(i).getNumeroCompte() < dernier; i++) {
+                    appliquer(comptes.get(i));
+                }
+            });
+        }
+
+        private int premierIndice(int numero) {
+            int bas = 0;
+            int haut = comptes.size();
+            while (bas < haut) {
+                int milieu = (bas + haut) >>> 1;
+                if (comptes.get(milieu).getNumeroCompte() < numero) {
+                    bas = milieu + 1;
+                } else {
+                    haut = milieu;
+                }
+            }
+            return bas;
+        }
+
+        private void appliquer(CompteBancaire compte) {
+            synchronized (compte) {
+                if (compte.getJourFinDeJournee() >= bilan.jour) {
+                    bilan.dejaTraites.increment();
+                    return;
+                }
+                compte.marquerFinDeJournee(bilan.jour); // Sauvegardée avec les mouvements qui suivent
+                double solde = compte.getSolde();
+                double interetsCompte = bareme.interets(solde);
+                if (interetsCompte > 0) {
+                    compte.crediter(interetsCompte, "INTERETS");
+                    bilan.interets.add(interetsCompte);
+                }
+                double fraisCompte = bareme.frais(solde);
+                if (fraisCompte > 0) {
+                    if (compte.retirer(fraisCompte, "FRAIS")) {
+                        bilan.frais.add(fraisCompte);
+                    } else {
+                        bilan.fraisImpayes.increment();
+                    }
+                }
+            }
+            bilan.comptes.increment();
+        }
+    }
+}
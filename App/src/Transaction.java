@@ -14,6 +14,7 @@ public class Transaction implements Serializable {
     private double montant;
     private String type; // Ex: DEPOT, RETRAIT, TRANSFERT_EMIS, TRANSFERT_RECU
     private LocalDateTime dateHeure;
+    private Integer contrepartie; // Compte d'en face d'une jambe de transfert (null sinon, ou transaction antérieure)
 
     public Transaction(double montant, String type) {
         this.montant = montant;
@@ -21,6 +22,20 @@ public class Transaction implements Serializable {
         this.dateHeure = LocalDateTime.now(); // Enregistre l'heure actuelle
     }
 
+    /**
+     * Transaction relue depuis un stockage externe (archive), avec sa date d'origine.
+     */
+    Transaction(double montant, String type, LocalDateTime dateHeure) {
+        this(montant, type, dateHeure, null);
+    }
+
+    Transaction(double montant, String type, LocalDateTime dateHeure, Integer contrepartie) {
+        this.montant = montant;
+        this.type = type;
+        this.dateHeure = dateHeure;
+        this.contrepartie = contrepartie;
+    }
+
     // --- Getters ---
 
     public double getMontant() {
@@ -31,6 +46,18 @@ public class Transaction implements Serializable {
         return type;
     }
 
+    public LocalDateTime getDateHeure() {
+        return dateHeure;
+    }
+
+    /**
+     * Numéro du compte d'en face pour une jambe de transfert (émetteur d'un TRANSFERT_RECU, destinataire
+     * d'un TRANSFERT_EMIS ou TRANSFERT_REMBOURSE), null sinon.
+     */
+    public Integer getContrepartie() {
+        return contrepartie;
+    }
+
     public String getDateHeureFormatee() {
         return dateHeure.format(DATE_FORMATTER);
     }
@@ -42,14 +69,37 @@ public class Transaction implements Serializable {
         DecimalFormat df = new DecimalFormat("#.00");
         String prefix = "";
         // Ajoute un signe pour l'affichage de l'historique
-        if (type.equals("DEPOT") || type.equals("TRANSFERT_RECU") || type.equals("DEPOT_INITIAL")) {
+        int signe = signe(type);
+        if (signe > 0) {
             prefix = "+ ";
-        } else if (type.equals("RETRAIT") || type.equals("TRANSFERT_EMIS")) {
+        } else if (signe < 0) {
             prefix = "- ";
         }
         return prefix + df.format(montant) + " €";
     }
 
+    /**
+     * Sens d'un type de transaction sur le solde : +1 (crédit), -1 (débit) ou 0 (inconnu).
+     */
+    public static int signe(String type) {
+        switch (type) {
+            case "DEPOT":
+            case "TRANSFERT_RECU":
+            case "DEPOT_INITIAL":
+            case "MULTI_CREDIT":
+            case "TRANSFERT_REMBOURSE":
+            case "INTERETS":
+                return 1;
+            case "RETRAIT":
+            case "TRANSFERT_EMIS":
+            case "MULTI_DEBIT":
+            case "FRAIS":
+                return -1;
+            default:
+                return 0;
+        }
+    }
+
     @Override
     public String toString() {
         return "[" + getDateHeureFormatee() + "] " + getType() + " : " + getMontantFormate();